@@ -36,7 +36,11 @@ public abstract class AbstractSimulatedDevice {
         /**
          * Direct Device Interface via HTTP, poll mechanism.
          */
-        DDI_HTTP
+        DDI_HTTP,
+        /**
+         * Direct Device Interface via non-blocking HTTP, poll mechanism.
+         */
+        DDI_ASYNC
     }
 
     /**
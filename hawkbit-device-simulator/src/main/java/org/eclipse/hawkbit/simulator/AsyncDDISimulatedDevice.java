@@ -0,0 +1,225 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import org.eclipse.hawkbit.ddi.json.model.DdiChunk;
+import org.eclipse.hawkbit.ddi.json.model.DdiConfigData;
+import org.eclipse.hawkbit.ddi.json.model.DdiControllerBase;
+import org.eclipse.hawkbit.ddi.json.model.DdiDeployment;
+import org.eclipse.hawkbit.ddi.json.model.DdiDeployment.HandlingType;
+import org.eclipse.hawkbit.ddi.json.model.DdiDeploymentBase;
+import org.eclipse.hawkbit.ddi.json.model.DdiUpdateMode;
+import org.eclipse.hawkbit.dmf.amqp.api.EventTopic;
+import org.eclipse.hawkbit.simulator.DeviceSimulatorUpdater.UpdaterCallback;
+import org.eclipse.hawkbit.simulator.http.DdiAsyncClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.hateoas.Link;
+
+/**
+ * A simulated device using the DDI API of the hawkBit update server with
+ * non-blocking HTTP calls. Poll, deployment retrieval and feedback are chained
+ * as futures, so no thread is bound to the device while it waits for the
+ * server.
+ */
+public class AsyncDDISimulatedDevice extends AbstractSimulatedDevice {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncDDISimulatedDevice.class);
+    private static final String LOG_PREFIX = "[{}:{}] ";
+
+    private static final String DEPLOYMENT_BASE_LINK = "deploymentBase";
+
+    private static final String CONFIRMATION_BASE_LINK = "confirmationBase";
+
+    private final String baseEndpoint;
+
+    private final DdiAsyncClient client;
+
+    private final DeviceSimulatorUpdater deviceUpdater;
+
+    private final String gatewayToken;
+
+    private final AtomicBoolean polling = new AtomicBoolean();
+
+    // feedback of an action is posted in the order it is reported
+    private CompletableFuture<Void> feedbackChain = CompletableFuture.completedFuture(null);
+
+    private volatile boolean removed;
+    private volatile Long currentActionId;
+
+    /**
+     * @param id
+     *            the ID of the device
+     * @param tenant
+     *            the tenant of the simulated device
+     * @param pollDelaySec
+     *            the delay of the poll interval in sec
+     * @param baseEndpoint
+     *            the base endpoint of the client
+     * @param client
+     *            the non-blocking DDI client
+     * @param deviceUpdater
+     *            the service to update devices
+     * @param gatewayToken
+     *            to authenticate at DDI and for download as well
+     */
+    public AsyncDDISimulatedDevice(final String id, final String tenant, final int pollDelaySec,
+            final String baseEndpoint, final DdiAsyncClient client, final DeviceSimulatorUpdater deviceUpdater,
+            final String gatewayToken) {
+        super(id, tenant, Protocol.DDI_ASYNC, pollDelaySec);
+        this.baseEndpoint = baseEndpoint;
+        this.client = client;
+        this.deviceUpdater = deviceUpdater;
+        this.gatewayToken = gatewayToken;
+    }
+
+    public String getBaseEndpoint() {
+        return baseEndpoint;
+    }
+
+    public String getGatewayToken() {
+        return gatewayToken;
+    }
+
+    /**
+     * @return the ID of the action which is in progress or <code>null</code>
+     */
+    public Long getCurrentActionId() {
+        return currentActionId;
+    }
+
+    public void setCurrentActionId(final Long currentActionId) {
+        this.currentActionId = currentActionId;
+    }
+
+    @Override
+    public void clean() {
+        super.clean();
+        removed = true;
+    }
+
+    /**
+     * Polls the base URL for the DDI API interface. Returns immediately, the
+     * poll is skipped if the previous one has not finished yet.
+     */
+    @Override
+    public void poll() {
+        if (removed || !polling.compareAndSet(false, true)) {
+            return;
+        }
+
+        LOGGER.trace(LOG_PREFIX + "Polling ...", getTenant(), getId());
+        client.getControllerBase(getTenant(), getId()).thenCompose(this::handleControllerBase)
+                .whenComplete((result, ex) -> {
+                    polling.set(false);
+                    if (ex != null) {
+                        LOGGER.error(LOG_PREFIX + "Failed poll", getTenant(), getId(), ex);
+                    }
+                });
+    }
+
+    private CompletableFuture<Void> handleControllerBase(final Optional<DdiControllerBase> controllerBase) {
+        if (controllerBase.isEmpty()) {
+            LOGGER.error(LOG_PREFIX + "Failed base poll", getTenant(), getId());
+            return CompletableFuture.completedFuture(null);
+        }
+
+        final Optional<Link> confirmationBaseLink = controllerBase.get().getLink(CONFIRMATION_BASE_LINK);
+        if (confirmationBaseLink.isPresent()) {
+            return client.postFeedback(confirmationBaseLink.get().getHref(), DDISimulatedDevice.confirmationFeedback())
+                    .thenAccept(status -> logFeedbackStatus(status, confirmationBaseLink.get()));
+        }
+
+        final Optional<Link> deploymentBaseLink = controllerBase.get().getLink(DEPLOYMENT_BASE_LINK);
+        if (deploymentBaseLink.isEmpty()) {
+            LOGGER.trace(LOG_PREFIX + "Polling finished. No link", getTenant(), getId());
+            return CompletableFuture.completedFuture(null);
+        }
+
+        final Link link = deploymentBaseLink.get();
+        LOGGER.debug(LOG_PREFIX + "Polling finished. Has link: {}", getTenant(), getId(), link);
+        final long actionId = DDISimulatedDevice.getActionId(link);
+        final Long runningActionId = currentActionId;
+        if (runningActionId != null && runningActionId != actionId) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return client.getDeploymentBase(link.getHref())
+                .thenAccept(deploymentBase -> deploymentBase.ifPresent(base -> startUpdate(actionId, link, base)));
+    }
+
+    private void startUpdate(final long actionId, final Link deploymentBaseLink,
+            final DdiDeploymentBase deploymentBase) {
+        final DdiDeployment deployment = deploymentBase.getDeployment();
+        final HandlingType updateType = deployment.getUpdate();
+        final List<DdiChunk> modules = deployment.getChunks();
+
+        currentActionId = actionId;
+        deviceUpdater.startUpdate(this,
+                modules.stream().map(DDISimulatedDevice::convertChunk).collect(Collectors.toList()), null, gatewayToken,
+                sendFeedback(deploymentBaseLink),
+                HandlingType.SKIP == updateType ? EventTopic.DOWNLOAD : EventTopic.DOWNLOAD_AND_INSTALL);
+    }
+
+    private UpdaterCallback sendFeedback(final Link deploymentBaseLink) {
+        return (device, updateStatus) -> {
+            // calculated right away, the status of the device changes while
+            // the previous feedback is in flight
+            final Object feedback = DDISimulatedDevice.calculateFeedback(updateStatus);
+            synchronized (this) {
+                feedbackChain = feedbackChain
+                        .thenCompose(previous -> client.postFeedback(deploymentBaseLink.getHref(), feedback))
+                        .handle((status, ex) -> {
+                            if (ex != null) {
+                                LOGGER.error(LOG_PREFIX + "Failed to send feedback", getTenant(), getId(), ex);
+                            } else {
+                                logFeedbackStatus(status, deploymentBaseLink);
+                            }
+                            currentActionId = null;
+                            return null;
+                        });
+            }
+        };
+    }
+
+    private void logFeedbackStatus(final int status, final Link link) {
+        if (status >= 300) {
+            LOGGER.error(LOG_PREFIX + "Feedback to {} failed with {}", getTenant(), getId(), link.getHref(), status);
+        }
+    }
+
+    @Override
+    public void updateAttribute(final String mode, final String key, final String value) {
+
+        final DdiUpdateMode updateMode;
+        switch (mode.toLowerCase()) {
+        case "replace":
+            updateMode = DdiUpdateMode.REPLACE;
+            break;
+        case "remove":
+            updateMode = DdiUpdateMode.REMOVE;
+            break;
+        case "merge":
+        default:
+            updateMode = DdiUpdateMode.MERGE;
+            break;
+        }
+
+        client.putConfigData(getTenant(), getId(),
+                new DdiConfigData(Collections.singletonMap(key, value), updateMode));
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock free flags by slot or by index in a {@link DeviceRange} which mark the
+ * devices whose poll is in progress. The flags are kept in chunks which are
+ * created when a flag of the chunk is set for the first time, so neither a
+ * device nor a poll costs an object.
+ */
+final class BusyFlags {
+
+    private static final int CHUNK_SHIFT = 18;
+    private static final int CHUNK_BITS = 1 << CHUNK_SHIFT;
+    private static final int WORD_SHIFT = 6;
+
+    private final int capacity;
+    private final AtomicReferenceArray<AtomicLongArray> chunks;
+
+    /**
+     * @param capacity
+     *            the number of flags
+     */
+    BusyFlags(final int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative");
+        }
+        this.capacity = capacity;
+        chunks = new AtomicReferenceArray<>((int) (((long) capacity + CHUNK_BITS - 1) >>> CHUNK_SHIFT));
+    }
+
+    /**
+     * @param index
+     *            the index of the flag
+     * @return <code>true</code> if the flag has been set, <code>false</code>
+     *         if it was set already
+     */
+    boolean set(final int index) {
+        final AtomicLongArray words = chunk(index);
+        final int word = (index & (CHUNK_BITS - 1)) >>> WORD_SHIFT;
+        final long mask = 1L << index;
+        long current;
+        do {
+            current = words.get(word);
+            if ((current & mask) != 0) {
+                return false;
+            }
+        } while (!words.compareAndSet(word, current, current | mask));
+        return true;
+    }
+
+    /**
+     * @param index
+     *            the index of the flag
+     */
+    void clear(final int index) {
+        final AtomicLongArray words = chunks.get(index >>> CHUNK_SHIFT);
+        if (words == null) {
+            return;
+        }
+        final int word = (index & (CHUNK_BITS - 1)) >>> WORD_SHIFT;
+        final long mask = 1L << index;
+        long current;
+        do {
+            current = words.get(word);
+            if ((current & mask) == 0) {
+                return;
+            }
+        } while (!words.compareAndSet(word, current, current & ~mask));
+    }
+
+    /**
+     * @return the heap of the flags in bytes
+     */
+    long getBytes() {
+        long bytes = (long) chunks.length() * Integer.BYTES;
+        for (int i = 0; i < chunks.length(); i++) {
+            final AtomicLongArray words = chunks.get(i);
+            if (words != null) {
+                bytes += (long) words.length() * Long.BYTES;
+            }
+        }
+        return bytes;
+    }
+
+    private AtomicLongArray chunk(final int index) {
+        if (index < 0 || index >= capacity) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for capacity " + capacity);
+        }
+        final int chunk = index >>> CHUNK_SHIFT;
+        final AtomicLongArray words = chunks.get(chunk);
+        if (words != null) {
+            return words;
+        }
+        // the last chunk only holds the flags up to the capacity
+        final long bits = Math.min(CHUNK_BITS, capacity - ((long) chunk << CHUNK_SHIFT));
+        final AtomicLongArray created = new AtomicLongArray((int) ((bits + Long.SIZE - 1) >>> WORD_SHIFT));
+        return chunks.compareAndSet(chunk, null, created) ? created : chunks.get(chunk);
+    }
+}
@@ -53,6 +53,8 @@ public class DDISimulatedDevice extends AbstractSimulatedDevice {
     private static final Logger LOGGER = LoggerFactory.getLogger(DDISimulatedDevice.class);
     private static final String LOG_PREFIX = "[{}:{}] ";
 
+    private final String baseEndpoint;
+
     private final DdiRootControllerRestApi controllerResource;
 
     private final DeviceSimulatorUpdater deviceUpdater;
@@ -73,6 +75,8 @@ public class DDISimulatedDevice extends AbstractSimulatedDevice {
      *            the tenant of the simulated device
      * @param pollDelaySec
      *            the delay of the poll interval in sec
+     * @param baseEndpoint
+     *            the base endpoint of the controller resource
      * @param controllerResource
      *            the http controller resource
      * @param deviceUpdater
@@ -81,14 +85,34 @@ public class DDISimulatedDevice extends AbstractSimulatedDevice {
      *            to authenticate at DDI and for download as well
      */
     public DDISimulatedDevice(final String id, final String tenant, final int pollDelaySec,
-            final DdiRootControllerRestApi controllerResource, final DeviceSimulatorUpdater deviceUpdater,
-            final String gatewayToken) {
+            final String baseEndpoint, final DdiRootControllerRestApi controllerResource,
+            final DeviceSimulatorUpdater deviceUpdater, final String gatewayToken) {
         super(id, tenant, Protocol.DDI_HTTP, pollDelaySec);
+        this.baseEndpoint = baseEndpoint;
         this.controllerResource = controllerResource;
         this.deviceUpdater = deviceUpdater;
         this.gatewayToken = gatewayToken;
     }
 
+    public String getBaseEndpoint() {
+        return baseEndpoint;
+    }
+
+    public String getGatewayToken() {
+        return gatewayToken;
+    }
+
+    /**
+     * @return the ID of the action which is in progress or <code>null</code>
+     */
+    public Long getCurrentActionId() {
+        return currentActionId;
+    }
+
+    public void setCurrentActionId(final Long currentActionId) {
+        this.currentActionId = currentActionId;
+    }
+
     @Override
     public void clean() {
         super.clean();
@@ -181,7 +205,7 @@ public class DDISimulatedDevice extends AbstractSimulatedDevice {
         controllerResource.putConfigData(configData, super.getTenant(), super.getId());
     }
 
-    private static DmfSoftwareModule convertChunk(final DdiChunk ddi) {
+    static DmfSoftwareModule convertChunk(final DdiChunk ddi) {
         final DmfSoftwareModule converted = new DmfSoftwareModule();
         converted.setModuleVersion(ddi.getVersion());
         converted.setArtifacts(
@@ -206,59 +230,62 @@ public class DDISimulatedDevice extends AbstractSimulatedDevice {
 
     private void startDdiUpdate(final long actionId, final HandlingType updateType, final List<DdiChunk> modules) {
 
-        deviceUpdater.startUpdate(getTenant(), getId(),
+        deviceUpdater.startUpdate(this,
                 modules.stream().map(DDISimulatedDevice::convertChunk).collect(Collectors.toList()), null, gatewayToken,
                 sendFeedback(actionId),
                 HandlingType.SKIP == updateType ? EventTopic.DOWNLOAD : EventTopic.DOWNLOAD_AND_INSTALL);
     }
 
     private UpdaterCallback sendFeedback(final long actionId) {
-        return device -> {
-            final DdiActionFeedback feedback = calculateFeedback(device);
+        return (device, status) -> {
+            final DdiActionFeedback feedback = calculateFeedback(status);
             controllerResource.postDeploymentBaseActionFeedback(feedback, getTenant(), getId(), actionId);
             currentActionId = null;
         };
     }
 
     private void sendConfirmationFeedback(final long actionId) {
-        final DdiConfirmationFeedback ddiConfirmationFeedback = new DdiConfirmationFeedback(
-                DdiConfirmationFeedback.Confirmation.CONFIRMED, 0, Collections.singletonList(
-                "the confirmation status for the device is" + DdiConfirmationFeedback.Confirmation.CONFIRMED));
-        controllerResource.postConfirmationActionFeedback(ddiConfirmationFeedback, getTenant(), getId(), actionId);
+        controllerResource.postConfirmationActionFeedback(confirmationFeedback(), getTenant(), getId(), actionId);
+    }
+
+    static DdiConfirmationFeedback confirmationFeedback() {
+        return new DdiConfirmationFeedback(DdiConfirmationFeedback.Confirmation.CONFIRMED, 0,
+                Collections.singletonList(
+                        "the confirmation status for the device is" + DdiConfirmationFeedback.Confirmation.CONFIRMED));
     }
 
-    private DdiActionFeedback calculateFeedback(final AbstractSimulatedDevice device) {
+    static DdiActionFeedback calculateFeedback(final UpdateStatus status) {
         DdiActionFeedback feedback;
 
-        switch (device.getUpdateStatus().getResponseStatus()) {
+        switch (status.getResponseStatus()) {
         case SUCCESSFUL:
             feedback = new DdiActionFeedback(null, new DdiStatus(ExecutionStatus.CLOSED,
-                    new DdiResult(FinalResult.SUCCESS, null), 200, device.getUpdateStatus().getStatusMessages()));
+                    new DdiResult(FinalResult.SUCCESS, null), 200, status.getStatusMessages()));
             break;
         case ERROR:
             feedback = new DdiActionFeedback(null, new DdiStatus(ExecutionStatus.CLOSED,
-                    new DdiResult(FinalResult.FAILURE, null), null, device.getUpdateStatus().getStatusMessages()));
+                    new DdiResult(FinalResult.FAILURE, null), null, status.getStatusMessages()));
             break;
         case DOWNLOADING:
             feedback = new DdiActionFeedback(null, new DdiStatus(ExecutionStatus.DOWNLOAD,
-                    new DdiResult(FinalResult.NONE, null), null, device.getUpdateStatus().getStatusMessages()));
+                    new DdiResult(FinalResult.NONE, null), null, status.getStatusMessages()));
             break;
         case DOWNLOADED:
             feedback = new DdiActionFeedback(null, new DdiStatus(ExecutionStatus.DOWNLOADED,
-                    new DdiResult(FinalResult.NONE, null), null, device.getUpdateStatus().getStatusMessages()));
+                    new DdiResult(FinalResult.NONE, null), null, status.getStatusMessages()));
             break;
         case RUNNING:
             feedback = new DdiActionFeedback(null, new DdiStatus(ExecutionStatus.PROCEEDING,
-                    new DdiResult(FinalResult.NONE, null), null, device.getUpdateStatus().getStatusMessages()));
+                    new DdiResult(FinalResult.NONE, null), null, status.getStatusMessages()));
             break;
         default:
             throw new IllegalStateException("simulated device has an unknown response status + "
-                    + device.getUpdateStatus().getResponseStatus());
+                    + status.getResponseStatus());
         }
         return feedback;
     }
 
-    private long getActionId(final Link link) {
+    static long getActionId(final Link link) {
         final String href = link.getHref();
         return Long.parseLong(href.substring(href.lastIndexOf('/') + 1, href.indexOf('?')));
     }
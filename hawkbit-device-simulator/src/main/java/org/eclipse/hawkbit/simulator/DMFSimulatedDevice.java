@@ -32,7 +32,21 @@ public class DMFSimulatedDevice extends AbstractSimulatedDevice {
 
     @Override
     public void poll() {
-        spSenderService.createOrUpdateThing(super.getTenant(), super.getId());
+        poll(spSenderService, super.getTenant(), super.getId());
+    }
+
+    /**
+     * Polls a DMF device which is kept without an object.
+     *
+     * @param spSenderService
+     *            to send the poll
+     * @param tenant
+     *            the tenant of the device
+     * @param id
+     *            the ID of the device
+     */
+    static void poll(final DmfSenderService spSenderService, final String tenant, final String id) {
+        spSenderService.createOrUpdateThing(tenant, id);
     }
 
     @Override
@@ -0,0 +1,243 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.hawkbit.simulator.amqp.DmfSenderService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Removes many simulated devices at once. The selected devices leave the
+ * poll schedule and the store in one pass, their updates are cancelled and
+ * their targets are optionally deleted on the update server by DMF thing
+ * removed messages, which are sent in the background in batches at a limited
+ * rate. The messages of all removals share the rate, they are sent one
+ * removal after the other by a single task.
+ */
+@Service
+public class DeprovisioningService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeprovisioningService.class);
+
+    private final DeviceSimulatorRepository repository;
+    private final DeviceSimulatorUpdater updater;
+    private final ObjectProvider<DmfSenderService> dmfSenderService;
+    private final ScheduledExecutorService threadPool;
+    private final int rate;
+    private final int batchSize;
+    private final long periodMicros;
+
+    // the removals with messages to send, oldest first
+    private final Queue<Deregistration> deregistrations = new ConcurrentLinkedQueue<>();
+    // set while the task sending the messages is scheduled
+    private final AtomicBoolean deregistering = new AtomicBoolean();
+
+    private final AtomicLong pendingDeregistrations = new AtomicLong();
+    private final Counter removedCounter;
+    private final Counter deregisteredCounter;
+
+    /**
+     * @param simulationProperties
+     *            for the rate of the thing removed messages
+     * @param repository
+     *            to remove the devices
+     * @param updater
+     *            to cancel the updates of the removed devices
+     * @param dmfSenderService
+     *            to send the thing removed messages, not available if the
+     *            AMQP interface is disabled
+     * @param threadPool
+     *            to send the thing removed messages in the background
+     * @param meterRegistry
+     *            to expose the deprovisioning metrics
+     */
+    public DeprovisioningService(final SimulationProperties simulationProperties,
+            final DeviceSimulatorRepository repository, final DeviceSimulatorUpdater updater,
+            final ObjectProvider<DmfSenderService> dmfSenderService, final ScheduledExecutorService threadPool,
+            final MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.updater = updater;
+        this.dmfSenderService = dmfSenderService;
+        this.threadPool = threadPool;
+        rate = Math.max(0, simulationProperties.getDeprovisioning().getRate());
+        batchSize = Math.max(1, simulationProperties.getDeprovisioning().getBatchSize());
+        periodMicros = rate > 0 ? TimeUnit.SECONDS.toMicros(batchSize) / rate : 0;
+
+        removedCounter = Counter.builder("simulator.deprovisioning.removed")
+                .description("Devices removed by bulk removals").register(meterRegistry);
+        deregisteredCounter = Counter.builder("simulator.deprovisioning.deregistered")
+                .description("Thing removed messages sent for removed devices").register(meterRegistry);
+        Gauge.builder("simulator.deprovisioning.pending", pendingDeregistrations, AtomicLong::get)
+                .description("Thing removed messages waiting to be sent").register(meterRegistry);
+    }
+
+    /**
+     * Removes the selected devices of a tenant.
+     *
+     * @param selector
+     *            the devices to remove
+     * @param deregister
+     *            <code>true</code> to delete the targets of the devices on
+     *            the update server
+     * @return the number of removed devices and cancelled updates
+     * @throws IllegalStateException
+     *             if the targets are to be deleted but the AMQP interface is
+     *             disabled
+     */
+    public Result remove(final DeviceSelector selector, final boolean deregister) {
+        final DmfSenderService sender = deregister ? requireSender() : null;
+        final DeviceStore.Removal removal = repository.removeAll(selector, deregister);
+        // after the removal, so an update which has started meanwhile is
+        // cancelled as well
+        final int cancelledUpdates = updater
+                .cancelUpdates(device -> selector.matches(device.getTenant(), device.getId()));
+        removal.getObjects().forEach(AbstractSimulatedDevice::clean);
+        removedCounter.increment(removal.getCount());
+        if (sender != null && removal.getCount() > 0) {
+            pendingDeregistrations.addAndGet(removal.getCount());
+            deregistrations.add(new Deregistration(sender, removal.getTenant(), removal.ids()));
+            if (deregistering.compareAndSet(false, true)) {
+                threadPool.execute(this::deregister);
+            }
+        }
+        return new Result(removal.getCount(), cancelledUpdates, sender != null ? removal.getCount() : 0);
+    }
+
+    /**
+     * Removes all devices and cancels all updates.
+     *
+     * @param deregister
+     *            <code>true</code> to delete the targets of the devices on
+     *            the update server
+     * @return the number of removed devices and cancelled updates
+     * @throws IllegalStateException
+     *             if the targets are to be deleted but the AMQP interface is
+     *             disabled
+     */
+    public Result reset(final boolean deregister) {
+        long removed = 0;
+        long deregistering = 0;
+        int cancelledUpdates = 0;
+        if (deregister) {
+            requireSender();
+            for (final String tenant : new ArrayList<>(repository.getTenants())) {
+                final Result result = remove(new DeviceSelector(tenant, null, null, null), true);
+                removed += result.removed();
+                deregistering += result.deregistering();
+                cancelledUpdates += result.cancelledUpdates();
+            }
+        }
+        removed += repository.getAll().size();
+        repository.clear();
+        cancelledUpdates += updater.cancelUpdates(device -> true);
+        return new Result(removed, cancelledUpdates, deregistering);
+    }
+
+    /**
+     * @return the number of thing removed messages waiting to be sent
+     */
+    public long getPendingDeregistrations() {
+        return pendingDeregistrations.get();
+    }
+
+    private DmfSenderService requireSender() {
+        final DmfSenderService sender = dmfSenderService.getIfAvailable();
+        if (sender == null) {
+            throw new IllegalStateException("The AMQP interface is disabled, targets cannot be deleted");
+        }
+        return sender;
+    }
+
+    /**
+     * The number of devices of a removal.
+     *
+     * @param removed
+     *            the number of removed devices
+     * @param cancelledUpdates
+     *            the number of cancelled running and waiting updates
+     * @param deregistering
+     *            the number of targets which are deleted in the background
+     */
+    public record Result(long removed, int cancelledUpdates, long deregistering) {
+    }
+
+    /**
+     * Sends one batch of thing removed messages of the oldest removals. Runs
+     * again after the time the batch takes at the configured rate, so a
+     * removal which arrives meanwhile waits for the next batch. Stops once a
+     * run has found no messages to send.
+     */
+    private void deregister() {
+        int handled = 0;
+        int sent = 0;
+        while (handled < batchSize) {
+            final Deregistration deregistration = deregistrations.peek();
+            if (deregistration == null) {
+                break;
+            }
+            if (!deregistration.ids.hasNext()) {
+                deregistrations.poll();
+                continue;
+            }
+            final String id = deregistration.ids.next();
+            handled++;
+            try {
+                deregistration.sender.removeThing(deregistration.tenant, id);
+                sent++;
+            } catch (final RuntimeException e) {
+                LOGGER.warn("Failed to send thing removed message of {} of tenant {}", id, deregistration.tenant, e);
+            }
+        }
+        pendingDeregistrations.addAndGet(-handled);
+        deregisteredCounter.increment(sent);
+
+        if (handled > 0) {
+            threadPool.schedule(this::deregister, periodMicros, TimeUnit.MICROSECONDS);
+            return;
+        }
+        deregistering.set(false);
+        // a removal which has been queued after the last peek
+        if (!deregistrations.isEmpty() && deregistering.compareAndSet(false, true)) {
+            threadPool.execute(this::deregister);
+        }
+    }
+
+    /**
+     * The thing removed messages of a removal which are still to be sent.
+     */
+    private static final class Deregistration {
+
+        private final DmfSenderService sender;
+        private final String tenant;
+        // iterated by the sending task only
+        private final Iterator<String> ids;
+
+        private Deregistration(final DmfSenderService sender, final String tenant, final Iterator<String> ids) {
+            this.sender = sender;
+            this.tenant = tenant;
+            this.ids = ids;
+        }
+    }
+}
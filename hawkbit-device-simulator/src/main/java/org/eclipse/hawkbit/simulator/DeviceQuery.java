@@ -0,0 +1,240 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.hawkbit.simulator.AbstractSimulatedDevice.Protocol;
+import org.eclipse.hawkbit.simulator.UpdateStatus.ResponseStatus;
+
+/**
+ * A filter of the simulated devices by tenant, protocol, update status and
+ * whether an update of the device is in progress. The matching devices are
+ * listed in pages which continue at a cursor, the store is scanned once per
+ * page and only the IDs of the listed devices are decoded.
+ */
+public final class DeviceQuery {
+
+    /**
+     * The status of devices without an update status.
+     */
+    public static final String NO_STATUS = "NONE";
+
+    /**
+     * The largest number of devices of a page.
+     */
+    public static final int MAX_LIMIT = 10_000;
+
+    private static final ResponseStatus[] STATUSES = ResponseStatus.values();
+
+    private final String tenant;
+    private final Protocol protocol;
+    private final String status;
+    private final Boolean openAction;
+
+    /**
+     * @param tenant
+     *            the tenant of the devices in any case, <code>null</code> for
+     *            all tenants
+     * @param protocol
+     *            the protocol of the devices, <code>null</code> for all
+     *            protocols
+     * @param status
+     *            the update status of the devices in any case or
+     *            {@link #NO_STATUS}, <code>null</code> for all
+     * @param openAction
+     *            whether an update of the devices is in progress,
+     *            <code>null</code> for all
+     * @throws IllegalArgumentException
+     *             if the status is not known
+     */
+    public DeviceQuery(final String tenant, final Protocol protocol, final String status, final Boolean openAction) {
+        this.tenant = tenant;
+        this.protocol = protocol;
+        if (status == null || NO_STATUS.equalsIgnoreCase(status)) {
+            this.status = status != null ? NO_STATUS : null;
+        } else {
+            this.status = ResponseStatus.valueOf(status.toUpperCase()).name();
+        }
+        this.openAction = openAction;
+    }
+
+    /**
+     * @param store
+     *            the store to query
+     * @param cursor
+     *            <code>0</code> or the cursor of the previous page
+     * @param limit
+     *            the largest number of devices of the page
+     * @return the page of the matching devices
+     * @throws IllegalArgumentException
+     *             if the cursor is negative or the limit is not between 1 and
+     *             {@link #MAX_LIMIT}
+     */
+    Page find(final DeviceStore store, final long cursor, final int limit) {
+        if (cursor < 0) {
+            throw new IllegalArgumentException("Cursor must not be negative");
+        }
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_LIMIT);
+        }
+        final List<Device> devices = new ArrayList<>(Math.min(limit, 1_000));
+        final long next = store.scan(tenant, cursor, new DeviceStore.Scanner() {
+            @Override
+            public boolean device(final String deviceTenant, final byte[] names, final int idOffset,
+                    final int idLength, final Protocol deviceProtocol, final int pollDelaySec,
+                    final ResponseStatus deviceStatus, final boolean pinned, final boolean ranged) {
+                final String statusName = deviceStatus != null ? deviceStatus.name() : NO_STATUS;
+                if (matches(deviceProtocol, statusName, pinned)) {
+                    devices.add(new Device(deviceTenant, new String(names, idOffset, idLength, StandardCharsets.UTF_8),
+                            deviceProtocol, pollDelaySec, statusName, pinned));
+                }
+                return devices.size() < limit;
+            }
+
+            @Override
+            public boolean range(final DeviceRange range) {
+                // the devices of a range which are not pinned have no status
+                return matches(range.getProtocol(), NO_STATUS, false);
+            }
+
+            @Override
+            public boolean rangeDevice(final DeviceRange range, final int index) {
+                devices.add(new Device(range.getTenant(), range.idOf(index), range.getProtocol(),
+                        range.getPollDelaySec(), NO_STATUS, false));
+                return devices.size() < limit;
+            }
+        });
+        return new Page(Collections.unmodifiableList(devices),
+                next != DeviceStore.SCAN_END ? Long.toString(next) : null);
+    }
+
+    /**
+     * Counts the devices of the tenant and protocol of the query, the status
+     * and open action filters of the query are ignored.
+     *
+     * @param store
+     *            the store to query
+     * @return the summary of the devices
+     */
+    Summary summarize(final DeviceStore store) {
+        // by status ordinal, the last one for devices without status
+        final long[] statuses = new long[STATUSES.length + 1];
+        final long[] protocols = new long[Protocol.values().length];
+        final long[] openActions = new long[1];
+        store.scan(tenant, 0, new DeviceStore.Scanner() {
+            @Override
+            public boolean device(final String deviceTenant, final byte[] names, final int idOffset,
+                    final int idLength, final Protocol deviceProtocol, final int pollDelaySec,
+                    final ResponseStatus deviceStatus, final boolean pinned, final boolean ranged) {
+                if (protocol == null || protocol == deviceProtocol) {
+                    statuses[deviceStatus != null ? deviceStatus.ordinal() : STATUSES.length]++;
+                    protocols[deviceProtocol.ordinal()]++;
+                    if (pinned) {
+                        openActions[0]++;
+                    }
+                    if (ranged) {
+                        // counted with the devices of its range already
+                        statuses[STATUSES.length]--;
+                        protocols[deviceProtocol.ordinal()]--;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public boolean range(final DeviceRange range) {
+                if (protocol == null || protocol == range.getProtocol()) {
+                    statuses[STATUSES.length] += range.size();
+                    protocols[range.getProtocol().ordinal()] += range.size();
+                }
+                return false;
+            }
+
+            @Override
+            public boolean rangeDevice(final DeviceRange range, final int index) {
+                return true;
+            }
+        });
+
+        final Map<String, Long> byStatus = new LinkedHashMap<>();
+        byStatus.put(NO_STATUS, statuses[STATUSES.length]);
+        for (final ResponseStatus responseStatus : STATUSES) {
+            byStatus.put(responseStatus.name(), statuses[responseStatus.ordinal()]);
+        }
+        final Map<Protocol, Long> byProtocol = new EnumMap<>(Protocol.class);
+        long total = 0;
+        for (final Protocol each : Protocol.values()) {
+            byProtocol.put(each, protocols[each.ordinal()]);
+            total += protocols[each.ordinal()];
+        }
+        return new Summary(total, openActions[0], byStatus, byProtocol);
+    }
+
+    private boolean matches(final Protocol deviceProtocol, final String deviceStatus, final boolean pinned) {
+        return (protocol == null || protocol == deviceProtocol)
+                && (status == null || status.equals(deviceStatus))
+                && (openAction == null || openAction == pinned);
+    }
+
+    /**
+     * A listed device.
+     *
+     * @param tenant
+     *            the tenant of the device
+     * @param id
+     *            the ID of the device
+     * @param protocol
+     *            the protocol of the device
+     * @param pollDelaySec
+     *            the poll delay of the device
+     * @param status
+     *            the update status of the device or {@link #NO_STATUS}
+     * @param openAction
+     *            whether an update of the device is in progress
+     */
+    public record Device(String tenant, String id, Protocol protocol, int pollDelaySec, String status,
+            boolean openAction) {
+    }
+
+    /**
+     * A page of the matching devices.
+     *
+     * @param devices
+     *            the devices of the page
+     * @param next
+     *            the cursor of the next page or <code>null</code> if there
+     *            are no more devices
+     */
+    public record Page(List<Device> devices, String next) {
+    }
+
+    /**
+     * The number of devices by update status and protocol.
+     *
+     * @param total
+     *            the number of devices
+     * @param openActions
+     *            the number of devices with an update in progress
+     * @param statuses
+     *            the number of devices by update status, {@link #NO_STATUS}
+     *            first
+     * @param protocols
+     *            the number of devices by protocol
+     */
+    public record Summary(long total, long openActions, Map<String, Long> statuses, Map<Protocol, Long> protocols) {
+    }
+}
@@ -0,0 +1,312 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator;
+
+import java.util.BitSet;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+
+import org.eclipse.hawkbit.simulator.AbstractSimulatedDevice.Protocol;
+
+/**
+ * A range of virtual devices of one tenant with the IDs <code>name0</code> to
+ * <code>name(amount - 1)</code> which share their protocol, endpoint and poll
+ * delay. The devices of a range have no state until an action of a device is
+ * in progress, their objects are created when they are polled or looked up.
+ * <p>
+ * The devices of a range poll in phases: device <code>i</code> polls in every
+ * second whose offset from the start of the range modulo the poll delay is
+ * <code>i</code> modulo the poll delay, so the polls of the range are spread
+ * evenly and a tick only touches the devices which are due.
+ */
+public final class DeviceRange {
+
+    // digits of the largest index
+    private static final int MAX_INDEX_DIGITS = 10;
+    private static final long NOT_STARTED = Long.MIN_VALUE;
+
+    private final String tenant;
+    private final String name;
+    private final int amount;
+    private final Protocol protocol;
+    private final int pollDelaySec;
+    private final String endpoint;
+    private final String gatewayToken;
+    private final Function<String, AbstractSimulatedDevice> deviceFactory;
+    private final Consumer<String> firstPoll;
+    // devices whose poll is in progress
+    private final BusyFlags polling;
+
+    // removed devices and devices replaced by a single device, guarded by the
+    // lock of the store
+    private BitSet removed;
+    private int removedCount;
+    // position of the range among the ranges of the store, guarded by the
+    // lock of the store
+    private long sequence;
+
+    private volatile long startTick = NOT_STARTED;
+    private volatile boolean retired;
+
+    /**
+     * @param tenant
+     *            the tenant of the devices
+     * @param name
+     *            the prefix of the IDs of the devices
+     * @param amount
+     *            the number of devices
+     * @param protocol
+     *            the protocol of the devices
+     * @param pollDelaySec
+     *            the poll delay of the devices
+     * @param endpoint
+     *            the endpoint of DDI devices or <code>null</code>
+     * @param gatewayToken
+     *            the gateway token of DDI devices or <code>null</code>
+     * @param deviceFactory
+     *            creates the object of a device by its ID
+     * @param firstPoll
+     *            called with the ID of a device after the first poll of the
+     *            device has been submitted
+     */
+    DeviceRange(final String tenant, final String name, final int amount, final Protocol protocol,
+            final int pollDelaySec, final String endpoint, final String gatewayToken,
+            final Function<String, AbstractSimulatedDevice> deviceFactory, final Consumer<String> firstPoll) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Amount must not be negative");
+        }
+        this.tenant = tenant;
+        this.name = name;
+        this.amount = amount;
+        this.protocol = protocol;
+        this.pollDelaySec = pollDelaySec;
+        this.endpoint = endpoint;
+        this.gatewayToken = gatewayToken;
+        this.deviceFactory = deviceFactory;
+        this.firstPoll = firstPoll;
+        polling = new BusyFlags(amount);
+    }
+
+    public String getTenant() {
+        return tenant;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getAmount() {
+        return amount;
+    }
+
+    public Protocol getProtocol() {
+        return protocol;
+    }
+
+    public int getPollDelaySec() {
+        return pollDelaySec;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public String getGatewayToken() {
+        return gatewayToken;
+    }
+
+    /**
+     * @param id
+     *            the ID of a device
+     * @return the index of the device in this range or <code>-1</code> if the
+     *         ID is not in the range, removed devices included
+     */
+    int indexOf(final String id) {
+        final int digits = id.length() - name.length();
+        if (digits < 1 || digits > MAX_INDEX_DIGITS || !id.startsWith(name)
+                || (digits > 1 && id.charAt(name.length()) == '0')) {
+            return -1;
+        }
+        long index = 0;
+        for (int i = name.length(); i < id.length(); i++) {
+            final char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            index = index * 10 + (c - '0');
+        }
+        return index < amount ? (int) index : -1;
+    }
+
+    String idOf(final int index) {
+        return name + index;
+    }
+
+    AbstractSimulatedDevice createDevice(final int index) {
+        return deviceFactory.apply(idOf(index));
+    }
+
+    /**
+     * @param other
+     *            another range of the same tenant
+     * @return <code>true</code> if the ranges have IDs in common
+     */
+    boolean overlaps(final DeviceRange other) {
+        return overlaps(this, other) || overlaps(other, this);
+    }
+
+    // the IDs of the longer range are name + suffix + index, they are in the
+    // shorter range if the suffix is the start of an index of the shorter range
+    private static boolean overlaps(final DeviceRange shorter, final DeviceRange longer) {
+        if (longer.amount == 0 || !longer.name.startsWith(shorter.name)) {
+            return false;
+        }
+        final String suffix = longer.name.substring(shorter.name.length());
+        if (suffix.isEmpty()) {
+            return shorter.amount > 0;
+        }
+        if (suffix.length() >= MAX_INDEX_DIGITS || suffix.charAt(0) == '0'
+                || !suffix.chars().allMatch(Character::isDigit)) {
+            return false;
+        }
+        // the smallest such index is the suffix followed by 0
+        return Long.parseLong(suffix) * 10 < shorter.amount;
+    }
+
+    // guarded by the lock of the store
+    boolean isRemoved(final int index) {
+        return removed != null && removed.get(index);
+    }
+
+    // guarded by the write lock of the store
+    boolean remove(final int index) {
+        if (isRemoved(index)) {
+            return false;
+        }
+        if (removed == null) {
+            removed = new BitSet(amount);
+        }
+        removed.set(index);
+        removedCount++;
+        return true;
+    }
+
+    // guarded by the lock of the store
+    int size() {
+        return amount - removedCount;
+    }
+
+    // guarded by the lock of the store
+    long removedBytes() {
+        return removed != null ? removed.size() / Byte.SIZE : 0;
+    }
+
+    /**
+     * @return the flags by index of the devices whose poll is in progress
+     */
+    BusyFlags getPolling() {
+        return polling;
+    }
+
+    // guarded by the lock of the store
+    long[] getRemoved() {
+        return removed != null ? removed.toLongArray() : new long[0];
+    }
+
+    /**
+     * Marks the devices of a range as removed before the range is added to
+     * the store.
+     *
+     * @param words
+     *            the removed devices as returned by {@link #getRemoved()}
+     */
+    void setRemoved(final long[] words) {
+        removed = BitSet.valueOf(words);
+        removed.clear(amount, Math.max(amount, removed.length()));
+        removedCount = removed.cardinality();
+    }
+
+    /**
+     * Starts the polls of the range, the first devices poll in the tick after
+     * the given tick.
+     *
+     * @param tick
+     *            the current tick of the poll schedule
+     */
+    void start(final long tick) {
+        startTick = tick;
+    }
+
+    /**
+     * @param tick
+     *            the tick which is due
+     * @param consumer
+     *            called with the index of every device which polls in the tick
+     *            (removed devices included)
+     */
+    void forEachDue(final long tick, final IntConsumer consumer) {
+        final long start = startTick;
+        if (start == NOT_STARTED || tick <= start || retired) {
+            return;
+        }
+        final int period = Math.max(1, pollDelaySec);
+        for (long index = (tick - start - 1) % period; index < amount; index += period) {
+            consumer.accept((int) index);
+        }
+    }
+
+    /**
+     * @param tick
+     *            the tick which is due
+     * @return <code>true</code> if the devices due in the tick poll for the
+     *         first time
+     */
+    boolean isFirstPoll(final long tick) {
+        return tick - startTick <= Math.max(1, pollDelaySec);
+    }
+
+    /**
+     * @param tick
+     *            the current tick
+     * @return the ticks since the range has been started, limited to the
+     *         ticks which keep the phase of the devices and whether they have
+     *         polled already
+     */
+    long getElapsedTicks(final long tick) {
+        final long start = startTick;
+        if (start == NOT_STARTED) {
+            return 0;
+        }
+        final int period = Math.max(1, pollDelaySec);
+        final long elapsed = tick - start;
+        return elapsed <= period ? elapsed : period + elapsed % period;
+    }
+
+    void firstPolled(final String id) {
+        firstPoll.accept(id);
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    void setSequence(final long sequence) {
+        this.sequence = sequence;
+    }
+
+    void retire() {
+        retired = true;
+    }
+
+    boolean isRetired() {
+        return retired;
+    }
+}
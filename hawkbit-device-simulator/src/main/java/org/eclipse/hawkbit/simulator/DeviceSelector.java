@@ -0,0 +1,146 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Selects the devices of a tenant by the prefix of their IDs and optionally
+ * by the number which follows the prefix, so <code>sim</code> with the bounds
+ * <code>0</code> and <code>1000</code> selects the devices <code>sim0</code>
+ * to <code>sim999</code>. IDs are matched on their UTF-8 encoding, so the IDs
+ * kept by the {@link DeviceStore} are matched without decoding them.
+ */
+public final class DeviceSelector {
+
+    // digits of the largest number which is matched
+    private static final int MAX_DIGITS = 18;
+
+    private final String tenant;
+    private final String prefix;
+    private final byte[] prefixBytes;
+    private final boolean bounded;
+    private final long from;
+    private final long to;
+
+    /**
+     * @param tenant
+     *            the tenant of the devices in any case
+     * @param prefix
+     *            the prefix of the IDs of the devices, <code>null</code> for
+     *            all devices of the tenant
+     * @param from
+     *            the smallest number which follows the prefix,
+     *            <code>null</code> for any
+     * @param to
+     *            the number which follows the prefix of the first device
+     *            which is not selected anymore, <code>null</code> for any
+     * @throws IllegalArgumentException
+     *             if the tenant is missing or the bounds are negative or
+     *             empty
+     */
+    public DeviceSelector(final String tenant, final String prefix, final Long from, final Long to) {
+        if (tenant == null) {
+            throw new IllegalArgumentException("Tenant must be set");
+        }
+        bounded = from != null || to != null;
+        this.from = from != null ? from : 0;
+        this.to = to != null ? to : Long.MAX_VALUE;
+        if (this.from < 0 || this.to <= this.from) {
+            throw new IllegalArgumentException("Bounds must not be negative and must not be empty");
+        }
+        this.tenant = tenant;
+        this.prefix = prefix != null ? prefix : "";
+        prefixBytes = this.prefix.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public String getTenant() {
+        return tenant;
+    }
+
+    /**
+     * @param deviceTenant
+     *            the tenant of a device in any case
+     * @param id
+     *            the ID of the device
+     * @return <code>true</code> if the device is selected
+     */
+    public boolean matches(final String deviceTenant, final String id) {
+        return tenant.equalsIgnoreCase(deviceTenant) && matches(id);
+    }
+
+    /**
+     * @param id
+     *            the ID of a device of the tenant
+     * @return <code>true</code> if the device is selected
+     */
+    boolean matches(final String id) {
+        final byte[] name = id.getBytes(StandardCharsets.UTF_8);
+        return matches(name, 0, name.length);
+    }
+
+    /**
+     * @param names
+     *            a table of UTF-8 encoded IDs
+     * @param offset
+     *            the offset of the ID of a device of the tenant
+     * @param length
+     *            the length of the ID
+     * @return <code>true</code> if the device is selected
+     */
+    boolean matches(final byte[] names, final int offset, final int length) {
+        if (length < prefixBytes.length
+                || !Arrays.equals(names, offset, offset + prefixBytes.length, prefixBytes, 0, prefixBytes.length)) {
+            return false;
+        }
+        return !bounded || isInBounds(names, offset + prefixBytes.length, length - prefixBytes.length);
+    }
+
+    /**
+     * @param range
+     *            a range of the tenant
+     * @return the indices of the selected devices of the range, removed
+     *         devices included
+     */
+    BitSet indicesIn(final DeviceRange range) {
+        final BitSet indices = new BitSet();
+        final String name = range.getName();
+        if (name.startsWith(prefix) && (!bounded || name.length() == prefix.length())) {
+            // the index is the number which follows the prefix
+            final long end = Math.min(range.getAmount(), to);
+            if (from < end) {
+                indices.set((int) from, (int) end);
+            }
+        } else if (name.startsWith(prefix) || prefix.startsWith(name)) {
+            for (int index = 0; index < range.getAmount(); index++) {
+                if (matches(range.idOf(index))) {
+                    indices.set(index);
+                }
+            }
+        }
+        return indices;
+    }
+
+    private boolean isInBounds(final byte[] digits, final int offset, final int length) {
+        if (length < 1 || length > MAX_DIGITS || (length > 1 && digits[offset] == '0')) {
+            return false;
+        }
+        long number = 0;
+        for (int i = offset; i < offset + length; i++) {
+            if (digits[i] < '0' || digits[i] > '9') {
+                return false;
+            }
+            number = number * 10 + (digits[i] - '0');
+        }
+        return number >= from && number < to;
+    }
+}
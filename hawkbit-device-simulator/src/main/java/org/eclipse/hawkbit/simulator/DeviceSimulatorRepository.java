@@ -10,43 +10,96 @@
 package org.eclipse.hawkbit.simulator;
 
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 /**
  * An in-memory simulated device repository to hold the simulated device in
- * memory and be able to retrieve them again.
+ * memory and be able to retrieve them again. The devices are kept in the
+ * compact {@link DeviceStore}, so the device objects of DMF devices and of
+ * {@link DeviceRange}s are only the same object while they are pinned.
  * 
  */
 @Service
 public class DeviceSimulatorRepository {
 
-    private final Map<DeviceKey, AbstractSimulatedDevice> devices = new ConcurrentHashMap<>();
+    @Autowired
+    private DeviceStore devices;
 
-    private final Set<String> tenants = new HashSet<>();
+    @Autowired
+    private NextPollTimeController pollTimeController;
 
     /**
-     * Adds a simulated device to the repository.
+     * Adds a simulated device to the repository and schedules its first poll.
      * 
      * @param simulatedDevice
      *            the device to add
      * @return the device which has been added to the repository
      */
     public AbstractSimulatedDevice add(final AbstractSimulatedDevice simulatedDevice) {
-        devices.put(new DeviceKey(simulatedDevice.getTenant().toLowerCase(), simulatedDevice.getId()), simulatedDevice);
-        tenants.add(simulatedDevice.getTenant().toLowerCase());
+        final int slot = devices.put(simulatedDevice);
+        pollTimeController.schedule(slot, simulatedDevice.getNextPollCounterSec());
         return simulatedDevice;
     }
 
+    /**
+     * Adds a range of simulated devices to the repository and starts its
+     * polls. The range replaces the range with the same name and the single
+     * devices with the IDs of the range.
+     *
+     * @param range
+     *            the range to add
+     * @throws IllegalArgumentException
+     *             if the range has IDs in common with another range of the
+     *             tenant
+     */
+    public void addRange(final DeviceRange range) {
+        addRange(range, 0);
+    }
+
+    /**
+     * Adds a range of simulated devices which has been polling before, e.g.
+     * in a previous run of the simulator, the devices keep their phase.
+     *
+     * @param range
+     *            the range to add
+     * @param elapsedSec
+     *            seconds since the polls of the range have been started
+     * @throws IllegalArgumentException
+     *             if the range has IDs in common with another range of the
+     *             tenant
+     */
+    public void addRange(final DeviceRange range, final long elapsedSec) {
+        devices.putRange(range);
+        pollTimeController.schedule(range, elapsedSec);
+    }
+
     /**
      * @return all simulated devices
      */
     public Collection<AbstractSimulatedDevice> getAll() {
-        return devices.values();
+        return devices.getAll();
+    }
+
+    /**
+     * @param tenant
+     *            the tenant of the simulated devices
+     * @return all simulated devices of the tenant
+     */
+    public Collection<AbstractSimulatedDevice> getAll(final String tenant) {
+        return devices.getAll(tenant);
+    }
+
+    /**
+     * @param tenant
+     *            the tenant of the simulated devices
+     * @return the number of simulated devices of the tenant, the devices of
+     *         its ranges included
+     */
+    public int count(final String tenant) {
+        return devices.count(tenant);
     }
 
     /**
@@ -61,7 +114,35 @@ public class DeviceSimulatorRepository {
      *         does not exixts.
      */
     public AbstractSimulatedDevice get(final String tenant, final String id) {
-        return devices.get(new DeviceKey(tenant.toLowerCase(), id));
+        return devices.get(tenant, id);
+    }
+
+    /**
+     * Lists a page of the devices which match a query. Devices which are
+     * added or removed while paging may be missed.
+     *
+     * @param query
+     *            the filter of the devices
+     * @param cursor
+     *            {@code 0} for the first page or the cursor of the previous
+     *            page
+     * @param limit
+     *            the largest number of devices of the page
+     * @return the page of the matching devices
+     * @throws IllegalArgumentException
+     *             if the cursor is negative or the limit is out of bounds
+     */
+    public DeviceQuery.Page find(final DeviceQuery query, final long cursor, final int limit) {
+        return query.find(devices, cursor, limit);
+    }
+
+    /**
+     * @param query
+     *            the tenant and protocol of the devices
+     * @return the number of devices by update status and protocol
+     */
+    public DeviceQuery.Summary summarize(final DeviceQuery query) {
+        return query.summarize(devices);
     }
 
     /**
@@ -75,68 +156,67 @@ public class DeviceSimulatorRepository {
      *         repository
      */
     public AbstractSimulatedDevice remove(final String tenant, final String id) {
-        return devices.remove(new DeviceKey(tenant.toLowerCase(), id));
+        final int slot = devices.slotOf(tenant, id);
+        if (slot >= 0) {
+            // cancelled before the slot is freed and maybe taken by another
+            // device
+            pollTimeController.cancel(slot);
+        }
+        return devices.remove(tenant, id);
     }
 
-    public Set<String> getTenants() {
-        return tenants;
+    /**
+     * Removes the selected devices of a tenant from the simulation, the
+     * devices are removed from the poll schedule first.
+     *
+     * @param selector
+     *            the devices to remove
+     * @param collectIds
+     *            {@code true} to keep the IDs of the removed devices
+     * @return the removed devices
+     */
+    public DeviceStore.Removal removeAll(final DeviceSelector selector, final boolean collectIds) {
+        pollTimeController.cancel(devices.slotsOf(selector));
+        return devices.removeAll(selector, collectIds);
     }
 
     /**
-     * Clears all stored devices.
+     * Keeps the object of a device while an action of the device is in
+     * progress, so the status of the action is kept in the same object.
+     *
+     * @param device
+     *            the device to pin
      */
-    public void clear() {
-        devices.values().forEach(AbstractSimulatedDevice::clean);
-        devices.clear();
-        tenants.clear();
+    public void pin(final AbstractSimulatedDevice device) {
+        devices.pin(device);
     }
 
-    private static final class DeviceKey {
-        private final String tenant;
-        private final String id;
-
-        private DeviceKey(final String tenant, final String id) {
-            this.tenant = tenant;
-            this.id = id;
-        }
+    /**
+     * Releases a pinned device, a DMF device is kept without its object
+     * afterwards but with the status of its latest update.
+     *
+     * @param device
+     *            the device to unpin
+     * @param status
+     *            the status of the latest update of the device or
+     *            <code>null</code> if it has none
+     */
+    public void unpin(final AbstractSimulatedDevice device, final UpdateStatus status) {
+        devices.unpin(device, status);
+    }
 
-        @Override
-        public int hashCode() {
-            final int prime = 31;
-            int result = 1;
-            result = prime * result + ((id == null) ? 0 : id.hashCode());
-            result = prime * result + ((tenant == null) ? 0 : tenant.hashCode());
-            return result;
-        }
+    /**
+     * @return the lower case names of the tenants with simulated devices
+     */
+    public Set<String> getTenants() {
+        return devices.getTenants();
+    }
 
-        @Override
-        public boolean equals(final Object obj) {
-
-            if (this == obj) {
-                return true;
-            }
-            if (obj == null) {
-                return false;
-            }
-            if (getClass() != obj.getClass()) {
-                return false;
-            }
-            final DeviceKey other = (DeviceKey) obj;
-            if (id == null) {
-                if (other.id != null) {
-                    return false;
-                }
-            } else if (!id.equals(other.id)) {
-                return false;
-            }
-            if (tenant == null) {
-                if (other.tenant != null) {
-                    return false;
-                }
-            } else if (!tenant.equals(other.tenant)) {
-                return false;
-            }
-            return true;
-        }
+    /**
+     * Clears all stored devices.
+     */
+    public void clear() {
+        pollTimeController.cancelAll();
+        devices.clear().forEach(AbstractSimulatedDevice::clean);
     }
 }
@@ -9,44 +9,61 @@
  */
 package org.eclipse.hawkbit.simulator;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.security.DigestOutputStream;
-import java.security.KeyManagementException;
-import java.security.KeyStoreException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HexFormat;
+import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
-import org.apache.commons.io.IOUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.apache.http.Header;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.ssl.SSLContextBuilder;
 import org.eclipse.hawkbit.dmf.amqp.api.EventTopic;
 import org.eclipse.hawkbit.dmf.json.model.DmfArtifact;
 import org.eclipse.hawkbit.dmf.json.model.DmfSoftwareModule;
 import org.eclipse.hawkbit.simulator.AbstractSimulatedDevice.Protocol;
 import org.eclipse.hawkbit.simulator.UpdateStatus.ResponseStatus;
+import org.eclipse.hawkbit.simulator.download.ArtifactReader;
+import org.eclipse.hawkbit.simulator.download.DownloadHttpClient;
+import org.eclipse.hawkbit.simulator.download.DownloadProperties;
+import org.eclipse.hawkbit.simulator.download.DownloadResumer;
+import org.eclipse.hawkbit.simulator.download.DownloadThrottle;
+import org.eclipse.hawkbit.simulator.download.IncompleteReadException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
 /**
  * Update simulation handler.
  */
@@ -56,9 +73,6 @@ public class DeviceSimulatorUpdater {
     private static final Logger LOGGER = LoggerFactory.getLogger(DeviceSimulatorUpdater.class);
     private static final String LOG_PREFIX = "[{}:{}] ";
 
-    @Autowired
-    private ScheduledExecutorService threadPool;
-
     @Autowired
     @Lazy
     private SimulatedDeviceFactory deviceFactory;
@@ -69,6 +83,50 @@ public class DeviceSimulatorUpdater {
     @Autowired
     private SimulationProperties simulationProperties;
 
+    @Autowired
+    private DownloadHttpClient downloadHttpClient;
+
+    @Autowired
+    private DownloadThrottle downloadThrottle;
+
+    @Autowired
+    private DownloadProperties downloadProperties;
+
+    @Autowired
+    private ArtifactReader artifactReader;
+
+    @Autowired
+    private DownloadResumer downloadResumer;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private ExecutorService artifactPool;
+    private UpdateStage downloadStage;
+    private UpdateStage feedbackStage;
+
+    // running and waiting updates by device, removed when the device is idle
+    private final Map<String, DeviceUpdates> deviceUpdates = new ConcurrentHashMap<>();
+    private final AtomicInteger waitingUpdates = new AtomicInteger();
+
+    @PostConstruct
+    void createPools() {
+        artifactPool = Executors.newFixedThreadPool(downloadProperties.getThreads(),
+                new CustomizableThreadFactory("download-"));
+        final SimulationProperties.Update update = simulationProperties.getUpdate();
+        downloadStage = new UpdateStage("update", update.getDownload(), meterRegistry, System::nanoTime);
+        feedbackStage = new UpdateStage("update-feedback", update.getFeedback(), meterRegistry, System::nanoTime);
+        Gauge.builder("simulator.update.waiting", waitingUpdates, AtomicInteger::get)
+                .description("Updates waiting for another update of their device to finish").register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdownPools() {
+        downloadStage.stop();
+        feedbackStage.stop();
+        artifactPool.shutdownNow();
+    }
+
     /**
      * Starting an simulated update process of an simulated device.
      *
@@ -102,13 +160,136 @@ public class DeviceSimulatorUpdater {
                     .add(deviceFactory.createSimulatedDevice(id, tenant, Protocol.DMF_AMQP, 1800, null, null));
         }
 
+        startUpdate(device, modules, targetSecurityToken, gatewayToken, callback, actionType);
+    }
+
+    /**
+     * Starting an simulated update process of a polling simulated device, the
+     * device is kept while the update is in progress.
+     *
+     * @param device
+     *            the simulated device
+     * @param modules
+     *            the software module version from the hawkbit update server
+     * @param targetSecurityToken
+     *            the target security token for download authentication
+     * @param gatewayToken
+     *            as alternative to target token the gateway token for download
+     *            authentication
+     * @param callback
+     *            the callback which gets called when the simulated update
+     *            process has been finished
+     * @param actionType
+     *            indicating whether to download and install or skip
+     *            installation due to maintenance window.
+     */
+    public void startUpdate(final AbstractSimulatedDevice device, final List<DmfSoftwareModule> modules,
+            final String targetSecurityToken, final String gatewayToken, final UpdaterCallback callback,
+            final EventTopic actionType) {
         device.setTargetSecurityToken(targetSecurityToken);
 
-        threadPool.schedule(new DeviceSimulatorUpdateThread(device, callback, modules, actionType, gatewayToken,
-                simulationProperties.isDownloadAuthenticationEnabled()), 2_000, TimeUnit.MILLISECONDS);
+        submit(new DeviceSimulatorUpdateThread(device, callback, modules, actionType, gatewayToken));
+    }
+
+    /**
+     * Cancels the updates of the matching devices. Waiting updates are
+     * dropped, running updates abort their downloads and stop without
+     * reporting a further status. The devices are unpinned when their running
+     * updates have stopped.
+     *
+     * @param devices
+     *            the devices whose updates to cancel
+     * @return the number of cancelled updates
+     */
+    public int cancelUpdates(final Predicate<AbstractSimulatedDevice> devices) {
+        final AtomicInteger cancelled = new AtomicInteger();
+        deviceUpdates.keySet().forEach(key -> deviceUpdates.computeIfPresent(key, (k, updates) -> {
+            if (devices.test(updates.running.get(0).device)) {
+                cancelled.addAndGet(updates.running.size() + updates.waiting.size());
+                waitingUpdates.addAndGet(-updates.waiting.size());
+                updates.waiting.clear();
+                updates.running.forEach(DeviceSimulatorUpdateThread::cancel);
+            }
+            return updates;
+        }));
+        return cancelled.get();
+    }
+
+    /**
+     * Starts the update unless the device runs the maximum number of updates
+     * already, then it waits until one of them has finished and is run by
+     * the thread of the finished update.
+     */
+    private void submit(final DeviceSimulatorUpdateThread update) {
+        final int maxActions = Math.max(1, simulationProperties.getUpdate().getMaxActionsPerDevice());
+        final AtomicBoolean start = new AtomicBoolean();
+        deviceUpdates.compute(update.deviceKey, (key, updates) -> {
+            final DeviceUpdates current;
+            if (updates != null) {
+                current = updates;
+            } else {
+                // keeps the status of the device until its updates are done
+                repository.pin(update.device);
+                current = new DeviceUpdates();
+            }
+            if (current.running.size() < maxActions) {
+                current.running.add(update);
+                start.set(true);
+            } else {
+                current.waiting.add(update);
+                waitingUpdates.incrementAndGet();
+            }
+            return current;
+        });
+        if (!start.get()) {
+            return;
+        }
+
+        final long delay = simulationProperties.getUpdate().getStartDelay().toMillis();
+        DeviceSimulatorUpdateThread next = update;
+        while (next != null && !downloadStage.submit(next, delay)) {
+            next.report(new UpdateStatus(ResponseStatus.ERROR, "Simulator: Update rejected, the update queue is full"));
+            next = complete(next);
+        }
+    }
+
+    /**
+     * @return the next waiting update of the device which takes over the
+     *         place of the completed update or <code>null</code> if there is
+     *         none
+     */
+    private DeviceSimulatorUpdateThread complete(final DeviceSimulatorUpdateThread update) {
+        final AtomicReference<DeviceSimulatorUpdateThread> next = new AtomicReference<>();
+        deviceUpdates.computeIfPresent(update.deviceKey, (key, updates) -> {
+            next.set(updates.waiting.poll());
+            updates.running.remove(update);
+            if (next.get() != null) {
+                updates.running.add(next.get());
+                waitingUpdates.decrementAndGet();
+            }
+            if (!updates.running.isEmpty()) {
+                return updates;
+            }
+            // not before, the other updates of the device still report to it
+            if (update.cleanUp) {
+                update.device.clean();
+            }
+            repository.unpin(update.device, update.lastStatus);
+            return null;
+        });
+        return next.get();
+    }
+
+    /**
+     * The updates of one device, guarded by the map of all devices.
+     */
+    private static final class DeviceUpdates {
+        // at least one while the device has updates
+        private final List<DeviceSimulatorUpdateThread> running = new ArrayList<>(1);
+        private final Queue<DeviceSimulatorUpdateThread> waiting = new ArrayDeque<>();
     }
 
-    private static final class DeviceSimulatorUpdateThread implements Runnable {
+    private final class DeviceSimulatorUpdateThread implements Runnable {
 
         private static final String BUT_GOT_LOG_MESSAGE = " but got: ";
 
@@ -119,63 +300,112 @@ public class DeviceSimulatorUpdater {
         private final EventTopic actionType;
 
         private final AbstractSimulatedDevice device;
+        private final String deviceKey;
         private final UpdaterCallback callback;
+        // keeps the order of the status of this update
+        private final Executor feedback;
         private final List<DmfSoftwareModule> modules;
         private final String gatewayToken;
         private final boolean downloadAuthenticationEnabled;
+        private final int parallelism;
+
+        // set on the first failed download to stop the others of the update
+        private final AtomicBoolean downloadFailed = new AtomicBoolean();
+        private int skippedDownloads;
+        private volatile boolean cancelled;
+        // kept by the store for a device without object, the device itself
+        // is cleaned at the end of its last update
+        private volatile UpdateStatus lastStatus;
+        // set if the update has ended with a final status, the device is
+        // cleaned when it is the last update of the device
+        private volatile boolean cleanUp;
 
         private DeviceSimulatorUpdateThread(final AbstractSimulatedDevice device, final UpdaterCallback callback,
-                final List<DmfSoftwareModule> modules, final EventTopic actionType, final String gatewayToken,
-                final boolean downloadAuthenticationEnabled) {
+                final List<DmfSoftwareModule> modules, final EventTopic actionType, final String gatewayToken) {
             this.device = device;
+            this.deviceKey = device.getTenant() + '/' + device.getId();
+            this.feedback = feedbackStage.serial(deviceKey);
             this.callback = callback;
             this.modules = modules;
             this.actionType = actionType;
             this.gatewayToken = gatewayToken;
-            this.downloadAuthenticationEnabled = downloadAuthenticationEnabled;
+            this.downloadAuthenticationEnabled = simulationProperties.isDownloadAuthenticationEnabled();
+            this.parallelism = downloadProperties.getParallelism();
         }
 
         @Override
         public void run() {
-            device.setUpdateStatus(new UpdateStatus(ResponseStatus.RUNNING, "Simulation begins!"));
-            callback.sendFeedback(device);
+            DeviceSimulatorUpdateThread update = this;
+            while (update != null) {
+                try {
+                    update.simulateUpdate();
+                } catch (final RuntimeException e) {
+                    LOGGER.error(LOG_PREFIX + "Update simulation failed", update.device.getTenant(),
+                            update.device.getId(), e);
+                }
+                update = complete(update);
+            }
+        }
+
+        private void cancel() {
+            cancelled = true;
+            // aborts the running downloads
+            downloadFailed.set(true);
+        }
+
+        private void simulateUpdate() {
+            if (cancelled) {
+                return;
+            }
+            report(new UpdateStatus(ResponseStatus.RUNNING, "Simulation begins!"));
 
             if (!CollectionUtils.isEmpty(modules)) {
-                device.setUpdateStatus(simulateDownloads());
-                callback.sendFeedback(device);
-                if (isErrorResponse(device.getUpdateStatus())) {
-                    device.clean();
+                final UpdateStatus downloads = simulateDownloads();
+                report(downloads);
+                if (cancelled || isErrorResponse(downloads)) {
+                    cleanUp = true;
                     return;
                 }
             }
 
             if (actionType == EventTopic.DOWNLOAD_AND_INSTALL) {
-                device.setUpdateStatus(new UpdateStatus(ResponseStatus.SUCCESSFUL, "Simulation complete!"));
-                callback.sendFeedback(device);
-                device.clean();
+                report(new UpdateStatus(ResponseStatus.SUCCESSFUL, "Simulation complete!"));
+                cleanUp = true;
             }
         }
 
+        /**
+         * Reports the status of this update, the device shows the status of
+         * its latest update.
+         */
+        private void report(final UpdateStatus status) {
+            if (cancelled) {
+                // the device has been removed
+                return;
+            }
+            device.setUpdateStatus(status);
+            lastStatus = status;
+            feedback.execute(() -> callback.sendFeedback(device, status));
+        }
+
         private UpdateStatus simulateDownloads() {
 
-            device.setUpdateStatus(new UpdateStatus(ResponseStatus.DOWNLOADING,
+            report(new UpdateStatus(ResponseStatus.DOWNLOADING,
                     modules.stream().flatMap(mod -> mod.getArtifacts().stream())
                             .map(art -> "Download starts for: " + art.getFilename() + " with SHA1 hash "
                                     + art.getHashes().getSha1() + " and size " + art.getSize())
                             .collect(Collectors.toList())));
-            callback.sendFeedback(device);
 
-            final List<UpdateStatus> status = new ArrayList<>();
+            // all downloads of the update share the bandwidth of the device
+            final DownloadThrottle.Limiter limiter = downloadThrottle.forDevice(device.getTenant(), device.getId());
+            final List<DmfArtifact> artifacts = modules.stream().flatMap(module -> module.getArtifacts().stream())
+                    .collect(Collectors.toList());
 
             LOGGER.info(LOG_PREFIX + "Simulate downloads", device.getTenant(), device.getId());
 
-            modules.forEach(module -> module.getArtifacts().forEach(artifact -> {
-                if (downloadAuthenticationEnabled) {
-                    handleArtifact(device.getTargetSecurityToken(), gatewayToken, status, artifact);
-                } else {
-                    handleArtifact(null, null, status, artifact);
-                }
-            }));
+            final List<UpdateStatus> status = parallelism > 1 && artifacts.size() > 1
+                    ? downloadInParallel(artifacts, limiter)
+                    : downloadSequentially(artifacts, limiter);
 
             final UpdateStatus result = new UpdateStatus(ResponseStatus.DOWNLOADED);
             result.getStatusMessages().add("Simulator: Download complete!");
@@ -185,6 +415,10 @@ public class DeviceSimulatorUpdater {
                     result.setResponseStatus(ResponseStatus.ERROR);
                 }
             });
+            if (skippedDownloads > 0) {
+                result.getStatusMessages()
+                        .add("Simulator: Skipped " + skippedDownloads + " downloads after a failed download");
+            }
 
             LOGGER.info(LOG_PREFIX + "Download simulations complete", device.getTenant(), device.getId());
 
@@ -199,20 +433,88 @@ public class DeviceSimulatorUpdater {
             return ResponseStatus.ERROR == status.getResponseStatus();
         }
 
-        private void handleArtifact(final String targetToken, final String gatewayToken,
-                final List<UpdateStatus> status, final DmfArtifact artifact) {
+        private List<UpdateStatus> downloadSequentially(final List<DmfArtifact> artifacts,
+                final DownloadThrottle.Limiter limiter) {
+            final List<UpdateStatus> status = new ArrayList<>(artifacts.size());
+            for (int i = 0; i < artifacts.size(); i++) {
+                final UpdateStatus download = handleArtifact(artifacts.get(i), limiter);
+                if (download != null) {
+                    status.add(download);
+                }
+                if (isErrorResponse(download)) {
+                    skippedDownloads = artifacts.size() - i - 1;
+                    break;
+                }
+            }
+            return status;
+        }
+
+        /**
+         * Downloads the artifacts on the artifact pool with at most
+         * {@link #parallelism} downloads at a time. Results are merged in the
+         * order the downloads complete, no further download is started after
+         * the first failure and the running ones are aborted.
+         */
+        private List<UpdateStatus> downloadInParallel(final List<DmfArtifact> artifacts,
+                final DownloadThrottle.Limiter limiter) {
+            final List<UpdateStatus> status = new ArrayList<>(artifacts.size());
+            final CompletionService<UpdateStatus> downloads = new ExecutorCompletionService<>(artifactPool);
+            final Iterator<DmfArtifact> pending = artifacts.iterator();
+
+            int running = 0;
+            for (; running < parallelism && pending.hasNext(); running++) {
+                final DmfArtifact artifact = pending.next();
+                downloads.submit(() -> handleArtifact(artifact, limiter));
+            }
+
+            while (running > 0) {
+                final UpdateStatus download = takeCompleted(downloads);
+                running--;
+                if (download != null) {
+                    status.add(download);
+                }
+                if (isErrorResponse(download)) {
+                    downloadFailed.set(true);
+                } else if (!downloadFailed.get() && pending.hasNext()) {
+                    final DmfArtifact artifact = pending.next();
+                    downloads.submit(() -> handleArtifact(artifact, limiter));
+                    running++;
+                }
+            }
+            pending.forEachRemaining(artifact -> skippedDownloads++);
+            return status;
+        }
+
+        private UpdateStatus takeCompleted(final CompletionService<UpdateStatus> downloads) {
+            try {
+                final Future<UpdateStatus> completed = downloads.take();
+                return completed.get();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                downloadFailed.set(true);
+                return new UpdateStatus(ResponseStatus.ERROR, "Download interrupted");
+            } catch (final ExecutionException e) {
+                LOGGER.error(LOG_PREFIX + "Download failed", device.getTenant(), device.getId(), e.getCause());
+                return new UpdateStatus(ResponseStatus.ERROR, "Download failed: " + e.getCause().getMessage());
+            }
+        }
+
+        private UpdateStatus handleArtifact(final DmfArtifact artifact, final DownloadThrottle.Limiter limiter) {
+            final String targetToken = downloadAuthenticationEnabled ? device.getTargetSecurityToken() : null;
+            final String token = downloadAuthenticationEnabled ? gatewayToken : null;
 
             if (artifact.getUrls().containsKey("HTTPS")) {
-                status.add(downloadUrl(artifact.getUrls().get("HTTPS"), gatewayToken, targetToken,
-                        artifact.getHashes().getSha1(), artifact.getSize()));
+                return downloadUrl(artifact.getUrls().get("HTTPS"), token, targetToken,
+                        artifact.getHashes().getSha1(), artifact.getSize(), limiter);
             } else if (artifact.getUrls().containsKey("HTTP")) {
-                status.add(downloadUrl(artifact.getUrls().get("HTTP"), gatewayToken, targetToken,
-                        artifact.getHashes().getSha1(), artifact.getSize()));
+                return downloadUrl(artifact.getUrls().get("HTTP"), token, targetToken,
+                        artifact.getHashes().getSha1(), artifact.getSize(), limiter);
             }
+            return null;
         }
 
         private UpdateStatus downloadUrl(final String url, final String gatewayToken, final String targetToken,
-                final String sha1Hash, final long size) {
+                final String sha1Hash, final long size, final DownloadThrottle.Limiter limiter) {
 
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug(LOG_PREFIX + "Downloading {} with token {}, expected sha1 hash {} and size {}", device.getTenant(), device.getId(), url,
@@ -220,8 +522,12 @@ public class DeviceSimulatorUpdater {
             }
 
             try {
-                return readAndCheckDownloadUrl(url, gatewayToken, targetToken, sha1Hash, size);
-            } catch (IOException | KeyManagementException | NoSuchAlgorithmException | KeyStoreException e) {
+                return readAndCheckDownloadUrl(url, gatewayToken, targetToken, sha1Hash, size, limiter);
+            } catch (IOException | NoSuchAlgorithmException e) {
+                if (downloadFailed.get()) {
+                    LOGGER.debug(LOG_PREFIX + "Aborted download {}", device.getTenant(), device.getId(), url);
+                    return new UpdateStatus(ResponseStatus.ERROR, "Aborted download " + url);
+                }
                 LOGGER.error(LOG_PREFIX + "Failed to download {}", device.getTenant(), device.getId(), url, e);
                 return new UpdateStatus(ResponseStatus.ERROR, "Failed to download " + url + ": " + e.getMessage());
             }
@@ -229,66 +535,99 @@ public class DeviceSimulatorUpdater {
         }
 
         private UpdateStatus readAndCheckDownloadUrl(final String url, final String gatewayToken,
-                final String targetToken, final String sha1Hash, final long size)
-                throws NoSuchAlgorithmException, KeyStoreException, KeyManagementException, IOException {
-            long overallread;
-            final CloseableHttpClient httpclient = createHttpClientThatAcceptsAllServerCerts();
-            final HttpGet request = new HttpGet(url);
-
-            if (StringUtils.hasLength(targetToken)) {
-                request.addHeader(HttpHeaders.AUTHORIZATION, "TargetToken " + targetToken);
-            } else if (StringUtils.hasLength(gatewayToken)) {
-                request.addHeader(HttpHeaders.AUTHORIZATION, "GatewayToken " + gatewayToken);
-            }
+                final String targetToken, final String sha1Hash, final long size,
+                final DownloadThrottle.Limiter limiter) throws NoSuchAlgorithmException, IOException {
+            final long start = System.nanoTime();
 
-            final String sha1HashResult;
-            try (final CloseableHttpResponse response = httpclient.execute(request)) {
+            // Exception squid:S2070 - not used for hashing sensitive
+            // data
+            @SuppressWarnings("squid:S2070")
+            final MessageDigest md = MessageDigest.getInstance("SHA-1");
 
-                if (response.getStatusLine().getStatusCode() != HttpStatus.OK.value()) {
-                    final String message = wrongStatusCode(url, response);
-                    return new UpdateStatus(ResponseStatus.ERROR, message);
+            long overallread = 0;
+            int resumes = 0;
+            boolean resume;
+            do {
+                resume = false;
+                final HttpGet request = new HttpGet(url);
+
+                if (StringUtils.hasLength(targetToken)) {
+                    request.addHeader(HttpHeaders.AUTHORIZATION, "TargetToken " + targetToken);
+                } else if (StringUtils.hasLength(gatewayToken)) {
+                    request.addHeader(HttpHeaders.AUTHORIZATION, "GatewayToken " + gatewayToken);
                 }
-
-                if (response.getEntity().getContentLength() != size) {
-                    final String message = wrongContentLength(url, size, response);
-                    return new UpdateStatus(ResponseStatus.ERROR, message);
+                if (overallread > 0) {
+                    request.addHeader(HttpHeaders.RANGE, "bytes=" + overallread + "-");
                 }
 
-                // Exception squid:S2070 - not used for hashing sensitive
-                // data
-                @SuppressWarnings("squid:S2070")
-                final MessageDigest md = MessageDigest.getInstance("SHA-1");
-
-                overallread = getOverallRead(response, md);
-
-                if (overallread != size) {
-                    final String message = incompleteRead(url, size, overallread);
-                    return new UpdateStatus(ResponseStatus.ERROR, message);
+                try (final CloseableHttpResponse response = downloadHttpClient.execute(request)) {
+                    final int statusCode = response.getStatusLine().getStatusCode();
+                    if (overallread > 0 && statusCode == HttpStatus.OK.value()) {
+                        // the server ignored the range, start over
+                        downloadResumer.recordRangeIgnored();
+                        md.reset();
+                        overallread = 0;
+                    } else if (overallread > 0 && statusCode == HttpStatus.PARTIAL_CONTENT.value()) {
+                        final Header contentRange = response.getFirstHeader(HttpHeaders.CONTENT_RANGE);
+                        final long rangeStart = DownloadResumer
+                                .rangeStart(contentRange != null ? contentRange.getValue() : null);
+                        if (rangeStart != overallread) {
+                            final String message = wrongRange(url, overallread, contentRange);
+                            return new UpdateStatus(ResponseStatus.ERROR, message);
+                        }
+                    } else if (statusCode != HttpStatus.OK.value()) {
+                        final String message = wrongStatusCode(url, response);
+                        return new UpdateStatus(ResponseStatus.ERROR, message);
+                    }
+
+                    final long remaining = size - overallread;
+                    if (response.getEntity().getContentLength() != remaining) {
+                        final String message = wrongContentLength(url, remaining, response);
+                        return new UpdateStatus(ResponseStatus.ERROR, message);
+                    }
+
+                    overallread += artifactReader.read(
+                            downloadResumer.injectDrops(response.getEntity().getContent(), remaining), md, limiter,
+                            downloadFailed::get);
+                } catch (final IncompleteReadException e) {
+                    // the digest holds the bytes read so far, continue from
+                    // there
+                    overallread += e.getBytesRead();
+                    if (downloadFailed.get() || !downloadResumer.canResume(resumes)) {
+                        throw e;
+                    }
+                    resumes++;
+                    resume = true;
+                    downloadResumer.recordResume(overallread);
+                    LOGGER.debug(LOG_PREFIX + "Resuming download {} at {} bytes: {}", device.getTenant(),
+                            device.getId(), url, overallread, e.getCause().getMessage());
                 }
+            } while (resume);
 
-                sha1HashResult = HexFormat.of().withLowerCase().formatHex(md.digest());
+            if (overallread != size) {
+                final String message = incompleteRead(url, size, overallread);
+                return new UpdateStatus(ResponseStatus.ERROR, message);
             }
 
+            final String sha1HashResult = HexFormat.of().withLowerCase().formatHex(md.digest());
             if (!sha1Hash.equalsIgnoreCase(sha1HashResult)) {
                 final String message = wrongHash(url, sha1Hash, overallread, sha1HashResult);
                 return new UpdateStatus(ResponseStatus.ERROR, message);
             }
 
-            final String message = "Downloaded " + url + " (" + overallread + " bytes)";
+            final long throughput = downloadThrottle.recordDownload(overallread, System.nanoTime() - start);
+            final String message = "Downloaded " + url + " (" + overallread + " bytes, " + formatRate(throughput)
+                    + (limiter.getDeviceRate() > 0 ? ", limited to " + formatRate(limiter.getDeviceRate()) : "")
+                    + (resumes > 0 ? ", resumed " + resumes + " times" : "") + ")";
             LOGGER.debug(message);
             return new UpdateStatus(ResponseStatus.SUCCESSFUL, message);
         }
 
-        private static long getOverallRead(final CloseableHttpResponse response, final MessageDigest md)
-                throws IOException {
-            long overallread = 0;
-            try (final BufferedInputStream bis = new BufferedInputStream(response.getEntity().getContent())) {
-                final byte[] buff = new byte[4 *1024];
-                for (int read; (read = bis.read(buff)) != -1; overallread += read) {
-                    md.update(buff, 0, read);
-                }
+        private static String formatRate(final long bytesPerSecond) {
+            if (bytesPerSecond >= 1024 * 1024) {
+                return String.format("%.1f MiB/s", bytesPerSecond / (1024.0 * 1024.0));
             }
-            return overallread;
+            return String.format("%.1f KiB/s", bytesPerSecond / 1024.0);
         }
 
         private static String hideTokenDetails(final String targetToken) {
@@ -331,20 +670,19 @@ public class DeviceSimulatorUpdater {
             return message;
         }
 
+        private String wrongRange(final String url, final long offset, final Header contentRange) {
+            final String message = LOG_PREFIX + DOWNLOAD_LOG_MESSAGE + url + " resumed with wrong range (Expected: "
+                    + offset + BUT_GOT_LOG_MESSAGE + (contentRange != null ? contentRange.getValue() : null) + ")";
+            LOGGER.error(message, device.getTenant(), device.getId());
+            return message;
+        }
+
         private String wrongStatusCode(final String url, final CloseableHttpResponse response) {
             final String message = LOG_PREFIX + DOWNLOAD_LOG_MESSAGE + url + " failed (" + response.getStatusLine().getStatusCode()
                     + ")";
             LOGGER.error(message, device.getTenant(), device.getId());
             return message;
         }
-
-        private static CloseableHttpClient createHttpClientThatAcceptsAllServerCerts()
-                throws NoSuchAlgorithmException, KeyStoreException, KeyManagementException {
-            final SSLContextBuilder builder = SSLContextBuilder.create();
-            builder.loadTrustMaterial(null, (chain, authType) -> true);
-            final SSLConnectionSocketFactory sslsf = new SSLConnectionSocketFactory(builder.build());
-            return HttpClients.custom().setSSLSocketFactory(sslsf).build();
-        }
     }
 
     /**
@@ -360,8 +698,11 @@ public class DeviceSimulatorUpdater {
          *
          * @param device
          *            the device which has been updated
+         * @param status
+         *            the status of the update, a device may run several
+         *            updates at the same time
          */
-        void sendFeedback(AbstractSimulatedDevice device);
+        void sendFeedback(AbstractSimulatedDevice device, UpdateStatus status);
     }
 
 }
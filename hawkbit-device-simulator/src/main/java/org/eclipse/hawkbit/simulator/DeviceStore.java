@@ -0,0 +1,1456 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import org.eclipse.hawkbit.simulator.AbstractSimulatedDevice.Protocol;
+import org.eclipse.hawkbit.simulator.UpdateStatus.ResponseStatus;
+import org.eclipse.hawkbit.simulator.amqp.DmfSenderService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Compact store of the simulated devices. Every device has a slot, its fields
+ * are kept in arrays by slot, its ID as offset and length into a shared table
+ * of UTF-8 encoded names and its tenant as an index into the table of the
+ * tenants. The devices of a tenant are found by ID through an open addressing
+ * table of slots.
+ * <p>
+ * DMF devices have no state of their own between their actions, so they are
+ * kept and polled without a device object. A {@link DMFSimulatedDevice} is
+ * created when the device is looked up and pinned to its slot while an action
+ * of the device is in progress. DDI devices keep their object as it holds the state
+ * of their polls.
+ * <p>
+ * A {@link DeviceRange} describes many devices of a tenant by their common
+ * name prefix and is kept without a slot per device. A device of a range gets
+ * a slot only while it is pinned. A single device with the ID of a device of a
+ * range replaces the device of the range, a range replaces the single devices
+ * and the range with the same name.
+ * <p>
+ * The tenants are kept in a {@link TenantIndex}, so looking up a device of a
+ * known tenant does neither convert the tenant nor allocate a key.
+ */
+@Component
+public class DeviceStore {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int INITIAL_TABLE_CAPACITY = 16;
+    private static final int INITIAL_NAMES_CAPACITY = 16 * 1024;
+    private static final Protocol[] PROTOCOLS = Protocol.values();
+    private static final DeviceRange[] NO_RANGES = {};
+
+    /**
+     * The position returned by {@link #scan(String, long, Scanner)} when all
+     * devices have been scanned.
+     */
+    static final long SCAN_END = -1;
+    // positions of a scan from here on are in the ranges: the sequence of the
+    // range followed by the index in the range
+    private static final long RANGES_POSITION = 1L << 62;
+    private static final int INDEX_BITS = Integer.SIZE - 1;
+    private static final long INDEX_MASK = (1L << INDEX_BITS) - 1;
+
+    // bytes per slot in the arrays of the store: name offset, name length,
+    // ID hash, tenant, protocol, poll delay, update status and device object
+    private static final int SLOT_BYTES = 4 + 2 + 4 + 4 + 1 + 4 + 1 + 4;
+    private static final ResponseStatus[] STATUSES = ResponseStatus.values();
+    private static final byte NO_STATUS = -1;
+
+    private final Supplier<DmfSenderService> dmfSenderService;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<LongSupplier> idleBytes = new CopyOnWriteArrayList<>();
+
+    // registered and cleared under the write lock
+    private final TenantIndex<Tenant> tenants = new TenantIndex<>(Tenant::new);
+
+    // the ranges of all tenants in order of their sequence, replaced under
+    // the write lock
+    private volatile List<DeviceRange> ranges = Collections.emptyList();
+    // guarded by the write lock, not reset with the store so positions of a
+    // scan before the store has been cleared do not skip new ranges
+    private long rangeSequence;
+
+    // by slot, guarded by the lock
+    private int[] nameOffsets;
+    private short[] nameLengths;
+    private int[] hashes;
+    // -1 for a free slot
+    private int[] tenantOf;
+    private byte[] protocols;
+    private int[] pollDelays;
+    // the status of the latest update of a device without object, NO_STATUS
+    // if there is none
+    private byte[] statuses;
+    private AbstractSimulatedDevice[] devices;
+    // slots of pinned devices of a range
+    private BitSet rangedSlots;
+    // slots of pinned devices
+    private BitSet pinnedSlots;
+
+    // guarded by the lock
+    private int[] freeSlots;
+    private int freeCount;
+    private int usedSlots;
+    private int size;
+    private int materialized;
+    private int ranged;
+
+    // UTF-8 encoded IDs, guarded by the lock
+    private byte[] names;
+    private int namesUsed;
+    private int namesGarbage;
+
+    /**
+     * @param dmfSenderService
+     *            for the objects of the DMF devices, not available if the
+     *            AMQP interface is disabled
+     * @param meterRegistry
+     *            to expose the store metrics
+     */
+    @Autowired
+    public DeviceStore(final ObjectProvider<DmfSenderService> dmfSenderService, final MeterRegistry meterRegistry) {
+        this(dmfSenderService::getIfAvailable, meterRegistry);
+    }
+
+    DeviceStore(final Supplier<DmfSenderService> dmfSenderService, final MeterRegistry meterRegistry) {
+        this.dmfSenderService = dmfSenderService;
+        reset();
+
+        Gauge.builder("simulator.devices", this, DeviceStore::size).description("Number of simulated devices")
+                .register(meterRegistry);
+        Gauge.builder("simulator.devices.materialized", this, DeviceStore::materialized)
+                .description("Number of simulated devices with a device object").register(meterRegistry);
+        Gauge.builder("simulator.devices.idle.bytes", this, DeviceStore::idleBytesPerDevice)
+                .description(
+                        "Estimated heap of the device store and the poll schedule per device without a device object")
+                .baseUnit("bytes").register(meterRegistry);
+    }
+
+    /**
+     * Adds a device or replaces the device of the tenant with the same ID.
+     *
+     * @param device
+     *            the device to add
+     * @return the slot of the device
+     */
+    int put(final AbstractSimulatedDevice device) {
+        final Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            final Tenant tenant = tenants.register(device.getTenant());
+            int slot = find(tenant, device.getId());
+            if (slot < 0 || rangedSlots.get(slot)) {
+                // replaces the device of a range
+                removeFromRange(tenant, device.getId());
+            }
+            if (slot < 0) {
+                slot = allocate(device.getId(), tenant);
+                insert(tenant, slot);
+            } else {
+                unrange(slot);
+                if (devices[slot] != null) {
+                    materialized--;
+                }
+            }
+            protocols[slot] = (byte) device.getProtocol().ordinal();
+            pollDelays[slot] = device.getPollDelaySec();
+            statuses[slot] = statusOf(device.getUpdateStatus());
+            devices[slot] = isCompact(device) ? null : device;
+            if (devices[slot] != null) {
+                materialized++;
+            }
+            return slot;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Adds a range of devices. The range replaces the range of the tenant with
+     * the same name and the single devices with the IDs of the range.
+     *
+     * @param range
+     *            the range to add
+     * @throws IllegalArgumentException
+     *             if the range has IDs in common with another range of the
+     *             tenant
+     */
+    void putRange(final DeviceRange range) {
+        final Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            final Tenant tenant = tenants.register(range.getTenant());
+            for (final DeviceRange other : tenant.ranges) {
+                if (!other.getName().equals(range.getName()) && other.overlaps(range)) {
+                    throw new IllegalArgumentException("Devices of range " + range.getName()
+                            + " overlap with the devices of range " + other.getName());
+                }
+            }
+
+            final List<DeviceRange> replaced = new ArrayList<>();
+            final List<DeviceRange> kept = new ArrayList<>();
+            kept.add(range);
+            for (final DeviceRange other : tenant.ranges) {
+                (other.getName().equals(range.getName()) ? replaced : kept).add(other);
+            }
+            replaced.forEach(DeviceRange::retire);
+            tenant.ranges = kept.toArray(NO_RANGES);
+            range.setSequence(rangeSequence++);
+
+            final List<DeviceRange> all = new ArrayList<>(ranges);
+            all.removeAll(replaced);
+            all.add(range);
+            ranges = Collections.unmodifiableList(all);
+
+            removeSingleDevices(tenant, range);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // guarded by the write lock, their slots are left in the poll schedule
+    // until they are due or taken by another device
+    private void removeSingleDevices(final Tenant tenant, final DeviceRange range) {
+        final List<Integer> slots = new ArrayList<>();
+        for (final int entry : tenant.table) {
+            if (entry != 0 && !rangedSlots.get(entry - 1) && range.indexOf(idAt(entry - 1)) >= 0) {
+                slots.add(entry - 1);
+            }
+        }
+        for (final int slot : slots) {
+            delete(tenant, slot);
+            free(slot);
+        }
+    }
+
+    /**
+     * @return the ranges of all tenants
+     */
+    List<DeviceRange> getRanges() {
+        return ranges;
+    }
+
+    /**
+     * @param range
+     *            the range of the device
+     * @param index
+     *            the index of the device in the range
+     * @return the device, its pinned object if it is pinned, or
+     *         <code>null</code> if the device has been removed from the range
+     */
+    AbstractSimulatedDevice get(final DeviceRange range, final int index) {
+        final Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if (range.isRetired() || range.isRemoved(index)) {
+                return null;
+            }
+            return rangeDeviceAt(range, index);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * @param range
+     *            the range of the device
+     * @param index
+     *            the index of the device in the range
+     * @return <code>true</code> if the device has not been removed from the
+     *         range
+     */
+    boolean contains(final DeviceRange range, final int index) {
+        final Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return !range.isRetired() && !range.isRemoved(index);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Polls a device of a range by its pinned object if it is pinned. A DMF
+     * device is polled without an object otherwise, the object of a DDI
+     * device is created for the poll.
+     *
+     * @param range
+     *            the range of the device
+     * @param index
+     *            the index of the device in the range
+     * @return <code>true</code> if the device has been polled,
+     *         <code>false</code> if it has been removed from the range
+     */
+    boolean poll(final DeviceRange range, final int index) {
+        final String id = range.idOf(index);
+        final AbstractSimulatedDevice device;
+        final Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if (range.isRetired() || range.isRemoved(index)) {
+                return false;
+            }
+            final Tenant tenant = tenants.get(range.getTenant());
+            final int slot = tenant != null ? find(tenant, id) : -1;
+            device = slot >= 0 ? devices[slot] : null;
+        } finally {
+            readLock.unlock();
+        }
+        // polled outside of the lock
+        if (device != null) {
+            device.poll();
+        } else if (range.getProtocol() == Protocol.DMF_AMQP) {
+            DMFSimulatedDevice.poll(dmfSenderService.get(), range.getTenant(), id);
+        } else {
+            range.createDevice(index).poll();
+        }
+        return true;
+    }
+
+    // guarded by the lock, the device must not be removed from the range
+    private AbstractSimulatedDevice rangeDeviceAt(final DeviceRange range, final int index) {
+        final String id = range.idOf(index);
+        final Tenant tenant = tenants.get(range.getTenant());
+        final int slot = tenant != null ? find(tenant, id) : -1;
+        return slot >= 0 ? devices[slot] : range.createDevice(index);
+    }
+
+    /**
+     * @param tenant
+     *            the tenant of the device in any case
+     * @param id
+     *            the ID of the device
+     * @return the slot of the device or <code>-1</code> if there is none
+     */
+    int slotOf(final String tenant, final String id) {
+        final Tenant known = tenants.get(tenant);
+        if (known == null) {
+            return -1;
+        }
+        final Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return find(known, id);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * @param tenant
+     *            the tenant of the device in any case
+     * @param id
+     *            the ID of the device
+     * @return the device or <code>null</code> if there is none
+     */
+    AbstractSimulatedDevice get(final String tenant, final String id) {
+        final Tenant known = tenants.get(tenant);
+        if (known == null) {
+            return null;
+        }
+        final Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            final int slot = find(known, id);
+            if (slot >= 0) {
+                return deviceAt(slot);
+            }
+            for (final DeviceRange range : known.ranges) {
+                final int index = range.indexOf(id);
+                if (index >= 0 && !range.isRemoved(index)) {
+                    return range.createDevice(index);
+                }
+            }
+            return null;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * @param slot
+     *            the slot of the device
+     * @return the device or <code>null</code> if the slot is free or taken by
+     *         a pinned device of a range, which is polled by its range
+     */
+    AbstractSimulatedDevice get(final int slot) {
+        final Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return slot < usedSlots && tenantOf[slot] >= 0 && !rangedSlots.get(slot) ? deviceAt(slot) : null;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * @param slot
+     *            the slot of the device
+     * @return the poll delay of the device or <code>-1</code> if the slot is
+     *         free or taken by a pinned device of a range
+     */
+    int getPollDelaySec(final int slot) {
+        final Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if (slot >= usedSlots || tenantOf[slot] < 0 || rangedSlots.get(slot)) {
+                return -1;
+            }
+            return devices[slot] != null ? devices[slot].getPollDelaySec() : pollDelays[slot];
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Polls the device of a slot by its object, a DMF device which is kept
+     * without an object is polled without creating one.
+     *
+     * @param slot
+     *            the slot of the device
+     * @return <code>true</code> if the device has been polled,
+     *         <code>false</code> if the slot is free or taken by a pinned
+     *         device of a range
+     */
+    boolean poll(final int slot) {
+        final AbstractSimulatedDevice device;
+        final String tenant;
+        final String id;
+        final Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if (slot >= usedSlots || tenantOf[slot] < 0 || rangedSlots.get(slot)) {
+                return false;
+            }
+            device = devices[slot];
+            if (device == null) {
+                tenant = tenants.get(tenantOf[slot]).name;
+                id = idAt(slot);
+                if (PROTOCOLS[protocols[slot]] != Protocol.DMF_AMQP) {
+                    throw new IllegalStateException("Device " + id + " of tenant " + tenant + " has no object");
+                }
+            } else {
+                tenant = null;
+                id = null;
+            }
+        } finally {
+            readLock.unlock();
+        }
+        // polled outside of the lock
+        if (device != null) {
+            device.poll();
+        } else {
+            DMFSimulatedDevice.poll(dmfSenderService.get(), tenant, id);
+        }
+        return true;
+    }
+
+    /**
+     * @param tenant
+     *            the tenant of the device in any case
+     * @param id
+     *            the ID of the device
+     * @return the removed device or <code>null</code> if there was none
+     */
+    AbstractSimulatedDevice remove(final String tenant, final String id) {
+        final Tenant known = tenants.get(tenant);
+        if (known == null) {
+            return null;
+        }
+        final Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            final int slot = find(known, id);
+            if (slot < 0) {
+                return removeFromRange(known, id);
+            }
+            final AbstractSimulatedDevice removed = deviceAt(slot);
+            if (rangedSlots.get(slot)) {
+                removeFromRange(known, id);
+            }
+            delete(known, slot);
+            free(slot);
+            return removed;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Keeps the object of a device in its slot, so the device is the same
+     * object whenever it is looked up until it is unpinned.
+     *
+     * @param device
+     *            the device to pin
+     */
+    void pin(final AbstractSimulatedDevice device) {
+        final Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            final int slot = slotOfDevice(device);
+            if (slot >= 0) {
+                if (devices[slot] == null) {
+                    devices[slot] = device;
+                    materialized++;
+                }
+                pinnedSlots.set(slot);
+            } else if (isInRange(device)) {
+                final Tenant tenant = tenants.get(device.getTenant());
+                final int pinned = allocate(device.getId(), tenant);
+                insert(tenant, pinned);
+                protocols[pinned] = (byte) device.getProtocol().ordinal();
+                pollDelays[pinned] = device.getPollDelaySec();
+                statuses[pinned] = NO_STATUS;
+                devices[pinned] = device;
+                materialized++;
+                rangedSlots.set(pinned);
+                pinnedSlots.set(pinned);
+                ranged++;
+                tenant.ranged++;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Drops the object of a pinned device which is kept without an object,
+     * the device keeps the status of its latest update.
+     *
+     * @param device
+     *            the device to unpin
+     * @param status
+     *            the status of the latest update of the device or
+     *            <code>null</code> if it has none
+     */
+    void unpin(final AbstractSimulatedDevice device, final UpdateStatus status) {
+        final Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            final int slot = slotOfDevice(device);
+            if (slot < 0 || devices[slot] != device) {
+                return;
+            }
+            pinnedSlots.clear(slot);
+            if (rangedSlots.get(slot)) {
+                // kept by its range again
+                delete(tenants.get(tenantOf[slot]), slot);
+                free(slot);
+            } else if (isCompact(device)) {
+                statuses[slot] = statusOf(status);
+                devices[slot] = null;
+                materialized--;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * @param tenant
+     *            the tenant in any case
+     * @return a live view of the devices of the tenant
+     */
+    Collection<AbstractSimulatedDevice> getAll(final String tenant) {
+        final Tenant known = tenants.get(tenant);
+        return known != null ? new Devices(known) : Collections.emptyList();
+    }
+
+    /**
+     * @return a live view of the devices of all tenants
+     */
+    Collection<AbstractSimulatedDevice> getAll() {
+        return new Devices(null);
+    }
+
+    /**
+     * @param tenant
+     *            the tenant in any case
+     * @return the number of devices of the tenant
+     */
+    int count(final String tenant) {
+        final Tenant known = tenants.get(tenant);
+        return known != null ? (int) Math.min(Integer.MAX_VALUE, sizeOf(known)) : 0;
+    }
+
+    private long sizeOf(final Tenant tenant) {
+        final Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            long count = (long) tenant.size - tenant.ranged;
+            for (final DeviceRange range : tenant.ranges) {
+                count += range.size();
+            }
+            return count;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * @return a live view of the canonical names of the tenants which had
+     *         devices since the store has been cleared
+     */
+    Set<String> getTenants() {
+        return tenants.getNames();
+    }
+
+    /**
+     * @return the number of devices, the devices of the ranges included
+     */
+    long size() {
+        final Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            long count = (long) size - ranged;
+            for (final DeviceRange range : ranges) {
+                count += range.size();
+            }
+            return count;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of devices with a device object
+     */
+    int materialized() {
+        final Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return materialized;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Adds heap which is kept by slot outside of the store, like the poll
+     * schedule, to the heap per device without a device object.
+     *
+     * @param bytes
+     *            supplying the heap in bytes, not called under the lock of
+     *            the store
+     */
+    void addIdleBytes(final LongSupplier bytes) {
+        idleBytes.add(bytes);
+    }
+
+    /**
+     * @return the heap of the store per device without a device object,
+     *         including the ID of the device, the devices of the ranges and
+     *         the added heap by slot
+     */
+    double idleBytesPerDevice() {
+        final long devicesCount = size();
+        long external = 0;
+        for (final LongSupplier bytes : idleBytes) {
+            external += bytes.getAsLong();
+        }
+        final Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if (devicesCount == 0) {
+                return 0;
+            }
+            long bytes = external + (long) tenantOf.length * SLOT_BYTES + names.length
+                    + rangedSlots.size() / Byte.SIZE;
+            for (final Tenant tenant : tenants.getAll()) {
+                bytes += (long) tenant.table.length * Integer.BYTES;
+            }
+            for (final DeviceRange range : ranges) {
+                bytes += range.removedBytes() + range.getPolling().getBytes();
+            }
+            return (double) bytes / devicesCount;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Passes the single devices and the ranges of the store to an exporter.
+     * Devices cannot be added or removed until the export is done.
+     *
+     * @param exporter
+     *            which receives the devices
+     */
+    void export(final Exporter exporter) {
+        final Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            for (int slot = 0; slot < usedSlots; slot++) {
+                if (tenantOf[slot] >= 0 && !rangedSlots.get(slot)) {
+                    exporter.device(slot, tenants.get(tenantOf[slot]).name, names, nameOffsets[slot],
+                            nameLengths[slot], PROTOCOLS[protocols[slot]], pollDelays[slot], devices[slot]);
+                }
+            }
+            for (final DeviceRange range : ranges) {
+                exporter.range(range, range.getRemoved());
+            }
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Passes the devices of the store or of one tenant to a scanner, from a
+     * position on until the scanner stops. The single devices and the pinned
+     * devices of the ranges come first in order of their slots, followed by
+     * the other devices of the ranges in order of the ranges. Devices cannot
+     * be added or removed while the store is scanned, but devices which are
+     * added, removed, pinned or unpinned between two scans of a scan which
+     * continues at a position may be missed or passed twice.
+     *
+     * @param tenant
+     *            the tenant in any case, <code>null</code> for all tenants
+     * @param position
+     *            <code>0</code> or the position returned by the previous scan
+     * @param scanner
+     *            which receives the devices
+     * @return the position to continue the scan at or {@link #SCAN_END} if all
+     *         devices have been scanned
+     */
+    long scan(final String tenant, final long position, final Scanner scanner) {
+        final Tenant known = tenant != null ? tenants.get(tenant) : null;
+        if (position < 0 || (tenant != null && known == null)) {
+            return SCAN_END;
+        }
+        final Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            for (int slot = (int) Math.min(position, usedSlots); slot < usedSlots; slot++) {
+                if (tenantOf[slot] >= 0 && (known == null || tenants.get(tenantOf[slot]) == known)
+                        && !scanner.device(tenants.get(tenantOf[slot]).name, names, nameOffsets[slot],
+                                nameLengths[slot], PROTOCOLS[protocols[slot]], pollDelays[slot], statusAt(slot),
+                                pinnedSlots.get(slot), rangedSlots.get(slot))) {
+                    return slot + 1L;
+                }
+            }
+
+            final long rangePosition = Math.max(0, position - RANGES_POSITION);
+            final long sequence = rangePosition >>> INDEX_BITS;
+            for (final DeviceRange range : ranges) {
+                final Tenant rangeTenant = tenants.get(range.getTenant());
+                if (range.getSequence() < sequence || (known != null && rangeTenant != known)
+                        || !scanner.range(range)) {
+                    continue;
+                }
+                final int from = range.getSequence() == sequence ? (int) (rangePosition & INDEX_MASK) : 0;
+                for (int index = from; index < range.getAmount(); index++) {
+                    // the pinned devices have been passed with their slots
+                    if (!range.isRemoved(index) && find(rangeTenant, range.idOf(index)) < 0
+                            && !scanner.rangeDevice(range, index)) {
+                        return RANGES_POSITION + (range.getSequence() << INDEX_BITS) + index + 1;
+                    }
+                }
+            }
+            return SCAN_END;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * @param selector
+     *            the devices of a tenant
+     * @return the slots of the selected devices
+     */
+    int[] slotsOf(final DeviceSelector selector) {
+        final Tenant tenant = tenants.get(selector.getTenant());
+        if (tenant == null) {
+            return new int[0];
+        }
+        final Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return selectedSlots(tenant, selector);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Removes the selected devices of a tenant in one pass. A range is removed
+     * if all its devices are selected, otherwise the selected devices are
+     * removed from the range.
+     *
+     * @param selector
+     *            the devices of a tenant
+     * @param collectIds
+     *            <code>true</code> to keep the IDs of the removed devices
+     * @return the removed devices
+     */
+    Removal removeAll(final DeviceSelector selector, final boolean collectIds) {
+        final Tenant tenant = tenants.get(selector.getTenant());
+        if (tenant == null) {
+            return new Removal(selector.getTenant());
+        }
+        final Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            final Removal removal = new Removal(tenant.name);
+            for (final int slot : selectedSlots(tenant, selector)) {
+                // pinned devices of a range are removed with their range
+                if (!rangedSlots.get(slot)) {
+                    removal.count++;
+                    if (collectIds) {
+                        removal.ids.add(idAt(slot));
+                    }
+                }
+                if (devices[slot] != null) {
+                    removal.objects.add(devices[slot]);
+                }
+                delete(tenant, slot);
+                free(slot);
+            }
+
+            final List<DeviceRange> removedRanges = new ArrayList<>();
+            final List<DeviceRange> kept = new ArrayList<>();
+            for (final DeviceRange range : tenant.ranges) {
+                final BitSet indices = selector.indicesIn(range);
+                indices.andNot(BitSet.valueOf(range.getRemoved()));
+                if (indices.cardinality() == range.size()) {
+                    removedRanges.add(range);
+                } else {
+                    kept.add(range);
+                    indices.stream().forEach(range::remove);
+                }
+                if (!indices.isEmpty()) {
+                    removal.count += indices.cardinality();
+                    removal.ranges.add(range);
+                    removal.rangeIndices.add(indices);
+                }
+            }
+            if (!removedRanges.isEmpty()) {
+                removedRanges.forEach(DeviceRange::retire);
+                tenant.ranges = kept.toArray(NO_RANGES);
+                final List<DeviceRange> all = new ArrayList<>(ranges);
+                all.removeAll(removedRanges);
+                ranges = Collections.unmodifiableList(all);
+            }
+            return removal;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // guarded by the lock
+    private int[] selectedSlots(final Tenant tenant, final DeviceSelector selector) {
+        if (tenant.cleared) {
+            return new int[0];
+        }
+        int[] slots = new int[INITIAL_TABLE_CAPACITY];
+        int count = 0;
+        for (final int entry : tenant.table) {
+            if (entry != 0 && selector.matches(names, nameOffsets[entry - 1], nameLengths[entry - 1])) {
+                if (count == slots.length) {
+                    slots = Arrays.copyOf(slots, count << 1);
+                }
+                slots[count++] = entry - 1;
+            }
+        }
+        return Arrays.copyOf(slots, count);
+    }
+
+    /**
+     * Removes all devices, ranges and tenants.
+     *
+     * @return the device objects which have been kept by the store
+     */
+    List<AbstractSimulatedDevice> clear() {
+        final List<AbstractSimulatedDevice> objects = new ArrayList<>();
+        final Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            for (int slot = 0; slot < usedSlots; slot++) {
+                if (devices[slot] != null) {
+                    objects.add(devices[slot]);
+                }
+            }
+            tenants.getAll().forEach(tenant -> tenant.ranges = NO_RANGES);
+            tenants.clear();
+            ranges.forEach(DeviceRange::retire);
+            ranges = Collections.emptyList();
+            reset();
+        } finally {
+            writeLock.unlock();
+        }
+        return objects;
+    }
+
+    private void reset() {
+        nameOffsets = new int[INITIAL_CAPACITY];
+        nameLengths = new short[INITIAL_CAPACITY];
+        hashes = new int[INITIAL_CAPACITY];
+        tenantOf = new int[INITIAL_CAPACITY];
+        protocols = new byte[INITIAL_CAPACITY];
+        pollDelays = new int[INITIAL_CAPACITY];
+        statuses = new byte[INITIAL_CAPACITY];
+        devices = new AbstractSimulatedDevice[INITIAL_CAPACITY];
+        rangedSlots = new BitSet(INITIAL_CAPACITY);
+        pinnedSlots = new BitSet(INITIAL_CAPACITY);
+        freeSlots = new int[INITIAL_TABLE_CAPACITY];
+        freeCount = 0;
+        usedSlots = 0;
+        size = 0;
+        materialized = 0;
+        ranged = 0;
+        names = new byte[INITIAL_NAMES_CAPACITY];
+        namesUsed = 0;
+        namesGarbage = 0;
+    }
+
+    private static boolean isCompact(final AbstractSimulatedDevice device) {
+        return device.getClass() == DMFSimulatedDevice.class;
+    }
+
+    // guarded by the lock
+    private boolean isInRange(final AbstractSimulatedDevice device) {
+        final Tenant tenant = tenants.get(device.getTenant());
+        if (tenant == null || tenant.cleared) {
+            return false;
+        }
+        for (final DeviceRange range : tenant.ranges) {
+            final int index = range.indexOf(device.getId());
+            if (index >= 0) {
+                return !range.isRemoved(index);
+            }
+        }
+        return false;
+    }
+
+    // guarded by the write lock
+    private AbstractSimulatedDevice removeFromRange(final Tenant tenant, final String id) {
+        for (final DeviceRange range : tenant.ranges) {
+            final int index = range.indexOf(id);
+            if (index >= 0 && range.remove(index)) {
+                return range.createDevice(index);
+            }
+        }
+        return null;
+    }
+
+    // guarded by the write lock, the slot is kept as a single device
+    private void unrange(final int slot) {
+        if (rangedSlots.get(slot)) {
+            rangedSlots.clear(slot);
+            ranged--;
+            tenants.get(tenantOf[slot]).ranged--;
+        }
+    }
+
+    // guarded by the lock
+    private AbstractSimulatedDevice deviceAt(final int slot) {
+        final AbstractSimulatedDevice device = devices[slot];
+        if (device != null) {
+            return device;
+        }
+        final Tenant tenant = tenants.get(tenantOf[slot]);
+        if (PROTOCOLS[protocols[slot]] != Protocol.DMF_AMQP) {
+            throw new IllegalStateException("Device " + idAt(slot) + " of tenant " + tenant.name + " has no object");
+        }
+        return new DMFSimulatedDevice(idAt(slot), tenant.name, dmfSenderService.get(), pollDelays[slot]);
+    }
+
+    // guarded by the lock
+    private String idAt(final int slot) {
+        return new String(names, nameOffsets[slot], nameLengths[slot], StandardCharsets.UTF_8);
+    }
+
+    // guarded by the lock, the status of the object of a device which has
+    // reported one, the kept status otherwise
+    private ResponseStatus statusAt(final int slot) {
+        final UpdateStatus status = devices[slot] != null ? devices[slot].getUpdateStatus() : null;
+        if (status != null) {
+            return status.getResponseStatus();
+        }
+        return statuses[slot] != NO_STATUS ? STATUSES[statuses[slot]] : null;
+    }
+
+    private static byte statusOf(final UpdateStatus status) {
+        return status != null && status.getResponseStatus() != null ? (byte) status.getResponseStatus().ordinal()
+                : NO_STATUS;
+    }
+
+    // guarded by the lock
+    private int slotOfDevice(final AbstractSimulatedDevice device) {
+        final Tenant tenant = tenants.get(device.getTenant());
+        return tenant != null ? find(tenant, device.getId()) : -1;
+    }
+
+    // guarded by the write lock
+    private int allocate(final String id, final Tenant tenant) {
+        final byte[] name = id.getBytes(StandardCharsets.UTF_8);
+        if (name.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Device ID exceeds " + Short.MAX_VALUE + " bytes");
+        }
+        final int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (usedSlots == tenantOf.length) {
+                grow(tenantOf.length << 1);
+            }
+            slot = usedSlots++;
+        }
+        // still free while the names may be compacted
+        tenantOf[slot] = -1;
+        nameOffsets[slot] = appendName(name);
+        nameLengths[slot] = (short) name.length;
+        hashes[slot] = id.hashCode();
+        tenantOf[slot] = tenant.index;
+        size++;
+        return slot;
+    }
+
+    // guarded by the write lock
+    private int appendName(final byte[] name) {
+        if (namesUsed + name.length > names.length) {
+            if (namesGarbage * 2L > namesUsed) {
+                compactNames(names.length);
+            }
+            if (namesUsed + name.length > names.length) {
+                compactNames(Math.max(names.length << 1, namesUsed + name.length));
+            }
+        }
+        final int offset = namesUsed;
+        System.arraycopy(name, 0, names, offset, name.length);
+        namesUsed += name.length;
+        return offset;
+    }
+
+    // guarded by the write lock, copies the names of the used slots only
+    private void compactNames(final int capacity) {
+        final byte[] compacted = new byte[capacity];
+        int used = 0;
+        for (int slot = 0; slot < usedSlots; slot++) {
+            if (tenantOf[slot] >= 0) {
+                System.arraycopy(names, nameOffsets[slot], compacted, used, nameLengths[slot]);
+                nameOffsets[slot] = used;
+                used += nameLengths[slot];
+            }
+        }
+        names = compacted;
+        namesUsed = used;
+        namesGarbage = 0;
+    }
+
+    // guarded by the write lock
+    private void free(final int slot) {
+        unrange(slot);
+        pinnedSlots.clear(slot);
+        if (devices[slot] != null) {
+            materialized--;
+        }
+        // the name is dropped when the names are compacted
+        namesGarbage += nameLengths[slot];
+        tenantOf[slot] = -1;
+        devices[slot] = null;
+        size--;
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount << 1);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    private void grow(final int capacity) {
+        nameOffsets = Arrays.copyOf(nameOffsets, capacity);
+        nameLengths = Arrays.copyOf(nameLengths, capacity);
+        hashes = Arrays.copyOf(hashes, capacity);
+        tenantOf = Arrays.copyOf(tenantOf, capacity);
+        protocols = Arrays.copyOf(protocols, capacity);
+        pollDelays = Arrays.copyOf(pollDelays, capacity);
+        statuses = Arrays.copyOf(statuses, capacity);
+        devices = Arrays.copyOf(devices, capacity);
+    }
+
+    private static int spread(final int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    // guarded by the lock
+    private int find(final Tenant tenant, final String id) {
+        if (tenant.cleared) {
+            // looked up before the store has been cleared
+            return -1;
+        }
+        final int hash = id.hashCode();
+        // ASCII IDs are compared without encoding them
+        final byte[] name = isAscii(id) ? null : id.getBytes(StandardCharsets.UTF_8);
+        final int[] table = tenant.table;
+        final int mask = table.length - 1;
+        for (int i = spread(hash) & mask;; i = (i + 1) & mask) {
+            final int entry = table[i];
+            if (entry == 0) {
+                return -1;
+            }
+            if (hashes[entry - 1] == hash && hasName(entry - 1, id, name)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    private static boolean isAscii(final String id) {
+        for (int i = 0; i < id.length(); i++) {
+            if (id.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // guarded by the lock, the name is the encoded ID unless it is ASCII
+    private boolean hasName(final int slot, final String id, final byte[] name) {
+        final int offset = nameOffsets[slot];
+        final int length = nameLengths[slot];
+        if (name != null) {
+            return Arrays.equals(names, offset, offset + length, name, 0, name.length);
+        }
+        if (length != id.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (names[offset + i] != (byte) id.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // guarded by the write lock, the ID must not be in the table yet
+    private void insert(final Tenant tenant, final int slot) {
+        if ((tenant.size + 1) * 2 > tenant.table.length) {
+            final int[] previous = tenant.table;
+            tenant.table = new int[previous.length << 1];
+            for (final int entry : previous) {
+                if (entry != 0) {
+                    place(tenant.table, entry - 1);
+                }
+            }
+        }
+        place(tenant.table, slot);
+        tenant.size++;
+    }
+
+    private void place(final int[] table, final int slot) {
+        final int mask = table.length - 1;
+        int i = spread(hashes[slot]) & mask;
+        while (table[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        // 0 marks an empty entry
+        table[i] = slot + 1;
+    }
+
+    // guarded by the write lock, before the slot is freed
+    private void delete(final Tenant tenant, final int slot) {
+        final int[] table = tenant.table;
+        final int mask = table.length - 1;
+        int i = spread(hashes[slot]) & mask;
+        while (table[i] != slot + 1) {
+            i = (i + 1) & mask;
+        }
+        // shift the following entries back instead of leaving a tombstone
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (table[j] == 0) {
+                break;
+            }
+            final int home = spread(hashes[table[j] - 1]) & mask;
+            final boolean staysBehindGap = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+            if (!staysBehindGap) {
+                table[i] = table[j];
+                i = j;
+            }
+        }
+        table[i] = 0;
+        tenant.size--;
+    }
+
+    /**
+     * Receives the devices of the store.
+     */
+    interface Exporter {
+
+        /**
+         * @param slot
+         *            the slot of the device
+         * @param tenant
+         *            the tenant of the device
+         * @param names
+         *            the table of the UTF-8 encoded IDs
+         * @param idOffset
+         *            the offset of the ID in the table
+         * @param idLength
+         *            the length of the ID in the table
+         * @param protocol
+         *            the protocol of the device
+         * @param pollDelaySec
+         *            the poll delay of the device
+         * @param device
+         *            the object of the device or <code>null</code> if it is
+         *            kept without an object
+         */
+        void device(int slot, String tenant, byte[] names, int idOffset, int idLength, Protocol protocol,
+                int pollDelaySec, AbstractSimulatedDevice device);
+
+        /**
+         * @param range
+         *            the range
+         * @param removed
+         *            the removed devices of the range
+         */
+        void range(DeviceRange range, long[] removed);
+    }
+
+    /**
+     * Receives the devices of a scan of the store.
+     */
+    interface Scanner {
+
+        /**
+         * @param tenant
+         *            the tenant of the device
+         * @param names
+         *            the table of the UTF-8 encoded IDs
+         * @param idOffset
+         *            the offset of the ID in the table
+         * @param idLength
+         *            the length of the ID in the table
+         * @param protocol
+         *            the protocol of the device
+         * @param pollDelaySec
+         *            the poll delay of the device
+         * @param status
+         *            the status of the latest update of the device or
+         *            <code>null</code> if it has none
+         * @param pinned
+         *            <code>true</code> if an update of the device is in
+         *            progress
+         * @param ranged
+         *            <code>true</code> if the device is a pinned device of a
+         *            range
+         * @return <code>false</code> to stop the scan after the device
+         */
+        boolean device(String tenant, byte[] names, int idOffset, int idLength, Protocol protocol, int pollDelaySec,
+                ResponseStatus status, boolean pinned, boolean ranged);
+
+        /**
+         * @param range
+         *            a range of the scanned tenants
+         * @return <code>true</code> to scan the devices of the range which are
+         *         not pinned
+         */
+        boolean range(DeviceRange range);
+
+        /**
+         * @param range
+         *            the range of the device
+         * @param index
+         *            the index of the device in the range, the device is not
+         *            pinned
+         * @return <code>false</code> to stop the scan after the device
+         */
+        boolean rangeDevice(DeviceRange range, int index);
+    }
+
+    /**
+     * The devices removed by {@link DeviceStore#removeAll(DeviceSelector, boolean)}.
+     */
+    public static final class Removal {
+        private final String tenant;
+        private final List<String> ids = new ArrayList<>();
+        private final List<AbstractSimulatedDevice> objects = new ArrayList<>();
+        private final List<DeviceRange> ranges = new ArrayList<>();
+        private final List<BitSet> rangeIndices = new ArrayList<>();
+        private long count;
+
+        private Removal(final String tenant) {
+            this.tenant = tenant;
+        }
+
+        /**
+         * @return the tenant of the devices as it has been added first
+         */
+        public String getTenant() {
+            return tenant;
+        }
+
+        /**
+         * @return the number of removed devices
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return the objects the store has kept of the removed devices
+         */
+        public List<AbstractSimulatedDevice> getObjects() {
+            return objects;
+        }
+
+        /**
+         * @return the IDs of the removed devices if they have been collected,
+         *         the IDs of the devices of ranges are created while iterating
+         */
+        public Iterator<String> ids() {
+            return new Iterator<>() {
+                private final Iterator<String> single = ids.iterator();
+                private int range;
+                private int index = nextIndex(0, 0);
+
+                @Override
+                public boolean hasNext() {
+                    return single.hasNext() || range < ranges.size();
+                }
+
+                @Override
+                public String next() {
+                    if (single.hasNext()) {
+                        return single.next();
+                    }
+                    if (range >= ranges.size()) {
+                        throw new NoSuchElementException();
+                    }
+                    final String id = ranges.get(range).idOf(index);
+                    index = nextIndex(range, index + 1);
+                    return id;
+                }
+
+                // moves on to the next range when the indices of the range
+                // are done
+                private int nextIndex(final int from, final int fromIndex) {
+                    range = from;
+                    int next = fromIndex;
+                    while (range < ranges.size() && (next = rangeIndices.get(range).nextSetBit(next)) < 0) {
+                        range++;
+                        next = 0;
+                    }
+                    return next;
+                }
+            };
+        }
+    }
+
+    /**
+     * A tenant with the slots of its devices by ID.
+     */
+    private static final class Tenant extends TenantIndex.Tenant {
+        private int[] table = new int[INITIAL_TABLE_CAPACITY];
+        private int size;
+        // slots of pinned devices of the ranges
+        private int ranged;
+        // newest first
+        private DeviceRange[] ranges = NO_RANGES;
+
+        private Tenant(final String name, final int index) {
+            super(name, index);
+        }
+    }
+
+    /**
+     * Live view of the devices of the store or of one tenant, the device
+     * objects are created while iterating. The single devices come first,
+     * followed by the devices of the ranges.
+     */
+    private final class Devices extends AbstractCollection<AbstractSimulatedDevice> {
+
+        private final Tenant tenant;
+
+        private Devices(final Tenant tenant) {
+            this.tenant = tenant;
+        }
+
+        @Override
+        public Iterator<AbstractSimulatedDevice> iterator() {
+            return new Iterator<>() {
+                // the ranges when the iteration started
+                private List<DeviceRange> iterated;
+                private int slot;
+                private int range;
+                private int index;
+                private AbstractSimulatedDevice next = advance();
+
+                @Override
+                public boolean hasNext() {
+                    return next != null;
+                }
+
+                @Override
+                public AbstractSimulatedDevice next() {
+                    if (next == null) {
+                        throw new NoSuchElementException();
+                    }
+                    final AbstractSimulatedDevice current = next;
+                    next = advance();
+                    return current;
+                }
+
+                private AbstractSimulatedDevice advance() {
+                    final Lock readLock = lock.readLock();
+                    readLock.lock();
+                    try {
+                        if (iterated == null) {
+                            iterated = tenant != null ? List.of(tenant.ranges) : ranges;
+                        }
+                        for (; slot < usedSlots; slot++) {
+                            if (tenantOf[slot] >= 0 && !rangedSlots.get(slot)
+                                    && (tenant == null || tenants.get(tenantOf[slot]) == tenant)) {
+                                return deviceAt(slot++);
+                            }
+                        }
+                        for (; range < iterated.size(); range++, index = 0) {
+                            final DeviceRange current = iterated.get(range);
+                            for (; index < current.getAmount() && !current.isRetired(); index++) {
+                                if (!current.isRemoved(index)) {
+                                    return rangeDeviceAt(current, index++);
+                                }
+                            }
+                        }
+                        return null;
+                    } finally {
+                        readLock.unlock();
+                    }
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return (int) Math.min(Integer.MAX_VALUE, tenant != null ? sizeOf(tenant) : DeviceStore.this.size());
+        }
+    }
+}
@@ -9,57 +9,222 @@
  */
 package org.eclipse.hawkbit.simulator;
 
-import java.util.Collection;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+import jakarta.annotation.PreDestroy;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+
 /**
- * Poll time trigger which executes the {@link DDISimulatedDevice#poll()} every
- * second.
+ * Poll time trigger which executes the {@link AbstractSimulatedDevice#poll()}
+ * of the devices which are due. The devices are kept in a
+ * {@link PollTimingWheel} with a resolution of one second, so a tick only
+ * touches the devices which have to poll in that second. The devices of a
+ * {@link DeviceRange} are not kept in the wheel, each tick polls the devices
+ * of the ranges whose phase is due. The devices are polled by their slot or
+ * their index in the range, so the devices kept without an object are polled
+ * without creating one.
  */
 @Component
 public class NextPollTimeController {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(NextPollTimeController.class);
 
-    private static final ScheduledExecutorService executorService = Executors.newScheduledThreadPool(1);
-    private static final ExecutorService pollService = Executors.newFixedThreadPool(1);
+    private static final long TICK_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final ScheduledExecutorService executorService = Executors.newScheduledThreadPool(1);
+
+    private final DeviceStore deviceStore;
+    private final PollExecutor pollExecutor;
+    private final PollJitter pollJitter;
+    private final PollTimingWheel wheel;
+    // devices by slot whose poll is in progress
+    private final BusyFlags busySlots = new BusyFlags(Integer.MAX_VALUE);
+    private final IntConsumer slotPoll;
+    private final Counter dueCounter;
+    private final long startNanos = System.nanoTime();
 
-    @Autowired
-    private DeviceSimulatorRepository repository;
+    private volatile long lagNanos;
 
     /**
      * Constructor which schedules the poll trigger runnable every second.
+     *
+     * @param simulationProperties
+     *            for the timing wheel configuration
+     * @param deviceStore
+     *            which holds the devices by slot
+     * @param pollExecutor
+     *            which executes the polls of the due devices
+     * @param pollJitter
+     *            which jitters the delay until the next poll
+     * @param meterRegistry
+     *            to expose the scheduler metrics
+     */
+    public NextPollTimeController(final SimulationProperties simulationProperties, final DeviceStore deviceStore,
+            final PollExecutor pollExecutor, final PollJitter pollJitter, final MeterRegistry meterRegistry) {
+        this.deviceStore = deviceStore;
+        this.pollExecutor = pollExecutor;
+        this.pollJitter = pollJitter;
+        wheel = new PollTimingWheel(simulationProperties.getPoll().getWheelSize());
+        slotPoll = deviceStore::poll;
+        // the schedule and the busy devices are kept by slot of the store
+        deviceStore.addIdleBytes(wheel::getBytes);
+        deviceStore.addIdleBytes(busySlots::getBytes);
+
+        Gauge.builder("simulator.poll.scheduled", wheel, PollTimingWheel::size)
+                .description("Number of devices with a scheduled poll").register(meterRegistry);
+        TimeGauge.builder("simulator.poll.lag", this, TimeUnit.NANOSECONDS, controller -> controller.lagNanos)
+                .description("Delay of the last poll tick compared to its planned time").register(meterRegistry);
+        dueCounter = Counter.builder("simulator.poll.due").description("Number of device polls which became due")
+                .register(meterRegistry);
+
+        executorService.scheduleAtFixedRate(new NextPollUpdaterRunnable(), 1, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Schedules the next poll of a device.
+     *
+     * @param slot
+     *            the slot of the device in the {@link DeviceStore}
+     * @param delaySec
+     *            seconds from now until the next poll
+     */
+    public void schedule(final int slot, final int delaySec) {
+        wheel.schedule(slot, delaySec);
+    }
+
+    /**
+     * Starts the polls of a range of devices with the next tick.
+     *
+     * @param range
+     *            the range to schedule
      */
-    public NextPollTimeController() {
-        executorService.scheduleWithFixedDelay(new NextPollUpdaterRunnable(), 1, 1, TimeUnit.SECONDS);
+    public void schedule(final DeviceRange range) {
+        schedule(range, 0);
+    }
+
+    /**
+     * Continues the polls of a range of devices which have been started
+     * before, the devices keep their phase.
+     *
+     * @param range
+     *            the range to schedule
+     * @param elapsedSec
+     *            seconds since the polls of the range have been started
+     */
+    public void schedule(final DeviceRange range, final long elapsedSec) {
+        range.start(wheel.getCurrentTick() - elapsedSec);
+    }
+
+    /**
+     * Removes a device from the poll schedule.
+     *
+     * @param slot
+     *            the slot of the device to cancel
+     */
+    public void cancel(final int slot) {
+        wheel.cancel(slot);
+    }
+
+    /**
+     * Removes devices from the poll schedule at once.
+     *
+     * @param slots
+     *            the slots of the devices to cancel
+     */
+    public void cancel(final int[] slots) {
+        wheel.cancel(slots);
+    }
+
+    /**
+     * Removes all devices from the poll schedule.
+     */
+    public void cancelAll() {
+        wheel.clear();
+    }
+
+    /**
+     * @param slot
+     *            the slot of the device
+     * @return seconds until the next poll of the device or <code>-1</code> if
+     *         the device is not scheduled
+     */
+    public long getSecondsUntilNextPoll(final int slot) {
+        return wheel.getRemainingTicks(slot);
+    }
+
+    /**
+     * @return seconds until the next poll by slot, <code>-1</code> for the
+     *         slots which are not scheduled
+     */
+    public int[] getSecondsUntilNextPolls() {
+        return wheel.getRemainingTicks();
+    }
+
+    /**
+     * @return the current second of the poll schedule, see
+     *         {@link DeviceRange#getElapsedTicks(long)}
+     */
+    public long getCurrentSecond() {
+        return wheel.getCurrentTick();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executorService.shutdownNow();
+    }
+
+    private void poll(final int slot) {
+        final int pollDelaySec = deviceStore.getPollDelaySec(slot);
+        if (pollDelaySec < 0) {
+            // removed while it was due
+            return;
+        }
+        pollExecutor.submit(busySlots, slot, slotPoll);
+        wheel.schedule(slot, pollJitter.nextPollDelay(pollDelaySec));
+    }
+
+    private void pollRanges(final long tick) {
+        for (final DeviceRange range : deviceStore.getRanges()) {
+            final boolean firstPoll = range.isFirstPoll(tick);
+            final IntConsumer rangePoll = index -> deviceStore.poll(range, index);
+            range.forEachDue(tick, index -> {
+                if (!deviceStore.contains(range, index)) {
+                    // removed from the range
+                    return;
+                }
+                dueCounter.increment();
+                if (pollExecutor.submit(range.getPolling(), index, rangePoll) && firstPoll) {
+                    range.firstPolled(range.idOf(index));
+                }
+            });
+        }
     }
 
     private class NextPollUpdaterRunnable implements Runnable {
         @Override
         public void run() {
-            final Collection<AbstractSimulatedDevice> devices = repository.getAll();
-
-            devices.forEach(device -> {
-                int nextCounter = device.getNextPollCounterSec() - 1;
-                if (nextCounter < 0) {
-                    try {
-                        pollService.submit(() -> device.poll());
-                    } catch (final IllegalStateException e) {
-                        LOGGER.trace("Device could not be polled", e);
-                    }
-                    nextCounter = device.getPollDelaySec();
+            try {
+                // catch up if a previous tick took longer than a second
+                final long ticks = (System.nanoTime() - startNanos) / TICK_NANOS;
+                while (wheel.getCurrentTick() < ticks) {
+                    dueCounter.increment(wheel.advance(NextPollTimeController.this::poll));
+                    pollRanges(wheel.getCurrentTick());
                 }
-
-                device.setNextPollCounterSec(nextCounter);
-            });
+                lagNanos = Math.max(0, System.nanoTime() - startNanos - ticks * TICK_NANOS);
+            } catch (final RuntimeException e) {
+                LOGGER.error("Poll tick failed", e);
+            }
         }
     }
 }
@@ -0,0 +1,177 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import jakarta.annotation.PreDestroy;
+
+import org.eclipse.hawkbit.simulator.SimulationProperties.Poll;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Executes the polls of due devices. Polls are either run on a bounded pool of
+ * platform threads or on a virtual thread per poll. A poll is dropped (and the
+ * device simply polls again at its next interval) if the device is still busy
+ * with its previous poll, the in-flight limit is reached or the queue of the
+ * pool is full. A device is busy while its flag in the {@link BusyFlags} of
+ * its slot or of its range is set, so the devices kept without an object are
+ * detected as busy as well.
+ */
+@Component
+public class PollExecutor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PollExecutor.class);
+
+    private static final String DROPPED_METRIC = "simulator.poll.dropped";
+    private static final String REASON_TAG = "reason";
+
+    /**
+     * Execution mode of the device polls.
+     */
+    public enum Mode {
+        /**
+         * Bounded pool of platform threads with a bounded queue.
+         */
+        PLATFORM,
+        /**
+         * One virtual thread per poll. Falls back to the bounded pool of
+         * platform threads if the JVM does not support virtual threads.
+         */
+        VIRTUAL
+    }
+
+    private final ExecutorService executor;
+    private final Semaphore inFlight;
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final Counter droppedBusy;
+    private final Counter droppedLimit;
+    private final Counter droppedQueueFull;
+
+    /**
+     * @param simulationProperties
+     *            for the executor configuration
+     * @param meterRegistry
+     *            to expose the executor metrics
+     */
+    public PollExecutor(final SimulationProperties simulationProperties, final MeterRegistry meterRegistry) {
+        final Poll poll = simulationProperties.getPoll();
+        executor = poll.getMode() == Mode.VIRTUAL ? createVirtualExecutor(poll) : createPlatformExecutor(poll);
+        inFlight = poll.getMaxInFlight() > 0 ? new Semaphore(poll.getMaxInFlight()) : null;
+
+        Gauge.builder("simulator.poll.queued", queued, AtomicInteger::get)
+                .description("Number of polls waiting for execution").register(meterRegistry);
+        Gauge.builder("simulator.poll.running", running, AtomicInteger::get)
+                .description("Number of polls currently executed").register(meterRegistry);
+        droppedBusy = Counter.builder(DROPPED_METRIC).tag(REASON_TAG, "busy").register(meterRegistry);
+        droppedLimit = Counter.builder(DROPPED_METRIC).tag(REASON_TAG, "limit").register(meterRegistry);
+        droppedQueueFull = Counter.builder(DROPPED_METRIC).tag(REASON_TAG, "queue-full").register(meterRegistry);
+
+        LOGGER.info("Polls are executed in {} mode (max in flight: {})", poll.getMode(), poll.getMaxInFlight());
+    }
+
+    /**
+     * Submits the poll of a device.
+     *
+     * @param busy
+     *            the flags of the devices whose poll is in progress
+     * @param index
+     *            the index of the device in the flags
+     * @param poll
+     *            polls the device with the given index
+     * @return <code>true</code> if the poll has been accepted,
+     *         <code>false</code> if it has been dropped
+     */
+    boolean submit(final BusyFlags busy, final int index, final IntConsumer poll) {
+        if (!busy.set(index)) {
+            droppedBusy.increment();
+            return false;
+        }
+
+        if (inFlight != null && !inFlight.tryAcquire()) {
+            busy.clear(index);
+            droppedLimit.increment();
+            return false;
+        }
+
+        queued.incrementAndGet();
+        try {
+            executor.execute(() -> poll(busy, index, poll));
+        } catch (final RejectedExecutionException e) {
+            LOGGER.trace("Device could not be polled", e);
+            queued.decrementAndGet();
+            release(busy, index);
+            droppedQueueFull.increment();
+            return false;
+        }
+        return true;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void poll(final BusyFlags busy, final int index, final IntConsumer poll) {
+        queued.decrementAndGet();
+        running.incrementAndGet();
+        try {
+            poll.accept(index);
+        } catch (final RuntimeException e) {
+            LOGGER.warn("Poll of a device failed", e);
+        } finally {
+            // released first, so a device is free again once it is not
+            // counted as running anymore
+            release(busy, index);
+            running.decrementAndGet();
+        }
+    }
+
+    private void release(final BusyFlags busy, final int index) {
+        busy.clear(index);
+        if (inFlight != null) {
+            inFlight.release();
+        }
+    }
+
+    private static ExecutorService createPlatformExecutor(final Poll poll) {
+        return new ThreadPoolExecutor(poll.getThreads(), poll.getThreads(), 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(poll.getQueueCapacity()), new CustomizableThreadFactory("poll-"));
+    }
+
+    private static ExecutorService createVirtualExecutor(final Poll poll) {
+        try {
+            // looked up reflectively to run on JVMs without virtual threads
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (final ReflectiveOperationException e) {
+            LOGGER.warn("Virtual threads are not supported by this JVM, using the bounded pool of {} platform threads "
+                    + "instead.", poll.getThreads());
+            LOGGER.trace("Virtual thread executor could not be created", e);
+            return createPlatformExecutor(poll);
+        }
+    }
+}
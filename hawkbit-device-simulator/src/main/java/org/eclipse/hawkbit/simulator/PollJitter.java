@@ -0,0 +1,145 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.eclipse.hawkbit.simulator.SimulationProperties.Poll;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Spreads the load of the simulated devices over time. Started devices are
+ * released at the configured start rate, their first poll can be spread
+ * across the poll interval and every following poll delay is jittered, so the
+ * devices do not poll the update server in lockstep.
+ */
+@Component
+// Exception for squid:S2245 : not security relevant random number generation
+@SuppressWarnings("squid:S2245")
+public class PollJitter {
+
+    /**
+     * Distribution of the poll delay jitter.
+     */
+    public enum Distribution {
+        /**
+         * Every poll uses exactly the poll delay.
+         */
+        NONE,
+        /**
+         * Uniformly distributed within the poll delay +/- the jitter factor.
+         */
+        UNIFORM,
+        /**
+         * Normally distributed around the poll delay with the jitter factor as
+         * relative standard deviation.
+         */
+        GAUSSIAN
+    }
+
+    private final Poll pollProperties;
+    private final LongSupplier nanoClock;
+
+    // start slot of the next device, guarded by this
+    private long nextStartNanos;
+
+    /**
+     * @param simulationProperties
+     *            for the jitter configuration
+     */
+    @Autowired
+    public PollJitter(final SimulationProperties simulationProperties) {
+        this(simulationProperties, System::nanoTime);
+    }
+
+    PollJitter(final SimulationProperties simulationProperties, final LongSupplier nanoClock) {
+        this.pollProperties = simulationProperties.getPoll();
+        this.nanoClock = nanoClock;
+        this.nextStartNanos = nanoClock.getAsLong();
+    }
+
+    /**
+     * Reserves the start slot of a device. Slots are handed out at
+     * {@link Poll#getStartRate()} devices per second across all simulations,
+     * so concurrent starts share the rate.
+     *
+     * @return milliseconds from now until the device should start
+     */
+    public long nextStartOffsetMillis() {
+        final int startRate = pollProperties.getStartRate();
+        if (startRate <= 0) {
+            return 0;
+        }
+
+        final long now = nanoClock.getAsLong();
+        final long slot;
+        synchronized (this) {
+            slot = Math.max(now, nextStartNanos);
+            nextStartNanos = slot + TimeUnit.SECONDS.toNanos(1) / startRate;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(slot - now);
+    }
+
+    /**
+     * Calculates the delay of the first poll of a device. With
+     * {@link Poll#isPhaseSpread()} the first poll is placed randomly within
+     * the poll interval after the start of the device.
+     *
+     * @param startOffsetMillis
+     *            the start offset of the device
+     * @param pollDelaySec
+     *            the poll delay of the device
+     * @param pollImmediately
+     *            <code>true</code> if the device polls right at its start,
+     *            <code>false</code> if it waits one poll delay
+     * @return seconds from now until the first poll
+     */
+    public int firstPollDelay(final long startOffsetMillis, final int pollDelaySec, final boolean pollImmediately) {
+        final int startOffsetSec = (int) TimeUnit.MILLISECONDS.toSeconds(startOffsetMillis + 999);
+        if (pollProperties.isPhaseSpread() && pollDelaySec > 0) {
+            return startOffsetSec + ThreadLocalRandom.current().nextInt(pollDelaySec);
+        }
+        return pollImmediately ? startOffsetSec : startOffsetSec + pollDelaySec;
+    }
+
+    /**
+     * Applies the configured jitter to a poll delay.
+     *
+     * @param pollDelaySec
+     *            the poll delay of the device
+     * @return the jittered poll delay in seconds, at least one second
+     */
+    public int nextPollDelay(final int pollDelaySec) {
+        final double factor = pollProperties.getJitterFactor();
+        if (pollDelaySec <= 0 || factor <= 0) {
+            return pollDelaySec;
+        }
+
+        final double deviation;
+        switch (pollProperties.getJitter()) {
+        case UNIFORM:
+            deviation = ThreadLocalRandom.current().nextDouble(-1.0, 1.0);
+            break;
+        case GAUSSIAN:
+            // cut at three standard deviations to keep the delay positive for
+            // small factors and bounded for all
+            deviation = Math.max(-3.0, Math.min(3.0, ThreadLocalRandom.current().nextGaussian()));
+            break;
+        case NONE:
+        default:
+            return pollDelaySec;
+        }
+
+        return (int) Math.max(1, Math.round(pollDelaySec * (1.0 + factor * deviation)));
+    }
+}
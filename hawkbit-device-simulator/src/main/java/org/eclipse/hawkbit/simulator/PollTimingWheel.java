@@ -0,0 +1,267 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Hashed timing wheel which keeps the next poll deadline of the simulated
+ * devices. Every device is stored by its slot in the {@link DeviceStore} in
+ * the bucket of its deadline tick, so an {@link #advance(IntConsumer)} only
+ * touches the devices which are due in that tick (or, if the poll delay is
+ * longer than the wheel, a later revolution).
+ * <p>
+ * Cancelled and rescheduled entries are not searched in their buckets but
+ * invalidated by a per slot generation and dropped lazily when their bucket
+ * is visited. The deadlines and generations are kept in arrays by slot, so a
+ * scheduled device costs no object.
+ */
+final class PollTimingWheel {
+
+    private static final int INITIAL_BUCKET_CAPACITY = 16;
+    private static final int INITIAL_SLOT_CAPACITY = 1024;
+
+    private final Bucket[] buckets;
+    private final int mask;
+
+    // by slot, -1 if the slot is not scheduled
+    private long[] deadlines = new long[0];
+    private long[] generations = new long[0];
+
+    private long currentTick;
+    private int scheduled;
+
+    /**
+     * @param ticksPerWheel
+     *            number of buckets, rounded up to the next power of two
+     */
+    PollTimingWheel(final int ticksPerWheel) {
+        if (ticksPerWheel <= 0) {
+            throw new IllegalArgumentException("ticksPerWheel must be greater than 0: " + ticksPerWheel);
+        }
+        final int size = Integer.highestOneBit(ticksPerWheel - 1) << 1;
+        buckets = new Bucket[Math.max(size, 1)];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new Bucket();
+        }
+        mask = buckets.length - 1;
+    }
+
+    /**
+     * Schedules (or reschedules) the next poll of a device.
+     *
+     * @param slot
+     *            the slot of the device to schedule
+     * @param delayTicks
+     *            number of ticks from now, values below 1 are due on the next
+     *            tick
+     */
+    synchronized void schedule(final int slot, final int delayTicks) {
+        ensureCapacity(slot);
+        final long deadline = currentTick + Math.max(1, delayTicks);
+        if (deadlines[slot] < 0) {
+            scheduled++;
+        }
+        final long generation = ++generations[slot];
+        deadlines[slot] = deadline;
+        buckets[(int) (deadline & mask)].add(slot, generation);
+    }
+
+    /**
+     * Removes a device from the schedule.
+     *
+     * @param slot
+     *            the slot of the device to cancel
+     * @return <code>true</code> if the device was scheduled
+     */
+    synchronized boolean cancel(final int slot) {
+        if (slot >= deadlines.length || deadlines[slot] < 0) {
+            return false;
+        }
+        scheduled--;
+        unschedule(slot);
+        return true;
+    }
+
+    /**
+     * Removes devices from the schedule at once.
+     *
+     * @param slots
+     *            the slots of the devices to cancel
+     * @return the number of devices which were scheduled
+     */
+    synchronized int cancel(final int[] slots) {
+        int cancelled = 0;
+        for (final int slot : slots) {
+            if (cancel(slot)) {
+                cancelled++;
+            }
+        }
+        return cancelled;
+    }
+
+    /**
+     * Moves the wheel one tick ahead and hands all devices which are due to
+     * the given consumer. The due devices are unscheduled and collected while
+     * the wheel is locked, the consumer is called after the wheel has been
+     * released, so it neither blocks the callers of the wheel nor runs under
+     * its lock. It may {@link #schedule(int, int)} the devices again.
+     *
+     * @param dueConsumer
+     *            called with the slot of every device which is due
+     * @return the number of due devices
+     */
+    int advance(final IntConsumer dueConsumer) {
+        final int[] slots;
+        int due = 0;
+        synchronized (this) {
+            final long tick = ++currentTick;
+            final Bucket bucket = buckets[(int) (tick & mask)];
+
+            slots = bucket.slots;
+            final long[] slotGenerations = bucket.generations;
+            final int size = bucket.size;
+            bucket.reset();
+
+            for (int i = 0; i < size; i++) {
+                final int slot = slots[i];
+                if (generations[slot] != slotGenerations[i]) {
+                    // cancelled or rescheduled in the meantime
+                    continue;
+                }
+                if (deadlines[slot] > tick) {
+                    // due in one of the next revolutions
+                    bucket.add(slot, slotGenerations[i]);
+                    continue;
+                }
+                scheduled--;
+                unschedule(slot);
+                // the detached slots of the bucket keep the due slots
+                slots[due++] = slot;
+            }
+        }
+        for (int i = 0; i < due; i++) {
+            dueConsumer.accept(slots[i]);
+        }
+        return due;
+    }
+
+    /**
+     * Removes all devices from the schedule.
+     */
+    synchronized void clear() {
+        for (final Bucket bucket : buckets) {
+            for (int i = 0; i < bucket.size; i++) {
+                unschedule(bucket.slots[i]);
+            }
+            bucket.reset();
+        }
+        scheduled = 0;
+    }
+
+    /**
+     * @return number of currently scheduled devices
+     */
+    synchronized int size() {
+        return scheduled;
+    }
+
+    /**
+     * @return the number of ticks the wheel has been advanced
+     */
+    synchronized long getCurrentTick() {
+        return currentTick;
+    }
+
+    /**
+     * @param slot
+     *            the slot of the device
+     * @return the number of ticks until the device is due or <code>-1</code>
+     *         if it is not scheduled
+     */
+    synchronized long getRemainingTicks(final int slot) {
+        if (slot >= deadlines.length || deadlines[slot] < 0) {
+            return -1;
+        }
+        return Math.max(0, deadlines[slot] - currentTick);
+    }
+
+    /**
+     * @return the number of ticks until each slot is due by slot,
+     *         <code>-1</code> for the slots which are not scheduled
+     */
+    synchronized int[] getRemainingTicks() {
+        final int[] remaining = new int[deadlines.length];
+        for (int slot = 0; slot < deadlines.length; slot++) {
+            remaining[slot] = deadlines[slot] < 0 ? -1
+                    : (int) Math.min(Integer.MAX_VALUE, Math.max(0, deadlines[slot] - currentTick));
+        }
+        return remaining;
+    }
+
+    /**
+     * @return the bytes of the arrays which hold the schedule, by slot and in
+     *         the buckets
+     */
+    synchronized long getBytes() {
+        long bytes = (long) deadlines.length * (Long.BYTES + Long.BYTES);
+        for (final Bucket bucket : buckets) {
+            bytes += (long) bucket.slots.length * (Integer.BYTES + Long.BYTES);
+        }
+        return bytes;
+    }
+
+    private void unschedule(final int slot) {
+        // the new generation invalidates the entries in the buckets
+        deadlines[slot] = -1;
+        generations[slot]++;
+    }
+
+    private void ensureCapacity(final int slot) {
+        if (slot < deadlines.length) {
+            return;
+        }
+        int capacity = Math.max(INITIAL_SLOT_CAPACITY, deadlines.length);
+        while (capacity <= slot) {
+            capacity <<= 1;
+        }
+        final int previous = deadlines.length;
+        deadlines = Arrays.copyOf(deadlines, capacity);
+        generations = Arrays.copyOf(generations, capacity);
+        Arrays.fill(deadlines, previous, capacity, -1);
+    }
+
+    private static final class Bucket {
+        private int[] slots = new int[0];
+        private long[] generations = new long[0];
+        private int size;
+
+        private void add(final int slot, final long generation) {
+            if (size == slots.length) {
+                final int capacity = Math.max(INITIAL_BUCKET_CAPACITY, slots.length << 1);
+                slots = Arrays.copyOf(slots, capacity);
+                generations = Arrays.copyOf(generations, capacity);
+            }
+            slots[size] = slot;
+            generations[size] = generation;
+            size++;
+        }
+
+        private void reset() {
+            // the arrays are handed to the caller of advance, so start over
+            // with fresh ones that fit the previous revolution
+            final int capacity = size <= INITIAL_BUCKET_CAPACITY ? size : Integer.highestOneBit(size);
+            slots = new int[capacity];
+            generations = new long[capacity];
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,301 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import org.eclipse.hawkbit.simulator.AbstractSimulatedDevice.Protocol;
+
+/**
+ * A job which creates the devices <code>name0</code> to
+ * <code>name(amount - 1)</code> in the background. The devices are created by
+ * workers which claim chunks of the IDs, so any number of workers share the
+ * job. A target rate paces the creation: every device takes the next turn of
+ * the pace before it is created, turn <code>n</code> is not due before
+ * <code>n / rate</code> seconds after the pace has been set, so the workers
+ * together keep the rate without sharing a lock. The turns are taken in the
+ * order of creation rather than by the index of the device, so a changed rate
+ * holds for the devices the workers have claimed already.
+ */
+public final class ProvisioningJob {
+
+    /**
+     * The state of a job.
+     */
+    public enum State {
+        /**
+         * Devices are being created.
+         */
+        RUNNING,
+
+        /**
+         * All devices have been created or have failed.
+         */
+        FINISHED,
+
+        /**
+         * The job has been cancelled before all devices have been created.
+         */
+        CANCELLED
+    }
+
+    private static final int CHUNK_SIZE = 1_000;
+    private static final int MAX_ERRORS = 10;
+    // longest wait before a paced worker checks for cancellation
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final long id;
+    private final String tenant;
+    private final String name;
+    private final Protocol protocol;
+    private final int amount;
+    private final Consumer<String> deviceCreator;
+    private final LongSupplier nanoClock;
+    private final long startNanos;
+
+    private final AtomicLong nextIndex = new AtomicLong();
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    // the most recent errors, guarded by itself
+    private final Deque<String> errors = new ArrayDeque<>(MAX_ERRORS);
+
+    private volatile Pace pace;
+    private volatile boolean cancelled;
+    private volatile State state = State.RUNNING;
+    private volatile long endNanos;
+
+    /**
+     * @param id
+     *            the ID of the job
+     * @param tenant
+     *            the tenant of the devices
+     * @param name
+     *            the name prefix of the IDs of the devices
+     * @param protocol
+     *            the protocol of the devices
+     * @param amount
+     *            the number of devices
+     * @param targetRate
+     *            devices to create per second, <code>0</code> for as fast as
+     *            possible
+     * @param deviceCreator
+     *            creates and adds a device by its ID, fails with an exception
+     * @param nanoClock
+     *            the clock to pace the job
+     */
+    ProvisioningJob(final long id, final String tenant, final String name, final Protocol protocol, final int amount,
+            final int targetRate, final Consumer<String> deviceCreator, final LongSupplier nanoClock) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Amount must not be negative");
+        }
+        if (targetRate < 0) {
+            throw new IllegalArgumentException("Target rate must not be negative");
+        }
+        this.id = id;
+        this.tenant = tenant;
+        this.name = name;
+        this.protocol = protocol;
+        this.amount = amount;
+        this.deviceCreator = deviceCreator;
+        this.nanoClock = nanoClock;
+        startNanos = nanoClock.getAsLong();
+        pace = new Pace(targetRate, startNanos);
+    }
+
+    /**
+     * Registers a worker of the job. The job is finished when all registered
+     * workers have completed, so all workers have to be registered before
+     * the first one runs.
+     *
+     * @return the worker to run
+     */
+    Runnable worker() {
+        activeWorkers.incrementAndGet();
+        return this::work;
+    }
+
+    /**
+     * Stops the job, the workers stop after the devices they are creating.
+     */
+    void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Changes the target rate of the remaining devices.
+     *
+     * @param targetRate
+     *            devices to create per second, <code>0</code> for as fast as
+     *            possible
+     */
+    void setTargetRate(final int targetRate) {
+        if (targetRate < 0) {
+            throw new IllegalArgumentException("Target rate must not be negative");
+        }
+        pace = new Pace(targetRate, nanoClock.getAsLong());
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getTenant() {
+        return tenant;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Protocol getProtocol() {
+        return protocol;
+    }
+
+    public int getAmount() {
+        return amount;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public long getCreated() {
+        return created.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public int getTargetRate() {
+        return pace.rate;
+    }
+
+    /**
+     * @return milliseconds since the start of the job until now or until it
+     *         has ended
+     */
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos());
+    }
+
+    /**
+     * @return devices created per second since the start of the job
+     */
+    public double getRate() {
+        final long nanos = elapsedNanos();
+        return nanos > 0 ? getCreated() * (double) TimeUnit.SECONDS.toNanos(1) / nanos : 0;
+    }
+
+    /**
+     * @return the most recent errors, oldest first
+     */
+    public List<String> getErrors() {
+        synchronized (errors) {
+            return new ArrayList<>(errors);
+        }
+    }
+
+    private long elapsedNanos() {
+        return (state == State.RUNNING ? nanoClock.getAsLong() : endNanos) - startNanos;
+    }
+
+    private void work() {
+        try {
+            for (long from = nextIndex.getAndAdd(CHUNK_SIZE); from < amount && !isStopped(); from = nextIndex
+                    .getAndAdd(CHUNK_SIZE)) {
+                final long to = Math.min(amount, from + CHUNK_SIZE);
+                for (long index = from; index < to && awaitTurn(); index++) {
+                    create(name + index);
+                }
+            }
+        } finally {
+            if (activeWorkers.decrementAndGet() == 0) {
+                endNanos = nanoClock.getAsLong();
+                state = getCreated() + getFailed() < amount ? State.CANCELLED : State.FINISHED;
+            }
+        }
+    }
+
+    private void create(final String deviceId) {
+        try {
+            deviceCreator.accept(deviceId);
+            created.increment();
+        } catch (final RuntimeException e) {
+            failed.increment();
+            synchronized (errors) {
+                if (errors.size() == MAX_ERRORS) {
+                    errors.removeFirst();
+                }
+                errors.addLast(deviceId + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // waits until the next device is due according to the target rate, false
+    // if the job has been stopped meanwhile
+    private boolean awaitTurn() {
+        Pace current = pace;
+        if (current.rate == 0) {
+            return !isStopped();
+        }
+        long dueNanos = current.nextDueNanos();
+        while (!isStopped()) {
+            if (pace != current) {
+                // the turn of a replaced pace is given up for one of the new
+                // pace
+                current = pace;
+                if (current.rate == 0) {
+                    return true;
+                }
+                dueNanos = current.nextDueNanos();
+            }
+            final long waitNanos = dueNanos - nanoClock.getAsLong();
+            if (waitNanos <= 0) {
+                return true;
+            }
+            LockSupport.parkNanos(Math.min(waitNanos, MAX_PARK_NANOS));
+        }
+        return false;
+    }
+
+    private boolean isStopped() {
+        return cancelled || Thread.currentThread().isInterrupted();
+    }
+
+    /**
+     * The target rate from a point in time on with the turns taken so far.
+     */
+    private static final class Pace {
+        private final int rate;
+        private final long startNanos;
+        private final AtomicLong turns = new AtomicLong();
+
+        private Pace(final int rate, final long startNanos) {
+            this.rate = rate;
+            this.startNanos = startNanos;
+        }
+
+        private long nextDueNanos() {
+            return startNanos + turns.getAndIncrement() * TimeUnit.SECONDS.toNanos(1) / rate;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jakarta.annotation.PreDestroy;
+
+import org.eclipse.hawkbit.simulator.AbstractSimulatedDevice.Protocol;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Runs {@link ProvisioningJob}s which create simulated devices in the
+ * background, so large simulations do not depend on a request. Every job has
+ * its own threads, so a slowly paced job does not hold back other jobs. The
+ * number of running jobs is limited, so the number of threads is bounded.
+ */
+@Service
+public class ProvisioningService {
+
+    private final DeviceSimulatorRepository repository;
+    private final SimulatedDeviceFactory deviceFactory;
+    private final int threads;
+    private final int maxJobs;
+    private final ExecutorService workers;
+
+    private final AtomicLong jobIds = new AtomicLong();
+    // by ID in order of submission, guarded by itself
+    private final Map<Long, ProvisioningJob> jobs = new LinkedHashMap<>();
+
+    private final Counter createdCounter;
+    private final Counter failedCounter;
+
+    /**
+     * @param simulationProperties
+     *            for the worker configuration
+     * @param repository
+     *            to add the created devices
+     * @param deviceFactory
+     *            to create the devices
+     * @param meterRegistry
+     *            to expose the provisioning metrics
+     */
+    public ProvisioningService(final SimulationProperties simulationProperties,
+            final DeviceSimulatorRepository repository, final SimulatedDeviceFactory deviceFactory,
+            final MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.deviceFactory = deviceFactory;
+        threads = Math.max(1, simulationProperties.getProvisioning().getThreads());
+        maxJobs = Math.max(1, simulationProperties.getProvisioning().getMaxJobs());
+        workers = Executors.newCachedThreadPool(new CustomizableThreadFactory("provisioning-"));
+
+        createdCounter = Counter.builder("simulator.provisioning.created")
+                .description("Devices created by provisioning jobs").register(meterRegistry);
+        failedCounter = Counter.builder("simulator.provisioning.failed")
+                .description("Devices which provisioning jobs failed to create").register(meterRegistry);
+        Gauge.builder("simulator.provisioning.running", this, ProvisioningService::countRunning)
+                .description("Running provisioning jobs").register(meterRegistry);
+    }
+
+    /**
+     * Starts a job which creates the devices <code>name0</code> to
+     * <code>name(amount - 1)</code> the same way as the <code>/start</code>
+     * resource creates them, including the start rate of the devices.
+     *
+     * @param name
+     *            the name prefix of the IDs of the devices
+     * @param amount
+     *            the number of devices
+     * @param tenant
+     *            the tenant of the devices
+     * @param protocol
+     *            the protocol of the devices
+     * @param pollDelaySec
+     *            the poll delay of the devices
+     * @param baseEndpoint
+     *            the http base endpoint of DDI devices
+     * @param gatewayToken
+     *            the gateway token of DDI devices
+     * @param targetRate
+     *            devices to create per second, <code>0</code> for as fast as
+     *            possible
+     * @return the started job
+     * @throws IllegalArgumentException
+     *             if the amount or the target rate is negative
+     * @throws IllegalStateException
+     *             if the maximum number of jobs is running
+     */
+    public ProvisioningJob start(final String name, final int amount, final String tenant, final Protocol protocol,
+            final int pollDelaySec, final URL baseEndpoint, final String gatewayToken, final int targetRate) {
+        final ProvisioningJob job;
+        synchronized (jobs) {
+            if (countRunning() >= maxJobs) {
+                throw new IllegalStateException(maxJobs + " provisioning jobs are running already");
+            }
+            job = new ProvisioningJob(jobIds.incrementAndGet(), tenant, name, protocol, amount, targetRate,
+                    deviceId -> create(deviceId, tenant, protocol, pollDelaySec, baseEndpoint, gatewayToken),
+                    System::nanoTime);
+            jobs.put(job.getId(), job);
+            forgetEndedJobs();
+        }
+
+        // every worker is registered before the first one runs
+        final List<Runnable> jobWorkers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            jobWorkers.add(job.worker());
+        }
+        jobWorkers.forEach(workers::execute);
+        return job;
+    }
+
+    /**
+     * @param id
+     *            the ID of a job
+     * @return the job or <code>null</code> if it is not known (anymore)
+     */
+    public ProvisioningJob get(final long id) {
+        synchronized (jobs) {
+            return jobs.get(id);
+        }
+    }
+
+    /**
+     * @return the known jobs in order of their start
+     */
+    public List<ProvisioningJob> getAll() {
+        synchronized (jobs) {
+            return new ArrayList<>(jobs.values());
+        }
+    }
+
+    /**
+     * Cancels a job, the devices created so far are kept.
+     *
+     * @param id
+     *            the ID of a job
+     * @return the job or <code>null</code> if it is not known (anymore)
+     */
+    public ProvisioningJob cancel(final long id) {
+        final ProvisioningJob job = get(id);
+        if (job != null) {
+            job.cancel();
+        }
+        return job;
+    }
+
+    /**
+     * Changes the target rate of the devices a job has not created yet.
+     *
+     * @param id
+     *            the ID of a job
+     * @param targetRate
+     *            devices to create per second, <code>0</code> for as fast as
+     *            possible
+     * @return the job or <code>null</code> if it is not known (anymore)
+     * @throws IllegalArgumentException
+     *             if the target rate is negative
+     */
+    public ProvisioningJob setTargetRate(final long id, final int targetRate) {
+        final ProvisioningJob job = get(id);
+        if (job != null) {
+            job.setTargetRate(targetRate);
+        }
+        return job;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+    }
+
+    private void create(final String deviceId, final String tenant, final Protocol protocol, final int pollDelaySec,
+            final URL baseEndpoint, final String gatewayToken) {
+        try {
+            repository.add(deviceFactory.createSimulatedDeviceWithImmediatePoll(deviceId, tenant, protocol,
+                    pollDelaySec, baseEndpoint, gatewayToken));
+        } catch (final RuntimeException e) {
+            failedCounter.increment();
+            throw e;
+        }
+        createdCounter.increment();
+    }
+
+    // guarded by jobs
+    private void forgetEndedJobs() {
+        final Iterator<ProvisioningJob> iterator = jobs.values().iterator();
+        while (jobs.size() > maxJobs && iterator.hasNext()) {
+            if (iterator.next().getState() != ProvisioningJob.State.RUNNING) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private int countRunning() {
+        synchronized (jobs) {
+            return (int) jobs.values().stream().filter(job -> job.getState() == ProvisioningJob.State.RUNNING)
+                    .count();
+        }
+    }
+}
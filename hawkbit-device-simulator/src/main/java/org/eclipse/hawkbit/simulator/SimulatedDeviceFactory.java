@@ -9,35 +9,73 @@
  */
 package org.eclipse.hawkbit.simulator;
 
+import java.io.IOException;
 import java.net.URL;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
 import org.eclipse.hawkbit.ddi.client.resource.RootControllerResourceClient;
 import org.eclipse.hawkbit.feign.core.client.IgnoreMultipleConsumersProducersSpringMvcContract;
 import org.eclipse.hawkbit.simulator.AbstractSimulatedDevice.Protocol;
 import org.eclipse.hawkbit.simulator.amqp.DmfSenderService;
+import org.eclipse.hawkbit.simulator.http.DdiAsyncClient;
 import org.eclipse.hawkbit.simulator.http.GatewayTokenInterceptor;
+import org.eclipse.hawkbit.simulator.http.PooledFeignClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cloud.openfeign.support.ResponseEntityDecoder;
 import org.springframework.hateoas.mediatype.hal.Jackson2HalModule;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import feign.Contract;
 import feign.Feign;
-import feign.Logger.Level;
+import feign.codec.Decoder;
+import feign.codec.Encoder;
 import feign.jackson.JacksonDecoder;
 import feign.jackson.JacksonEncoder;
 import feign.slf4j.Slf4jLogger;
 
 /**
- * The simulated device factory to create either {@link DMFSimulatedDevice} or
- * {@link DDISimulatedDevice}.
+ * The simulated device factory to create either {@link DMFSimulatedDevice},
+ * {@link DDISimulatedDevice} or {@link AsyncDDISimulatedDevice}. The DDI
+ * clients are cached per endpoint and gateway token and shared by all devices
+ * using them.
  */
 @Service
 public class SimulatedDeviceFactory {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SimulatedDeviceFactory.class);
+
+    private final Map<DdiClientKey, RootControllerResourceClient> ddiClients = new ConcurrentHashMap<>();
+    private final Map<DdiClientKey, DdiAsyncClient> ddiAsyncClients = new ConcurrentHashMap<>();
+
+    private final ObjectMapper ddiMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL).registerModule(new Jackson2HalModule());
+    private final Contract contract = new IgnoreMultipleConsumersProducersSpringMvcContract();
+    private final Decoder decoder = new ResponseEntityDecoder(new JacksonDecoder(ddiMapper));
+    private final Encoder encoder = new JacksonEncoder();
+    private final Slf4jLogger feignLogger = new Slf4jLogger();
+
+    private PooledFeignClient ddiHttpClient;
+    private ExecutorService ddiAsyncExecutor;
+    private HttpClient ddiAsyncHttpClient;
+
     @Autowired
     private DeviceSimulatorUpdater deviceUpdater;
 
@@ -47,6 +85,35 @@ public class SimulatedDeviceFactory {
     @Autowired
     private ScheduledExecutorService threadPool;
 
+    @Autowired
+    private SimulationProperties simulationProperties;
+
+    @Autowired
+    private PollJitter pollJitter;
+
+    @Autowired
+    private DeviceSimulatorRepository repository;
+
+    @PostConstruct
+    void createDdiHttpClient() {
+        ddiHttpClient = new PooledFeignClient(simulationProperties.getDdi().getMaxConnectionsPerRoute(),
+                simulationProperties.getDdi().getMaxConnectionsTotal());
+        ddiAsyncExecutor = Executors.newFixedThreadPool(simulationProperties.getDdi().getAsyncThreads(),
+                new CustomizableThreadFactory("ddi-async-"));
+        ddiAsyncHttpClient = HttpClient.newBuilder().executor(ddiAsyncExecutor).connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    @PreDestroy
+    void closeDdiHttpClient() {
+        ddiAsyncExecutor.shutdownNow();
+        try {
+            ddiHttpClient.close();
+        } catch (final IOException e) {
+            LOGGER.warn("Failed to close the DDI http client", e);
+        }
+    }
+
     /**
      * Creating a simulated device.
      * 
@@ -72,13 +139,113 @@ public class SimulatedDeviceFactory {
         return createSimulatedDevice(id, tenant, protocol, pollDelaySec, baseEndpoint, gatewayToken, false);
     }
 
+    /**
+     * Creating a simulated device of a previous run of the simulator. Unlike
+     * a new device it does not announce itself to the update server, which
+     * knows it already, and it keeps its poll schedule.
+     *
+     * @param id
+     *            the ID of the simulated device
+     * @param tenant
+     *            the tenant of the simulated device
+     * @param protocol
+     *            the protocol which should be used be the simulated device
+     * @param pollDelaySec
+     *            the poll delay time in seconds of the simulated device
+     * @param baseEndpoint
+     *            the http base endpoint which should be used for
+     *            {@link DDISimulatedDevice}s
+     * @param gatewayToken
+     *            the gatewayToken to be used to authenticate
+     *            {@link DDISimulatedDevice}s at the endpoint
+     * @return the restored simulated device
+     */
+    public AbstractSimulatedDevice restoreSimulatedDevice(final String id, final String tenant,
+            final Protocol protocol, final int pollDelaySec, final URL baseEndpoint, final String gatewayToken) {
+        switch (protocol) {
+        case DMF_AMQP:
+            return new DMFSimulatedDevice(id, tenant, spSenderService, pollDelaySec);
+        case DDI_HTTP:
+            return createDdiDevice(id, tenant, pollDelaySec, baseEndpoint, gatewayToken);
+        case DDI_ASYNC:
+            return createAsyncDdiDevice(id, tenant, pollDelaySec, baseEndpoint, gatewayToken);
+        default:
+            throw new IllegalArgumentException("Protocol " + protocol + " unknown");
+        }
+    }
+
     private AbstractSimulatedDevice createSimulatedDevice(final String id, final String tenant, final Protocol protocol,
             final int pollDelaySec, final URL baseEndpoint, final String gatewayToken, final boolean pollImmediatly) {
+        // devices created by a simulation start are ramped up, devices
+        // created on demand start right away
+        final long startOffsetMillis = pollImmediatly ? pollJitter.nextStartOffsetMillis() : 0;
+        final AbstractSimulatedDevice device;
         switch (protocol) {
         case DMF_AMQP:
-            return createDmfDevice(id, tenant, pollDelaySec, pollImmediatly);
+            device = createDmfDevice(id, tenant, pollDelaySec, pollImmediatly, startOffsetMillis);
+            break;
         case DDI_HTTP:
-            return createDdiDevice(id, tenant, pollDelaySec, baseEndpoint, gatewayToken);
+            device = createDdiDevice(id, tenant, pollDelaySec, baseEndpoint, gatewayToken);
+            break;
+        case DDI_ASYNC:
+            device = createAsyncDdiDevice(id, tenant, pollDelaySec, baseEndpoint, gatewayToken);
+            break;
+        default:
+            throw new IllegalArgumentException("Protocol " + protocol + " unknown");
+        }
+
+        // DMF devices are pushed their actions and poll first after one poll
+        // delay, DDI devices poll as soon as they are started
+        device.setNextPollCounterSec(
+                pollJitter.firstPollDelay(startOffsetMillis, pollDelaySec, protocol != Protocol.DMF_AMQP));
+        return device;
+    }
+
+    /**
+     * Creating a range of simulated devices with the IDs <code>name0</code>
+     * to <code>name(amount - 1)</code>. The objects of the devices are created
+     * on demand, DMF devices send their attributes after their first poll.
+     *
+     * @param name
+     *            the name prefix of the IDs of the simulated devices
+     * @param amount
+     *            the number of simulated devices
+     * @param tenant
+     *            the tenant of the simulated devices
+     * @param protocol
+     *            the protocol which should be used be the simulated devices
+     * @param pollDelaySec
+     *            the poll delay time in seconds of the simulated devices
+     * @param baseEndpoint
+     *            the http base endpoint which should be used for
+     *            {@link DDISimulatedDevice}s
+     * @param gatewayToken
+     *            the gatewayToken to be used to authenticate
+     *            {@link DDISimulatedDevice}s at the endpoint
+     * @return the created range
+     */
+    public DeviceRange createDeviceRange(final String name, final int amount, final String tenant,
+            final Protocol protocol, final int pollDelaySec, final URL baseEndpoint, final String gatewayToken) {
+        switch (protocol) {
+        case DMF_AMQP:
+            return new DeviceRange(tenant, name, amount, protocol, pollDelaySec, null, null,
+                    id -> new DMFSimulatedDevice(id, tenant, spSenderService, pollDelaySec),
+                    id -> scheduleIfSimulated(tenant, id, () -> spSenderService.updateAttributesOfThing(tenant, id),
+                            2_000));
+        case DDI_HTTP:
+            final RootControllerResourceClient controllerResource = ddiClient(baseEndpoint, gatewayToken);
+            return new DeviceRange(tenant, name, amount, protocol, pollDelaySec, baseEndpoint.toString(),
+                    gatewayToken, id -> new DDISimulatedDevice(id, tenant, pollDelaySec, baseEndpoint.toString(),
+                            controllerResource, deviceUpdater, gatewayToken),
+                    id -> {
+                    });
+        case DDI_ASYNC:
+            final DdiAsyncClient client = ddiAsyncClient(baseEndpoint, gatewayToken);
+            return new DeviceRange(tenant, name, amount, protocol, pollDelaySec, baseEndpoint.toString(),
+                    gatewayToken, id -> new AsyncDDISimulatedDevice(id, tenant, pollDelaySec, baseEndpoint.toString(),
+                            client, deviceUpdater, gatewayToken),
+                    id -> {
+                    });
         default:
             throw new IllegalArgumentException("Protocol " + protocol + " unknown");
         }
@@ -86,37 +253,66 @@ public class SimulatedDeviceFactory {
 
     private AbstractSimulatedDevice createDdiDevice(final String id, final String tenant, final int pollDelaySec,
             final URL baseEndpoint, final String gatewayToken) {
+        return new DDISimulatedDevice(id, tenant, pollDelaySec, baseEndpoint.toString(),
+                ddiClient(baseEndpoint, gatewayToken), deviceUpdater, gatewayToken);
+    }
+
+    private AbstractSimulatedDevice createAsyncDdiDevice(final String id, final String tenant, final int pollDelaySec,
+            final URL baseEndpoint, final String gatewayToken) {
+        return new AsyncDDISimulatedDevice(id, tenant, pollDelaySec, baseEndpoint.toString(),
+                ddiAsyncClient(baseEndpoint, gatewayToken), deviceUpdater, gatewayToken);
+    }
 
-        final ObjectMapper mapper = new ObjectMapper()
-                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
-                .registerModule(new Jackson2HalModule());
+    private RootControllerResourceClient ddiClient(final URL baseEndpoint, final String gatewayToken) {
+        return ddiClients.computeIfAbsent(new DdiClientKey(baseEndpoint.toString(), gatewayToken),
+                this::createDdiClient);
+    }
 
-        final RootControllerResourceClient controllerResource = Feign.builder()
-                .requestInterceptor(new GatewayTokenInterceptor(gatewayToken))
-                .contract(new IgnoreMultipleConsumersProducersSpringMvcContract()).logLevel(Level.HEADERS)
-                .decoder(new ResponseEntityDecoder(new JacksonDecoder(mapper))).encoder(new JacksonEncoder())
-                .logger(new Slf4jLogger()).decode404()
-                .target(RootControllerResourceClient.class, baseEndpoint.toString());
+    private DdiAsyncClient ddiAsyncClient(final URL baseEndpoint, final String gatewayToken) {
+        return ddiAsyncClients.computeIfAbsent(new DdiClientKey(baseEndpoint.toString(), gatewayToken),
+                key -> new DdiAsyncClient(ddiAsyncHttpClient, ddiMapper, key.endpoint(), key.gatewayToken()));
+    }
 
-        return new DDISimulatedDevice(id, tenant, pollDelaySec, controllerResource, deviceUpdater, gatewayToken);
+    private RootControllerResourceClient createDdiClient(final DdiClientKey key) {
+        LOGGER.debug("Creating DDI client for endpoint {}", key.endpoint());
+        return Feign.builder().client(ddiHttpClient).requestInterceptor(new GatewayTokenInterceptor(key.gatewayToken()))
+                .contract(contract).logLevel(simulationProperties.getDdi().getLogLevel()).decoder(decoder)
+                .encoder(encoder).logger(feignLogger).decode404()
+                .target(RootControllerResourceClient.class, key.endpoint());
     }
 
     private AbstractSimulatedDevice createDmfDevice(final String id, final String tenant, final int pollDelaySec,
-            final boolean pollImmediatly) {
+            final boolean pollImmediatly, final long startOffsetMillis) {
         final AbstractSimulatedDevice device = new DMFSimulatedDevice(id, tenant, spSenderService, pollDelaySec);
-        device.setNextPollCounterSec(pollDelaySec);
         if (pollImmediatly) {
-            spSenderService.createOrUpdateThing(tenant, id);
+            if (startOffsetMillis > 0) {
+                scheduleIfSimulated(tenant, id, () -> spSenderService.createOrUpdateThing(tenant, id),
+                        startOffsetMillis);
+            } else {
+                spSenderService.createOrUpdateThing(tenant, id);
+            }
         }
 
-        threadPool.schedule(() -> spSenderService.updateAttributesOfThing(tenant, id), 2_000, TimeUnit.MILLISECONDS);
+        scheduleIfSimulated(tenant, id, () -> spSenderService.updateAttributesOfThing(tenant, id),
+                startOffsetMillis + 2_000);
 
         return device;
     }
 
+    // the task is skipped if the device has been removed in the meantime
+    private void scheduleIfSimulated(final String tenant, final String id, final Runnable task,
+            final long delayMillis) {
+        threadPool.schedule(() -> {
+            if (repository.get(tenant, id) != null) {
+                task.run();
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
     /**
      * Creating a simulated device and send an immediate DMF poll to update
-     * server.
+     * server. The start of the device is delayed according to the configured
+     * start rate.
      * 
      * @param id
      *            the ID of the simulated device
@@ -139,4 +335,7 @@ public class SimulatedDeviceFactory {
             final Protocol protocol, final int pollDelaySec, final URL baseEndpoint, final String gatewayToken) {
         return createSimulatedDevice(id, tenant, protocol, pollDelaySec, baseEndpoint, gatewayToken, true);
     }
+
+    private record DdiClientKey(String endpoint, String gatewayToken) {
+    }
 }
@@ -12,6 +12,7 @@ package org.eclipse.hawkbit.simulator;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
 import org.eclipse.hawkbit.simulator.AbstractSimulatedDevice.Protocol;
@@ -19,8 +20,13 @@ import org.eclipse.hawkbit.simulator.amqp.AmqpProperties;
 import org.eclipse.hawkbit.simulator.amqp.DmfSenderService;
 import org.eclipse.hawkbit.simulator.amqp.SimulatedUpdate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -30,6 +36,12 @@ import org.springframework.web.bind.annotation.RestController;
 @RestController
 public class SimulationController {
 
+    private static final String INVALID_API_MESSAGE = "query param api only allows value of 'dmf', 'ddi' or "
+            + "'ddi-async'";
+
+    private static final String AMQP_DISABLED_MESSAGE = "The AMQP interface has been disabled, to use DMF protocol "
+            + "you need to enable the AMQP interface via '" + AmqpProperties.CONFIGURATION_PREFIX + ".enabled=true'";
+
     private final DeviceSimulatorRepository repository;
 
     private final SimulatedDeviceFactory deviceFactory;
@@ -38,15 +50,22 @@ public class SimulationController {
 
     private final SimulationProperties simulationProperties;
 
+    private final ProvisioningService provisioningService;
+
+    private final DeprovisioningService deprovisioningService;
+
     private Optional<DmfSenderService> spSenderService = Optional.empty();
 
     @Autowired
     public SimulationController(final DeviceSimulatorRepository repository, final SimulatedDeviceFactory deviceFactory,
-            final AmqpProperties amqpProperties, final SimulationProperties simulationProperties) {
+            final AmqpProperties amqpProperties, final SimulationProperties simulationProperties,
+            final ProvisioningService provisioningService, final DeprovisioningService deprovisioningService) {
         this.repository = repository;
         this.deviceFactory = deviceFactory;
         this.amqpProperties = amqpProperties;
         this.simulationProperties = simulationProperties;
+        this.provisioningService = provisioningService;
+        this.deprovisioningService = deprovisioningService;
     }
 
     /**
@@ -67,7 +86,8 @@ public class SimulationController {
      * @param tenant
      *            the tenant to create the device to
      * @param api
-     *            the api-protocol to be used either {@code dmf} or {@code ddi}
+     *            the api-protocol to be used either {@code dmf}, {@code ddi} or
+     *            {@code ddi-async}
      * @param endpoint
      *            the URL endpoint to be used of the hawkbit-update-server for
      *            DDI devices
@@ -76,6 +96,9 @@ public class SimulationController {
      * @param gatewayToken
      *            the hawkbit-update-server gatewaytoken in case authentication
      *            is enforced in hawkbit
+     * @param virtual
+     *            <code>true</code> to create the devices as a
+     *            {@link DeviceRange} whose devices are materialized on demand
      * @return a response string that devices has been created
      * @throws MalformedURLException
      */
@@ -86,39 +109,225 @@ public class SimulationController {
             @RequestParam(value = "api", defaultValue = "dmf") final String api,
             @RequestParam(value = "endpoint", defaultValue = "http://localhost:8080") final String endpoint,
             @RequestParam(value = "polldelay", defaultValue = "30") final int pollDelay,
-            @RequestParam(value = "gatewaytoken", defaultValue = "") final String gatewayToken)
+            @RequestParam(value = "gatewaytoken", defaultValue = "") final String gatewayToken,
+            @RequestParam(value = "virtual", defaultValue = "false") final boolean virtual)
             throws MalformedURLException {
 
-        final Protocol protocol;
-        switch (api.toLowerCase()) {
-        case "dmf":
-            protocol = Protocol.DMF_AMQP;
-            break;
-        case "ddi":
-            protocol = Protocol.DDI_HTTP;
-            break;
-        default:
-            return ResponseEntity.badRequest().body("query param api only allows value of 'dmf' or 'ddi'");
+        final Protocol protocol = toProtocol(api);
+        if (protocol == null) {
+            return ResponseEntity.badRequest().body(INVALID_API_MESSAGE);
         }
 
         if (protocol == Protocol.DMF_AMQP && isDmfDisabled()) {
             return createAmqpDisabledResponse();
         }
 
+        final String theTenant = tenant != null ? tenant : simulationProperties.getDefaultTenant();
+        if (virtual) {
+            try {
+                repository.addRange(deviceFactory.createDeviceRange(name, amount, theTenant, protocol, pollDelay,
+                        new URL(endpoint), gatewayToken));
+            } catch (final IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(e.getMessage());
+            }
+            return ResponseEntity.ok("Updated " + amount + " virtual " + protocol + " connected targets!");
+        }
+
         for (int i = 0; i < amount; i++) {
             final String deviceId = name + i;
-            repository.add(deviceFactory.createSimulatedDeviceWithImmediatePoll(deviceId,
-                    (tenant != null ? tenant : simulationProperties.getDefaultTenant()), protocol, pollDelay,
-                    new URL(endpoint), gatewayToken));
+            repository.add(deviceFactory.createSimulatedDeviceWithImmediatePoll(deviceId, theTenant, protocol,
+                    pollDelay, new URL(endpoint), gatewayToken));
         }
 
         return ResponseEntity.ok("Updated " + amount + " " + protocol + " connected targets!");
     }
 
+    /**
+     * Starts a background job which creates the devices the same way as
+     * {@link #start(String, int, String, String, String, int, String, boolean)}
+     * without holding the request until the devices are created.
+     *
+     * @param name
+     *            the name prefix of the generated device naming
+     * @param amount
+     *            the amount of devices to be created
+     * @param tenant
+     *            the tenant to create the device to
+     * @param api
+     *            the api-protocol to be used either {@code dmf}, {@code ddi} or
+     *            {@code ddi-async}
+     * @param endpoint
+     *            the URL endpoint to be used of the hawkbit-update-server for
+     *            DDI devices
+     * @param pollDelay
+     *            number of delay in seconds to delay polling of DDI devices
+     * @param gatewayToken
+     *            the hawkbit-update-server gatewaytoken in case authentication
+     *            is enforced in hawkbit
+     * @param rate
+     *            devices to create per second, {@code 0} for as fast as
+     *            possible
+     * @return HTTP ACCEPTED (202) with the started job or HTTP TOO MANY
+     *         REQUESTS (429) if the maximum number of jobs is running
+     */
+    @PostMapping("/provisioning")
+    public ResponseEntity<Object> startProvisioning(
+            @RequestParam(value = "name", defaultValue = "simulated") final String name,
+            @RequestParam(value = "amount", defaultValue = "20") final int amount,
+            @RequestParam(value = "tenant", required = false) final String tenant,
+            @RequestParam(value = "api", defaultValue = "dmf") final String api,
+            @RequestParam(value = "endpoint", defaultValue = "http://localhost:8080") final String endpoint,
+            @RequestParam(value = "polldelay", defaultValue = "30") final int pollDelay,
+            @RequestParam(value = "gatewaytoken", defaultValue = "") final String gatewayToken,
+            @RequestParam(value = "rate", defaultValue = "0") final int rate) {
+
+        final Protocol protocol = toProtocol(api);
+        if (protocol == null) {
+            return ResponseEntity.badRequest().body(INVALID_API_MESSAGE);
+        }
+        if (protocol == Protocol.DMF_AMQP && isDmfDisabled()) {
+            return ResponseEntity.badRequest().body(AMQP_DISABLED_MESSAGE);
+        }
+
+        final String theTenant = tenant != null ? tenant : simulationProperties.getDefaultTenant();
+        try {
+            return ResponseEntity.accepted().body(provisioningService.start(name, amount, theTenant, protocol,
+                    pollDelay, new URL(endpoint), gatewayToken, rate));
+        } catch (final MalformedURLException | IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (final IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(e.getMessage());
+        }
+    }
+
+    /**
+     * @return the known provisioning jobs with their progress
+     */
+    @GetMapping("/provisioning")
+    public ResponseEntity<List<ProvisioningJob>> getProvisioningJobs() {
+        return ResponseEntity.ok(provisioningService.getAll());
+    }
+
+    /**
+     * @param id
+     *            the ID of a provisioning job
+     * @return the job with its progress, rate and recent errors or HTTP NOT
+     *         FOUND (404)
+     */
+    @GetMapping("/provisioning/{id}")
+    public ResponseEntity<ProvisioningJob> getProvisioningJob(@PathVariable("id") final long id) {
+        return ResponseEntity.of(Optional.ofNullable(provisioningService.get(id)));
+    }
+
+    /**
+     * Changes the target rate of a provisioning job.
+     *
+     * @param id
+     *            the ID of a provisioning job
+     * @param rate
+     *            devices to create per second, {@code 0} for as fast as
+     *            possible
+     * @return the job or HTTP NOT FOUND (404)
+     */
+    @PutMapping("/provisioning/{id}")
+    public ResponseEntity<Object> updateProvisioningJob(@PathVariable("id") final long id,
+            @RequestParam(value = "rate") final int rate) {
+        try {
+            return ResponseEntity.of(Optional.ofNullable(provisioningService.setTargetRate(id, rate)));
+        } catch (final IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * Cancels a provisioning job, the devices created so far are kept.
+     *
+     * @param id
+     *            the ID of a provisioning job
+     * @return the job or HTTP NOT FOUND (404)
+     */
+    @DeleteMapping("/provisioning/{id}")
+    public ResponseEntity<ProvisioningJob> cancelProvisioningJob(@PathVariable("id") final long id) {
+        return ResponseEntity.of(Optional.ofNullable(provisioningService.cancel(id)));
+    }
+
+    /**
+     * Lists the simulated devices page by page.
+     *
+     * @param tenant
+     *            the tenant of the devices, all tenants if not set
+     * @param api
+     *            the protocol of the devices, 'dmf', 'ddi' or 'ddi-async', all
+     *            protocols if not set
+     * @param status
+     *            the update status of the devices, 'none' for devices
+     *            without update status, all if not set
+     * @param openAction
+     *            whether an update of the devices is in progress, all if not
+     *            set
+     * @param cursor
+     *            the cursor of the page, the first page if not set
+     * @param limit
+     *            the largest number of devices of the page
+     * @return the devices of the page and the cursor of the next page, which
+     *         is {@code null} after the last page
+     */
+    @GetMapping("/devices")
+    public ResponseEntity<Object> getDevices(@RequestParam(value = "tenant", required = false) final String tenant,
+            @RequestParam(value = "api", required = false) final String api,
+            @RequestParam(value = "status", required = false) final String status,
+            @RequestParam(value = "openAction", required = false) final Boolean openAction,
+            @RequestParam(value = "cursor", defaultValue = "0") final long cursor,
+            @RequestParam(value = "limit", defaultValue = "1000") final int limit) {
+        final Protocol protocol = api != null ? toProtocol(api) : null;
+        if (api != null && protocol == null) {
+            return ResponseEntity.badRequest().body(INVALID_API_MESSAGE);
+        }
+        try {
+            return ResponseEntity.ok(repository.find(new DeviceQuery(tenant, protocol, status, openAction), cursor,
+                    limit));
+        } catch (final IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * Counts the simulated devices by update status and protocol.
+     *
+     * @param tenant
+     *            the tenant of the devices, all tenants if not set
+     * @param api
+     *            the protocol of the devices, 'dmf', 'ddi' or 'ddi-async', all
+     *            protocols if not set
+     * @return the number of devices, of devices with an update in progress,
+     *         by update status and by protocol
+     */
+    @GetMapping("/devices/summary")
+    public ResponseEntity<Object> getDeviceSummary(
+            @RequestParam(value = "tenant", required = false) final String tenant,
+            @RequestParam(value = "api", required = false) final String api) {
+        final Protocol protocol = api != null ? toProtocol(api) : null;
+        if (api != null && protocol == null) {
+            return ResponseEntity.badRequest().body(INVALID_API_MESSAGE);
+        }
+        return ResponseEntity.ok(repository.summarize(new DeviceQuery(tenant, protocol, null, null)));
+    }
+
+    private static Protocol toProtocol(final String api) {
+        switch (api.toLowerCase()) {
+        case "dmf":
+            return Protocol.DMF_AMQP;
+        case "ddi":
+            return Protocol.DDI_HTTP;
+        case "ddi-async":
+            return Protocol.DDI_ASYNC;
+        default:
+            return null;
+        }
+    }
+
     private ResponseEntity<String> createAmqpDisabledResponse() {
-        return ResponseEntity.badRequest().body(
-                "The AMQP interface has been disabled, to use DMF protocol you need to enable the AMQP interface via '"
-                        + AmqpProperties.CONFIGURATION_PREFIX + ".enabled=true'");
+        return ResponseEntity.badRequest().body(AMQP_DISABLED_MESSAGE);
     }
 
     /**
@@ -183,14 +392,61 @@ public class SimulationController {
     }
 
     /**
-     * Reset the device simulator by removing all simulated devices
-     * 
+     * Removes the simulated devices of a tenant in bulk, by the prefix of
+     * their IDs and the number which follows the prefix. Their polls and
+     * updates are cancelled.
+     *
+     * @param tenant
+     *            the tenant of the devices
+     * @param prefix
+     *            the prefix of the IDs of the devices, all devices of the
+     *            tenant if not set
+     * @param from
+     *            the smallest number which follows the prefix
+     * @param to
+     *            the number which follows the prefix of the first device
+     *            which is not removed anymore
+     * @param deregister
+     *            {@code true} to delete the targets on the update server by
+     *            DMF thing removed messages, which are sent in the background
+     * @return the number of removed devices, cancelled updates and targets
+     *         which are deleted in the background
+     */
+    @DeleteMapping("/devices")
+    public ResponseEntity<Object> removeDevices(@RequestParam(value = "tenant", required = false) final String tenant,
+            @RequestParam(value = "prefix", required = false) final String prefix,
+            @RequestParam(value = "from", required = false) final Long from,
+            @RequestParam(value = "to", required = false) final Long to,
+            @RequestParam(value = "deregister", defaultValue = "false") final boolean deregister) {
+        if (deregister && isDmfDisabled()) {
+            return ResponseEntity.badRequest().body(AMQP_DISABLED_MESSAGE);
+        }
+        try {
+            return ResponseEntity.ok(deprovisioningService.remove(new DeviceSelector(
+                    tenant != null ? tenant : simulationProperties.getDefaultTenant(), prefix, from, to),
+                    deregister));
+        } catch (final IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * Reset the device simulator by removing all simulated devices and
+     * cancelling their updates
+     *
+     * @param deregister
+     *            {@code true} to delete the targets on the update server by
+     *            DMF thing removed messages, which are sent in the background
      * @return A response string that the simulator has been reset
      */
     @GetMapping("/reset")
-    public ResponseEntity<String> reset() {
+    public ResponseEntity<String> reset(
+            @RequestParam(value = "deregister", defaultValue = "false") final boolean deregister) {
+        if (deregister && isDmfDisabled()) {
+            return createAmqpDisabledResponse();
+        }
 
-        repository.clear();
+        deprovisioningService.reset(deregister);
 
         return ResponseEntity.ok("All simulated devices have been removed.");
     }
@@ -9,6 +9,7 @@
  */
 package org.eclipse.hawkbit.simulator;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -22,6 +23,8 @@ import org.eclipse.hawkbit.simulator.AbstractSimulatedDevice.Protocol;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import feign.Logger.Level;
+
 /**
  * General simulator service properties.
  *
@@ -51,6 +54,36 @@ public class SimulationProperties {
 
     private final List<Attribute> attributes = new ArrayList<>();
 
+    /**
+     * Poll scheduling of the simulated devices.
+     */
+    private final Poll poll = new Poll();
+
+    /**
+     * HTTP clients of the DDI devices.
+     */
+    private final Ddi ddi = new Ddi();
+
+    /**
+     * Execution of the simulated updates.
+     */
+    private final Update update = new Update();
+
+    /**
+     * Snapshot of the simulated devices which survives a restart.
+     */
+    private final Snapshot snapshot = new Snapshot();
+
+    /**
+     * Background jobs which create simulated devices.
+     */
+    private final Provisioning provisioning = new Provisioning();
+
+    /**
+     * Bulk removal of simulated devices.
+     */
+    private final Deprovisioning deprovisioning = new Deprovisioning();
+
     public String getDefaultTenant() {
         return defaultTenant;
     }
@@ -75,6 +108,438 @@ public class SimulationProperties {
         return this.autostarts;
     }
 
+    public Poll getPoll() {
+        return poll;
+    }
+
+    public Ddi getDdi() {
+        return ddi;
+    }
+
+    public Update getUpdate() {
+        return update;
+    }
+
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public Provisioning getProvisioning() {
+        return provisioning;
+    }
+
+    public Deprovisioning getDeprovisioning() {
+        return deprovisioning;
+    }
+
+    /**
+     * Properties for the background jobs which create simulated devices.
+     *
+     */
+    public static class Provisioning {
+        /**
+         * Threads which create the devices of one job.
+         */
+        private int threads = 4;
+
+        /**
+         * Number of jobs which are kept and which may run at the same time,
+         * the oldest ended jobs are forgotten first.
+         */
+        private int maxJobs = 100;
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(final int threads) {
+            this.threads = threads;
+        }
+
+        public int getMaxJobs() {
+            return maxJobs;
+        }
+
+        public void setMaxJobs(final int maxJobs) {
+            this.maxJobs = maxJobs;
+        }
+    }
+
+    /**
+     * Properties for the bulk removal of simulated devices.
+     *
+     */
+    public static class Deprovisioning {
+        /**
+         * Thing removed messages sent to the update server per second, shared
+         * by all removals.
+         */
+        private int rate = 1000;
+
+        /**
+         * Thing removed messages sent at once.
+         */
+        private int batchSize = 100;
+
+        public int getRate() {
+            return rate;
+        }
+
+        public void setRate(final int rate) {
+            this.rate = rate;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(final int batchSize) {
+            this.batchSize = batchSize;
+        }
+    }
+
+    /**
+     * Properties for the snapshot of the simulated devices, their poll
+     * schedule and their open actions.
+     *
+     */
+    public static class Snapshot {
+        /**
+         * File of the snapshot, no snapshot is written if empty.
+         */
+        private String file = "";
+
+        /**
+         * Interval in which the snapshot is written, it is written at
+         * shutdown as well.
+         */
+        private Duration interval = Duration.ofMinutes(5);
+
+        /**
+         * Restore the snapshot at startup instead of running the autostarts.
+         */
+        private boolean restore = true;
+
+        public String getFile() {
+            return file;
+        }
+
+        public void setFile(final String file) {
+            this.file = file;
+        }
+
+        public Duration getInterval() {
+            return interval;
+        }
+
+        public void setInterval(final Duration interval) {
+            this.interval = interval;
+        }
+
+        public boolean isRestore() {
+            return restore;
+        }
+
+        public void setRestore(final boolean restore) {
+            this.restore = restore;
+        }
+    }
+
+    /**
+     * Properties for the execution of the simulated updates.
+     *
+     */
+    public static class Update {
+        /**
+         * Maximum number of actions of one device which are simulated at the
+         * same time, further actions wait until one has finished.
+         */
+        private int maxActionsPerDevice = 4;
+
+        /**
+         * Delay before the simulation of an update starts.
+         */
+        private Duration startDelay = Duration.ofSeconds(2);
+
+        /**
+         * Stage which simulates the downloads of the updates.
+         */
+        private final Stage download = new Stage(32, 10_000);
+
+        /**
+         * Stage which sends the status of the updates to the update server.
+         */
+        private final Stage feedback = new Stage(4, 10_000);
+
+        public int getMaxActionsPerDevice() {
+            return maxActionsPerDevice;
+        }
+
+        public void setMaxActionsPerDevice(final int maxActionsPerDevice) {
+            this.maxActionsPerDevice = maxActionsPerDevice;
+        }
+
+        public Duration getStartDelay() {
+            return startDelay;
+        }
+
+        public void setStartDelay(final Duration startDelay) {
+            this.startDelay = startDelay;
+        }
+
+        public Stage getDownload() {
+            return download;
+        }
+
+        public Stage getFeedback() {
+            return feedback;
+        }
+    }
+
+    /**
+     * Properties for a stage of the update simulation.
+     *
+     */
+    public static class Stage {
+        /**
+         * Number of threads of the stage.
+         */
+        private int threads;
+
+        /**
+         * Maximum number of tasks waiting for a thread of the stage.
+         */
+        private int queueCapacity;
+
+        /**
+         * Handling of the tasks which find the stage full.
+         */
+        private UpdateStage.Overflow overflow = UpdateStage.Overflow.BLOCK;
+
+        public Stage() {
+            this(1, 1);
+        }
+
+        public Stage(final int threads, final int queueCapacity) {
+            this.threads = threads;
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(final int threads) {
+            this.threads = threads;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(final int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public UpdateStage.Overflow getOverflow() {
+            return overflow;
+        }
+
+        public void setOverflow(final UpdateStage.Overflow overflow) {
+            this.overflow = overflow;
+        }
+    }
+
+    /**
+     * Properties for the HTTP clients of the DDI devices. All devices with
+     * the same endpoint and gateway token share one client, all clients share
+     * one connection pool.
+     *
+     */
+    public static class Ddi {
+        /**
+         * Maximum number of pooled connections per update server.
+         */
+        private int maxConnectionsPerRoute = 100;
+
+        /**
+         * Maximum number of pooled connections in total.
+         */
+        private int maxConnectionsTotal = 200;
+
+        /**
+         * Feign log level of the DDI clients.
+         */
+        private Level logLevel = Level.HEADERS;
+
+        /**
+         * Number of threads which complete the responses of the non-blocking
+         * DDI clients.
+         */
+        private int asyncThreads = 4;
+
+        public int getMaxConnectionsPerRoute() {
+            return maxConnectionsPerRoute;
+        }
+
+        public void setMaxConnectionsPerRoute(final int maxConnectionsPerRoute) {
+            this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        }
+
+        public int getMaxConnectionsTotal() {
+            return maxConnectionsTotal;
+        }
+
+        public void setMaxConnectionsTotal(final int maxConnectionsTotal) {
+            this.maxConnectionsTotal = maxConnectionsTotal;
+        }
+
+        public Level getLogLevel() {
+            return logLevel;
+        }
+
+        public void setLogLevel(final Level logLevel) {
+            this.logLevel = logLevel;
+        }
+
+        public int getAsyncThreads() {
+            return asyncThreads;
+        }
+
+        public void setAsyncThreads(final int asyncThreads) {
+            this.asyncThreads = asyncThreads;
+        }
+    }
+
+    /**
+     * Properties for the poll scheduling of the simulated devices.
+     *
+     */
+    public static class Poll {
+        /**
+         * Number of one second slots of the poll timing wheel. Devices with a
+         * longer poll delay stay in the wheel for several revolutions.
+         */
+        private int wheelSize = 4096;
+
+        /**
+         * Execution mode of the device polls, either a bounded pool of
+         * platform threads or a virtual thread per poll. Virtual threads fall
+         * back to the bounded pool on JVMs without virtual threads.
+         */
+        private PollExecutor.Mode mode = PollExecutor.Mode.PLATFORM;
+
+        /**
+         * Number of platform threads which execute the polls.
+         */
+        private int threads = 8;
+
+        /**
+         * Maximum number of polls waiting for a platform thread.
+         */
+        private int queueCapacity = 10_000;
+
+        /**
+         * Maximum number of queued and running polls, 0 for no limit.
+         */
+        private int maxInFlight = 10_000;
+
+        /**
+         * Number of devices per second which are started by a simulation, 0
+         * to start all devices at once.
+         */
+        private int startRate;
+
+        /**
+         * Distribution of the poll delay jitter.
+         */
+        private PollJitter.Distribution jitter = PollJitter.Distribution.NONE;
+
+        /**
+         * Relative deviation of the poll delay, the maximum for uniform and
+         * the standard deviation for gaussian jitter.
+         */
+        private double jitterFactor = 0.1;
+
+        /**
+         * Set to <code>true</code> to place the first poll of a started device
+         * randomly within its poll interval instead of polling right away.
+         */
+        private boolean phaseSpread;
+
+        public int getWheelSize() {
+            return wheelSize;
+        }
+
+        public void setWheelSize(final int wheelSize) {
+            this.wheelSize = wheelSize;
+        }
+
+        public PollExecutor.Mode getMode() {
+            return mode;
+        }
+
+        public void setMode(final PollExecutor.Mode mode) {
+            this.mode = mode;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(final int threads) {
+            this.threads = threads;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(final int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getMaxInFlight() {
+            return maxInFlight;
+        }
+
+        public void setMaxInFlight(final int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+        }
+
+        public int getStartRate() {
+            return startRate;
+        }
+
+        public void setStartRate(final int startRate) {
+            this.startRate = startRate;
+        }
+
+        public PollJitter.Distribution getJitter() {
+            return jitter;
+        }
+
+        public void setJitter(final PollJitter.Distribution jitter) {
+            this.jitter = jitter;
+        }
+
+        public double getJitterFactor() {
+            return jitterFactor;
+        }
+
+        public void setJitterFactor(final double jitterFactor) {
+            this.jitterFactor = jitterFactor;
+        }
+
+        public boolean isPhaseSpread() {
+            return phaseSpread;
+        }
+
+        public void setPhaseSpread(final boolean phaseSpread) {
+            this.phaseSpread = phaseSpread;
+        }
+    }
+
     /**
      * Properties for target attributes set as part of simulation.
      *
@@ -159,6 +624,12 @@ public class SimulationProperties {
          */
         private String gatewayToken = "";
 
+        /**
+         * Create the devices as a range whose devices are materialized on
+         * demand.
+         */
+        private boolean virtual;
+
         public String getName() {
             return name;
         }
@@ -214,5 +685,13 @@ public class SimulationProperties {
         public void setGatewayToken(final String gatewayToken) {
             this.gatewayToken = gatewayToken;
         }
+
+        public boolean isVirtual() {
+            return virtual;
+        }
+
+        public void setVirtual(final boolean virtual) {
+            this.virtual = virtual;
+        }
     }
 }
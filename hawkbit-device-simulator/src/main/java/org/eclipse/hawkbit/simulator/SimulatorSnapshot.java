@@ -0,0 +1,261 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jakarta.annotation.PreDestroy;
+
+import org.eclipse.hawkbit.simulator.AbstractSimulatedDevice.Protocol;
+import org.eclipse.hawkbit.simulator.amqp.DmfReceiverService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Keeps the simulated devices, their poll schedule and the open DMF actions
+ * in a {@link SnapshotFile} which is written in an interval and at shutdown.
+ * At startup the snapshot is restored before the DMF listener containers
+ * and the web server start, so the restored open actions are older than
+ * every action received afterwards, and before the autostarts run, which are
+ * skipped then. Actions in progress are not part of the snapshot: an open
+ * DMF action is simulated again when the update server delivers it again.
+ */
+@Component
+public class SimulatorSnapshot implements SmartLifecycle {
+
+    /**
+     * The phase of the snapshot, before the phases of the listener
+     * containers and of the web server.
+     */
+    static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 2048;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SimulatorSnapshot.class);
+
+    private final SimulationProperties.Snapshot properties;
+    private final DeviceStore deviceStore;
+    private final NextPollTimeController pollTimeController;
+    private final DeviceSimulatorRepository repository;
+    private final SimulatedDeviceFactory deviceFactory;
+    private final ObjectProvider<DmfReceiverService> dmfReceiverService;
+    private final ScheduledExecutorService threadPool;
+
+    private final Timer writeTimer;
+    private final Timer restoreTimer;
+    private final AtomicLong bytes = new AtomicLong();
+
+    private volatile boolean running;
+    private volatile boolean restored;
+
+    /**
+     * @param simulationProperties
+     *            for the snapshot configuration
+     * @param deviceStore
+     *            which holds the devices
+     * @param pollTimeController
+     *            which holds the poll schedule
+     * @param repository
+     *            to add the restored devices
+     * @param deviceFactory
+     *            to create the restored devices
+     * @param dmfReceiverService
+     *            which holds the open DMF actions if DMF is enabled
+     * @param threadPool
+     *            which writes the snapshot in an interval
+     * @param meterRegistry
+     *            to expose the snapshot metrics
+     */
+    public SimulatorSnapshot(final SimulationProperties simulationProperties, final DeviceStore deviceStore,
+            final NextPollTimeController pollTimeController, final DeviceSimulatorRepository repository,
+            final SimulatedDeviceFactory deviceFactory, final ObjectProvider<DmfReceiverService> dmfReceiverService,
+            final ScheduledExecutorService threadPool, final MeterRegistry meterRegistry) {
+        this.properties = simulationProperties.getSnapshot();
+        this.deviceStore = deviceStore;
+        this.pollTimeController = pollTimeController;
+        this.repository = repository;
+        this.deviceFactory = deviceFactory;
+        this.dmfReceiverService = dmfReceiverService;
+        this.threadPool = threadPool;
+
+        writeTimer = Timer.builder("simulator.snapshot.write").description("Time to write the snapshot")
+                .register(meterRegistry);
+        restoreTimer = Timer.builder("simulator.snapshot.restore").description("Time to restore the snapshot")
+                .register(meterRegistry);
+        Gauge.builder("simulator.snapshot.bytes", bytes, AtomicLong::get)
+                .description("Size of the last written or restored snapshot").register(meterRegistry);
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        if (!isEnabled()) {
+            return;
+        }
+        if (properties.isRestore() && Files.exists(file())) {
+            try {
+                restore();
+            } catch (final IOException | RuntimeException e) {
+                LOGGER.error("Restoring the snapshot {} failed", file(), e);
+            }
+        }
+        final long intervalMillis = properties.getInterval().toMillis();
+        if (intervalMillis > 0) {
+            threadPool.scheduleWithFixedDelay(this::writeQuietly, intervalMillis, intervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void stop() {
+        // the snapshot is written when the bean is destroyed, after the
+        // listener containers have stopped
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    /**
+     * @return <code>true</code> if the devices have been restored from a
+     *         snapshot at startup
+     */
+    public boolean isRestored() {
+        return restored;
+    }
+
+    /**
+     * Writes the snapshot.
+     *
+     * @return the size of the snapshot in bytes
+     * @throws IOException
+     *             if the snapshot cannot be written, the previous snapshot is
+     *             kept then
+     */
+    public synchronized long write() throws IOException {
+        final long start = System.nanoTime();
+        final long size;
+        // the poll schedule is taken first, the wheel and the store are never
+        // locked at once
+        final int[] secondsUntilNextPoll = pollTimeController.getSecondsUntilNextPolls();
+        final long currentSecond = pollTimeController.getCurrentSecond();
+        try (SnapshotFile.Writer writer = SnapshotFile.create(file())) {
+            writer.devices(deviceStore, secondsUntilNextPoll, currentSecond);
+            final DmfReceiverService receiver = dmfReceiverService.getIfAvailable();
+            if (receiver != null) {
+                receiver.forEachOpenAction(writer::openAction);
+            }
+            size = writer.commit();
+        } catch (final UncheckedIOException e) {
+            throw e.getCause();
+        }
+        final long nanos = System.nanoTime() - start;
+        writeTimer.record(nanos, TimeUnit.NANOSECONDS);
+        bytes.set(size);
+        LOGGER.debug("Wrote snapshot {} with {} bytes in {} ms", file(), size, TimeUnit.NANOSECONDS.toMillis(nanos));
+        return size;
+    }
+
+    /**
+     * Restores the snapshot, the devices of the snapshot replace the devices
+     * with the same IDs.
+     *
+     * @throws IOException
+     *             if the snapshot cannot be read
+     */
+    public synchronized void restore() throws IOException {
+        final long start = System.nanoTime();
+        final DmfReceiverService receiver = dmfReceiverService.getIfAvailable();
+        final long size = SnapshotFile.read(file(), new SnapshotFile.Restorer() {
+            @Override
+            public void device(final String tenant, final String id, final Protocol protocol,
+                    final int pollDelaySec, final int nextPollSec, final String endpoint, final String gatewayToken,
+                    final Long currentActionId) throws IOException {
+                final AbstractSimulatedDevice device = deviceFactory.restoreSimulatedDevice(id, tenant, protocol,
+                        pollDelaySec, endpoint != null ? new URL(endpoint) : null, gatewayToken);
+                // devices which were polling when the snapshot was written
+                // poll again after their delay
+                device.setNextPollCounterSec(nextPollSec >= 0 ? Math.max(1, nextPollSec) : pollDelaySec);
+                if (device instanceof DDISimulatedDevice) {
+                    ((DDISimulatedDevice) device).setCurrentActionId(currentActionId);
+                } else if (device instanceof AsyncDDISimulatedDevice) {
+                    ((AsyncDDISimulatedDevice) device).setCurrentActionId(currentActionId);
+                }
+                repository.add(device);
+            }
+
+            @Override
+            public void range(final String tenant, final String name, final int amount, final Protocol protocol,
+                    final int pollDelaySec, final String endpoint, final String gatewayToken, final long elapsedSec,
+                    final long[] removed) throws IOException {
+                final DeviceRange range = deviceFactory.createDeviceRange(name, amount, tenant, protocol,
+                        pollDelaySec, endpoint != null ? new URL(endpoint) : null, gatewayToken);
+                range.setRemoved(removed);
+                repository.addRange(range, elapsedSec);
+            }
+
+            @Override
+            public void openAction(final long actionId, final String tenant, final long ageNanos) {
+                if (receiver != null) {
+                    receiver.restoreOpenAction(actionId, tenant, ageNanos);
+                }
+            }
+        });
+        final long nanos = System.nanoTime() - start;
+        restoreTimer.record(nanos, TimeUnit.NANOSECONDS);
+        bytes.set(size);
+        restored = true;
+        LOGGER.info("Restored {} devices from snapshot {} with {} bytes in {} ms", deviceStore.size(), file(), size,
+                TimeUnit.NANOSECONDS.toMillis(nanos));
+    }
+
+    @PreDestroy
+    void writeAtShutdown() {
+        if (isEnabled()) {
+            writeQuietly();
+        }
+    }
+
+    private void writeQuietly() {
+        try {
+            write();
+        } catch (final IOException | RuntimeException e) {
+            LOGGER.error("Writing the snapshot {} failed", file(), e);
+        }
+    }
+
+    private boolean isEnabled() {
+        return !properties.getFile().isBlank();
+    }
+
+    private Path file() {
+        return Paths.get(properties.getFile());
+    }
+}
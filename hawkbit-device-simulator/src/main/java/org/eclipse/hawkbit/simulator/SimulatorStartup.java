@@ -22,7 +22,8 @@ import org.springframework.context.ApplicationListener;
 import org.springframework.stereotype.Component;
 
 /**
- * Execution of operations after startup. Set up of simulations.
+ * Execution of operations after startup. Set up of simulations unless the
+ * devices have been restored by the {@link SimulatorSnapshot}.
  *
  */
 @Component
@@ -42,12 +43,23 @@ public class SimulatorStartup implements ApplicationListener<ApplicationReadyEve
     @Autowired
     private AmqpProperties amqpProperties;
 
+    @Autowired
+    private SimulatorSnapshot snapshot;
+
     @Override
     public void onApplicationEvent(final ApplicationReadyEvent event) {
+        if (snapshot.isRestored()) {
+            LOGGER.info("Autostarts are skipped, the devices have been restored from the snapshot");
+            return;
+        }
         LOGGER.debug("{} autostarts will be executed", simulationProperties.getAutostarts().size());
 
         simulationProperties.getAutostarts().forEach(autostart -> {
             LOGGER.debug("Autostart runs for tenant {} and API {}", autostart.getTenant(), autostart.getApi());
+            if (autostart.isVirtual()) {
+                startRange(autostart);
+                return;
+            }
             for (int i = 0; i < autostart.getAmount(); i++) {
                 final String deviceId = autostart.getName() + i;
                 try {
@@ -64,4 +76,16 @@ public class SimulatorStartup implements ApplicationListener<ApplicationReadyEve
         });
     }
 
+    private void startRange(final SimulationProperties.Autostart autostart) {
+        if (!amqpProperties.isEnabled()) {
+            return;
+        }
+        try {
+            repository.addRange(deviceFactory.createDeviceRange(autostart.getName(), autostart.getAmount(),
+                    autostart.getTenant(), autostart.getApi(), autostart.getPollDelay(),
+                    new URL(autostart.getEndpoint()), autostart.getGatewayToken()));
+        } catch (final MalformedURLException | IllegalArgumentException e) {
+            LOGGER.error("Creation of simulated device range at startup failed.", e);
+        }
+    }
 }
@@ -0,0 +1,526 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.hawkbit.simulator.AbstractSimulatedDevice.Protocol;
+
+/**
+ * Binary snapshot of the simulated devices, their poll schedule and the open
+ * DMF actions. The file is written and read sequentially through a direct
+ * buffer of one megabyte, so writing and reading take time linear in the
+ * number of devices and the heap is not involved beyond the device IDs. The
+ * file is not mapped, as a mapping would outlive the file which is replaced by
+ * the next snapshot.
+ * <p>
+ * The file starts with a header followed by records, each tagged by a byte:
+ * single devices, ranges and open actions. Tenants, endpoints and gateway
+ * tokens are written once and referenced by their index afterwards. A
+ * snapshot is written to a temporary file which replaces the previous
+ * snapshot when it is complete.
+ */
+final class SnapshotFile {
+
+    private static final int MAGIC = 0x48425353;
+    private static final int VERSION = 1;
+
+    private static final byte END = 0;
+    private static final byte DEVICE = 1;
+    private static final byte RANGE = 2;
+    private static final byte OPEN_ACTION = 3;
+
+    private static final int NEW_STRING = -1;
+    private static final int NULL_STRING = -2;
+    private static final long NO_ACTION = -1;
+
+    private static final int BUFFER_BYTES = 1 << 20;
+    private static final Protocol[] PROTOCOLS = Protocol.values();
+
+    private SnapshotFile() {
+        // utility class
+    }
+
+    /**
+     * Receives the content of a snapshot, see {@link SnapshotFile#read(Path, Restorer)}.
+     */
+    interface Restorer {
+
+        void device(String tenant, String id, Protocol protocol, int pollDelaySec, int nextPollSec, String endpoint,
+                String gatewayToken, Long currentActionId) throws IOException;
+
+        void range(String tenant, String name, int amount, Protocol protocol, int pollDelaySec, String endpoint,
+                String gatewayToken, long elapsedSec, long[] removed) throws IOException;
+
+        void openAction(long actionId, String tenant, long ageNanos) throws IOException;
+    }
+
+    /**
+     * @param file
+     *            the file of the snapshot, replaced when the writer is committed
+     * @return a writer of a new snapshot
+     * @throws IOException
+     *             if the temporary file cannot be created
+     */
+    static Writer create(final Path file) throws IOException {
+        return new Writer(file);
+    }
+
+    /**
+     * Reads a snapshot. The age of the open actions includes the time since
+     * the snapshot has been written.
+     *
+     * @param file
+     *            the file of the snapshot
+     * @param restorer
+     *            which receives the content of the snapshot
+     * @return the size of the snapshot in bytes
+     * @throws IOException
+     *             if the file cannot be read or is no complete snapshot
+     */
+    static long read(final Path file, final Restorer restorer) throws IOException {
+        try (Input input = new Input(file)) {
+            if (input.getInt() != MAGIC) {
+                throw new IOException(file + " is no simulator snapshot");
+            }
+            final int version = input.getInt();
+            if (version != VERSION) {
+                throw new IOException("Snapshot version " + version + " of " + file + " is not supported");
+            }
+            final long sinceWrittenNanos = TimeUnit.MILLISECONDS
+                    .toNanos(Math.max(0, System.currentTimeMillis() - input.getLong()));
+
+            for (byte tag = input.get(); tag != END; tag = input.get()) {
+                switch (tag) {
+                case DEVICE:
+                    readDevice(input, restorer);
+                    break;
+                case RANGE:
+                    readRange(input, restorer);
+                    break;
+                case OPEN_ACTION:
+                    restorer.openAction(input.getLong(), input.getString(), input.getLong() + sinceWrittenNanos);
+                    break;
+                default:
+                    throw new IOException("Unknown record " + tag + " in snapshot " + file);
+                }
+            }
+            return input.size;
+        }
+    }
+
+    private static void readDevice(final Input input, final Restorer restorer) throws IOException {
+        final String tenant = input.getString();
+        final short idLength = input.getShort();
+        if (idLength < 0) {
+            throw new IOException("Invalid device ID length " + idLength + " in snapshot");
+        }
+        final byte[] id = new byte[idLength];
+        input.get(id, 0, idLength);
+        final Protocol protocol = input.getProtocol();
+        final int pollDelaySec = input.getInt();
+        final int nextPollSec = input.getInt();
+        String endpoint = null;
+        String gatewayToken = null;
+        Long currentActionId = null;
+        if (protocol != Protocol.DMF_AMQP) {
+            endpoint = input.getString();
+            gatewayToken = input.getString();
+            final long actionId = input.getLong();
+            currentActionId = actionId != NO_ACTION ? actionId : null;
+        }
+        restorer.device(tenant, new String(id, StandardCharsets.UTF_8), protocol, pollDelaySec, nextPollSec,
+                endpoint, gatewayToken, currentActionId);
+    }
+
+    private static void readRange(final Input input, final Restorer restorer) throws IOException {
+        final String tenant = input.getString();
+        final String name = input.getString();
+        final int amount = input.getInt();
+        final Protocol protocol = input.getProtocol();
+        final int pollDelaySec = input.getInt();
+        final String endpoint = input.getString();
+        final String gatewayToken = input.getString();
+        final long elapsedSec = input.getLong();
+        final int words = input.getInt();
+        if (words < 0 || words > (amount + Long.SIZE - 1L) / Long.SIZE) {
+            throw new IOException("Invalid removed devices of range " + name + " in snapshot");
+        }
+        final long[] removed = new long[words];
+        for (int i = 0; i < removed.length; i++) {
+            removed[i] = input.getLong();
+        }
+        restorer.range(tenant, name, amount, protocol, pollDelaySec, endpoint, gatewayToken, elapsedSec, removed);
+    }
+
+    /**
+     * Writes a snapshot, the snapshot replaces the previous one when it is
+     * committed. A writer which is closed without commit leaves the previous
+     * snapshot in place.
+     */
+    static final class Writer implements Closeable {
+
+        private final Path file;
+        private final Path tempFile;
+        private final Output output;
+        private boolean done;
+
+        private Writer(final Path file) throws IOException {
+            this.file = file;
+            tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+            output = new Output(tempFile);
+            output.putInt(MAGIC);
+            output.putInt(VERSION);
+            output.putLong(System.currentTimeMillis());
+        }
+
+        /**
+         * Writes the devices of a store. The poll schedule has to be taken
+         * before, so the wheel and the store are never locked at once.
+         *
+         * @param store
+         *            the devices
+         * @param secondsUntilNextPoll
+         *            seconds until the next poll by slot, <code>-1</code> if a
+         *            device is not scheduled
+         * @param currentSecond
+         *            the current second of the poll schedule
+         * @throws IOException
+         *             if the snapshot cannot be written
+         */
+        void devices(final DeviceStore store, final int[] secondsUntilNextPoll, final long currentSecond)
+                throws IOException {
+            try {
+                store.export(new DeviceStore.Exporter() {
+                    @Override
+                    public void device(final int slot, final String tenant, final byte[] names, final int idOffset,
+                            final int idLength, final Protocol protocol, final int pollDelaySec,
+                            final AbstractSimulatedDevice device) {
+                        writeDevice(tenant, names, idOffset, idLength, protocol, pollDelaySec,
+                                slot < secondsUntilNextPoll.length ? secondsUntilNextPoll[slot] : -1, device);
+                    }
+
+                    @Override
+                    public void range(final DeviceRange range, final long[] removed) {
+                        writeRange(range, range.getElapsedTicks(currentSecond), removed);
+                    }
+                });
+            } catch (final UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+        /**
+         * Writes an open action.
+         *
+         * @param actionId
+         *            the ID of the action
+         * @param tenant
+         *            the tenant of the action
+         * @param ageNanos
+         *            nanoseconds since the action has been received
+         */
+        void openAction(final long actionId, final String tenant, final long ageNanos) {
+            try {
+                output.put(OPEN_ACTION);
+                output.putLong(actionId);
+                output.putString(tenant);
+                output.putLong(ageNanos);
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * @return bytes written so far
+         */
+        long size() {
+            return output.position();
+        }
+
+        private void writeDevice(final String tenant, final byte[] names, final int idOffset, final int idLength,
+                final Protocol protocol, final int pollDelaySec, final int nextPollSec,
+                final AbstractSimulatedDevice device) {
+            try {
+                output.put(DEVICE);
+                output.putString(tenant);
+                output.putShort((short) idLength);
+                output.put(names, idOffset, idLength);
+                output.put((byte) protocol.ordinal());
+                output.putInt(pollDelaySec);
+                output.putInt(nextPollSec);
+                if (protocol != Protocol.DMF_AMQP) {
+                    final Long actionId;
+                    if (device instanceof AsyncDDISimulatedDevice) {
+                        final AsyncDDISimulatedDevice asyncDevice = (AsyncDDISimulatedDevice) device;
+                        output.putString(asyncDevice.getBaseEndpoint());
+                        output.putString(asyncDevice.getGatewayToken());
+                        actionId = asyncDevice.getCurrentActionId();
+                    } else {
+                        final DDISimulatedDevice ddiDevice = (DDISimulatedDevice) device;
+                        output.putString(ddiDevice.getBaseEndpoint());
+                        output.putString(ddiDevice.getGatewayToken());
+                        actionId = ddiDevice.getCurrentActionId();
+                    }
+                    output.putLong(actionId != null ? actionId : NO_ACTION);
+                }
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void writeRange(final DeviceRange range, final long elapsedSec, final long[] removed) {
+            try {
+                output.put(RANGE);
+                output.putString(range.getTenant());
+                output.putString(range.getName());
+                output.putInt(range.getAmount());
+                output.put((byte) range.getProtocol().ordinal());
+                output.putInt(range.getPollDelaySec());
+                output.putString(range.getEndpoint());
+                output.putString(range.getGatewayToken());
+                output.putLong(elapsedSec);
+                output.putInt(removed.length);
+                for (final long word : removed) {
+                    output.putLong(word);
+                }
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Completes the snapshot and replaces the previous one.
+         *
+         * @return the size of the snapshot in bytes
+         * @throws IOException
+         *             if the snapshot cannot be completed
+         */
+        long commit() throws IOException {
+            output.put(END);
+            final long size = output.position();
+            done = true;
+            output.close();
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return size;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (done) {
+                return;
+            }
+            done = true;
+            try {
+                output.close();
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        }
+    }
+
+    /**
+     * Sequential output to a file through a direct buffer.
+     */
+    private static final class Output implements Closeable {
+
+        private final FileChannel channel;
+        private final Map<String, Integer> strings = new HashMap<>();
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        private long written;
+
+        private Output(final Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+        }
+
+        private long position() {
+            return written + buffer.position();
+        }
+
+        private void ensure(final int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void put(final byte value) throws IOException {
+            ensure(Byte.BYTES);
+            buffer.put(value);
+        }
+
+        private void putShort(final short value) throws IOException {
+            ensure(Short.BYTES);
+            buffer.putShort(value);
+        }
+
+        private void putInt(final int value) throws IOException {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        private void putLong(final long value) throws IOException {
+            ensure(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        private void put(final byte[] bytes, final int offset, final int length) throws IOException {
+            int done = 0;
+            while (done < length) {
+                ensure(1);
+                final int part = Math.min(length - done, buffer.remaining());
+                buffer.put(bytes, offset + done, part);
+                done += part;
+            }
+        }
+
+        private void putString(final String value) throws IOException {
+            if (value == null) {
+                putInt(NULL_STRING);
+                return;
+            }
+            final Integer index = strings.get(value);
+            if (index != null) {
+                putInt(index);
+                return;
+            }
+            strings.put(value, strings.size());
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(NEW_STRING);
+            putInt(bytes.length);
+            put(bytes, 0, bytes.length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (channel) {
+                flush();
+                channel.force(true);
+            }
+        }
+    }
+
+    /**
+     * Sequential input from a file through a direct buffer.
+     */
+    private static final class Input implements Closeable {
+
+        private final FileChannel channel;
+        private final long size;
+        private final List<String> strings = new ArrayList<>();
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).limit(0);
+
+        private Input(final Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            size = channel.size();
+        }
+
+        private void ensure(final int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Snapshot is incomplete");
+                }
+            }
+            buffer.flip();
+        }
+
+        private byte get() throws IOException {
+            ensure(Byte.BYTES);
+            return buffer.get();
+        }
+
+        private short getShort() throws IOException {
+            ensure(Short.BYTES);
+            return buffer.getShort();
+        }
+
+        private int getInt() throws IOException {
+            ensure(Integer.BYTES);
+            return buffer.getInt();
+        }
+
+        private long getLong() throws IOException {
+            ensure(Long.BYTES);
+            return buffer.getLong();
+        }
+
+        private void get(final byte[] bytes, final int offset, final int length) throws IOException {
+            int done = 0;
+            while (done < length) {
+                ensure(1);
+                final int part = Math.min(length - done, buffer.remaining());
+                buffer.get(bytes, offset + done, part);
+                done += part;
+            }
+        }
+
+        private Protocol getProtocol() throws IOException {
+            final byte ordinal = get();
+            if (ordinal < 0 || ordinal >= PROTOCOLS.length) {
+                throw new IOException("Unknown protocol " + ordinal + " in snapshot");
+            }
+            return PROTOCOLS[ordinal];
+        }
+
+        private String getString() throws IOException {
+            final int ref = getInt();
+            if (ref == NULL_STRING) {
+                return null;
+            }
+            if (ref != NEW_STRING) {
+                if (ref < 0 || ref >= strings.size()) {
+                    throw new IOException("Unknown string " + ref + " in snapshot");
+                }
+                return strings.get(ref);
+            }
+            final int length = getInt();
+            if (length < 0 || length > size) {
+                throw new IOException("Invalid string length " + length + " in snapshot");
+            }
+            final byte[] bytes = new byte[length];
+            get(bytes, 0, length);
+            final String value = new String(bytes, StandardCharsets.UTF_8);
+            strings.add(value);
+            return value;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+/**
+ * Index of the tenants of the simulated devices. Tenants are case
+ * insensitive, each tenant is registered once under its lower case name which
+ * is the canonical key of the tenant. Every spelling of a tenant which has
+ * been looked up is remembered, so looking up a known tenant does neither
+ * convert the tenant nor allocate a key.
+ * <p>
+ * The tenants are numbered in the order of their registration, so a device
+ * can refer to its tenant by an int. Registering and clearing tenants as well
+ * as looking them up by number have to be guarded by the owner of the index,
+ * looking them up by name is safe at any time.
+ *
+ * @param <T>
+ *            the type of the tenants
+ */
+final class TenantIndex<T extends TenantIndex.Tenant> {
+
+    // canonical tenant to the tenant
+    private final Map<String, T> tenants = new ConcurrentHashMap<>();
+    // every spelling of a tenant seen so far to the tenant
+    private final Map<String, T> spellings = new ConcurrentHashMap<>();
+    private final Set<String> tenantNames = Collections.unmodifiableSet(tenants.keySet());
+    private final Collection<T> allTenants = Collections.unmodifiableCollection(tenants.values());
+
+    // by number, guarded by the owner
+    private final List<T> byIndex = new ArrayList<>();
+    private final BiFunction<String, Integer, T> factory;
+
+    /**
+     * @param factory
+     *            creating a tenant from its name as first spelled and its
+     *            number
+     */
+    TenantIndex(final BiFunction<String, Integer, T> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * @param tenant
+     *            the tenant in any case
+     * @return the tenant or <code>null</code> if it is not registered
+     */
+    T get(final String tenant) {
+        return lookup(tenant, false);
+    }
+
+    /**
+     * @param tenant
+     *            the tenant in any case
+     * @return the tenant, registered if it was not registered yet
+     */
+    T register(final String tenant) {
+        return lookup(tenant, true);
+    }
+
+    /**
+     * @param index
+     *            the number of a registered tenant
+     * @return the tenant
+     */
+    T get(final int index) {
+        return byIndex.get(index);
+    }
+
+    /**
+     * @return the number of registered tenants
+     */
+    int size() {
+        return byIndex.size();
+    }
+
+    /**
+     * @return a live view of the registered tenants
+     */
+    Collection<T> getAll() {
+        return allTenants;
+    }
+
+    /**
+     * @return a live view of the canonical names of the registered tenants
+     */
+    Set<String> getNames() {
+        return tenantNames;
+    }
+
+    /**
+     * Removes all tenants. The removed tenants are marked as cleared as they
+     * may still be found through a spelling remembered by a concurrent lookup.
+     */
+    void clear() {
+        tenants.values().forEach(tenant -> tenant.cleared = true);
+        tenants.clear();
+        spellings.clear();
+        byIndex.clear();
+    }
+
+    private T lookup(final String tenant, final boolean create) {
+        final T known = spellings.get(tenant);
+        if (known != null && !known.cleared) {
+            return known;
+        }
+
+        final String canonical = tenant.toLowerCase();
+        final T found = create ? tenants.computeIfAbsent(canonical, key -> {
+            final T registered = factory.apply(tenant, byIndex.size());
+            byIndex.add(registered);
+            return registered;
+        }) : tenants.get(canonical);
+        if (found != null) {
+            spellings.put(tenant, found);
+        }
+        return found;
+    }
+
+    /**
+     * A tenant of the index.
+     */
+    static class Tenant {
+        final String name;
+        final int index;
+        volatile boolean cleared;
+
+        /**
+         * @param name
+         *            of the tenant as first spelled
+         * @param index
+         *            the number of the tenant
+         */
+        Tenant(final String name, final int index) {
+            this.name = name;
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * A stage of the update simulation with its own threads. At most a capacity
+ * of tasks may wait for a thread of the stage, including the tasks which wait
+ * for their delay. What happens to a task which finds the stage full is
+ * decided by the {@link Overflow} policy of the stage.
+ */
+public final class UpdateStage {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(UpdateStage.class);
+
+    private static final String STAGE_TAG = "stage";
+
+    /**
+     * Handling of the tasks which find the stage full.
+     */
+    public enum Overflow {
+        /**
+         * The submitting thread waits until a task of the stage has started.
+         */
+        BLOCK,
+        /**
+         * The task is rejected.
+         */
+        REJECT,
+        /**
+         * The submitting thread runs the task itself.
+         */
+        CALLER_RUNS
+    }
+
+    private final String name;
+    private final Overflow overflow;
+    private final int queueCapacity;
+    private final Semaphore queue;
+    private final ScheduledThreadPoolExecutor executor;
+    private final LongSupplier nanoClock;
+
+    private final Timer waitTimer;
+    private final Timer blockedTimer;
+    private final Counter overflowCounter;
+    private final Counter droppedCounter;
+
+    /**
+     * @param name
+     *            of the stage in the thread names and metrics
+     * @param properties
+     *            for the stage configuration
+     * @param meterRegistry
+     *            to expose the stage metrics
+     * @param nanoClock
+     *            the clock to measure the waiting time of the tasks
+     */
+    UpdateStage(final String name, final SimulationProperties.Stage properties, final MeterRegistry meterRegistry,
+            final LongSupplier nanoClock) {
+        this.name = name;
+        this.overflow = properties.getOverflow();
+        this.queueCapacity = Math.max(1, properties.getQueueCapacity());
+        this.queue = new Semaphore(queueCapacity);
+        this.nanoClock = nanoClock;
+        // the queue of the executor is bounded by the semaphore
+        executor = new ScheduledThreadPoolExecutor(Math.max(1, properties.getThreads()),
+                new CustomizableThreadFactory(name + "-"));
+
+        waitTimer = Timer.builder("simulator.update.wait").tag(STAGE_TAG, name)
+                .description("Time tasks of the update simulation waited for a thread of their stage when due")
+                .register(meterRegistry);
+        blockedTimer = Timer.builder("simulator.update.blocked").tag(STAGE_TAG, name)
+                .description("Time the submission of update simulation tasks waited for a full stage")
+                .register(meterRegistry);
+        overflowCounter = Counter.builder("simulator.update.overflow").tag(STAGE_TAG, name)
+                .tag("policy", overflow.name())
+                .description("Tasks of the update simulation which found their stage full and were not queued")
+                .register(meterRegistry);
+        droppedCounter = Counter.builder("simulator.update.dropped").tag(STAGE_TAG, name)
+                .description("Tasks of serial executors which were dropped as their stage was full or stopped")
+                .register(meterRegistry);
+        Gauge.builder("simulator.update.queued", this, UpdateStage::queued).tag(STAGE_TAG, name)
+                .description("Tasks of the update simulation waiting for a thread of their stage")
+                .register(meterRegistry);
+        Gauge.builder("simulator.update.active", executor, ScheduledThreadPoolExecutor::getActiveCount)
+                .tag(STAGE_TAG, name).description("Tasks of the update simulation running in their stage")
+                .register(meterRegistry);
+    }
+
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return the number of tasks waiting for a thread
+     */
+    int queued() {
+        return queueCapacity - queue.availablePermits();
+    }
+
+    /**
+     * Submits a task which runs after a delay.
+     *
+     * @param task
+     *            the task to run
+     * @param delayMillis
+     *            the delay in milliseconds, the task runs immediately if the
+     *            submitting thread has to run it
+     * @return <code>true</code> if the task has been queued or run,
+     *         <code>false</code> if it has been rejected
+     */
+    boolean submit(final Runnable task, final long delayMillis) {
+        if (!queue.tryAcquire() && !awaitQueue()) {
+            overflowCounter.increment();
+            if (overflow != Overflow.CALLER_RUNS) {
+                return false;
+            }
+            task.run();
+            return true;
+        }
+
+        final long dueNanos = nanoClock.getAsLong() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis));
+        final Runnable queued = () -> {
+            queue.release();
+            waitTimer.record(Math.max(0, nanoClock.getAsLong() - dueNanos), TimeUnit.NANOSECONDS);
+            task.run();
+        };
+        try {
+            if (delayMillis > 0) {
+                executor.schedule(queued, delayMillis, TimeUnit.MILLISECONDS);
+            } else {
+                executor.execute(queued);
+            }
+        } catch (final RejectedExecutionException e) {
+            // the stage has been stopped
+            queue.release();
+            LOGGER.debug("Task rejected by stopped stage {}", name, e);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean awaitQueue() {
+        if (overflow != Overflow.BLOCK) {
+            return false;
+        }
+        final long start = nanoClock.getAsLong();
+        try {
+            queue.acquire();
+            return true;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            blockedTimer.record(nanoClock.getAsLong() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * @param owner
+     *            of the tasks, logged with the dropped tasks
+     * @return an executor which runs its tasks on this stage one after another
+     *         in the order they were submitted. The tasks take one place of
+     *         the stage while they run and never wait for it from a thread of
+     *         the stage. Tasks which find the stage full are dropped and
+     *         counted if the stage rejects them.
+     */
+    Executor serial(final String owner) {
+        return new SerialExecutor(owner);
+    }
+
+    private final class SerialExecutor implements Executor {
+
+        private final String owner;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private SerialExecutor(final String owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public void execute(final Runnable task) {
+            tasks.add(task);
+            schedule();
+        }
+
+        private void schedule() {
+            if (tasks.isEmpty() || !scheduled.compareAndSet(false, true)) {
+                return;
+            }
+            if (!submit(this::drain, 0)) {
+                int dropped = 0;
+                while (tasks.poll() != null) {
+                    dropped++;
+                }
+                droppedCounter.increment(dropped);
+                LOGGER.warn("Dropped {} tasks of {}, the {} stage is full or stopped", dropped, owner, name);
+                scheduled.set(false);
+            }
+        }
+
+        private void drain() {
+            do {
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    try {
+                        task.run();
+                    } catch (final RuntimeException e) {
+                        LOGGER.error("Task of {} on the {} stage failed", owner, name, e);
+                    }
+                }
+                scheduled.set(false);
+                // a task may have been added after the queue was found empty,
+                // it is run right here as a stage thread must never wait for
+                // its own stage
+            } while (!tasks.isEmpty() && scheduled.compareAndSet(false, true));
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator.amqp;
+
+import java.io.IOException;
+import java.util.OptionalLong;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Reads the action ID of a DMF action request with a streaming parser. Only
+ * the top level fields are visited until the action ID is found, nested
+ * objects and arrays are skipped without being decoded.
+ */
+final class ActionIdExtractor {
+
+    private static final String ACTION_ID = "actionId";
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private ActionIdExtractor() {
+        // utility class
+    }
+
+    /**
+     * @param body
+     *            the JSON body of the message
+     * @return the action ID or empty if the body is no JSON object or has no
+     *         numeric action ID on its top level
+     */
+    static OptionalLong extract(final byte[] body) {
+        if (body == null || body.length == 0) {
+            return OptionalLong.empty();
+        }
+        try (final JsonParser parser = JSON_FACTORY.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return OptionalLong.empty();
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final boolean actionId = ACTION_ID.equals(parser.currentName());
+                final JsonToken value = parser.nextToken();
+                if (actionId) {
+                    return value == JsonToken.VALUE_NUMBER_INT ? OptionalLong.of(parser.getLongValue())
+                            : OptionalLong.empty();
+                }
+                parser.skipChildren();
+            }
+            return OptionalLong.empty();
+        } catch (final IOException e) {
+            return OptionalLong.empty();
+        }
+    }
+}
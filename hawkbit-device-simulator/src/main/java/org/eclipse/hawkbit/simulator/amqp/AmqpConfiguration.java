@@ -30,6 +30,8 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
 /**
  * The spring AMQP configuration to use a AMQP for communication with SP update
  * server.
@@ -42,14 +44,27 @@ public class AmqpConfiguration {
     @Bean
     DmfReceiverService dmfReceiverService(final RabbitTemplate rabbitTemplate, final AmqpProperties amqpProperties,
             final DmfSenderService spSenderService, final DeviceSimulatorUpdater deviceUpdater,
-            final DeviceSimulatorRepository repository) {
-        return new DmfReceiverService(rabbitTemplate, amqpProperties, spSenderService, deviceUpdater, repository);
+            final DeviceSimulatorRepository repository, final ShardedDispatcher dmfDispatcher,
+            final MeterRegistry meterRegistry) {
+        return new DmfReceiverService(rabbitTemplate, amqpProperties, spSenderService, deviceUpdater, repository,
+                dmfDispatcher, meterRegistry);
+    }
+
+    @Bean
+    ShardedDispatcher dmfDispatcher(final AmqpProperties amqpProperties, final MeterRegistry meterRegistry) {
+        return new ShardedDispatcher(amqpProperties, meterRegistry);
     }
 
     @Bean
     DmfSenderService dmfSenderService(final RabbitTemplate rabbitTemplate, final AmqpProperties amqpProperties,
-            final SimulationProperties simulationProperties) {
-        return new DmfSenderService(rabbitTemplate, amqpProperties, simulationProperties);
+            final SimulationProperties simulationProperties, final DmfPublisher dmfPublisher) {
+        return new DmfSenderService(rabbitTemplate, amqpProperties, simulationProperties, dmfPublisher);
+    }
+
+    @Bean
+    DmfPublisher dmfPublisher(final RabbitTemplate rabbitTemplate, final AmqpProperties amqpProperties,
+            final MeterRegistry meterRegistry) {
+        return new DmfPublisher(rabbitTemplate, amqpProperties, meterRegistry);
     }
 
     @Bean
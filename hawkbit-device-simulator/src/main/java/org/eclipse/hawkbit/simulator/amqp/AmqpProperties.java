@@ -9,6 +9,8 @@
  */
 package org.eclipse.hawkbit.simulator.amqp;
 
+import java.time.Duration;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
@@ -59,6 +61,26 @@ public class AmqpProperties {
 
     private String customVhost;
 
+    /**
+     * Publishing of the DMF messages to the update server.
+     */
+    private final Publisher publisher = new Publisher();
+
+    /**
+     * Handling of the DMF messages from the update server.
+     */
+    private final Listener listener = new Listener();
+
+    /**
+     * Pings which wait for their response.
+     */
+    private final OpenRequests openPings = new OpenRequests(Duration.ofMinutes(1), 10_000);
+
+    /**
+     * Actions which wait for their final status.
+     */
+    private final OpenRequests openActions = new OpenRequests(Duration.ofDays(1), 100_000);
+
     public boolean isCheckDmfHealth() {
         return checkDmfHealth;
     }
@@ -106,4 +128,193 @@ public class AmqpProperties {
     public void setCustomVhost(final String customVhost) {
         this.customVhost = customVhost;
     }
+
+    public Publisher getPublisher() {
+        return publisher;
+    }
+
+    public Listener getListener() {
+        return listener;
+    }
+
+    public OpenRequests getOpenPings() {
+        return openPings;
+    }
+
+    public OpenRequests getOpenActions() {
+        return openActions;
+    }
+
+    /**
+     * Limits of the requests which are tracked until they are answered.
+     *
+     */
+    public static class OpenRequests {
+        /**
+         * Time after which an unanswered request is forgotten.
+         */
+        private Duration ttl;
+
+        /**
+         * Maximum number of tracked requests, the oldest are forgotten first.
+         */
+        private int maxSize;
+
+        OpenRequests(final Duration ttl, final int maxSize) {
+            this.ttl = ttl;
+            this.maxSize = maxSize;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(final Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(final int maxSize) {
+            this.maxSize = maxSize;
+        }
+    }
+
+    /**
+     * Handling of the received DMF messages on shards by thing ID.
+     *
+     */
+    public static class Listener {
+        /**
+         * Number of threads which handle the received messages, 0 to handle
+         * them on the consumer thread.
+         */
+        private int concurrency = 8;
+
+        /**
+         * Maximum number of received messages waiting for the thread of their
+         * shard.
+         */
+        private int queueCapacity = 1_000;
+
+        /**
+         * Milliseconds to wait at shutdown until the received messages
+         * waiting for their shard have been handled.
+         */
+        private long shutdownTimeout = 10_000;
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        public void setConcurrency(final int concurrency) {
+            this.concurrency = concurrency;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(final int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public long getShutdownTimeout() {
+            return shutdownTimeout;
+        }
+
+        public void setShutdownTimeout(final long shutdownTimeout) {
+            this.shutdownTimeout = shutdownTimeout;
+        }
+    }
+
+    /**
+     * Publishing of the DMF messages with publisher confirms.
+     *
+     */
+    public static class Publisher {
+        /**
+         * Set to <code>false</code> to publish the messages on the thread of
+         * the caller instead of in batches by a sender thread.
+         */
+        private boolean async = true;
+
+        /**
+         * Maximum number of messages waiting for the sender thread.
+         */
+        private int queueCapacity = 10_000;
+
+        /**
+         * Maximum number of messages published in one batch.
+         */
+        private int batchSize = 100;
+
+        /**
+         * Maximum number of published messages waiting for their confirm.
+         * Only applies if publisher confirms are enabled.
+         */
+        private int maxOutstandingConfirms = 1_000;
+
+        /**
+         * Milliseconds to wait for a free slot in the queue before a message
+         * is dropped.
+         */
+        private long enqueueTimeout = 10_000;
+
+        /**
+         * Milliseconds to wait for outstanding confirms before a message is
+         * published anyway.
+         */
+        private long confirmTimeout = 30_000;
+
+        public boolean isAsync() {
+            return async;
+        }
+
+        public void setAsync(final boolean async) {
+            this.async = async;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(final int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(final int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public int getMaxOutstandingConfirms() {
+            return maxOutstandingConfirms;
+        }
+
+        public void setMaxOutstandingConfirms(final int maxOutstandingConfirms) {
+            this.maxOutstandingConfirms = maxOutstandingConfirms;
+        }
+
+        public long getEnqueueTimeout() {
+            return enqueueTimeout;
+        }
+
+        public void setEnqueueTimeout(final long enqueueTimeout) {
+            this.enqueueTimeout = enqueueTimeout;
+        }
+
+        public long getConfirmTimeout() {
+            return confirmTimeout;
+        }
+
+        public void setConfirmTimeout(final long confirmTimeout) {
+            this.confirmTimeout = confirmTimeout;
+        }
+    }
 }
@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator.amqp;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.hawkbit.dmf.amqp.api.EventTopic;
+import org.eclipse.hawkbit.dmf.amqp.api.MessageHeaderKey;
+import org.eclipse.hawkbit.dmf.amqp.api.MessageType;
+import org.eclipse.hawkbit.dmf.json.model.DmfActionUpdateStatus;
+import org.eclipse.hawkbit.dmf.json.model.DmfAttributeUpdate;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Builds the DMF messages which are sent to the update server. The bodies are
+ * written by cached Jackson writers instead of a round trip through the
+ * message converter and the correlation IDs are counted up behind a random
+ * prefix instead of drawing a random UUID from SecureRandom for every message.
+ * <p>
+ * Every message gets properties of its own, the template mutates them while
+ * sending, so a message is not allocation free.
+ */
+final class DmfMessageFactory {
+
+    private static final byte[] EMPTY_BODY = new byte[0];
+    private static final String SENDER = "simulator";
+
+    private final String replyTo;
+    private final ObjectWriter actionStatusWriter;
+    private final ObjectWriter attributeUpdateWriter;
+
+    private final String correlationIdPrefix;
+    private final AtomicLong correlationIdCounter = new AtomicLong();
+
+    /**
+     * @param replyTo
+     *            the exchange the update server replies to
+     */
+    // Exception for squid:S2245 : not security relevant random number
+    // generation
+    @SuppressWarnings("squid:S2245")
+    DmfMessageFactory(final String replyTo) {
+        this.replyTo = replyTo;
+        final ObjectMapper objectMapper = new ObjectMapper();
+        actionStatusWriter = objectMapper.writerFor(DmfActionUpdateStatus.class);
+        attributeUpdateWriter = objectMapper.writerFor(DmfAttributeUpdate.class);
+        // distinguishes the IDs of simulator instances and restarts
+        correlationIdPrefix = Long.toHexString(ThreadLocalRandom.current().nextLong()) + '-';
+    }
+
+    /**
+     * @return a correlation ID which is unique within this simulator
+     */
+    String nextCorrelationId() {
+        return correlationIdPrefix + Long.toHexString(correlationIdCounter.incrementAndGet());
+    }
+
+    Message ping(final String tenant, final String correlationId) {
+        final MessageProperties messageProperties = new MessageProperties();
+        messageProperties.setHeader(MessageHeaderKey.TENANT, tenant);
+        messageProperties.setHeader(MessageHeaderKey.TYPE, MessageType.PING.toString());
+        messageProperties.setCorrelationId(correlationId);
+        messageProperties.setReplyTo(replyTo);
+        messageProperties.setContentType(MessageProperties.CONTENT_TYPE_TEXT_PLAIN);
+        return new Message(EMPTY_BODY, messageProperties);
+    }
+
+    Message thingCreated(final String tenant, final String thingId) {
+        final MessageProperties messageProperties = new MessageProperties();
+        messageProperties.setHeader(MessageHeaderKey.TYPE, MessageType.THING_CREATED.name());
+        messageProperties.setHeader(MessageHeaderKey.TENANT, tenant);
+        messageProperties.setHeader(MessageHeaderKey.THING_ID, thingId);
+        messageProperties.setHeader(MessageHeaderKey.SENDER, SENDER);
+        messageProperties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        messageProperties.setReplyTo(replyTo);
+        return new Message(EMPTY_BODY, messageProperties);
+    }
+
+    Message thingRemoved(final String tenant, final String thingId) {
+        final MessageProperties messageProperties = new MessageProperties();
+        messageProperties.setHeader(MessageHeaderKey.TYPE, MessageType.THING_REMOVED.name());
+        messageProperties.setHeader(MessageHeaderKey.TENANT, tenant);
+        messageProperties.setHeader(MessageHeaderKey.THING_ID, thingId);
+        return new Message(EMPTY_BODY, messageProperties);
+    }
+
+    Message attributeUpdate(final String tenant, final String thingId, final DmfAttributeUpdate attributeUpdate) {
+        final MessageProperties messageProperties = new MessageProperties();
+        messageProperties.setHeader(MessageHeaderKey.TYPE, MessageType.EVENT.name());
+        messageProperties.setHeader(MessageHeaderKey.TOPIC, EventTopic.UPDATE_ATTRIBUTES);
+        messageProperties.setHeader(MessageHeaderKey.TENANT, tenant);
+        messageProperties.setHeader(MessageHeaderKey.THING_ID, thingId);
+        messageProperties.setReplyTo(replyTo);
+        return json(attributeUpdateWriter, attributeUpdate, messageProperties);
+    }
+
+    Message actionStatus(final String tenant, final DmfActionUpdateStatus actionUpdateStatus) {
+        final MessageProperties messageProperties = new MessageProperties();
+        messageProperties.setHeader(MessageHeaderKey.TYPE, MessageType.EVENT.name());
+        messageProperties.setHeader(MessageHeaderKey.TENANT, tenant);
+        messageProperties.setHeader(MessageHeaderKey.TOPIC, EventTopic.UPDATE_ACTION_STATUS.name());
+        messageProperties.setHeader(MessageHeaderKey.CONTENT_TYPE, MessageProperties.CONTENT_TYPE_JSON);
+        return json(actionStatusWriter, actionUpdateStatus, messageProperties);
+    }
+
+    private static Message json(final ObjectWriter writer, final Object body,
+            final MessageProperties messageProperties) {
+        final byte[] bytes;
+        try {
+            bytes = writer.writeValueAsBytes(body);
+        } catch (final JsonProcessingException e) {
+            throw new MessageConversionException("Failed to convert " + body.getClass().getSimpleName(), e);
+        }
+        // same properties as set by the Jackson message converter
+        messageProperties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        messageProperties.setContentEncoding(StandardCharsets.UTF_8.name());
+        messageProperties.setContentLength(bytes.length);
+        return new Message(bytes, messageProperties);
+    }
+}
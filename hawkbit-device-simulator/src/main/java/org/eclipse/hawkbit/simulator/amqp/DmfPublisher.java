@@ -0,0 +1,295 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator.amqp;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.ReturnedMessage;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Publishes the DMF messages to the update server. The messages are queued
+ * and sent in batches on one channel by a sender thread. With publisher
+ * confirms enabled, only a window of messages may wait for its confirm. A full
+ * window blocks the sender thread and a full queue blocks the callers, so a
+ * broker which does not keep up slows down the simulated devices instead of
+ * piling up unconfirmed messages.
+ */
+public class DmfPublisher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DmfPublisher.class);
+
+    private final RabbitTemplate rabbitTemplate;
+    private final AmqpProperties.Publisher properties;
+    private final LongSupplier nanoClock;
+
+    // null if publisher confirms are disabled
+    private final Semaphore window;
+    // null if the messages are published by the caller
+    private final BlockingQueue<PendingConfirm> queue;
+    private ExecutorService sender;
+
+    private final Timer confirmTimer;
+    private final Timer blockedTimer;
+    private final DistributionSummary batchSummary;
+    private final Counter nackCounter;
+    private final Counter returnCounter;
+    private final Counter droppedCounter;
+
+    /**
+     * @param rabbitTemplate
+     *            to publish the messages, its connection factory decides if
+     *            publisher confirms and returns are enabled
+     * @param amqpProperties
+     *            for the publisher configuration
+     * @param meterRegistry
+     *            to expose the publisher metrics
+     */
+    public DmfPublisher(final RabbitTemplate rabbitTemplate, final AmqpProperties amqpProperties,
+            final MeterRegistry meterRegistry) {
+        this(rabbitTemplate, amqpProperties.getPublisher(), isPublisherConfirms(rabbitTemplate), meterRegistry,
+                System::nanoTime);
+        final ConnectionFactory connectionFactory = rabbitTemplate.getConnectionFactory();
+        if (connectionFactory != null && connectionFactory.isPublisherReturns()) {
+            // unroutable messages are returned instead of silently dropped
+            rabbitTemplate.setMandatory(true);
+        }
+    }
+
+    DmfPublisher(final RabbitTemplate rabbitTemplate, final AmqpProperties.Publisher properties,
+            final boolean confirms, final MeterRegistry meterRegistry, final LongSupplier nanoClock) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.properties = properties;
+        this.nanoClock = nanoClock;
+
+        window = confirms ? new Semaphore(Math.max(1, properties.getMaxOutstandingConfirms())) : null;
+        queue = properties.isAsync() ? new ArrayBlockingQueue<>(Math.max(1, properties.getQueueCapacity())) : null;
+
+        rabbitTemplate.setConfirmCallback(this::confirm);
+        rabbitTemplate.setReturnsCallback(this::returned);
+
+        confirmTimer = Timer.builder("simulator.dmf.confirm")
+                .description("Time from publishing a DMF message until the broker confirmed it")
+                .publishPercentileHistogram().register(meterRegistry);
+        blockedTimer = Timer.builder("simulator.dmf.blocked")
+                .description("Time the publishing waited for outstanding confirms").register(meterRegistry);
+        batchSummary = DistributionSummary.builder("simulator.dmf.batch")
+                .description("Number of DMF messages published in one batch").register(meterRegistry);
+        nackCounter = Counter.builder("simulator.dmf.nacked").description("DMF messages nacked by the broker")
+                .register(meterRegistry);
+        returnCounter = Counter.builder("simulator.dmf.returned")
+                .description("DMF messages returned by the broker as unroutable").register(meterRegistry);
+        droppedCounter = Counter.builder("simulator.dmf.dropped")
+                .description("DMF messages which could not be published").register(meterRegistry);
+        if (queue != null) {
+            Gauge.builder("simulator.dmf.queued", queue, Collection::size)
+                    .description("DMF messages waiting for the sender thread").register(meterRegistry);
+        }
+        if (window != null) {
+            final int maxOutstanding = Math.max(1, properties.getMaxOutstandingConfirms());
+            Gauge.builder("simulator.dmf.outstanding", window, w -> maxOutstanding - (double) w.availablePermits())
+                    .description("Published DMF messages waiting for their confirm").register(meterRegistry);
+        }
+    }
+
+    private static boolean isPublisherConfirms(final RabbitTemplate rabbitTemplate) {
+        final ConnectionFactory connectionFactory = rabbitTemplate.getConnectionFactory();
+        return connectionFactory != null && connectionFactory.isPublisherConfirms();
+    }
+
+    @PostConstruct
+    void start() {
+        if (queue != null) {
+            sender = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("dmf-publisher-"));
+            sender.execute(this::sendBatches);
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        if (sender != null) {
+            sender.shutdownNow();
+            if (!queue.isEmpty()) {
+                LOGGER.warn("Discarded {} queued DMF messages on shutdown", queue.size());
+            }
+        }
+    }
+
+    /**
+     * Publishes a message. Blocks while the queue is full or, if the messages
+     * are published by the caller, while the confirm window is full.
+     *
+     * @param exchange
+     *            the exchange name
+     * @param message
+     *            the message to publish
+     * @param correlationId
+     *            to correlate the confirm of the message
+     */
+    public void publish(final String exchange, final Message message, final String correlationId) {
+        final PendingConfirm pending = new PendingConfirm(exchange, message, correlationId);
+        if (queue == null) {
+            send(rabbitTemplate, pending);
+            return;
+        }
+
+        try {
+            if (queue.offer(pending, properties.getEnqueueTimeout(), TimeUnit.MILLISECONDS)) {
+                return;
+            }
+            LOGGER.warn("Dropped message to exchange {} with correlationId {}, the publisher queue is full", exchange,
+                    correlationId);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("Interrupted while queueing message to exchange {} with correlationId {}", exchange,
+                    correlationId);
+        }
+        droppedCounter.increment();
+    }
+
+    private void sendBatches() {
+        final int batchSize = Math.max(1, properties.getBatchSize());
+        final List<PendingConfirm> batch = new ArrayList<>(batchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            queue.drainTo(batch, batchSize - 1);
+            batchSummary.record(batch.size());
+
+            try {
+                // all messages of the batch go through one channel
+                rabbitTemplate.invoke(operations -> {
+                    batch.forEach(pending -> send(operations, pending));
+                    return null;
+                });
+            } catch (final AmqpException e) {
+                droppedCounter.increment(batch.size());
+                LOGGER.error("Failed to publish a batch of {} messages", batch.size(), e);
+            }
+            batch.clear();
+        }
+    }
+
+    // Exception squid:S4449 - Cannot modify RabbitTemplate method definitions.
+    @SuppressWarnings({ "squid:S4449" })
+    private void send(final RabbitOperations operations, final PendingConfirm pending) {
+        if (window != null) {
+            pending.holdsSlot = acquireSlot();
+        }
+        pending.publishedNanos = nanoClock.getAsLong();
+        try {
+            operations.send(pending.exchange, null, pending.message, pending);
+        } catch (final AmqpException e) {
+            releaseSlot(pending);
+            droppedCounter.increment();
+            LOGGER.error("Failed to publish message to exchange {} with correlationId {}", pending.exchange,
+                    pending.getId(), e);
+        }
+    }
+
+    private boolean acquireSlot() {
+        if (window.tryAcquire()) {
+            return true;
+        }
+
+        final long start = nanoClock.getAsLong();
+        try {
+            if (window.tryAcquire(properties.getConfirmTimeout(), TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+            LOGGER.warn("No confirms received for {} ms, publishing beyond the window of {} outstanding confirms",
+                    properties.getConfirmTimeout(), properties.getMaxOutstandingConfirms());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            blockedTimer.record(nanoClock.getAsLong() - start, TimeUnit.NANOSECONDS);
+        }
+        return false;
+    }
+
+    private void releaseSlot(final PendingConfirm pending) {
+        if (pending.holdsSlot) {
+            pending.holdsSlot = false;
+            window.release();
+        }
+    }
+
+    void confirm(final CorrelationData correlationData, final boolean ack, final String cause) {
+        if (!(correlationData instanceof PendingConfirm)) {
+            return;
+        }
+        final PendingConfirm pending = (PendingConfirm) correlationData;
+        releaseSlot(pending);
+        confirmTimer.record(nanoClock.getAsLong() - pending.publishedNanos, TimeUnit.NANOSECONDS);
+
+        if (!ack) {
+            nackCounter.increment();
+            LOGGER.warn("Message to exchange {} with correlationId {} nacked by the broker: {}", pending.exchange,
+                    pending.getId(), cause);
+        }
+    }
+
+    private void returned(final ReturnedMessage returned) {
+        returnCounter.increment();
+        LOGGER.warn("Message with correlationId {} returned by exchange {}: {} {}",
+                returned.getMessage().getMessageProperties().getCorrelationId(), returned.getExchange(),
+                returned.getReplyCode(), returned.getReplyText());
+    }
+
+    /**
+     * A message on its way to the broker, correlates the confirm.
+     */
+    private static final class PendingConfirm extends CorrelationData {
+
+        private final String exchange;
+        private final Message message;
+
+        // written by the publishing thread before the send, read by the
+        // thread which receives the confirm
+        private volatile long publishedNanos;
+        private volatile boolean holdsSlot;
+
+        private PendingConfirm(final String exchange, final Message message, final String correlationId) {
+            super(correlationId);
+            this.exchange = exchange;
+            this.message = message;
+        }
+    }
+}
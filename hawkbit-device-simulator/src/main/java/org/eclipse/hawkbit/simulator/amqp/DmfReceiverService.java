@@ -11,9 +11,8 @@ package org.eclipse.hawkbit.simulator.amqp;
 
 import java.nio.charset.StandardCharsets;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
+import java.util.OptionalLong;
 import java.util.UUID;
 
 import org.eclipse.hawkbit.dmf.amqp.api.EventTopic;
@@ -37,6 +36,8 @@ import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.scheduling.annotation.Scheduled;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
 /**
  * Handle all incoming Messages from hawkBit update server.
  *
@@ -51,11 +52,15 @@ public class DmfReceiverService extends MessageService {
 
     private final DeviceSimulatorRepository repository;
 
-    private final Set<String> openPings = Collections.synchronizedSet(new HashSet<>());
+    private final ShardedDispatcher dispatcher;
+
+    // by correlation ID
+    private final ExpiringRegistry<String, OpenRequest> openPings;
 
-    private final Set<Long> openActions = Collections.synchronizedSet(new HashSet<>());
+    // by action ID
+    private final ExpiringRegistry<Long, OpenRequest> openActions;
 
-    private static final String REGEX_EXTRACT_ACTIONID = "[^0-9]";
+    private final RoundTrips roundTrips;
 
     /**
      * Constructor.
@@ -70,14 +75,25 @@ public class DmfReceiverService extends MessageService {
      *            simulator service for updates
      * @param repository
      *            to manage simulated devices
+     * @param dispatcher
+     *            to handle the messages of different devices in parallel
+     * @param meterRegistry
+     *            to expose the open pings and actions and their round trips
      */
     DmfReceiverService(final RabbitTemplate rabbitTemplate, final AmqpProperties amqpProperties,
             final DmfSenderService spSenderService, final DeviceSimulatorUpdater deviceUpdater,
-            final DeviceSimulatorRepository repository) {
+            final DeviceSimulatorRepository repository, final ShardedDispatcher dispatcher,
+            final MeterRegistry meterRegistry) {
         super(rabbitTemplate, amqpProperties);
         this.spSenderService = spSenderService;
         this.deviceUpdater = deviceUpdater;
         this.repository = repository;
+        this.dispatcher = dispatcher;
+        openPings = new ExpiringRegistry<>("pings", amqpProperties.getOpenPings().getTtl(),
+                amqpProperties.getOpenPings().getMaxSize(), meterRegistry, System::nanoTime);
+        openActions = new ExpiringRegistry<>("actions", amqpProperties.getOpenActions().getTtl(),
+                amqpProperties.getOpenActions().getMaxSize(), meterRegistry, System::nanoTime);
+        roundTrips = new RoundTrips(meterRegistry);
     }
 
     /**
@@ -104,7 +120,9 @@ public class DmfReceiverService extends MessageService {
 
     /**
      * Handle the incoming Message from Queue with the property
-     * (hawkbit.device.simulator.amqp.receiverConnectorQueueFromSp).
+     * (hawkbit.device.simulator.amqp.receiverConnectorQueueFromSp). The
+     * message is validated on the consumer thread and handled on the shard of
+     * its thing.
      *
      * @param message
      *            the incoming message
@@ -123,20 +141,23 @@ public class DmfReceiverService extends MessageService {
 
         if (MessageType.EVENT == messageType) {
             checkContentTypeJson(message);
-            handleEventMessage(message, thingId);
+            dispatcher.dispatch(thingId, () -> handleEventMessage(message, thingId));
             return;
         }
 
         if (MessageType.THING_DELETED == messageType) {
             checkContentTypeJson(message);
-            repository.remove(tenant, thingId);
+            dispatcher.dispatch(thingId, () -> repository.remove(tenant, thingId));
             return;
         }
 
         if (MessageType.PING_RESPONSE == messageType) {
             final String correlationId = message.getMessageProperties().getCorrelationId();
-            if (!openPings.remove(correlationId)) {
+            final OpenRequest ping = openPings.remove(correlationId);
+            if (ping == null) {
                 LOGGER.error("Unknown PING_RESPONSE received for correlationId: {}.", correlationId);
+            } else {
+                roundTrips.recordPing(ping.tenant, ping.elapsedNanos());
             }
 
             if (LOGGER.isDebugEnabled()) {
@@ -164,12 +185,19 @@ public class DmfReceiverService extends MessageService {
 
         repository.getTenants().forEach(tenant -> {
             final String correlationId = UUID.randomUUID().toString();
+            // tracked before sending, the response may overtake this thread
+            openPings.putIfAbsent(correlationId, new OpenRequest(tenant));
             spSenderService.ping(tenant, correlationId);
-            openPings.add(correlationId);
             LOGGER.debug("Ping tenant {} with correlationId {}", tenant, correlationId);
         });
     }
 
+    @Scheduled(fixedDelay = 60_000, initialDelay = 60_000)
+    void expireOpenRequests() {
+        openPings.expire();
+        openActions.expire();
+    }
+
     private void handleEventMessage(final Message message, final String thingId) {
         final Object eventHeader = message.getMessageProperties().getHeaders().get(MessageHeaderKey.TOPIC);
         if (eventHeader == null) {
@@ -202,19 +230,23 @@ public class DmfReceiverService extends MessageService {
     }
 
     private void handleConfirmation(final Message message, final String thingId) {
+        // the status is only sent, a DMF device which is kept without its
+        // object could not keep it and the update of the action reports its
+        // own status
         final AbstractSimulatedDevice device = repository.get(getTenant(message), thingId);
-        device.setUpdateStatus(new UpdateStatus(UpdateStatus.ResponseStatus.CONFIRMED, "Simulator : Action is confirmed"));
+        final UpdateStatus status = new UpdateStatus(UpdateStatus.ResponseStatus.CONFIRMED,
+                "Simulator : Action is confirmed");
         final Long actionId = extractActionIdFrom(message);
         LOGGER.info("Action with id {} is confirmed be the device for installation", actionId);
-        sendFeedback(actionId, device);
+        sendFeedback(actionId, device, status);
     }
 
     private long extractActionIdFrom(final Message message) {
-        final String messageAsString = message.toString();
-        final String requiredMessageContent = messageAsString
-                .substring(messageAsString.indexOf('{') + 1, messageAsString.indexOf('}'));
-        final String[] splitMessageContent = requiredMessageContent.split(",");
-        return Long.parseLong(splitMessageContent[0].replaceAll(REGEX_EXTRACT_ACTIONID, ""));
+        final OptionalLong actionId = ActionIdExtractor.extract(message.getBody());
+        if (actionId.isEmpty()) {
+            logAndThrowMessageError(message, "Action ID is not set");
+        }
+        return actionId.getAsLong();
     }
 
     private void handleMultiActionRequest(final Message message, final String thingId) {
@@ -222,9 +254,10 @@ public class DmfReceiverService extends MessageService {
         final DmfMultiActionRequest multiActionRequest = convertMessage(message, DmfMultiActionRequest.class);
         final String tenant = getTenant(message);
 
-        final DmfMultiActionRequest.DmfMultiActionElement actionElement = multiActionRequest.getElements().get(0);
-
-        processMultiActionElement(thingId, tenant, actionElement);
+        // every action is simulated on its own and reports its own status, the
+        // updater limits how many of them run at the same time
+        multiActionRequest.getElements()
+                .forEach(actionElement -> processMultiActionElement(thingId, tenant, actionElement));
     }
 
     private void processMultiActionElement(final String thingId, final String tenant,
@@ -233,12 +266,13 @@ public class DmfReceiverService extends MessageService {
         final DmfActionRequest action = actionElement.getAction();
         final long actionId = action.getActionId();
 
-        if (openActions.contains(actionId)) {
+        // an action restored from a snapshot is simulated again when it is
+        // delivered again, its simulation has not survived the restart
+        if (!openActions.putIfAbsent(actionId, new OpenRequest(tenant))
+                && !openActions.test(actionId, OpenRequest::resume)) {
             return;
         }
 
-        openActions.add(actionId);
-
         switch (eventTopic) {
         case DOWNLOAD:
         case DOWNLOAD_AND_INSTALL:
@@ -287,6 +321,9 @@ public class DmfReceiverService extends MessageService {
         final DmfDownloadAndUpdateRequest downloadAndUpdateRequest = convertMessage(message,
                 DmfDownloadAndUpdateRequest.class);
 
+        // tracked for its round trip only, a redelivered action keeps its
+        // first start
+        openActions.putIfAbsent(downloadAndUpdateRequest.getActionId(), new OpenRequest(tenant));
         processUpdate(thingId, actionType, tenant, downloadAndUpdateRequest);
     }
 
@@ -296,42 +333,125 @@ public class DmfReceiverService extends MessageService {
         final String targetSecurityToken = downloadAndUpdateRequest.getTargetSecurityToken();
 
         deviceUpdater.startUpdate(tenant, thingId, downloadAndUpdateRequest.getSoftwareModules(), targetSecurityToken,
-                null, device -> sendFeedback(actionId, device), actionType);
+                null, (device, status) -> sendFeedback(actionId, device, status), actionType);
     }
 
-    private void sendFeedback(final Long actionId, final AbstractSimulatedDevice device) {
-        switch (device.getUpdateStatus().getResponseStatus()) {
+    private void sendFeedback(final Long actionId, final AbstractSimulatedDevice device, final UpdateStatus status) {
+        switch (status.getResponseStatus()) {
         case SUCCESSFUL:
             spSenderService.finishUpdateProcess(new SimulatedUpdate(device.getTenant(), device.getId(), actionId),
-                    device.getUpdateStatus().getStatusMessages());
-            openActions.remove(actionId);
+                    status.getStatusMessages());
+            closeAction(actionId, RoundTrips.FINISHED);
             break;
         case ERROR:
             spSenderService.finishUpdateProcessWithError(
                     new SimulatedUpdate(device.getTenant(), device.getId(), actionId),
-                    device.getUpdateStatus().getStatusMessages());
-            openActions.remove(actionId);
+                    status.getStatusMessages());
+            closeAction(actionId, RoundTrips.ERROR);
             break;
         case DOWNLOADING:
             spSenderService.sendActionStatusMessage(device.getTenant(), DmfActionStatus.DOWNLOAD,
-                    device.getUpdateStatus().getStatusMessages(), actionId);
+                    status.getStatusMessages(), actionId);
             break;
         case DOWNLOADED:
             // DOWNLOAD_ONLY actions could be closed here. However, since we do not check the action
             // we leave it open.
             spSenderService.sendActionStatusMessage(device.getTenant(), DmfActionStatus.DOWNLOADED,
-                    device.getUpdateStatus().getStatusMessages(), actionId);
+                    status.getStatusMessages(), actionId);
             break;
         case RUNNING:
             spSenderService.sendActionStatusMessage(device.getTenant(), DmfActionStatus.RUNNING,
-                    device.getUpdateStatus().getStatusMessages(), actionId);
+                    status.getStatusMessages(), actionId);
             break;
         case CONFIRMED:
             spSenderService.sendActionStatusMessage(device.getTenant(), DmfActionStatus.CONFIRMED,
-                    device.getUpdateStatus().getStatusMessages(), actionId);
+                    status.getStatusMessages(), actionId);
             break;
         default:
             break;
         }
     }
+
+    /**
+     * Passes the open actions to a consumer, e.g. to keep them in a snapshot.
+     *
+     * @param consumer
+     *            called with every open action
+     */
+    public void forEachOpenAction(final OpenActionConsumer consumer) {
+        openActions.forEach((actionId, action, ageNanos) -> consumer.accept(actionId, action.tenant, ageNanos));
+    }
+
+    /**
+     * Restores an open action of a previous run of the simulator. Its round
+     * trip includes the time before the restart. If the action is delivered
+     * again it is simulated again.
+     *
+     * @param actionId
+     *            the ID of the action
+     * @param tenant
+     *            the tenant of the action
+     * @param ageNanos
+     *            nanoseconds since the action has been received
+     * @return <code>true</code> if the action has been restored
+     */
+    public boolean restoreOpenAction(final long actionId, final String tenant, final long ageNanos) {
+        final long now = System.nanoTime();
+        return openActions.restore(actionId, new OpenRequest(tenant, now - ageNanos, true), ageNanos);
+    }
+
+    private void closeAction(final Long actionId, final String outcome) {
+        final OpenRequest action = openActions.remove(actionId);
+        if (action != null) {
+            roundTrips.recordAction(action.tenant, outcome, action.elapsedNanos());
+        }
+    }
+
+    /**
+     * Receives the open actions, see {@link #forEachOpenAction(OpenActionConsumer)}.
+     */
+    @FunctionalInterface
+    public interface OpenActionConsumer {
+
+        /**
+         * @param actionId
+         *            the ID of the action
+         * @param tenant
+         *            the tenant of the action
+         * @param ageNanos
+         *            nanoseconds since the action has been received
+         */
+        void accept(long actionId, String tenant, long ageNanos);
+    }
+
+    /**
+     * A ping or action which waits for its answer.
+     */
+    private static final class OpenRequest {
+
+        private final String tenant;
+        private final long startNanos;
+        // guarded by the stripe of the registry
+        private boolean restored;
+
+        private OpenRequest(final String tenant) {
+            this(tenant, System.nanoTime(), false);
+        }
+
+        private OpenRequest(final String tenant, final long startNanos, final boolean restored) {
+            this.tenant = tenant;
+            this.startNanos = startNanos;
+            this.restored = restored;
+        }
+
+        private boolean resume() {
+            final boolean resumed = restored;
+            restored = false;
+            return resumed;
+        }
+
+        private long elapsedNanos() {
+            return System.nanoTime() - startNanos;
+        }
+    }
 }
@@ -9,16 +9,9 @@
  */
 package org.eclipse.hawkbit.simulator.amqp;
 
-import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.UUID;
-import java.util.stream.Collectors;
 
 import org.eclipse.hawkbit.dmf.amqp.api.AmqpSettings;
-import org.eclipse.hawkbit.dmf.amqp.api.EventTopic;
-import org.eclipse.hawkbit.dmf.amqp.api.MessageHeaderKey;
-import org.eclipse.hawkbit.dmf.amqp.api.MessageType;
 import org.eclipse.hawkbit.dmf.json.model.DmfActionStatus;
 import org.eclipse.hawkbit.dmf.json.model.DmfActionUpdateStatus;
 import org.eclipse.hawkbit.dmf.json.model.DmfAttributeUpdate;
@@ -28,7 +21,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.core.MessageProperties;
-import org.springframework.amqp.rabbit.connection.CorrelationData;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.AbstractJavaTypeMapper;
 
@@ -39,12 +31,14 @@ public class DmfSenderService extends MessageService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DmfSenderService.class);
 
-    private static final byte[] EMPTY_BODY = new byte[0];
-
     private final String spExchange;
 
     private final SimulationProperties simulationProperties;
 
+    private final DmfPublisher publisher;
+
+    private final DmfMessageFactory messageFactory;
+
     /**
      *
      * @param rabbitTemplate
@@ -53,23 +47,20 @@ public class DmfSenderService extends MessageService {
      *            the amqp properties
      * @param simulationProperties
      *            for attributes update class
+     * @param publisher
+     *            which publishes the messages
      */
     DmfSenderService(final RabbitTemplate rabbitTemplate, final AmqpProperties amqpProperties,
-            final SimulationProperties simulationProperties) {
+            final SimulationProperties simulationProperties, final DmfPublisher publisher) {
         super(rabbitTemplate, amqpProperties);
         spExchange = AmqpSettings.DMF_EXCHANGE;
         this.simulationProperties = simulationProperties;
+        this.publisher = publisher;
+        messageFactory = new DmfMessageFactory(amqpProperties.getSenderForSpExchange());
     }
 
     public void ping(final String tenant, final String correlationId) {
-        final MessageProperties messageProperties = new MessageProperties();
-        messageProperties.getHeaders().put(MessageHeaderKey.TENANT, tenant);
-        messageProperties.getHeaders().put(MessageHeaderKey.TYPE, MessageType.PING.toString());
-        messageProperties.setCorrelationId(correlationId);
-        messageProperties.setReplyTo(amqpProperties.getSenderForSpExchange());
-        messageProperties.setContentType(MessageProperties.CONTENT_TYPE_TEXT_PLAIN);
-
-        sendMessage(spExchange, new Message(EMPTY_BODY, messageProperties));
+        sendMessage(spExchange, messageFactory.ping(tenant, correlationId));
     }
 
     /**
@@ -81,8 +72,8 @@ public class DmfSenderService extends MessageService {
      *            a description according the update process
      */
     public void finishUpdateProcess(final SimulatedUpdate update, final List<String> updateResultMessages) {
-        final Message updateResultMessage = createUpdateResultMessage(update, DmfActionStatus.FINISHED,
-                updateResultMessages);
+        final Message updateResultMessage = createActionStatusMessage(update, updateResultMessages,
+                DmfActionStatus.FINISHED);
         sendMessage(spExchange, updateResultMessage);
     }
 
@@ -108,15 +99,13 @@ public class DmfSenderService extends MessageService {
      * @param message
      *            the amqp message which will be send if its not null
      */
-    // Exception squid:S4449 - Cannot modify RabbitTemplate method definitions.
-    @SuppressWarnings({ "squid:S4449" })
     public void sendMessage(final String address, final Message message) {
         if (message == null) {
             return;
         }
         message.getMessageProperties().getHeaders().remove(AbstractJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME);
 
-        final String correlationId = UUID.randomUUID().toString();
+        final String correlationId = messageFactory.nextCorrelationId();
 
         if (isCorrelationIdEmpty(message)) {
             message.getMessageProperties().setCorrelationId(correlationId);
@@ -128,7 +117,7 @@ public class DmfSenderService extends MessageService {
             LOGGER.debug("Sending message to exchange {} with correlationId {}", address, correlationId);
         }
 
-        rabbitTemplate.send(address, null, message, new CorrelationData(correlationId));
+        publisher.publish(address, message, correlationId);
     }
 
     private static boolean isCorrelationIdEmpty(final Message message) {
@@ -206,11 +195,26 @@ public class DmfSenderService extends MessageService {
      *            the ID of the target to create or update
      */
     public void createOrUpdateThing(final String tenant, final String targetId) {
-        sendMessage(spExchange, thingCreatedMessage(tenant, targetId));
+        sendMessage(spExchange, messageFactory.thingCreated(tenant, targetId));
 
         LOGGER.debug("Created thing created message and send to update server for Thing \"{}\"", targetId);
     }
 
+    /**
+     * Send a thing removed message to the update server, which deletes the
+     * target.
+     *
+     * @param tenant
+     *            the tenant of the target
+     * @param targetId
+     *            the ID of the target to delete
+     */
+    public void removeThing(final String tenant, final String targetId) {
+        sendMessage(spExchange, messageFactory.thingRemoved(tenant, targetId));
+
+        LOGGER.debug("Sent thing removed message to update server for Thing \"{}\"", targetId);
+    }
+
     /**
      * Create new attribute update message and send to update server.
      *
@@ -220,9 +224,12 @@ public class DmfSenderService extends MessageService {
      *            the ID of the target to create or update
      */
     public void updateAttributesOfThing(final String tenant, final String targetId) {
-        sendMessage(spExchange, updateAttributes(tenant, targetId, DmfUpdateMode.MERGE,
-                simulationProperties.getAttributes().stream().collect(Collectors
-                        .toMap(SimulationProperties.Attribute::getKey, SimulationProperties.Attribute::getValue))));
+        final DmfAttributeUpdate attributeUpdate = new DmfAttributeUpdate();
+        attributeUpdate.setMode(DmfUpdateMode.MERGE);
+        // random attributes get a new value with every update
+        simulationProperties.getAttributes()
+                .forEach(attribute -> attributeUpdate.getAttributes().put(attribute.getKey(), attribute.getValue()));
+        sendMessage(spExchange, messageFactory.attributeUpdate(tenant, targetId, attributeUpdate));
 
         LOGGER.debug("Create update attributes message and send to update server for Thing \"{}\"", targetId);
     }
@@ -244,39 +251,10 @@ public class DmfSenderService extends MessageService {
      */
     public void updateAttributesOfThing(final String tenant, final String targetId, final DmfUpdateMode mode,
             final String key, final String value) {
-        sendMessage(spExchange, updateAttributes(tenant, targetId, mode, Collections.singletonMap(key, value)));
-    }
-
-    private Message thingCreatedMessage(final String tenant, final String targetId) {
-        final MessageProperties messagePropertiesForSP = new MessageProperties();
-        messagePropertiesForSP.setHeader(MessageHeaderKey.TYPE, MessageType.THING_CREATED.name());
-        messagePropertiesForSP.setHeader(MessageHeaderKey.TENANT, tenant);
-        messagePropertiesForSP.setHeader(MessageHeaderKey.THING_ID, targetId);
-        messagePropertiesForSP.setHeader(MessageHeaderKey.SENDER, "simulator");
-        messagePropertiesForSP.setContentType(MessageProperties.CONTENT_TYPE_JSON);
-        messagePropertiesForSP.setReplyTo(amqpProperties.getSenderForSpExchange());
-        return new Message(EMPTY_BODY, messagePropertiesForSP);
-    }
-
-    private MessageProperties createAttributeUpdateMessage(final String tenant, final String targetId) {
-        final MessageProperties messagePropertiesForSP = new MessageProperties();
-        messagePropertiesForSP.setHeader(MessageHeaderKey.TYPE, MessageType.EVENT.name());
-        messagePropertiesForSP.setHeader(MessageHeaderKey.TOPIC, EventTopic.UPDATE_ATTRIBUTES);
-        messagePropertiesForSP.setHeader(MessageHeaderKey.TENANT, tenant);
-        messagePropertiesForSP.setHeader(MessageHeaderKey.THING_ID, targetId);
-        messagePropertiesForSP.setContentType(MessageProperties.CONTENT_TYPE_JSON);
-        messagePropertiesForSP.setReplyTo(amqpProperties.getSenderForSpExchange());
-        return messagePropertiesForSP;
-    }
-
-    private Message updateAttributes(final String tenant, final String targetId, final DmfUpdateMode mode,
-            final Map<String, String> attributes) {
-        final MessageProperties messagePropertiesForSP = createAttributeUpdateMessage(tenant, targetId);
         final DmfAttributeUpdate attributeUpdate = new DmfAttributeUpdate();
         attributeUpdate.setMode(mode);
-        attributeUpdate.getAttributes().putAll(attributes);
-
-        return convertMessage(attributeUpdate, messagePropertiesForSP);
+        attributeUpdate.getAttributes().put(key, value);
+        sendMessage(spExchange, messageFactory.attributeUpdate(tenant, targetId, attributeUpdate));
     }
 
     /**
@@ -329,30 +307,9 @@ public class DmfSenderService extends MessageService {
      */
     private Message createActionStatusMessage(final String tenant, final DmfActionStatus actionStatus,
             final List<String> updateResultMessages, final Long actionId) {
-        final MessageProperties messageProperties = new MessageProperties();
-        final Map<String, Object> headers = messageProperties.getHeaders();
         final DmfActionUpdateStatus actionUpdateStatus = new DmfActionUpdateStatus(actionId, actionStatus);
-        headers.put(MessageHeaderKey.TYPE, MessageType.EVENT.name());
-        headers.put(MessageHeaderKey.TENANT, tenant);
-        headers.put(MessageHeaderKey.TOPIC, EventTopic.UPDATE_ACTION_STATUS.name());
-        headers.put(MessageHeaderKey.CONTENT_TYPE, MessageProperties.CONTENT_TYPE_JSON);
-        actionUpdateStatus.addMessage(updateResultMessages);
-
-        return convertMessage(actionUpdateStatus, messageProperties);
-    }
-
-    private Message createUpdateResultMessage(final SimulatedUpdate cacheValue, final DmfActionStatus actionStatus,
-            final List<String> updateResultMessages) {
-        final MessageProperties messageProperties = new MessageProperties();
-        final Map<String, Object> headers = messageProperties.getHeaders();
-        final DmfActionUpdateStatus actionUpdateStatus = new DmfActionUpdateStatus(cacheValue.getActionId(),
-                actionStatus);
-        headers.put(MessageHeaderKey.TYPE, MessageType.EVENT.name());
-        headers.put(MessageHeaderKey.TENANT, cacheValue.getTenant());
-        headers.put(MessageHeaderKey.TOPIC, EventTopic.UPDATE_ACTION_STATUS.name());
-        headers.put(MessageHeaderKey.CONTENT_TYPE, MessageProperties.CONTENT_TYPE_JSON);
         actionUpdateStatus.addMessage(updateResultMessages);
-        return convertMessage(actionUpdateStatus, messageProperties);
+        return messageFactory.actionStatus(tenant, actionUpdateStatus);
     }
 
     private Message createActionStatusMessage(final SimulatedUpdate update, final List<String> updateResultMessages,
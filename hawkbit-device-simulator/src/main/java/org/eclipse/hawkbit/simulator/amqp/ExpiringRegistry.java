@@ -0,0 +1,263 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator.amqp;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Registry of open requests which forgets them after a time to live or when
+ * it is full, so requests which are never answered do not pile up. The
+ * entries are spread over stripes with a lock each. Within a stripe they are
+ * kept in insertion order, which is the order they expire in, so expiring
+ * only looks at the entries which are due.
+ *
+ * @param <K>
+ *            the type of the keys
+ * @param <V>
+ *            the type of the values
+ */
+final class ExpiringRegistry<K, V> {
+
+    private static final int STRIPES = 16;
+
+    private final List<Map<K, Entry<V>>> stripes = new ArrayList<>(STRIPES);
+    private final long ttlNanos;
+    private final int maxSizePerStripe;
+    private final LongSupplier nanoClock;
+
+    private final Counter expiredCounter;
+    private final Counter evictedCounter;
+
+    /**
+     * @param name
+     *            of the registry in the metrics
+     * @param ttl
+     *            time after which an entry expires
+     * @param maxSize
+     *            maximum number of entries, the oldest entry of a stripe is
+     *            evicted if the stripe is full
+     * @param meterRegistry
+     *            to expose the registry metrics
+     * @param nanoClock
+     *            the clock to expire the entries
+     */
+    ExpiringRegistry(final String name, final Duration ttl, final int maxSize, final MeterRegistry meterRegistry,
+            final LongSupplier nanoClock) {
+        this.ttlNanos = ttl.toNanos();
+        this.maxSizePerStripe = Math.max(1, (maxSize + STRIPES - 1) / STRIPES);
+        this.nanoClock = nanoClock;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes.add(new LinkedHashMap<>());
+        }
+
+        expiredCounter = Counter.builder("simulator.dmf.open.expired").tag("type", name)
+                .description("Open DMF requests which expired without an answer").register(meterRegistry);
+        evictedCounter = Counter.builder("simulator.dmf.open.evicted").tag("type", name)
+                .description("Open DMF requests which have been evicted from a full registry")
+                .register(meterRegistry);
+        Gauge.builder("simulator.dmf.open.size", this, ExpiringRegistry::size).tag("type", name)
+                .description("Open DMF requests").register(meterRegistry);
+    }
+
+    /**
+     * Adds an entry if there is none for the key yet.
+     *
+     * @param key
+     *            of the entry
+     * @param value
+     *            of the entry
+     * @return <code>true</code> if the entry has been added,
+     *         <code>false</code> if there is one for the key already
+     */
+    boolean putIfAbsent(final K key, final V value) {
+        final Map<K, Entry<V>> stripe = stripeOf(key);
+        final long now = nanoClock.getAsLong();
+        synchronized (stripe) {
+            expire(stripe, now);
+            if (stripe.containsKey(key)) {
+                return false;
+            }
+            if (stripe.size() >= maxSizePerStripe) {
+                final Iterator<Entry<V>> eldest = stripe.values().iterator();
+                eldest.next();
+                eldest.remove();
+                evictedCounter.increment();
+            }
+            stripe.put(key, new Entry<>(value, now));
+            return true;
+        }
+    }
+
+    /**
+     * @param key
+     *            of the entry
+     * @return the value of the removed entry or <code>null</code> if there is
+     *         none or it has expired
+     */
+    V remove(final K key) {
+        final Map<K, Entry<V>> stripe = stripeOf(key);
+        final long now = nanoClock.getAsLong();
+        final Entry<V> entry;
+        synchronized (stripe) {
+            entry = stripe.remove(key);
+        }
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired(now, ttlNanos)) {
+            expiredCounter.increment();
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * @param key
+     *            of the entry
+     * @param condition
+     *            tested with the value of the entry while no other thread
+     *            accesses the entry
+     * @return <code>true</code> if there is an entry which has not expired
+     *         and its value matches the condition
+     */
+    boolean test(final K key, final Predicate<V> condition) {
+        final Map<K, Entry<V>> stripe = stripeOf(key);
+        final long now = nanoClock.getAsLong();
+        synchronized (stripe) {
+            final Entry<V> entry = stripe.get(key);
+            return entry != null && !entry.isExpired(now, ttlNanos) && condition.test(entry.value);
+        }
+    }
+
+    /**
+     * Passes the entries which have not expired to a consumer.
+     *
+     * @param consumer
+     *            called with the key, the value and the age of every entry in
+     *            nanoseconds
+     */
+    void forEach(final EntryConsumer<K, V> consumer) {
+        final long now = nanoClock.getAsLong();
+        stripes.forEach(stripe -> {
+            synchronized (stripe) {
+                stripe.forEach((key, entry) -> {
+                    if (!entry.isExpired(now, ttlNanos)) {
+                        consumer.accept(key, entry.value, now - entry.addedNanos);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Adds an entry which has been added before, e.g. by a previous run of
+     * the simulator, if there is none for the key yet.
+     *
+     * @param key
+     *            of the entry
+     * @param value
+     *            of the entry
+     * @param ageNanos
+     *            nanoseconds since the entry has been added
+     * @return <code>true</code> if the entry has been added,
+     *         <code>false</code> if it has expired already, there is one for
+     *         the key or the stripe is full
+     */
+    boolean restore(final K key, final V value, final long ageNanos) {
+        if (ageNanos >= ttlNanos) {
+            return false;
+        }
+        final Map<K, Entry<V>> stripe = stripeOf(key);
+        final long now = nanoClock.getAsLong();
+        synchronized (stripe) {
+            if (stripe.containsKey(key) || stripe.size() >= maxSizePerStripe) {
+                return false;
+            }
+            // restored before new entries are added, oldest first, so the
+            // stripe stays in the order of expiry
+            stripe.put(key, new Entry<>(value, now - ageNanos));
+            return true;
+        }
+    }
+
+    /**
+     * Removes the expired entries of all stripes.
+     */
+    void expire() {
+        final long now = nanoClock.getAsLong();
+        stripes.forEach(stripe -> {
+            synchronized (stripe) {
+                expire(stripe, now);
+            }
+        });
+    }
+
+    /**
+     * @return the number of entries including expired ones which have not
+     *         been removed yet
+     */
+    int size() {
+        int size = 0;
+        for (final Map<K, Entry<V>> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    private Map<K, Entry<V>> stripeOf(final K key) {
+        final int hash = key.hashCode();
+        return stripes.get((hash ^ (hash >>> 16)) & (STRIPES - 1));
+    }
+
+    // guarded by the stripe
+    private void expire(final Map<K, Entry<V>> stripe, final long now) {
+        final Iterator<Entry<V>> entries = stripe.values().iterator();
+        while (entries.hasNext() && entries.next().isExpired(now, ttlNanos)) {
+            entries.remove();
+            expiredCounter.increment();
+        }
+    }
+
+    /**
+     * Receives the entries of a registry.
+     */
+    @FunctionalInterface
+    interface EntryConsumer<K, V> {
+        void accept(K key, V value, long ageNanos);
+    }
+
+    private static final class Entry<V> {
+
+        private final V value;
+        private final long addedNanos;
+
+        private Entry(final V value, final long addedNanos) {
+            this.value = value;
+            this.addedNanos = addedNanos;
+        }
+
+        private boolean isExpired(final long now, final long ttlNanos) {
+            return now - addedNanos >= ttlNanos;
+        }
+    }
+}
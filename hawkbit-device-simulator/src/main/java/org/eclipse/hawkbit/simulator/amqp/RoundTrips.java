@@ -0,0 +1,70 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator.amqp;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Records the round trips of the DMF flows per tenant: pings until their
+ * response and actions from their request until the final status has been
+ * sent. The timers publish histograms, so latency percentiles can be tracked
+ * over a long running simulation.
+ */
+final class RoundTrips {
+
+    static final String FINISHED = "finished";
+    static final String ERROR = "error";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> pingTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> finishedTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> errorTimers = new ConcurrentHashMap<>();
+
+    RoundTrips(final MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @param tenant
+     *            the pinged tenant
+     * @param nanos
+     *            time from sending the ping until its response
+     */
+    void recordPing(final String tenant, final long nanos) {
+        pingTimers.computeIfAbsent(tenant, t -> timer("simulator.dmf.ping.rtt",
+                "Time from sending a DMF ping until its response", t).register(meterRegistry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param tenant
+     *            the tenant of the action
+     * @param outcome
+     *            {@link #FINISHED} or {@link #ERROR}
+     * @param nanos
+     *            time from receiving the action until its final status has
+     *            been sent
+     */
+    void recordAction(final String tenant, final String outcome, final long nanos) {
+        final Map<String, Timer> timers = FINISHED.equals(outcome) ? finishedTimers : errorTimers;
+        timers.computeIfAbsent(tenant, t -> timer("simulator.dmf.action.rtt",
+                "Time from receiving a DMF action until its final status has been sent", t).tag("outcome", outcome)
+                .register(meterRegistry)).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static Timer.Builder timer(final String name, final String description, final String tenant) {
+        return Timer.builder(name).description(description).tag("tenant", tenant).publishPercentileHistogram();
+    }
+}
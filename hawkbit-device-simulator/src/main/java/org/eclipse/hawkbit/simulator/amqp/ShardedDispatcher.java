@@ -0,0 +1,248 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator.amqp;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Hands the received DMF messages over to shards with one thread each. The
+ * shard is chosen by the thing ID, so the messages of a device are handled in
+ * the order they were received while different devices are handled in
+ * parallel. A full shard blocks the consumer thread, which then stops
+ * acknowledging and lets the broker hold back further messages.
+ * <p>
+ * A message is acknowledged once it has been handed over to its shard, so a
+ * message which fails on its shard is logged and counted but neither
+ * redelivered nor dead-lettered. The dispatcher is stopped after the listener
+ * containers and before the snapshot of the simulator is written, it drains
+ * its shards within the shutdown timeout, so the acknowledged messages are
+ * not lost with a regular shutdown.
+ */
+public class ShardedDispatcher implements SmartLifecycle {
+
+    /**
+     * Stops after the listener containers, which stop in the default phase,
+     * and before the snapshot.
+     */
+    public static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 1024;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShardedDispatcher.class);
+
+    // wakes an idle worker to stop
+    private static final Task STOP = new Task(() -> {
+    }, 0);
+
+    private final List<BlockingQueue<Task>> shards;
+    private final long shutdownTimeout;
+    private final LongSupplier nanoClock;
+    private ExecutorService workers;
+    private volatile boolean running;
+
+    private final Timer lagTimer;
+    private final Timer handlingTimer;
+    private final Counter failedCounter;
+
+    /**
+     * @param amqpProperties
+     *            for the listener configuration
+     * @param meterRegistry
+     *            to expose the consumer metrics
+     */
+    public ShardedDispatcher(final AmqpProperties amqpProperties, final MeterRegistry meterRegistry) {
+        this(amqpProperties.getListener(), meterRegistry, System::nanoTime);
+    }
+
+    ShardedDispatcher(final AmqpProperties.Listener listener, final MeterRegistry meterRegistry,
+            final LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+        shutdownTimeout = Math.max(0, listener.getShutdownTimeout());
+        final int concurrency = Math.max(0, listener.getConcurrency());
+        shards = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            shards.add(new ArrayBlockingQueue<>(Math.max(1, listener.getQueueCapacity())));
+        }
+
+        lagTimer = Timer.builder("simulator.dmf.receive.lag")
+                .description("Time received DMF messages waited for the thread of their shard")
+                .register(meterRegistry);
+        handlingTimer = Timer.builder("simulator.dmf.receive.handling")
+                .description("Time to handle a received DMF message").register(meterRegistry);
+        failedCounter = Counter.builder("simulator.dmf.receive.failed")
+                .description("Received DMF messages which failed on their shard").register(meterRegistry);
+        Gauge.builder("simulator.dmf.receive.queued", shards, ShardedDispatcher::queued)
+                .description("Received DMF messages waiting for the thread of their shard").register(meterRegistry);
+    }
+
+    private static double queued(final List<BlockingQueue<Task>> shards) {
+        return shards.stream().mapToInt(BlockingQueue::size).sum();
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        if (shards.isEmpty()) {
+            return;
+        }
+        workers = Executors.newFixedThreadPool(shards.size(), new CustomizableThreadFactory("dmf-shard-"));
+        shards.forEach(shard -> workers.execute(() -> work(shard)));
+    }
+
+    /**
+     * Stops accepting messages for the shards and waits until the shards are
+     * drained, at most for the shutdown timeout. Messages which are
+     * dispatched afterwards are handled on the calling thread.
+     */
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        if (workers == null) {
+            return;
+        }
+        // wakes the idle workers, the busy ones stop once their shard is
+        // empty
+        shards.forEach(shard -> shard.offer(STOP));
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(shutdownTimeout, TimeUnit.MILLISECONDS)) {
+                LOGGER.warn("Dropped {} received DMF messages which have not been handled within {} ms",
+                        shards.stream().flatMap(Collection::stream).filter(task -> task != STOP).count(),
+                        shutdownTimeout);
+                workers.shutdownNow();
+                shards.forEach(BlockingQueue::clear);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            workers.shutdownNow();
+        }
+        workers = null;
+        // handed over while the workers were stopping
+        shards.forEach(shard -> {
+            Task task;
+            while ((task = shard.poll()) != null) {
+                if (task != STOP) {
+                    handleSafely(task.handler);
+                }
+            }
+        });
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    /**
+     * Hands a message over to its shard. Handles it right away if there are
+     * no shards, the message belongs to no device or the dispatcher is not
+     * running.
+     *
+     * @param thingId
+     *            the thing ID which selects the shard, may be
+     *            <code>null</code>
+     * @param handler
+     *            which handles the message
+     */
+    public void dispatch(final String thingId, final Runnable handler) {
+        if (shards.isEmpty() || thingId == null || !running) {
+            handle(handler);
+            return;
+        }
+
+        final BlockingQueue<Task> shard = shards.get(Math.floorMod(thingId.hashCode(), shards.size()));
+        try {
+            shard.put(new Task(handler, nanoClock.getAsLong()));
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // the container requeues the message
+            throw new AmqpException("Interrupted while waiting for the shard of thing " + thingId, e);
+        }
+    }
+
+    private void work(final BlockingQueue<Task> shard) {
+        while (!Thread.currentThread().isInterrupted()) {
+            final Task task;
+            try {
+                task = shard.take();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (task == STOP) {
+                return;
+            }
+            lagTimer.record(nanoClock.getAsLong() - task.dispatchedNanos, TimeUnit.NANOSECONDS);
+            handleSafely(task.handler);
+            if (!running && shard.isEmpty()) {
+                return;
+            }
+        }
+    }
+
+    private void handleSafely(final Runnable handler) {
+        try {
+            handle(handler);
+        } catch (final RuntimeException e) {
+            // the message has been acknowledged already, so the error
+            // cannot be reported to the container anymore
+            failedCounter.increment();
+            LOGGER.error("Failed to handle DMF message", e);
+        }
+    }
+
+    private void handle(final Runnable handler) {
+        final long start = nanoClock.getAsLong();
+        try {
+            handler.run();
+        } finally {
+            handlingTimer.record(nanoClock.getAsLong() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static final class Task {
+
+        private final Runnable handler;
+        private final long dispatchedNanos;
+
+        private Task(final Runnable handler, final long dispatchedNanos) {
+            this.handler = handler;
+            this.dispatchedNanos = dispatchedNanos;
+        }
+    }
+}
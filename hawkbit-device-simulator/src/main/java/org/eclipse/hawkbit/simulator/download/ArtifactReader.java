@@ -0,0 +1,159 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator.download;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.security.MessageDigest;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.BooleanSupplier;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Reads the content of an artifact download and feeds it into the digest.
+ * The {@link Mode#POOLED} mode reads with large buffers from a bounded pool
+ * right from the connection, the HTTP client hands reads larger than its own
+ * buffer through to the socket, so every byte is copied once into the pooled
+ * buffer and hashed from there. The {@link Mode#STREAM} mode is the former
+ * buffered stream with small reads, kept for comparison.
+ */
+@Component
+public class ArtifactReader {
+
+    private static final int STREAM_BUFFER_SIZE = 4 * 1024;
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    /**
+     * Read mode of the artifact downloads.
+     */
+    public enum Mode {
+        /**
+         * Large reads into buffers of a bounded pool.
+         */
+        POOLED,
+        /**
+         * Small reads through a buffered stream.
+         */
+        STREAM
+    }
+
+    private final Mode mode;
+    private final int bufferSize;
+    private final BlockingQueue<byte[]> bufferPool;
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    private final DistributionSummary efficiencySummary;
+
+    /**
+     * @param downloadProperties
+     *            for the read mode and buffer configuration
+     * @param meterRegistry
+     *            to expose the read efficiency
+     */
+    public ArtifactReader(final DownloadProperties downloadProperties, final MeterRegistry meterRegistry) {
+        mode = downloadProperties.getReadMode();
+        bufferSize = (int) downloadProperties.getBufferSize().toBytes();
+        bufferPool = new ArrayBlockingQueue<>(Math.max(1, downloadProperties.getBufferPoolSize()));
+
+        efficiencySummary = DistributionSummary.builder("simulator.download.efficiency").baseUnit("bytes/cpu-s")
+                .description("Bytes read and hashed per CPU second of the downloading thread")
+                .tag("mode", mode.name().toLowerCase()).register(meterRegistry);
+    }
+
+    /**
+     * Reads the content until its end.
+     *
+     * @param content
+     *            the content of the download, closed by the caller
+     * @param digest
+     *            which is updated with the content
+     * @param limiter
+     *            which throttles the read loop
+     * @param aborted
+     *            checked in the read loop to stop the download early
+     * @return the number of bytes read
+     * @throws IncompleteReadException
+     *             if the connection failed, with the number of bytes read
+     *             and hashed so far
+     * @throws IOException
+     *             if the download has been aborted
+     */
+    public long read(final InputStream content, final MessageDigest digest, final DownloadThrottle.Limiter limiter,
+            final BooleanSupplier aborted) throws IOException {
+        final long cpuStart = currentThreadCpuTime();
+        final long read = mode == Mode.STREAM ? readStream(content, digest, limiter, aborted)
+                : readPooled(content, digest, limiter, aborted);
+
+        final long cpuNanos = currentThreadCpuTime() - cpuStart;
+        if (cpuStart >= 0 && cpuNanos > 0) {
+            efficiencySummary.record(read * NANOS_PER_SECOND / cpuNanos);
+        }
+        return read;
+    }
+
+    private long readPooled(final InputStream content, final MessageDigest digest,
+            final DownloadThrottle.Limiter limiter, final BooleanSupplier aborted) throws IOException {
+        final byte[] buffer = acquireBuffer();
+        try {
+            return readLoop(content, buffer, digest, limiter, aborted);
+        } finally {
+            // a full pool drops the buffer for the garbage collector
+            bufferPool.offer(buffer);
+        }
+    }
+
+    private static long readStream(final InputStream content, final MessageDigest digest,
+            final DownloadThrottle.Limiter limiter, final BooleanSupplier aborted) throws IOException {
+        try (final BufferedInputStream bis = new BufferedInputStream(content)) {
+            return readLoop(bis, new byte[STREAM_BUFFER_SIZE], digest, limiter, aborted);
+        }
+    }
+
+    private static long readLoop(final InputStream in, final byte[] buffer, final MessageDigest digest,
+            final DownloadThrottle.Limiter limiter, final BooleanSupplier aborted) throws IOException {
+        long overallread = 0;
+        int read;
+        while (true) {
+            try {
+                read = in.read(buffer);
+            } catch (final IOException e) {
+                // including socket timeouts, the aborts below are not
+                // resumable
+                throw new IncompleteReadException(overallread, e);
+            }
+            if (read == -1) {
+                return overallread;
+            }
+            if (aborted.getAsBoolean()) {
+                throw new InterruptedIOException("Download aborted");
+            }
+            digest.update(buffer, 0, read);
+            overallread += read;
+            limiter.acquire(read);
+        }
+    }
+
+    private byte[] acquireBuffer() {
+        final byte[] buffer = bufferPool.poll();
+        return buffer != null ? buffer : new byte[bufferSize];
+    }
+
+    private long currentThreadCpuTime() {
+        return threadMXBean.isCurrentThreadCpuTimeSupported() ? threadMXBean.getCurrentThreadCpuTime() : -1;
+    }
+}
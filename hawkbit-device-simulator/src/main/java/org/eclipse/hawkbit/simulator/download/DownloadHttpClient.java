@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator.download;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.annotation.PreDestroy;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.ssl.SSLContextBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * HTTP client for artifact downloads which is shared by all simulated devices.
+ * Connections are pooled and kept alive per artifact server, so downloads do
+ * not pay a TLS handshake each. The client accepts all server certificates.
+ */
+@Component
+public class DownloadHttpClient {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DownloadHttpClient.class);
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final Timer responseTimer;
+
+    /**
+     * @param downloadProperties
+     *            for the pool configuration
+     * @param meterRegistry
+     *            to expose the pool metrics
+     * @throws GeneralSecurityException
+     *             if the SSL context could not be created
+     */
+    public DownloadHttpClient(final DownloadProperties downloadProperties, final MeterRegistry meterRegistry)
+            throws GeneralSecurityException {
+        final Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder
+                .<ConnectionSocketFactory> create().register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", new SSLConnectionSocketFactory(
+                        SSLContextBuilder.create().loadTrustMaterial(null, (chain, authType) -> true).build()))
+                .build();
+
+        connectionManager = new PoolingHttpClientConnectionManager(socketFactoryRegistry);
+        connectionManager.setMaxTotal(downloadProperties.getMaxConnectionsTotal());
+        connectionManager.setDefaultMaxPerRoute(downloadProperties.getMaxConnectionsPerRoute());
+
+        httpClient = HttpClients.custom().setConnectionManager(connectionManager)
+                .setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(downloadProperties.getConnectionRequestTimeout())
+                        .setConnectTimeout(downloadProperties.getConnectTimeout())
+                        .setSocketTimeout(downloadProperties.getSocketTimeout()).build())
+                .evictExpiredConnections()
+                .evictIdleConnections(downloadProperties.getMaxIdleTime(), TimeUnit.SECONDS).build();
+
+        Gauge.builder("simulator.download.connections.leased", connectionManager,
+                manager -> manager.getTotalStats().getLeased())
+                .description("Pooled download connections in use").register(meterRegistry);
+        Gauge.builder("simulator.download.connections.available", connectionManager,
+                manager -> manager.getTotalStats().getAvailable())
+                .description("Idle pooled download connections").register(meterRegistry);
+        Gauge.builder("simulator.download.connections.pending", connectionManager,
+                manager -> manager.getTotalStats().getPending())
+                .description("Downloads waiting for a pooled connection").register(meterRegistry);
+        responseTimer = Timer.builder("simulator.download.response")
+                .description("Time until the response of a download is received, including the wait for a connection")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Executes a download request on a pooled connection. The connection is
+     * released to the pool when the response is closed.
+     *
+     * @param request
+     *            the request to execute
+     * @return the response which has to be closed by the caller
+     * @throws IOException
+     *             in case of a connection problem
+     */
+    public CloseableHttpResponse execute(final HttpUriRequest request) throws IOException {
+        final long start = System.nanoTime();
+        try {
+            return httpClient.execute(request);
+        } finally {
+            responseTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        try {
+            httpClient.close();
+        } catch (final IOException e) {
+            LOGGER.warn("Failed to close the download client", e);
+        }
+    }
+}
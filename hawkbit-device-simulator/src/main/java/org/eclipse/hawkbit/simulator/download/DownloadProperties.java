@@ -0,0 +1,324 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator.download;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Properties for the artifact downloads of the simulated devices.
+ *
+ */
+@Component
+@ConfigurationProperties(DownloadProperties.CONFIGURATION_PREFIX)
+public class DownloadProperties {
+
+    /**
+     * The prefix for this configuration.
+     */
+    public static final String CONFIGURATION_PREFIX = "hawkbit.device.simulator.download";
+
+    /**
+     * Maximum number of pooled connections per artifact server.
+     */
+    private int maxConnectionsPerRoute = 50;
+
+    /**
+     * Maximum number of pooled connections in total.
+     */
+    private int maxConnectionsTotal = 200;
+
+    /**
+     * Time in milliseconds to wait for a pooled connection, 0 to wait without
+     * limit.
+     */
+    private int connectionRequestTimeout = 60_000;
+
+    /**
+     * Time in milliseconds to establish a connection, 0 for no timeout.
+     */
+    private int connectTimeout = 10_000;
+
+    /**
+     * Socket timeout in milliseconds while waiting for data, 0 for no
+     * timeout.
+     */
+    private int socketTimeout = 60_000;
+
+    /**
+     * Time in seconds after which idle pooled connections are closed.
+     */
+    private int maxIdleTime = 60;
+
+    /**
+     * Maximum number of artifacts of one update which are downloaded at the
+     * same time, 1 to download them one after another.
+     */
+    private int parallelism = 4;
+
+    /**
+     * Number of threads which download the artifacts of all updates.
+     */
+    private int threads = 16;
+
+    /**
+     * Read mode of the downloads, large reads into pooled buffers or small
+     * reads through a buffered stream.
+     */
+    private ArtifactReader.Mode readMode = ArtifactReader.Mode.POOLED;
+
+    /**
+     * Size of the pooled read buffers.
+     */
+    private DataSize bufferSize = DataSize.ofKilobytes(64);
+
+    /**
+     * Maximum number of idle read buffers kept in the pool.
+     */
+    private int bufferPoolSize = 32;
+
+    /**
+     * Bandwidth shaping of the downloads.
+     */
+    private final Bandwidth bandwidth = new Bandwidth();
+
+    /**
+     * Resuming of interrupted downloads.
+     */
+    private final Resume resume = new Resume();
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public void setMaxConnectionsPerRoute(final int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    public int getMaxConnectionsTotal() {
+        return maxConnectionsTotal;
+    }
+
+    public void setMaxConnectionsTotal(final int maxConnectionsTotal) {
+        this.maxConnectionsTotal = maxConnectionsTotal;
+    }
+
+    public int getConnectionRequestTimeout() {
+        return connectionRequestTimeout;
+    }
+
+    public void setConnectionRequestTimeout(final int connectionRequestTimeout) {
+        this.connectionRequestTimeout = connectionRequestTimeout;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(final int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public int getSocketTimeout() {
+        return socketTimeout;
+    }
+
+    public void setSocketTimeout(final int socketTimeout) {
+        this.socketTimeout = socketTimeout;
+    }
+
+    public int getMaxIdleTime() {
+        return maxIdleTime;
+    }
+
+    public void setMaxIdleTime(final int maxIdleTime) {
+        this.maxIdleTime = maxIdleTime;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(final int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(final int threads) {
+        this.threads = threads;
+    }
+
+    public ArtifactReader.Mode getReadMode() {
+        return readMode;
+    }
+
+    public void setReadMode(final ArtifactReader.Mode readMode) {
+        this.readMode = readMode;
+    }
+
+    public DataSize getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(final DataSize bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public int getBufferPoolSize() {
+        return bufferPoolSize;
+    }
+
+    public void setBufferPoolSize(final int bufferPoolSize) {
+        this.bufferPoolSize = bufferPoolSize;
+    }
+
+    public Bandwidth getBandwidth() {
+        return bandwidth;
+    }
+
+    public Resume getResume() {
+        return resume;
+    }
+
+    /**
+     * Resuming of interrupted downloads with range requests.
+     *
+     */
+    public static class Resume {
+        /**
+         * Set to <code>false</code> to fail a download on the first
+         * interruption.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Maximum number of times a download is resumed.
+         */
+        private int maxResumes = 3;
+
+        /**
+         * Probability between 0 and 1 that the connection of a download is
+         * dropped at a random position.
+         */
+        private double dropRate;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(final boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxResumes() {
+            return maxResumes;
+        }
+
+        public void setMaxResumes(final int maxResumes) {
+            this.maxResumes = maxResumes;
+        }
+
+        public double getDropRate() {
+            return dropRate;
+        }
+
+        public void setDropRate(final double dropRate) {
+            this.dropRate = dropRate;
+        }
+    }
+
+    /**
+     * Download rates of the simulated devices. All rates are per second.
+     *
+     */
+    public static class Bandwidth {
+        /**
+         * Profile which assigns the download rate of a device.
+         */
+        private DownloadThrottle.Profile profile = DownloadThrottle.Profile.UNLIMITED;
+
+        /**
+         * Rate of a device for the {@code FIXED} profile and of devices
+         * without tenant rate for the {@code TENANT} profile, 0 for no limit.
+         */
+        private DataSize deviceRate = DataSize.ofBytes(0);
+
+        /**
+         * Minimum rate of a device for the {@code UNIFORM} profile.
+         */
+        private DataSize deviceRateMin = DataSize.ofKilobytes(32);
+
+        /**
+         * Maximum rate of a device for the {@code UNIFORM} profile.
+         */
+        private DataSize deviceRateMax = DataSize.ofMegabytes(1);
+
+        /**
+         * Rate of the devices of a tenant for the {@code TENANT} profile.
+         */
+        private final Map<String, DataSize> tenantRates = new HashMap<>();
+
+        /**
+         * Rate of all downloads together, 0 for no limit.
+         */
+        private DataSize globalRate = DataSize.ofBytes(0);
+
+        public DownloadThrottle.Profile getProfile() {
+            return profile;
+        }
+
+        public void setProfile(final DownloadThrottle.Profile profile) {
+            this.profile = profile;
+        }
+
+        public DataSize getDeviceRate() {
+            return deviceRate;
+        }
+
+        public void setDeviceRate(final DataSize deviceRate) {
+            this.deviceRate = deviceRate;
+        }
+
+        public DataSize getDeviceRateMin() {
+            return deviceRateMin;
+        }
+
+        public void setDeviceRateMin(final DataSize deviceRateMin) {
+            this.deviceRateMin = deviceRateMin;
+        }
+
+        public DataSize getDeviceRateMax() {
+            return deviceRateMax;
+        }
+
+        public void setDeviceRateMax(final DataSize deviceRateMax) {
+            this.deviceRateMax = deviceRateMax;
+        }
+
+        public Map<String, DataSize> getTenantRates() {
+            return tenantRates;
+        }
+
+        public DataSize getGlobalRate() {
+            return globalRate;
+        }
+
+        public void setGlobalRate(final DataSize globalRate) {
+            this.globalRate = globalRate;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator.download;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Resumes interrupted artifact downloads with HTTP range requests and
+ * injects connection drops to exercise the range support of the artifact
+ * server.
+ */
+@Component
+// Exception for squid:S2245 : not security relevant random number generation
+@SuppressWarnings("squid:S2245")
+public class DownloadResumer {
+
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-\\d+/(\\d+|\\*)");
+
+    private final DownloadProperties.Resume resume;
+
+    private final Counter resumeCounter;
+    private final Counter dropCounter;
+    private final Counter savedBytesCounter;
+    private final Counter rangeIgnoredCounter;
+
+    /**
+     * @param downloadProperties
+     *            for the resume configuration
+     * @param meterRegistry
+     *            to expose the resume metrics
+     */
+    public DownloadResumer(final DownloadProperties downloadProperties, final MeterRegistry meterRegistry) {
+        resume = downloadProperties.getResume();
+
+        resumeCounter = Counter.builder("simulator.download.resumes")
+                .description("Downloads resumed with a range request").register(meterRegistry);
+        dropCounter = Counter.builder("simulator.download.drops")
+                .description("Injected connection drops of downloads").register(meterRegistry);
+        savedBytesCounter = Counter.builder("simulator.download.resumed.bytes").baseUnit("bytes")
+                .description("Bytes which did not have to be downloaded again thanks to resuming")
+                .register(meterRegistry);
+        rangeIgnoredCounter = Counter.builder("simulator.download.range.ignored")
+                .description("Resumed downloads which the server answered with the complete artifact")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param resumes
+     *            the number of times the download has been resumed already
+     * @return <code>true</code> if the download may be resumed once more
+     */
+    public boolean canResume(final int resumes) {
+        return resume.isEnabled() && resumes < resume.getMaxResumes();
+    }
+
+    /**
+     * Records a resumed download.
+     *
+     * @param offset
+     *            the offset the download is resumed from, i.e. the bytes
+     *            which are not downloaded again
+     */
+    public void recordResume(final long offset) {
+        resumeCounter.increment();
+        savedBytesCounter.increment(offset);
+    }
+
+    /**
+     * Records a resumed download which the server answered with the complete
+     * artifact, so it has to be downloaded from the start.
+     */
+    public void recordRangeIgnored() {
+        rangeIgnoredCounter.increment();
+    }
+
+    /**
+     * Wraps the content of a download to drop the connection with the
+     * configured drop rate at a random position.
+     *
+     * @param content
+     *            the content of the download
+     * @param length
+     *            the number of bytes of the content
+     * @return the content which may fail with a simulated drop
+     */
+    public InputStream injectDrops(final InputStream content, final long length) {
+        final double dropRate = resume.getDropRate();
+        if (dropRate <= 0 || length <= 1 || ThreadLocalRandom.current().nextDouble() >= dropRate) {
+            return content;
+        }
+        return new DroppingInputStream(content, ThreadLocalRandom.current().nextLong(1, length));
+    }
+
+    /**
+     * Parses the start of a <code>Content-Range</code> header.
+     *
+     * @param contentRange
+     *            the header value, may be <code>null</code>
+     * @return the first byte of the range or <code>-1</code> if the header is
+     *         missing or invalid
+     */
+    public static long rangeStart(final String contentRange) {
+        if (contentRange == null) {
+            return -1;
+        }
+        final Matcher matcher = CONTENT_RANGE.matcher(contentRange.trim());
+        return matcher.matches() ? Long.parseLong(matcher.group(1)) : -1;
+    }
+
+    /**
+     * Fails after a number of bytes like a dropped connection. Closing the
+     * stream does not close the content, so the HTTP client discards the
+     * connection instead of reading the rest of the content to reuse it.
+     */
+    private final class DroppingInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        private DroppingInputStream(final InputStream in, final long dropAfter) {
+            super(in);
+            this.remaining = dropAfter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkDrop();
+            final int read = super.read();
+            if (read != -1) {
+                remaining--;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            checkDrop();
+            final int read = super.read(b, off, (int) Math.min(len, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() {
+            // the response is closed by the caller and aborts the connection
+        }
+
+        private void checkDrop() throws IOException {
+            if (remaining <= 0) {
+                dropCounter.increment();
+                throw new IOException("Simulated connection drop");
+            }
+        }
+    }
+}
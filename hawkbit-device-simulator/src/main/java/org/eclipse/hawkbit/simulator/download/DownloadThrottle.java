@@ -0,0 +1,183 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator.download;
+
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.hawkbit.simulator.download.DownloadProperties.Bandwidth;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Shapes the bandwidth of the artifact downloads. Every device downloads at
+ * the rate of its profile and all downloads together stay below the global
+ * rate, both enforced by {@link TokenBucket}s in the read loop.
+ */
+@Component
+public class DownloadThrottle {
+
+    /**
+     * Profile which assigns the download rate of a device.
+     */
+    public enum Profile {
+        /**
+         * Devices download as fast as possible.
+         */
+        UNLIMITED,
+        /**
+         * All devices download with the device rate.
+         */
+        FIXED,
+        /**
+         * Every device downloads with a rate between the minimum and maximum
+         * device rate. The rate is derived from the device ID, so a device
+         * keeps it across updates.
+         */
+        UNIFORM,
+        /**
+         * Devices download with the rate of their tenant or the device rate
+         * if the tenant has none.
+         */
+        TENANT
+    }
+
+    private final Bandwidth bandwidth;
+    private final Map<String, DataSize> tenantRates = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final TokenBucket globalBucket;
+
+    private final Timer throttledTimer;
+    private final DistributionSummary throughputSummary;
+    private final Counter bytesCounter;
+
+    /**
+     * @param downloadProperties
+     *            for the bandwidth configuration
+     * @param meterRegistry
+     *            to expose the throughput metrics
+     */
+    public DownloadThrottle(final DownloadProperties downloadProperties, final MeterRegistry meterRegistry) {
+        bandwidth = downloadProperties.getBandwidth();
+        tenantRates.putAll(bandwidth.getTenantRates());
+        final long globalRate = bandwidth.getGlobalRate().toBytes();
+        globalBucket = globalRate > 0 ? new TokenBucket(globalRate, System::nanoTime) : null;
+
+        throttledTimer = Timer.builder("simulator.download.throttled")
+                .description("Time downloads waited for their device or the global bandwidth").register(meterRegistry);
+        throughputSummary = DistributionSummary.builder("simulator.download.throughput").baseUnit("bytes/s")
+                .description("Throughput of the completed artifact downloads").register(meterRegistry);
+        bytesCounter = Counter.builder("simulator.download.bytes").baseUnit("bytes")
+                .description("Bytes read by all artifact downloads").register(meterRegistry);
+    }
+
+    /**
+     * Creates the limiter for the downloads of one update of a device.
+     *
+     * @param tenant
+     *            the tenant of the device
+     * @param id
+     *            the ID of the device
+     * @return the limiter which is shared by all downloads of the update
+     */
+    public Limiter forDevice(final String tenant, final String id) {
+        final long deviceRate = deviceRate(tenant, id);
+        return new Limiter(deviceRate > 0 ? new TokenBucket(deviceRate, System::nanoTime) : null);
+    }
+
+    /**
+     * Records a completed download.
+     *
+     * @param bytes
+     *            the number of bytes downloaded
+     * @param nanos
+     *            the duration of the download
+     * @return the throughput of the download in bytes per second
+     */
+    public long recordDownload(final long bytes, final long nanos) {
+        final long throughput = nanos > 0 ? bytes * TimeUnit.SECONDS.toNanos(1) / nanos : bytes;
+        throughputSummary.record(throughput);
+        return throughput;
+    }
+
+    private long deviceRate(final String tenant, final String id) {
+        switch (bandwidth.getProfile()) {
+        case FIXED:
+            return bandwidth.getDeviceRate().toBytes();
+        case UNIFORM:
+            final long min = bandwidth.getDeviceRateMin().toBytes();
+            final long max = bandwidth.getDeviceRateMax().toBytes();
+            return max > min ? new SplittableRandom((tenant + ':' + id).hashCode()).nextLong(min, max + 1) : min;
+        case TENANT:
+            return tenantRates.getOrDefault(tenant, bandwidth.getDeviceRate()).toBytes();
+        case UNLIMITED:
+        default:
+            return 0;
+        }
+    }
+
+    /**
+     * Limits the read loop of the downloads of one device.
+     */
+    public final class Limiter {
+
+        private final TokenBucket deviceBucket;
+
+        private Limiter(final TokenBucket deviceBucket) {
+            this.deviceBucket = deviceBucket;
+        }
+
+        /**
+         * Accounts bytes which have been read and waits until the device and
+         * the global rate allow to continue.
+         *
+         * @param bytes
+         *            the number of bytes read
+         * @throws InterruptedIOException
+         *             if the download has been interrupted while waiting
+         */
+        public void acquire(final int bytes) throws InterruptedIOException {
+            bytesCounter.increment(bytes);
+
+            long waitNanos = deviceBucket != null ? deviceBucket.reserve(bytes) : 0;
+            if (globalBucket != null) {
+                // both buckets refill at the same time, so the longer wait
+                // satisfies both
+                waitNanos = Math.max(waitNanos, globalBucket.reserve(bytes));
+            }
+            if (waitNanos <= 0) {
+                return;
+            }
+
+            throttledTimer.record(waitNanos, TimeUnit.NANOSECONDS);
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Download interrupted while throttled");
+            }
+        }
+
+        /**
+         * @return the download rate of the device in bytes per second, 0 if
+         *         it is unlimited
+         */
+        public long getDeviceRate() {
+            return deviceBucket != null ? deviceBucket.getBytesPerSecond() : 0;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator.download;
+
+import java.io.IOException;
+
+/**
+ * Thrown if the connection of a download failed after part of the content
+ * has been read. The bytes read so far have been fed into the digest, so the
+ * download can be resumed from there.
+ */
+public class IncompleteReadException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long bytesRead;
+
+    /**
+     * @param bytesRead
+     *            the number of bytes read and hashed before the failure
+     * @param cause
+     *            the failure of the connection
+     */
+    public IncompleteReadException(final long bytesRead, final IOException cause) {
+        super("Download failed after " + bytesRead + " bytes: " + cause.getMessage(), cause);
+        this.bytesRead = bytesRead;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator.download;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket which limits a byte rate. Callers reserve the bytes they have
+ * read and wait outside of the lock until the bucket has refilled, so a
+ * bucket shared by many downloads is held only for the bookkeeping. The bucket
+ * holds at most one second of its rate as burst.
+ */
+final class TokenBucket {
+
+    private final double bytesPerNano;
+    private final double capacity;
+    private final LongSupplier nanoClock;
+
+    // guarded by this, may become negative for reservations in the future
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * @param bytesPerSecond
+     *            the rate of the bucket, must be positive
+     * @param nanoClock
+     *            the clock to refill the bucket
+     */
+    TokenBucket(final long bytesPerSecond, final LongSupplier nanoClock) {
+        if (bytesPerSecond <= 0) {
+            throw new IllegalArgumentException("Rate has to be positive but was " + bytesPerSecond);
+        }
+        this.bytesPerNano = bytesPerSecond / (double) TimeUnit.SECONDS.toNanos(1);
+        this.capacity = bytesPerSecond;
+        this.nanoClock = nanoClock;
+        this.tokens = capacity;
+        this.lastRefill = nanoClock.getAsLong();
+    }
+
+    /**
+     * Takes bytes out of the bucket.
+     *
+     * @param bytes
+     *            the number of bytes to take
+     * @return nanoseconds the caller has to wait until the bytes are
+     *         available, 0 if they are available right away
+     */
+    synchronized long reserve(final long bytes) {
+        final long now = nanoClock.getAsLong();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * bytesPerNano);
+        lastRefill = now;
+        tokens -= bytes;
+        return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / bytesPerNano);
+    }
+
+    /**
+     * @return the rate of the bucket in bytes per second
+     */
+    long getBytesPerSecond() {
+        return (long) capacity;
+    }
+}
@@ -0,0 +1,174 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator.http;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import org.eclipse.hawkbit.ddi.json.model.DdiControllerBase;
+import org.eclipse.hawkbit.ddi.json.model.DdiDeploymentBase;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.util.StringUtils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Non-blocking client for the DDI API of one endpoint and gateway token. All
+ * calls return futures which complete on the executor of the shared
+ * {@link HttpClient}, so no thread waits for a response.
+ */
+public class DdiAsyncClient {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final String CONTROLLER_BASE_PATH = "/controller/v1/";
+    private static final String HAL_JSON = "application/hal+json, application/json";
+
+    private final HttpClient httpClient;
+    private final ObjectMapper mapper;
+    private final String endpoint;
+    private final String gatewayToken;
+
+    /**
+     * @param httpClient
+     *            the shared http client
+     * @param mapper
+     *            to read and write the DDI json model
+     * @param endpoint
+     *            the DDI base endpoint
+     * @param gatewayToken
+     *            to authenticate at the endpoint, may be empty
+     */
+    public DdiAsyncClient(final HttpClient httpClient, final ObjectMapper mapper, final String endpoint,
+            final String gatewayToken) {
+        this.httpClient = httpClient;
+        this.mapper = mapper;
+        this.endpoint = endpoint.endsWith("/") ? endpoint.substring(0, endpoint.length() - 1) : endpoint;
+        this.gatewayToken = gatewayToken;
+    }
+
+    /**
+     * Polls the controller base resource.
+     *
+     * @param tenant
+     *            the tenant of the device
+     * @param controllerId
+     *            the ID of the device
+     * @return the controller base or empty if the server did not respond with
+     *         OK
+     */
+    public CompletableFuture<Optional<DdiControllerBase>> getControllerBase(final String tenant,
+            final String controllerId) {
+        return get(controllerUri(tenant, controllerId, ""), DdiControllerBase.class);
+    }
+
+    /**
+     * Retrieves the deployment of an action.
+     *
+     * @param deploymentBaseHref
+     *            the href of the deployment base link of the controller base
+     * @return the deployment or empty if the server did not respond with OK
+     */
+    public CompletableFuture<Optional<DdiDeploymentBase>> getDeploymentBase(final String deploymentBaseHref) {
+        return get(URI.create(deploymentBaseHref), DdiDeploymentBase.class);
+    }
+
+    /**
+     * Posts feedback to an action.
+     *
+     * @param actionHref
+     *            the href of the deployment or confirmation base link of the
+     *            action
+     * @param feedback
+     *            the feedback to post
+     * @return the http status code of the response
+     */
+    public CompletableFuture<Integer> postFeedback(final String actionHref, final Object feedback) {
+        final int query = actionHref.indexOf('?');
+        final String actionUri = query < 0 ? actionHref : actionHref.substring(0, query);
+        return send(URI.create(actionUri + "/feedback"), "POST", feedback);
+    }
+
+    /**
+     * Updates the config data of a device.
+     *
+     * @param tenant
+     *            the tenant of the device
+     * @param controllerId
+     *            the ID of the device
+     * @param configData
+     *            the config data to put
+     * @return the http status code of the response
+     */
+    public CompletableFuture<Integer> putConfigData(final String tenant, final String controllerId,
+            final Object configData) {
+        return send(controllerUri(tenant, controllerId, "/configData"), "PUT", configData);
+    }
+
+    private <T> CompletableFuture<Optional<T>> get(final URI uri, final Class<T> type) {
+        final HttpRequest request = request(uri).header(HttpHeaders.ACCEPT, HAL_JSON).GET().build();
+        return httpClient.sendAsync(request, BodyHandlers.ofByteArray())
+                .thenApply(response -> read(response, type));
+    }
+
+    private CompletableFuture<Integer> send(final URI uri, final String method, final Object body) {
+        final HttpRequest request = request(uri).header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .method(method, BodyPublishers.ofByteArray(write(body))).build();
+        return httpClient.sendAsync(request, BodyHandlers.discarding()).thenApply(HttpResponse::statusCode);
+    }
+
+    private HttpRequest.Builder request(final URI uri) {
+        final HttpRequest.Builder builder = HttpRequest.newBuilder(uri).timeout(REQUEST_TIMEOUT);
+        if (StringUtils.hasLength(gatewayToken)) {
+            builder.header(HttpHeaders.AUTHORIZATION, "GatewayToken " + gatewayToken);
+        }
+        return builder;
+    }
+
+    private URI controllerUri(final String tenant, final String controllerId, final String resource) {
+        return URI.create(endpoint + "/" + encode(tenant) + CONTROLLER_BASE_PATH + encode(controllerId) + resource);
+    }
+
+    private <T> Optional<T> read(final HttpResponse<byte[]> response, final Class<T> type) {
+        if (response.statusCode() != HttpStatus.OK.value()) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.ofNullable(mapper.readValue(response.body(), type));
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private byte[] write(final Object body) {
+        try {
+            return mapper.writeValueAsBytes(body);
+        } catch (final JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String encode(final String pathSegment) {
+        return URLEncoder.encode(pathSegment, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+}
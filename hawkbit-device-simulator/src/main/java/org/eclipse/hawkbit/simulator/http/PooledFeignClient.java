@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+
+/**
+ * Feign {@link Client} on top of a pooled Apache HTTP client. One instance is
+ * shared by all DDI clients of the simulator, so the simulated devices reuse
+ * kept alive connections to the update server.
+ */
+public class PooledFeignClient implements Client, Closeable {
+
+    private final CloseableHttpClient httpClient;
+
+    /**
+     * @param maxConnectionsPerRoute
+     *            maximum number of pooled connections per update server
+     * @param maxConnectionsTotal
+     *            maximum number of pooled connections in total
+     */
+    public PooledFeignClient(final int maxConnectionsPerRoute, final int maxConnectionsTotal) {
+        final PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        connectionManager.setMaxTotal(maxConnectionsTotal);
+
+        httpClient = HttpClients.custom().setConnectionManager(connectionManager)
+                .setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE).disableRedirectHandling()
+                .disableCookieManagement().evictExpiredConnections().evictIdleConnections(60, TimeUnit.SECONDS)
+                .build();
+    }
+
+    @Override
+    public Response execute(final Request request, final Request.Options options) throws IOException {
+        final RequestBuilder requestBuilder = RequestBuilder.create(request.httpMethod().name())
+                .setUri(request.url()).setConfig(RequestConfig.custom()
+                        .setConnectTimeout(options.connectTimeoutMillis())
+                        .setSocketTimeout(options.readTimeoutMillis())
+                        .setRedirectsEnabled(options.isFollowRedirects()).build());
+
+        request.headers().forEach((name, values) -> {
+            // the content length is set by the entity
+            if (!HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                values.forEach(value -> requestBuilder.addHeader(name, value));
+            }
+        });
+        if (request.body() != null) {
+            requestBuilder.setEntity(new ByteArrayEntity(request.body()));
+        }
+
+        final CloseableHttpResponse response = httpClient.execute(requestBuilder.build());
+        final HttpEntity entity = response.getEntity();
+
+        final Response.Builder responseBuilder = Response.builder().status(response.getStatusLine().getStatusCode())
+                .reason(response.getStatusLine().getReasonPhrase()).headers(toHeaderMap(response.getAllHeaders()))
+                .request(request);
+        if (entity == null) {
+            response.close();
+            return responseBuilder.build();
+        }
+        // closing the body stream releases the connection back to the pool
+        final long length = entity.getContentLength();
+        return responseBuilder
+                .body(entity.getContent(), length >= 0 && length <= Integer.MAX_VALUE ? (int) length : null).build();
+    }
+
+    @Override
+    public void close() throws IOException {
+        httpClient.close();
+    }
+
+    private static Map<String, Collection<String>> toHeaderMap(final Header[] headers) {
+        final Map<String, Collection<String>> headerMap = new HashMap<>();
+        for (final Header header : headers) {
+            headerMap.computeIfAbsent(header.getName(), name -> new ArrayList<>()).add(header.getValue());
+        }
+        return headerMap;
+    }
+}
@@ -0,0 +1,197 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import io.qameta.allure.Description;
+import io.qameta.allure.Feature;
+import io.qameta.allure.Story;
+import org.eclipse.hawkbit.ddi.json.model.DdiActionFeedback;
+import org.eclipse.hawkbit.ddi.json.model.DdiConfirmationFeedback;
+import org.eclipse.hawkbit.ddi.json.model.DdiControllerBase;
+import org.eclipse.hawkbit.ddi.json.model.DdiDeploymentBase;
+import org.eclipse.hawkbit.ddi.json.model.DdiStatus.ExecutionStatus;
+import org.eclipse.hawkbit.dmf.amqp.api.EventTopic;
+import org.eclipse.hawkbit.dmf.json.model.DmfSoftwareModule;
+import org.eclipse.hawkbit.simulator.DeviceSimulatorUpdater.UpdaterCallback;
+import org.eclipse.hawkbit.simulator.UpdateStatus.ResponseStatus;
+import org.eclipse.hawkbit.simulator.http.DdiAsyncClient;
+import org.junit.jupiter.api.Test;
+import org.springframework.hateoas.mediatype.hal.Jackson2HalModule;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@Feature("Unit Tests - Hawkbit Device Simulator")
+@Story("DDI Async Device")
+public class AsyncDDISimulatedDeviceTest {
+
+    private static final String ACTION_HREF = "http://localhost/tenant/controller/v1/device/deploymentBase/7?c=-1";
+    private static final String CONFIRMATION_HREF = "http://localhost/tenant/controller/v1/device/confirmationBase/7";
+
+    private final ObjectMapper mapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .registerModule(new Jackson2HalModule());
+    private final StubClient client = new StubClient();
+    private final StubUpdater updater = new StubUpdater();
+    private final AsyncDDISimulatedDevice device = new AsyncDDISimulatedDevice("device", "tenant", 30,
+            "http://localhost", client, updater, "token");
+
+    @Test
+    @Description("Verifies that a poll retrieves the deployment of the action and starts its update")
+    public void pollStartsUpdate() throws IOException {
+        device.poll();
+        assertThat(client.calls).containsExactly("poll");
+
+        client.controllerBase.complete(Optional.of(controllerBase("deploymentBase", ACTION_HREF)));
+        assertThat(client.calls).containsExactly("poll", "deployment " + ACTION_HREF);
+
+        client.deploymentBase.complete(Optional.of(deploymentBase("skip")));
+        assertThat(updater.device).isSameAs(device);
+        assertThat(updater.actionType).isEqualTo(EventTopic.DOWNLOAD);
+        assertThat(updater.modules).hasSize(1);
+        assertThat(updater.modules.get(0).getModuleVersion()).isEqualTo("1.0");
+        assertThat(updater.gatewayToken).isEqualTo("token");
+        assertThat(device.getCurrentActionId()).isEqualTo(7);
+    }
+
+    @Test
+    @Description("Verifies that the device does not poll again while its previous poll is in flight")
+    public void skipPollWhileInFlight() throws IOException {
+        device.poll();
+        device.poll();
+        assertThat(client.calls).containsExactly("poll");
+
+        client.controllerBase.complete(Optional.of(controllerBase(null, null)));
+        client.controllerBase = new CompletableFuture<>();
+        device.poll();
+        assertThat(client.calls).containsExactly("poll", "poll");
+
+        device.clean();
+        client.controllerBase.complete(Optional.empty());
+        device.poll();
+        assertThat(client.calls).containsExactly("poll", "poll");
+    }
+
+    @Test
+    @Description("Verifies that an action waiting for confirmation is confirmed without retrieving the deployment")
+    public void pollConfirmsAction() throws IOException {
+        device.poll();
+        client.controllerBase.complete(Optional.of(controllerBase("confirmationBase", CONFIRMATION_HREF)));
+
+        assertThat(client.calls).containsExactly("poll", "feedback " + CONFIRMATION_HREF);
+        assertThat(client.feedback.get(0)).isInstanceOf(DdiConfirmationFeedback.class);
+        assertThat(updater.device).isNull();
+    }
+
+    @Test
+    @Description("Verifies that the feedback of an update is posted in the order it is reported, one at a time")
+    public void postFeedbackInOrder() throws IOException {
+        device.poll();
+        client.controllerBase.complete(Optional.of(controllerBase("deploymentBase", ACTION_HREF)));
+        client.deploymentBase.complete(Optional.of(deploymentBase("forced")));
+        assertThat(updater.actionType).isEqualTo(EventTopic.DOWNLOAD_AND_INSTALL);
+
+        updater.callback.sendFeedback(device, new UpdateStatus(ResponseStatus.RUNNING, "running"));
+        updater.callback.sendFeedback(device, new UpdateStatus(ResponseStatus.SUCCESSFUL, "done"));
+        // the second feedback waits for the response to the first one
+        assertThat(client.feedback).hasSize(1);
+
+        final CompletableFuture<Integer> first = client.feedbackResponse;
+        client.feedbackResponse = CompletableFuture.completedFuture(200);
+        first.complete(200);
+
+        assertThat(client.calls).containsExactly("poll", "deployment " + ACTION_HREF, "feedback " + ACTION_HREF,
+                "feedback " + ACTION_HREF);
+        assertThat(client.feedback).extracting(feedback -> ((DdiActionFeedback) feedback).getStatus().getExecution())
+                .containsExactly(ExecutionStatus.PROCEEDING, ExecutionStatus.CLOSED);
+        assertThat(device.getCurrentActionId()).isNull();
+    }
+
+    private DdiControllerBase controllerBase(final String rel, final String href) throws IOException {
+        final String links = rel == null ? "" : ",\"_links\":{\"" + rel + "\":{\"href\":\"" + href + "\"}}";
+        return mapper.readValue("{\"config\":{\"polling\":{\"sleep\":\"00:00:30\"}}" + links + "}",
+                DdiControllerBase.class);
+    }
+
+    private DdiDeploymentBase deploymentBase(final String update) throws IOException {
+        return mapper.readValue("{\"id\":\"7\",\"deployment\":{\"download\":\"forced\",\"update\":\"" + update
+                + "\",\"chunks\":[{\"part\":\"os\",\"version\":\"1.0\",\"name\":\"one\",\"artifacts\":[]}]}}",
+                DdiDeploymentBase.class);
+    }
+
+    /**
+     * Client which records the calls of the device and answers them with
+     * futures the test completes.
+     */
+    private static final class StubClient extends DdiAsyncClient {
+
+        private final List<String> calls = new ArrayList<>();
+        private final List<Object> feedback = new ArrayList<>();
+        private CompletableFuture<Optional<DdiControllerBase>> controllerBase = new CompletableFuture<>();
+        private final CompletableFuture<Optional<DdiDeploymentBase>> deploymentBase = new CompletableFuture<>();
+        private CompletableFuture<Integer> feedbackResponse = new CompletableFuture<>();
+
+        private StubClient() {
+            super(null, null, "http://localhost", "token");
+        }
+
+        @Override
+        public CompletableFuture<Optional<DdiControllerBase>> getControllerBase(final String tenant,
+                final String controllerId) {
+            calls.add("poll");
+            return controllerBase;
+        }
+
+        @Override
+        public CompletableFuture<Optional<DdiDeploymentBase>> getDeploymentBase(final String deploymentBaseHref) {
+            calls.add("deployment " + deploymentBaseHref);
+            return deploymentBase;
+        }
+
+        @Override
+        public CompletableFuture<Integer> postFeedback(final String actionHref, final Object feedback) {
+            calls.add("feedback " + actionHref);
+            this.feedback.add(feedback);
+            return feedback instanceof DdiConfirmationFeedback ? CompletableFuture.completedFuture(200)
+                    : feedbackResponse;
+        }
+    }
+
+    /**
+     * Updater which records the started update instead of running it.
+     */
+    private static final class StubUpdater extends DeviceSimulatorUpdater {
+
+        private AbstractSimulatedDevice device;
+        private List<DmfSoftwareModule> modules;
+        private String gatewayToken;
+        private UpdaterCallback callback;
+        private EventTopic actionType;
+
+        @Override
+        public void startUpdate(final AbstractSimulatedDevice device, final List<DmfSoftwareModule> modules,
+                final String targetSecurityToken, final String gatewayToken, final UpdaterCallback callback,
+                final EventTopic actionType) {
+            this.device = device;
+            this.modules = modules;
+            this.gatewayToken = gatewayToken;
+            this.callback = callback;
+            this.actionType = actionType;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import io.qameta.allure.Description;
+import io.qameta.allure.Feature;
+import io.qameta.allure.Story;
+import org.junit.jupiter.api.Test;
+
+@Feature("Unit Tests - Hawkbit Device Simulator")
+@Story("Poll Execution")
+public class BusyFlagsTest {
+
+    @Test
+    @Description("Verifies that a flag is set only once until it is cleared")
+    public void setUntilCleared() {
+        final BusyFlags flags = new BusyFlags(Integer.MAX_VALUE);
+        assertThat(flags.set(0)).isTrue();
+        assertThat(flags.set(0)).isFalse();
+        assertThat(flags.set(63)).isTrue();
+        assertThat(flags.set(64)).isTrue();
+        assertThat(flags.set(Integer.MAX_VALUE - 1)).isTrue();
+
+        flags.clear(0);
+        flags.clear(1);
+        assertThat(flags.set(0)).isTrue();
+        assertThat(flags.set(63)).isFalse();
+        assertThat(flags.set(Integer.MAX_VALUE - 1)).isFalse();
+    }
+
+    @Test
+    @Description("Verifies that the flags are created with the first flag of their chunk and are limited to the "
+            + "capacity")
+    public void chunksByCapacity() {
+        final BusyFlags flags = new BusyFlags(100);
+        final long empty = flags.getBytes();
+        flags.clear(99);
+        assertThat(flags.getBytes()).isEqualTo(empty);
+
+        assertThat(flags.set(99)).isTrue();
+        assertThat(flags.getBytes()).isEqualTo(empty + 2 * Long.BYTES);
+        assertThatExceptionOfType(IndexOutOfBoundsException.class).isThrownBy(() -> flags.set(100));
+    }
+}
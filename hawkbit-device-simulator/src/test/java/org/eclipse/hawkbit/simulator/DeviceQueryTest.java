@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.qameta.allure.Description;
+import io.qameta.allure.Feature;
+import io.qameta.allure.Story;
+import org.eclipse.hawkbit.simulator.AbstractSimulatedDevice.Protocol;
+import org.eclipse.hawkbit.simulator.UpdateStatus.ResponseStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+@Feature("Unit Tests - Hawkbit Device Simulator")
+@Story("Device Repository")
+public class DeviceQueryTest {
+
+    private final DeviceStore store = new DeviceStore(() -> null, new SimpleMeterRegistry());
+
+    private AbstractSimulatedDevice pinnedRangeDevice;
+
+    @BeforeEach
+    public void setup() {
+        store.put(new DMFSimulatedDevice("dmf0", "tenant", null, 30));
+        final DDISimulatedDevice updating = new DDISimulatedDevice("ddi0", "tenant", 30, null, null, null, null);
+        updating.setUpdateStatus(new UpdateStatus(ResponseStatus.DOWNLOADING));
+        store.put(updating);
+        store.pin(updating);
+        final DDISimulatedDevice updated = new DDISimulatedDevice("ddi1", "other", 30, null, null, null, null);
+        updated.setUpdateStatus(new UpdateStatus(ResponseStatus.SUCCESSFUL));
+        store.put(updated);
+        store.putRange(DeviceRangeTest.range("sim", 5, 30));
+        pinnedRangeDevice = store.get("tenant", "sim2");
+        pinnedRangeDevice.setUpdateStatus(new UpdateStatus(ResponseStatus.RUNNING));
+        store.pin(pinnedRangeDevice);
+    }
+
+    @Test
+    @Description("Verifies that pages continue at their cursor until all matching devices are listed once")
+    public void pagesCoverAllDevices() {
+        final List<String> listed = new ArrayList<>();
+        long cursor = 0;
+        int pages = 0;
+        do {
+            final DeviceQuery.Page page = new DeviceQuery(null, null, null, null).find(store, cursor, 2);
+            assertThat(page.devices()).hasSizeLessThanOrEqualTo(2);
+            page.devices().forEach(device -> listed.add(device.tenant() + "/" + device.id()));
+            cursor = page.next() != null ? Long.parseLong(page.next()) : -1;
+            pages++;
+        } while (cursor >= 0);
+
+        assertThat(listed).containsExactly("tenant/dmf0", "tenant/ddi0", "other/ddi1", "tenant/sim2",
+                "tenant/sim0", "tenant/sim1", "tenant/sim3", "tenant/sim4");
+        assertThat(pages).isBetween(4, 5);
+    }
+
+    @Test
+    @Description("Verifies that devices are filtered by tenant, protocol, update status and open action")
+    public void filtersDevices() {
+        assertThat(ids(new DeviceQuery("TENANT", Protocol.DDI_HTTP, null, null))).containsExactly("ddi0");
+        assertThat(ids(new DeviceQuery(null, null, "successful", null))).containsExactly("ddi1");
+        assertThat(ids(new DeviceQuery(null, null, null, true))).containsExactly("ddi0", "sim2");
+        assertThat(ids(new DeviceQuery("tenant", null, "none", false))).containsExactly("dmf0", "sim0", "sim1",
+                "sim3", "sim4");
+        assertThat(ids(new DeviceQuery("unknown", null, null, null))).isEmpty();
+
+        final DeviceQuery.Device device = new DeviceQuery(null, null, "running", null).find(store, 0, 10)
+                .devices().get(0);
+        assertThat(device).isEqualTo(
+                new DeviceQuery.Device("tenant", "sim2", Protocol.DMF_AMQP, 30, "RUNNING", true));
+
+        assertThatIllegalArgumentException().isThrownBy(() -> new DeviceQuery(null, null, "unknown", null));
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> new DeviceQuery(null, null, null, null).find(store, 0, DeviceQuery.MAX_LIMIT + 1));
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> new DeviceQuery(null, null, null, null).find(store, -1, 10));
+    }
+
+    @Test
+    @Description("Verifies that the summary counts the devices by update status and protocol")
+    public void summarizesDevices() {
+        final DeviceQuery.Summary summary = new DeviceQuery(null, null, null, null).summarize(store);
+        assertThat(summary.total()).isEqualTo(store.size()).isEqualTo(8);
+        assertThat(summary.openActions()).isEqualTo(2);
+        assertThat(summary.statuses()).containsEntry(DeviceQuery.NO_STATUS, 5L)
+                .containsEntry(ResponseStatus.DOWNLOADING.name(), 1L)
+                .containsEntry(ResponseStatus.SUCCESSFUL.name(), 1L).containsEntry(ResponseStatus.RUNNING.name(), 1L)
+                .containsEntry(ResponseStatus.ERROR.name(), 0L);
+        assertThat(summary.protocols()).containsEntry(Protocol.DMF_AMQP, 6L).containsEntry(Protocol.DDI_HTTP, 2L)
+                .containsEntry(Protocol.DDI_ASYNC, 0L);
+
+        store.unpin(pinnedRangeDevice, null);
+        final DeviceQuery.Summary tenantSummary = new DeviceQuery("tenant", Protocol.DMF_AMQP, null, null)
+                .summarize(store);
+        assertThat(tenantSummary.total()).isEqualTo(6);
+        assertThat(tenantSummary.openActions()).isZero();
+        assertThat(tenantSummary.statuses()).containsEntry(DeviceQuery.NO_STATUS, 6L);
+    }
+
+    @Test
+    @Description("Verifies that a DMF device kept without its object after its update shows its final status")
+    public void keepStatusOfUnpinnedDevice() {
+        final AbstractSimulatedDevice updated = new DMFSimulatedDevice("dmf1", "tenant", null, 30);
+        store.put(updated);
+        store.pin(updated);
+        final UpdateStatus status = new UpdateStatus(ResponseStatus.SUCCESSFUL, "Simulation complete!");
+        updated.setUpdateStatus(status);
+        // as the updater does at the end of an update
+        updated.clean();
+        store.unpin(updated, status);
+
+        assertThat(store.get("tenant", "dmf1")).isNotSameAs(updated);
+        assertThat(new DeviceQuery("tenant", null, "successful", null).find(store, 0, 10).devices())
+                .containsExactly(new DeviceQuery.Device("tenant", "dmf1", Protocol.DMF_AMQP, 30, "SUCCESSFUL", false));
+        assertThat(new DeviceQuery("tenant", Protocol.DMF_AMQP, null, null).summarize(store).statuses())
+                .containsEntry(ResponseStatus.SUCCESSFUL.name(), 1L);
+
+        // a device put again has no status until its next update
+        store.put(new DMFSimulatedDevice("dmf1", "tenant", null, 30));
+        assertThat(ids(new DeviceQuery("tenant", null, "successful", null))).isEmpty();
+    }
+
+    private List<String> ids(final DeviceQuery query) {
+        return query.find(store, 0, DeviceQuery.MAX_LIMIT).devices().stream().map(DeviceQuery.Device::id).toList();
+    }
+}
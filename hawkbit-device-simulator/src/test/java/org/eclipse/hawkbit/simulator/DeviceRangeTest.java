@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.qameta.allure.Description;
+import io.qameta.allure.Feature;
+import io.qameta.allure.Story;
+import org.eclipse.hawkbit.simulator.AbstractSimulatedDevice.Protocol;
+import org.junit.jupiter.api.Test;
+
+@Feature("Unit Tests - Hawkbit Device Simulator")
+@Story("Device Repository")
+public class DeviceRangeTest {
+
+    @Test
+    @Description("Verifies that only the IDs of the range are resolved to their index")
+    public void indexOf() {
+        final DeviceRange range = range("sim", 120, 30);
+
+        assertThat(range.indexOf("sim0")).isZero();
+        assertThat(range.indexOf("sim119")).isEqualTo(119);
+        assertThat(range.indexOf("sim120")).isEqualTo(-1);
+        assertThat(range.indexOf("sim01")).isEqualTo(-1);
+        assertThat(range.indexOf("sim")).isEqualTo(-1);
+        assertThat(range.indexOf("sim1a")).isEqualTo(-1);
+        assertThat(range.indexOf("Sim1")).isEqualTo(-1);
+        assertThat(range.indexOf("sim99999999999")).isEqualTo(-1);
+        assertThat(range.idOf(42)).isEqualTo("sim42");
+        assertThat(range.createDevice(42).getId()).isEqualTo("sim42");
+    }
+
+    @Test
+    @Description("Verifies that ranges overlap exactly if they have IDs in common")
+    public void overlaps() {
+        assertThat(range("sim", 10, 30).overlaps(range("sim", 1, 30))).isTrue();
+        assertThat(range("sim", 10, 30).overlaps(range("sim1", 5, 30))).isFalse();
+        assertThat(range("sim", 11, 30).overlaps(range("sim1", 5, 30))).isTrue();
+        assertThat(range("sim1", 5, 30).overlaps(range("sim", 11, 30))).isTrue();
+        assertThat(range("sim", 1000, 30).overlaps(range("sim0", 5, 30))).isFalse();
+        assertThat(range("sim", 1000, 30).overlaps(range("simA", 5, 30))).isFalse();
+        assertThat(range("sim", 1000, 30).overlaps(range("dev", 5, 30))).isFalse();
+        assertThat(range("sim", 0, 30).overlaps(range("sim", 5, 30))).isFalse();
+    }
+
+    @Test
+    @Description("Verifies that every device of a range polls once per poll delay and the polls are spread evenly")
+    public void pollsInPhases() {
+        final DeviceRange range = range("sim", 100, 10);
+        range.start(5);
+
+        final List<Integer> polled = new ArrayList<>();
+        range.forEachDue(5, polled::add);
+        assertThat(polled).isEmpty();
+
+        final int[] polls = new int[100];
+        for (long tick = 6; tick < 6 + 30; tick++) {
+            final List<Integer> due = new ArrayList<>();
+            range.forEachDue(tick, due::add);
+            assertThat(due).hasSize(10);
+            due.forEach(index -> polls[index]++);
+            assertThat(range.isFirstPoll(tick)).isEqualTo(tick < 16);
+        }
+        for (final int count : polls) {
+            assertThat(count).isEqualTo(3);
+        }
+
+        range.retire();
+        range.forEachDue(40, polled::add);
+        assertThat(polled).isEmpty();
+    }
+
+    @Test
+    @Description("Verifies that removed devices are counted")
+    public void removedDevices() {
+        final DeviceRange range = range("sim", 100, 10);
+
+        assertThat(range.remove(3)).isTrue();
+        assertThat(range.remove(3)).isFalse();
+        assertThat(range.isRemoved(3)).isTrue();
+        assertThat(range.isRemoved(4)).isFalse();
+        assertThat(range.size()).isEqualTo(99);
+    }
+
+    static DeviceRange range(final String name, final int amount, final int pollDelaySec) {
+        return new DeviceRange("tenant", name, amount, Protocol.DMF_AMQP, pollDelaySec, null, null,
+                id -> new DMFSimulatedDevice(id, "tenant", null, pollDelaySec), id -> {
+                });
+    }
+}
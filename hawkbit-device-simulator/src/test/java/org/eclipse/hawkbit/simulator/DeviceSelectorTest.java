@@ -0,0 +1,147 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.qameta.allure.Description;
+import io.qameta.allure.Feature;
+import io.qameta.allure.Story;
+import org.junit.jupiter.api.Test;
+
+@Feature("Unit Tests - Hawkbit Device Simulator")
+@Story("Device Repository")
+public class DeviceSelectorTest {
+
+    private final DeviceStore store = new DeviceStore(() -> null, new SimpleMeterRegistry());
+
+    @Test
+    @Description("Verifies that devices are selected by tenant, ID prefix and the number which follows the prefix")
+    public void selectsDevices() {
+        final DeviceSelector bounded = new DeviceSelector("Tenant", "sim", 10L, 20L);
+        assertThat(bounded.matches("tenant", "sim10")).isTrue();
+        assertThat(bounded.matches("TENANT", "sim19")).isTrue();
+        assertThat(bounded.matches("tenant", "sim20")).isFalse();
+        assertThat(bounded.matches("tenant", "sim9")).isFalse();
+        assertThat(bounded.matches("tenant", "sim010")).isFalse();
+        assertThat(bounded.matches("tenant", "sim1x")).isFalse();
+        assertThat(bounded.matches("other", "sim10")).isFalse();
+
+        final DeviceSelector prefix = new DeviceSelector("tenant", "gerät", null, null);
+        assertThat(prefix.matches("tenant", "gerät-1")).isTrue();
+        assertThat(prefix.matches("tenant", "gera")).isFalse();
+        assertThat(new DeviceSelector("tenant", null, null, null).matches("tenant", "any")).isTrue();
+
+        assertThat(bounded.indicesIn(DeviceRangeTest.range("sim", 15, 30)).stream()).containsExactly(10, 11, 12,
+                13, 14);
+        assertThat(prefix.indicesIn(DeviceRangeTest.range("sim", 15, 30)).isEmpty()).isTrue();
+        assertThat(new DeviceSelector("tenant", "sim1", null, null).indicesIn(DeviceRangeTest.range("sim", 15, 30))
+                .stream()).containsExactly(1, 10, 11, 12, 13, 14);
+        assertThat(new DeviceSelector("tenant", "s", null, null).indicesIn(DeviceRangeTest.range("sim", 15, 30))
+                .cardinality()).isEqualTo(15);
+
+        assertThatIllegalArgumentException().isThrownBy(() -> new DeviceSelector(null, "sim", null, null));
+        assertThatIllegalArgumentException().isThrownBy(() -> new DeviceSelector("tenant", "sim", 5L, 5L));
+        assertThatIllegalArgumentException().isThrownBy(() -> new DeviceSelector("tenant", "sim", -1L, null));
+    }
+
+    @Test
+    @Description("Verifies that the selected single devices and devices of ranges are removed in one pass")
+    public void removesSelectedDevices() {
+        for (int i = 0; i < 30; i++) {
+            store.put(new DMFSimulatedDevice("single" + i, "Tenant", null, 30));
+        }
+        final AbstractSimulatedDevice other = new DDISimulatedDevice("single5", "other", 30, null, null, null,
+                null);
+        store.put(other);
+        final DeviceRange kept = DeviceRangeTest.range("sim", 20, 30);
+        store.putRange(kept);
+        final DeviceRange removed = DeviceRangeTest.range("virtual", 10, 30);
+        store.putRange(removed);
+        final AbstractSimulatedDevice pinned = store.get("tenant", "virtual3");
+        store.pin(pinned);
+
+        final DeviceStore.Removal singles = store.removeAll(new DeviceSelector("tenant", "single", 5L, 25L), true);
+        assertThat(singles.getCount()).isEqualTo(20);
+        assertThat(ids(singles.ids())).hasSize(20).contains("single5", "single24").doesNotContain("single4");
+        assertThat(store.get("tenant", "single5")).isNull();
+        assertThat(store.get("other", "single5")).isSameAs(other);
+        assertThat(store.count("tenant")).isEqualTo(40);
+
+        final DeviceStore.Removal ranges = store.removeAll(new DeviceSelector("tenant", "", null, null), false);
+        // the pinned device is counted with its range
+        assertThat(ranges.getCount()).isEqualTo(40);
+        assertThat(ranges.getObjects()).containsExactly(pinned);
+        assertThat(ids(ranges.ids())).hasSize(30).contains("sim0", "sim19", "virtual0", "virtual3", "virtual9");
+        assertThat(removed.isRetired()).isTrue();
+        assertThat(kept.isRetired()).isTrue();
+        assertThat(store.getRanges()).isEmpty();
+        assertThat(store.count("tenant")).isZero();
+        assertThat(store.size()).isEqualTo(1);
+        assertThat(store.materialized()).isEqualTo(1);
+    }
+
+    @Test
+    @Description("Verifies that the selected devices of a range are removed from the range which is kept")
+    public void removesDevicesOfRange() {
+        final DeviceRange range = DeviceRangeTest.range("sim", 20, 30);
+        store.putRange(range);
+        store.remove("tenant", "sim12");
+
+        final DeviceStore.Removal removal = store.removeAll(new DeviceSelector("tenant", "sim", 10L, 15L), true);
+        assertThat(removal.getCount()).isEqualTo(4);
+        assertThat(ids(removal.ids())).containsExactly("sim10", "sim11", "sim13", "sim14");
+        assertThat(range.isRetired()).isFalse();
+        assertThat(store.count("tenant")).isEqualTo(15);
+        assertThat(store.get("tenant", "sim11")).isNull();
+        assertThat(store.get("tenant", "sim15")).isNotNull();
+    }
+
+    @Test
+    @Description("Verifies that the IDs of a removal cover the single devices and the removed devices of several "
+            + "ranges once, skipping the devices which have been removed before")
+    public void removalIdsAcrossRanges() {
+        store.put(new DMFSimulatedDevice("single0", "tenant", null, 30));
+        store.put(new DMFSimulatedDevice("single1", "tenant", null, 30));
+        store.putRange(DeviceRangeTest.range("a", 3, 30));
+        store.putRange(DeviceRangeTest.range("b", 4, 30));
+        store.putRange(DeviceRangeTest.range("c", 2, 30));
+        store.remove("tenant", "a1");
+        store.remove("tenant", "b0");
+        store.remove("tenant", "b3");
+        store.remove("tenant", "c0");
+        store.remove("tenant", "c1");
+
+        final DeviceStore.Removal removal = store.removeAll(new DeviceSelector("tenant", null, null, null), true);
+        assertThat(removal.getCount()).isEqualTo(6);
+        final Iterator<String> iterator = removal.ids();
+        final List<String> ids = ids(iterator);
+        assertThat(ids.subList(0, 2)).containsExactlyInAnyOrder("single0", "single1");
+        // newest range first
+        assertThat(ids.subList(2, ids.size())).containsExactly("b1", "b2", "a0", "a2");
+        assertThat(iterator.hasNext()).isFalse();
+        assertThatExceptionOfType(NoSuchElementException.class).isThrownBy(iterator::next);
+        assertThat(ids(removal.ids())).isEqualTo(ids);
+    }
+
+    private static List<String> ids(final Iterator<String> iterator) {
+        final List<String> ids = new ArrayList<>();
+        iterator.forEachRemaining(ids::add);
+        return ids;
+    }
+}
@@ -0,0 +1,175 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.eclipse.hawkbit.simulator.download.ArtifactServer.module;
+import static org.eclipse.hawkbit.simulator.download.ArtifactServer.waitFor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.qameta.allure.Description;
+import io.qameta.allure.Feature;
+import io.qameta.allure.Story;
+import org.eclipse.hawkbit.dmf.amqp.api.EventTopic;
+import org.eclipse.hawkbit.dmf.json.model.DmfArtifact;
+import org.eclipse.hawkbit.simulator.UpdateStatus.ResponseStatus;
+import org.eclipse.hawkbit.simulator.download.ArtifactReader;
+import org.eclipse.hawkbit.simulator.download.ArtifactServer;
+import org.eclipse.hawkbit.simulator.download.DownloadHttpClient;
+import org.eclipse.hawkbit.simulator.download.DownloadProperties;
+import org.eclipse.hawkbit.simulator.download.DownloadResumer;
+import org.eclipse.hawkbit.simulator.download.DownloadThrottle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@Feature("Unit Tests - Hawkbit Device Simulator")
+@Story("Update Simulation")
+public class DeviceSimulatorUpdaterTest {
+
+    private static final int MAX_ACTIONS = 2;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final DeviceStore store = new DeviceStore(() -> null, meterRegistry);
+    // the finished updates in the order of their final status
+    private final List<Integer> finished = new CopyOnWriteArrayList<>();
+    private ArtifactServer server;
+    private DeviceSimulatorUpdater updater;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = new ArtifactServer();
+        updater = updater();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        updater.shutdownPools();
+        server.close();
+    }
+
+    @Test
+    @Description("Verifies that the updates of a device beyond the per-device limit wait and start in order as the "
+            + "running ones complete, the device is kept until its last update has finished")
+    public void limitUpdatesPerDevice() {
+        store.put(new DMFSimulatedDevice("device", "tenant", null, 30));
+        final List<CountDownLatch> releases = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            final CountDownLatch release = new CountDownLatch(1);
+            releases.add(release);
+            final int update = i;
+            updater.startUpdate("tenant", "device", List.of(module(server.add("artifact" + i, 1_000, release))),
+                    null, null, (device, status) -> {
+                        if (status.getResponseStatus() == ResponseStatus.SUCCESSFUL) {
+                            finished.add(update);
+                        }
+                    }, EventTopic.DOWNLOAD_AND_INSTALL);
+        }
+        final AbstractSimulatedDevice pinned = store.get("tenant", "device");
+
+        assertThat(waitFor(() -> server.getRequested().size() == MAX_ACTIONS)).isTrue();
+        assertThat(server.getRequested()).containsExactlyInAnyOrder("artifact0", "artifact1");
+        assertThat(waiting()).isEqualTo(2);
+
+        // the first waiting update takes over the place of the completed one
+        releases.get(1).countDown();
+        assertThat(waitFor(() -> server.getRequested().size() == 3)).isTrue();
+        assertThat(server.getRequested().get(2)).isEqualTo("artifact2");
+        assertThat(waiting()).isEqualTo(1);
+
+        releases.get(0).countDown();
+        assertThat(waitFor(() -> server.getRequested().size() == 4)).isTrue();
+        assertThat(server.getRequested().get(3)).isEqualTo("artifact3");
+        assertThat(waiting()).isZero();
+
+        releases.get(2).countDown();
+        assertThat(waitFor(() -> finished.size() == 3)).isTrue();
+        assertThat(finished).containsExactly(1, 0, 2);
+        // still kept for the running update
+        assertThat(store.get("tenant", "device")).isSameAs(pinned);
+        // the finished updates do not clean the device of the running one
+        assertThat(pinned.getUpdateStatus()).isNotNull();
+        assertThat(pinned.getUpdateStatus().getResponseStatus()).isEqualTo(ResponseStatus.SUCCESSFUL);
+
+        releases.get(3).countDown();
+        assertThat(waitFor(() -> store.get("tenant", "device") != pinned)).isTrue();
+        assertThat(finished).containsExactly(1, 0, 2, 3);
+        // cleaned with the last update
+        assertThat(pinned.getUpdateStatus()).isNull();
+    }
+
+    @Test
+    @Description("Verifies that cancelling drops the waiting updates of the matching devices and stops their running "
+            + "ones without a further status, the updates of other devices go on")
+    public void cancelUpdatesOfMatchingDevices() {
+        store.put(new DMFSimulatedDevice("cancelled", "tenant", null, 30));
+        store.put(new DMFSimulatedDevice("kept", "tenant", null, 30));
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> reported = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            startUpdate("cancelled", server.add("cancelled" + i, 1_000, release), reported);
+        }
+        startUpdate("kept", server.add("kept", 1_000, release), reported);
+        final AbstractSimulatedDevice cancelled = store.get("tenant", "cancelled");
+        assertThat(waitFor(() -> server.getRequested().size() == 3)).isTrue();
+        assertThat(waiting()).isEqualTo(1);
+
+        assertThat(updater.cancelUpdates(device -> "cancelled".equals(device.getId()))).isEqualTo(3);
+        assertThat(waiting()).isZero();
+        assertThat(updater.cancelUpdates(device -> "cancelled".equals(device.getId()))).isEqualTo(2);
+        release.countDown();
+
+        assertThat(waitFor(() -> reported.contains("kept/" + ResponseStatus.SUCCESSFUL))).isTrue();
+        assertThat(waitFor(() -> store.get("tenant", "cancelled") != cancelled)).isTrue();
+        assertThat(server.getRequested()).containsExactlyInAnyOrder("cancelled0", "cancelled1", "kept");
+        assertThat(reported).doesNotContain("cancelled/" + ResponseStatus.SUCCESSFUL,
+                "cancelled/" + ResponseStatus.ERROR);
+        assertThat(updater.cancelUpdates(device -> true)).isZero();
+    }
+
+    private void startUpdate(final String deviceId, final DmfArtifact artifact, final List<String> reported) {
+        updater.startUpdate("tenant", deviceId, List.of(module(artifact)), null, null,
+                (device, status) -> reported.add(device.getId() + "/" + status.getResponseStatus()),
+                EventTopic.DOWNLOAD_AND_INSTALL);
+    }
+
+    private double waiting() {
+        return meterRegistry.get("simulator.update.waiting").gauge().value();
+    }
+
+    private DeviceSimulatorUpdater updater() throws Exception {
+        final SimulationProperties simulationProperties = new SimulationProperties();
+        simulationProperties.getUpdate().setStartDelay(Duration.ZERO);
+        simulationProperties.getUpdate().setMaxActionsPerDevice(MAX_ACTIONS);
+        final DownloadProperties properties = new DownloadProperties();
+        final DeviceSimulatorRepository repository = new DeviceSimulatorRepository();
+        ReflectionTestUtils.setField(repository, "devices", store);
+
+        final DeviceSimulatorUpdater deviceUpdater = new DeviceSimulatorUpdater();
+        ReflectionTestUtils.setField(deviceUpdater, "repository", repository);
+        ReflectionTestUtils.setField(deviceUpdater, "simulationProperties", simulationProperties);
+        ReflectionTestUtils.setField(deviceUpdater, "downloadProperties", properties);
+        ReflectionTestUtils.setField(deviceUpdater, "downloadHttpClient",
+                new DownloadHttpClient(properties, meterRegistry));
+        ReflectionTestUtils.setField(deviceUpdater, "downloadThrottle", new DownloadThrottle(properties, meterRegistry));
+        ReflectionTestUtils.setField(deviceUpdater, "artifactReader", new ArtifactReader(properties, meterRegistry));
+        ReflectionTestUtils.setField(deviceUpdater, "downloadResumer", new DownloadResumer(properties, meterRegistry));
+        ReflectionTestUtils.setField(deviceUpdater, "meterRegistry", meterRegistry);
+        deviceUpdater.createPools();
+        return deviceUpdater;
+    }
+}
@@ -0,0 +1,280 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.qameta.allure.Description;
+import io.qameta.allure.Feature;
+import io.qameta.allure.Story;
+import org.junit.jupiter.api.Test;
+
+@Feature("Unit Tests - Hawkbit Device Simulator")
+@Story("Device Repository")
+public class DeviceStoreTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final DeviceStore store = new DeviceStore(() -> null, meterRegistry);
+
+    @Test
+    @Description("Verifies that devices are found by their tenant in any case")
+    public void tenantIsCaseInsensitive() {
+        final int slot = store.put(dmfDevice("Tenant", "device1"));
+
+        assertThat(store.get("tenant", "device1").getId()).isEqualTo("device1");
+        assertThat(store.get("TENANT", "device1").getTenant()).isEqualTo("Tenant");
+        assertThat(store.slotOf("TENANT", "device1")).isEqualTo(slot);
+        assertThat(store.get("Tenant", "device2")).isNull();
+        assertThat(store.get("other", "device1")).isNull();
+        assertThat(store.getTenants()).containsExactly("tenant");
+    }
+
+    @Test
+    @Description("Verifies that a device replaces the device of its tenant with the same ID in the same slot")
+    public void putReplacesDevice() {
+        final int slot = store.put(dmfDevice("tenant", "device1"));
+        final AbstractSimulatedDevice ddiDevice = ddiDevice("TENANT", "device1");
+
+        assertThat(store.put(ddiDevice)).isEqualTo(slot);
+        assertThat(store.get("tenant", "device1")).isSameAs(ddiDevice);
+        assertThat(store.count("tenant")).isEqualTo(1);
+    }
+
+    @Test
+    @Description("Verifies that DMF devices are kept without object unless they are pinned")
+    public void dmfDevicesAreMaterializedWhilePinned() {
+        final AbstractSimulatedDevice device = dmfDevice("tenant", "device1");
+        store.put(device);
+        assertThat(store.materialized()).isZero();
+
+        final AbstractSimulatedDevice first = store.get("tenant", "device1");
+        assertThat(first).isNotSameAs(device).isInstanceOf(DMFSimulatedDevice.class);
+        assertThat(first.getPollDelaySec()).isEqualTo(30);
+        assertThat(store.get("tenant", "device1")).isNotSameAs(first);
+
+        store.pin(first);
+        assertThat(store.materialized()).isEqualTo(1);
+        assertThat(store.get("tenant", "device1")).isSameAs(first);
+
+        store.unpin(first, null);
+        assertThat(store.materialized()).isZero();
+        assertThat(store.get("tenant", "device1")).isNotSameAs(first);
+    }
+
+    @Test
+    @Description("Verifies that DDI devices keep their object")
+    public void ddiDevicesKeepObject() {
+        final AbstractSimulatedDevice device = ddiDevice("tenant", "device1");
+        final int slot = store.put(device);
+
+        store.unpin(device, null);
+        assertThat(store.get(slot)).isSameAs(device);
+        assertThat(store.materialized()).isEqualTo(1);
+    }
+
+    @Test
+    @Description("Verifies the per tenant counts and views")
+    public void countsAndViews() {
+        store.put(dmfDevice("a", "device1"));
+        store.put(dmfDevice("a", "device2"));
+        store.put(dmfDevice("B", "device1"));
+
+        assertThat(store.count("A")).isEqualTo(2);
+        assertThat(store.count("b")).isEqualTo(1);
+        assertThat(store.count("c")).isZero();
+        assertThat(store.getAll("a")).hasSize(2).extracting(AbstractSimulatedDevice::getId)
+                .containsExactlyInAnyOrder("device1", "device2");
+        assertThat(store.getAll("c")).isEmpty();
+        assertThat(store.getAll()).hasSize(3);
+        assertThat(store.getTenants()).containsExactlyInAnyOrder("a", "b");
+
+        assertThat(store.remove("A", "device1")).isNotNull();
+        assertThat(store.remove("A", "device1")).isNull();
+        assertThat(store.getAll()).hasSize(2);
+    }
+
+    @Test
+    @Description("Verifies that removed devices free their slots and the remaining devices are still found")
+    public void removeAndReuseSlots() {
+        final Set<Integer> slots = new HashSet<>();
+        for (int i = 0; i < 5_000; i++) {
+            slots.add(store.put(dmfDevice("tenant", "device" + i)));
+        }
+        assertThat(slots).hasSize(5_000);
+
+        for (int i = 0; i < 5_000; i += 2) {
+            assertThat(store.remove("tenant", "device" + i)).isNotNull();
+        }
+        assertThat(store.size()).isEqualTo(2_500);
+        for (int i = 0; i < 5_000; i++) {
+            assertThat(store.get("tenant", "device" + i) != null).isEqualTo(i % 2 == 1);
+        }
+
+        for (int i = 0; i < 2_500; i++) {
+            assertThat(slots).contains(store.put(dmfDevice("other", "device" + i)));
+        }
+        assertThat(store.get("other", "device1").getTenant()).isEqualTo("other");
+        assertThat(store.get("tenant", "device1").getTenant()).isEqualTo("tenant");
+    }
+
+    @Test
+    @Description("Verifies that IDs are kept in the name table, also when it is compacted after removals")
+    public void namesSurviveCompaction() {
+        store.put(dmfDevice("tenant", "gerät-ä"));
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 2_000; i++) {
+                store.put(dmfDevice("tenant", "device-" + round + "-" + i));
+            }
+            for (int i = 0; i < 2_000; i++) {
+                store.remove("tenant", "device-" + round + "-" + i);
+            }
+        }
+        store.put(dmfDevice("tenant", "device1"));
+
+        assertThat(store.get("tenant", "gerät-ä").getId()).isEqualTo("gerät-ä");
+        assertThat(store.get("tenant", "gerät-a")).isNull();
+        assertThat(store.getAll()).extracting(AbstractSimulatedDevice::getId)
+                .containsExactlyInAnyOrder("gerät-ä", "device1");
+    }
+
+    @Test
+    @Description("Verifies that devices added after clearing the store are found by a known spelling of the tenant")
+    public void addAfterClear() {
+        store.put(dmfDevice("Tenant", "device1"));
+        final AbstractSimulatedDevice ddiDevice = ddiDevice("Tenant", "device2");
+        store.put(ddiDevice);
+
+        assertThat(store.clear()).containsExactly(ddiDevice);
+        assertThat(store.get("Tenant", "device1")).isNull();
+        assertThat(store.getTenants()).isEmpty();
+
+        store.put(dmfDevice("Tenant", "device3"));
+        assertThat(store.get("Tenant", "device3")).isNotNull();
+        assertThat(store.getAll()).extracting(AbstractSimulatedDevice::getId).containsExactly("device3");
+        assertThat(store.getTenants()).containsExactly("tenant");
+    }
+
+    @Test
+    @Description("Verifies that the heap per idle device is reported")
+    public void idleBytesAreReported() {
+        for (int i = 0; i < 10_000; i++) {
+            store.put(dmfDevice("tenant", "device" + i));
+        }
+
+        final double bytes = meterRegistry.get("simulator.devices.idle.bytes").gauge().value();
+        assertThat(bytes).isBetween(40.0, 200.0);
+
+        // the poll schedule of every device is added
+        store.addIdleBytes(() -> 10_000L * 20);
+        assertThat(meterRegistry.get("simulator.devices.idle.bytes").gauge().value()).isCloseTo(bytes + 20, within(0.001));
+    }
+
+    @Test
+    @Description("Verifies that the devices of a range are resolved by their ID without a slot")
+    public void rangeDevicesAreResolved() {
+        store.putRange(DeviceRangeTest.range("sim", 1_000_000, 30));
+
+        final AbstractSimulatedDevice device = store.get("TENANT", "sim999999");
+        assertThat(device.getId()).isEqualTo("sim999999");
+        assertThat(device.getPollDelaySec()).isEqualTo(30);
+        assertThat(store.get("tenant", "sim1000000")).isNull();
+        assertThat(store.slotOf("tenant", "sim5")).isEqualTo(-1);
+        assertThat(store.size()).isEqualTo(1_000_000);
+        assertThat(store.count("tenant")).isEqualTo(1_000_000);
+        assertThat(store.materialized()).isZero();
+        assertThat(store.getAll("tenant")).hasSize(1_000_000);
+        assertThat(meterRegistry.get("simulator.devices.idle.bytes").gauge().value()).isLessThan(1.0);
+    }
+
+    @Test
+    @Description("Verifies that a device of a range gets a slot only while it is pinned")
+    public void rangeDevicesArePinned() {
+        final DeviceRange range = DeviceRangeTest.range("sim", 10, 30);
+        store.putRange(range);
+
+        final AbstractSimulatedDevice device = store.get("tenant", "sim3");
+        store.pin(device);
+        assertThat(store.get("tenant", "sim3")).isSameAs(device);
+        assertThat(store.get(range, 3)).isSameAs(device);
+        final int slot = store.slotOf("tenant", "sim3");
+        assertThat(slot).isNotNegative();
+        // polled by the range, not by its slot
+        assertThat(store.get(slot)).isNull();
+        assertThat(store.count("tenant")).isEqualTo(10);
+        assertThat(store.getAll()).hasSize(10).contains(device);
+
+        store.unpin(device, null);
+        assertThat(store.slotOf("tenant", "sim3")).isEqualTo(-1);
+        assertThat(store.get("tenant", "sim3")).isNotSameAs(device);
+        assertThat(store.materialized()).isZero();
+        assertThat(store.count("tenant")).isEqualTo(10);
+    }
+
+    @Test
+    @Description("Verifies that removed and replaced devices of a range are not resolved by the range anymore")
+    public void rangeDevicesAreRemovedAndReplaced() {
+        final DeviceRange range = DeviceRangeTest.range("sim", 10, 30);
+        store.putRange(range);
+
+        assertThat(store.remove("tenant", "sim1").getId()).isEqualTo("sim1");
+        assertThat(store.remove("tenant", "sim1")).isNull();
+        assertThat(store.get("tenant", "sim1")).isNull();
+        assertThat(store.get(range, 1)).isNull();
+
+        final AbstractSimulatedDevice single = ddiDevice("tenant", "sim2");
+        store.put(single);
+        assertThat(store.get("tenant", "sim2")).isSameAs(single);
+        assertThat(store.get(range, 2)).isNull();
+        assertThat(store.count("tenant")).isEqualTo(9);
+        assertThat(store.getAll("tenant")).hasSize(9).extracting(AbstractSimulatedDevice::getId)
+                .doesNotContain("sim1").containsOnlyOnce("sim2");
+    }
+
+    @Test
+    @Description("Verifies that a range replaces the range with its name and the single devices with its IDs")
+    public void rangeReplacesDevices() {
+        store.put(dmfDevice("tenant", "sim1"));
+        store.put(dmfDevice("tenant", "other"));
+        final DeviceRange first = DeviceRangeTest.range("sim", 10, 30);
+        store.putRange(first);
+        assertThat(store.count("tenant")).isEqualTo(11);
+        assertThat(store.slotOf("tenant", "sim1")).isEqualTo(-1);
+
+        store.putRange(DeviceRangeTest.range("sim", 5, 30));
+        assertThat(first.isRetired()).isTrue();
+        assertThat(store.getRanges()).hasSize(1);
+        assertThat(store.count("tenant")).isEqualTo(6);
+        assertThat(store.get("tenant", "sim7")).isNull();
+
+        store.putRange(DeviceRangeTest.range("sim5", 5, 30));
+        assertThat(store.count("tenant")).isEqualTo(11);
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> store.putRange(DeviceRangeTest.range("sim", 100, 30)));
+        assertThat(store.count("tenant")).isEqualTo(11);
+
+        store.clear();
+        assertThat(store.getRanges()).isEmpty();
+        assertThat(store.size()).isZero();
+    }
+
+    private static AbstractSimulatedDevice dmfDevice(final String tenant, final String id) {
+        return new DMFSimulatedDevice(id, tenant, null, 30);
+    }
+
+    private static AbstractSimulatedDevice ddiDevice(final String tenant, final String id) {
+        return new DDISimulatedDevice(id, tenant, 30, null, null, null, null);
+    }
+}
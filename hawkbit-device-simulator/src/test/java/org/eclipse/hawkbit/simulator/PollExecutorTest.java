@@ -0,0 +1,221 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assumptions.assumeThat;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.qameta.allure.Description;
+import io.qameta.allure.Feature;
+import io.qameta.allure.Story;
+import org.junit.jupiter.api.Test;
+
+@Feature("Unit Tests - Hawkbit Device Simulator")
+@Story("Poll Execution")
+public class PollExecutorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SimulationProperties properties = new SimulationProperties();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final BusyFlags busy = new BusyFlags(16);
+
+    @Test
+    @Description("Verifies that a device is not polled again while its previous poll is still running")
+    public void dropBusyDevice() throws InterruptedException {
+        final PollExecutor executor = executor(2, 10, 0);
+        final BlockingDevice device = new BlockingDevice("device");
+        try {
+            assertThat(submit(executor, 0, device)).isTrue();
+            assertThat(device.started.await(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(submit(executor, 0, device)).isFalse();
+            assertThat(dropped("busy")).isEqualTo(1);
+
+            release.countDown();
+            // the device may be polled again once its poll has completed
+            waitFor(() -> (int) gauge("simulator.poll.running"), 0);
+            assertThat(submit(executor, 0, device)).isTrue();
+            assertThat(device.polls.await(10, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @Description("Verifies that polls are dropped when the in-flight limit is reached")
+    public void dropAtInFlightLimit() throws InterruptedException {
+        final PollExecutor executor = executor(2, 10, 1);
+        final BlockingDevice first = new BlockingDevice("first");
+        try {
+            assertThat(submit(executor, 0, first)).isTrue();
+            assertThat(first.started.await(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(submit(executor, 1, new BlockingDevice("second"))).isFalse();
+            assertThat(dropped("limit")).isEqualTo(1);
+
+            release.countDown();
+            waitFor(() -> (int) gauge("simulator.poll.running"), 0);
+            // the slot is released with the completed poll
+            assertThat(submit(executor, 2, new BlockingDevice("third"))).isTrue();
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @Description("Verifies that polls are dropped when the queue of the platform threads is full")
+    public void dropWhenQueueFull() throws InterruptedException {
+        final PollExecutor executor = executor(1, 1, 0);
+        final BlockingDevice running = new BlockingDevice("running");
+        final BlockingDevice queued = new BlockingDevice("queued");
+        try {
+            assertThat(submit(executor, 0, running)).isTrue();
+            assertThat(running.started.await(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(submit(executor, 1, queued)).isTrue();
+            assertThat(gauge("simulator.poll.queued")).isEqualTo(1);
+            assertThat(gauge("simulator.poll.running")).isEqualTo(1);
+
+            final BlockingDevice rejected = new BlockingDevice("rejected");
+            assertThat(submit(executor, 2, rejected)).isFalse();
+            assertThat(dropped("queue-full")).isEqualTo(1);
+            assertThat(gauge("simulator.poll.queued")).isEqualTo(1);
+
+            release.countDown();
+            assertThat(queued.polls.await(10, TimeUnit.SECONDS)).isTrue();
+            // a rejected device is not kept as busy
+            waitFor(() -> (int) gauge("simulator.poll.running"), 0);
+            assertThat(submit(executor, 2, rejected)).isTrue();
+            assertThat(rejected.polls.await(10, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @Description("Verifies that the virtual mode falls back to the bounded pool of platform threads on a JVM without "
+            + "virtual threads")
+    public void virtualFallsBackToBoundedPool() throws InterruptedException {
+        assumeThat(Thread.class.getMethods()).extracting(Method::getName).doesNotContain("ofVirtual");
+        properties.getPoll().setMode(PollExecutor.Mode.VIRTUAL);
+        final PollExecutor executor = executor(1, 1, 0);
+        final BlockingDevice running = new BlockingDevice("running");
+        try {
+            assertThat(submit(executor, 0, running)).isTrue();
+            assertThat(running.started.await(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(submit(executor, 1, new BlockingDevice("queued"))).isTrue();
+
+            // neither a further thread nor an unbounded queue
+            assertThat(submit(executor, 2, new BlockingDevice("rejected"))).isFalse();
+            assertThat(dropped("queue-full")).isEqualTo(1);
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @Description("Verifies that a DMF device which is kept without an object is not polled again while its previous "
+            + "poll is still running and is polled without creating its object")
+    public void dropBusyCompactDevice() throws InterruptedException {
+        properties.getPoll().setJitterFactor(0);
+        final PollExecutor executor = executor(2, 10, 0);
+        final CountDownLatch started = new CountDownLatch(1);
+        // the poll waits for the sender, it fails without a sender once it
+        // has been released
+        final DeviceStore store = new DeviceStore(() -> {
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }, meterRegistry);
+        final NextPollTimeController controller = new NextPollTimeController(properties, store, executor,
+                new PollJitter(properties), meterRegistry);
+        try {
+            final int slot = store.put(new DMFSimulatedDevice("device", "tenant", null, 1));
+            controller.schedule(slot, 1);
+            assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+
+            // due again in the next tick while the first poll is running
+            waitFor(() -> (int) dropped("busy"), 1);
+            assertThat(gauge("simulator.poll.running")).isEqualTo(1);
+            assertThat(store.materialized()).isZero();
+        } finally {
+            release.countDown();
+            controller.shutdown();
+            executor.shutdown();
+        }
+    }
+
+    private boolean submit(final PollExecutor executor, final int index, final BlockingDevice device) {
+        return executor.submit(busy, index, polled -> device.poll());
+    }
+
+    private PollExecutor executor(final int threads, final int queueCapacity, final int maxInFlight) {
+        properties.getPoll().setThreads(threads);
+        properties.getPoll().setQueueCapacity(queueCapacity);
+        properties.getPoll().setMaxInFlight(maxInFlight);
+        return new PollExecutor(properties, meterRegistry);
+    }
+
+    private double dropped(final String reason) {
+        return meterRegistry.get("simulator.poll.dropped").tag("reason", reason).counter().count();
+    }
+
+    private double gauge(final String name) {
+        return meterRegistry.get(name).gauge().value();
+    }
+
+    private static void waitFor(final IntSupplier actual, final int expected) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (actual.getAsInt() != expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(actual.getAsInt()).isEqualTo(expected);
+    }
+
+    /**
+     * Device whose polls wait until the test releases them.
+     */
+    private final class BlockingDevice extends AbstractSimulatedDevice {
+
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch polls = new CountDownLatch(1);
+
+        private BlockingDevice(final String id) {
+            super(id, "tenant", Protocol.DDI_HTTP, 30);
+        }
+
+        @Override
+        public void poll() {
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            polls.countDown();
+        }
+
+        @Override
+        public void updateAttribute(final String mode, final String key, final String value) {
+            // not polled for attributes
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.qameta.allure.Description;
+import io.qameta.allure.Feature;
+import io.qameta.allure.Story;
+import org.junit.jupiter.api.Test;
+
+@Feature("Unit Tests - Hawkbit Device Simulator")
+@Story("Poll Jitter")
+public class PollJitterTest {
+
+    private final SimulationProperties properties = new SimulationProperties();
+    private final AtomicLong clock = new AtomicLong();
+    private final PollJitter jitter = new PollJitter(properties, clock::get);
+
+    @Test
+    @Description("Verifies that devices start all at once without a start rate")
+    public void noStartRate() {
+        assertThat(jitter.nextStartOffsetMillis()).isZero();
+        assertThat(jitter.nextStartOffsetMillis()).isZero();
+    }
+
+    @Test
+    @Description("Verifies that start slots are handed out at the start rate and catch up with the clock")
+    public void startRate() {
+        properties.getPoll().setStartRate(4);
+
+        assertThat(jitter.nextStartOffsetMillis()).isZero();
+        assertThat(jitter.nextStartOffsetMillis()).isEqualTo(250);
+        assertThat(jitter.nextStartOffsetMillis()).isEqualTo(500);
+
+        clock.set(TimeUnit.MILLISECONDS.toNanos(600));
+        assertThat(jitter.nextStartOffsetMillis()).isEqualTo(150);
+
+        clock.set(TimeUnit.SECONDS.toNanos(10));
+        assertThat(jitter.nextStartOffsetMillis()).isZero();
+    }
+
+    @Test
+    @Description("Verifies the first poll delay with and without phase spread")
+    public void firstPollDelay() {
+        assertThat(jitter.firstPollDelay(0, 30, true)).isZero();
+        assertThat(jitter.firstPollDelay(1_500, 30, true)).isEqualTo(2);
+        assertThat(jitter.firstPollDelay(1_500, 30, false)).isEqualTo(32);
+
+        properties.getPoll().setPhaseSpread(true);
+        for (int i = 0; i < 1_000; i++) {
+            assertThat(jitter.firstPollDelay(2_000, 30, true)).isBetween(2, 31);
+        }
+    }
+
+    @Test
+    @Description("Verifies that the jittered poll delay stays within its bounds")
+    public void jitteredPollDelay() {
+        assertThat(jitter.nextPollDelay(30)).isEqualTo(30);
+
+        properties.getPoll().setJitter(PollJitter.Distribution.UNIFORM);
+        properties.getPoll().setJitterFactor(0.2);
+        for (int i = 0; i < 1_000; i++) {
+            assertThat(jitter.nextPollDelay(30)).isBetween(24, 36);
+        }
+
+        properties.getPoll().setJitter(PollJitter.Distribution.GAUSSIAN);
+        properties.getPoll().setJitterFactor(0.5);
+        for (int i = 0; i < 1_000; i++) {
+            assertThat(jitter.nextPollDelay(2)).isBetween(1, 5);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.qameta.allure.Description;
+import io.qameta.allure.Feature;
+import io.qameta.allure.Story;
+import org.junit.jupiter.api.Test;
+
+@Feature("Unit Tests - Hawkbit Device Simulator")
+@Story("Poll Timing Wheel")
+public class PollTimingWheelTest {
+
+    private final PollTimingWheel wheel = new PollTimingWheel(8);
+
+    @Test
+    @Description("Verifies that a device is handed out exactly in the tick of its deadline")
+    public void deviceIsDueAtDeadline() {
+        final int device = 0;
+        wheel.schedule(device, 3);
+
+        assertThat(advance()).isEmpty();
+        assertThat(advance()).isEmpty();
+        assertThat(advance()).containsExactly(device);
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    @Description("Verifies that deadlines beyond one wheel revolution are kept until they are due")
+    public void deadlineLongerThanWheel() {
+        final int device = 0;
+        wheel.schedule(device, 20);
+
+        for (int i = 1; i < 20; i++) {
+            assertThat(advance()).isEmpty();
+        }
+        assertThat(advance()).containsExactly(device);
+    }
+
+    @Test
+    @Description("Verifies that a cancelled device is never handed out")
+    public void cancelledDeviceIsNotDue() {
+        final int device = 0;
+        wheel.schedule(device, 1);
+
+        assertThat(wheel.cancel(device)).isTrue();
+        assertThat(wheel.cancel(device)).isFalse();
+        assertThat(wheel.size()).isZero();
+        assertThat(advance()).isEmpty();
+    }
+
+    @Test
+    @Description("Verifies that a rescheduled device is only due at its latest deadline")
+    public void rescheduledDeviceIsDueOnce() {
+        final int device = 0;
+        wheel.schedule(device, 2);
+        wheel.schedule(device, 10);
+        wheel.schedule(device, 2);
+
+        assertThat(wheel.size()).isEqualTo(1);
+        assertThat(advance()).isEmpty();
+        assertThat(advance()).containsExactly(device);
+        for (int i = 0; i < 16; i++) {
+            assertThat(advance()).isEmpty();
+        }
+    }
+
+    @Test
+    @Description("Verifies that a device can be rescheduled from within the due consumer")
+    public void rescheduleWhileDue() {
+        final int device = 0;
+        wheel.schedule(device, 1);
+
+        final List<Integer> due = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            wheel.advance(d -> {
+                due.add(d);
+                wheel.schedule(d, 2);
+            });
+        }
+
+        assertThat(due).hasSize(3);
+        assertThat(wheel.getRemainingTicks(device)).isEqualTo(1);
+    }
+
+    @Test
+    @Description("Verifies that the due consumer runs without the lock of the wheel, so other threads can schedule "
+            + "and cancel devices meanwhile")
+    public void consumeDueUnlocked() {
+        wheel.schedule(0, 1);
+        wheel.schedule(1, 1);
+
+        final List<Long> remaining = new ArrayList<>();
+        final int due = wheel.advance(slot -> {
+            final Thread other = new Thread(() -> {
+                wheel.schedule(2 + slot, 3);
+                wheel.cancel(1);
+            });
+            other.start();
+            try {
+                other.join(5_000);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            remaining.add(wheel.getRemainingTicks(2 + slot));
+        });
+
+        assertThat(due).isEqualTo(2);
+        assertThat(remaining).containsExactly(3L, 3L);
+        assertThat(wheel.size()).isEqualTo(2);
+    }
+
+    @Test
+    @Description("Verifies that slots beyond the initial capacity are scheduled independently")
+    public void manySlots() {
+        for (int slot = 0; slot < 5_000; slot++) {
+            wheel.schedule(slot, 1 + slot % 3);
+        }
+        wheel.cancel(4_999);
+
+        assertThat(wheel.size()).isEqualTo(4_999);
+        assertThat(advance()).hasSize(1_667);
+        assertThat(advance()).hasSize(1_666).doesNotContain(4_999);
+        assertThat(advance()).hasSize(1_666);
+        assertThat(wheel.getRemainingTicks(4_999)).isEqualTo(-1);
+        assertThat(wheel.getRemainingTicks(10_000)).isEqualTo(-1);
+    }
+
+    @Test
+    @Description("Verifies that the bytes of the schedule cover the slots and the entries of the buckets")
+    public void bytesCoverSlotsAndBuckets() {
+        final long empty = wheel.getBytes();
+        for (int slot = 0; slot < 2_000; slot++) {
+            wheel.schedule(slot, 1);
+        }
+
+        // 2048 slots with a deadline and a generation, 2000 entries in a bucket
+        assertThat(wheel.getBytes() - empty).isGreaterThanOrEqualTo(2_048L * 16 + 2_000L * 12);
+    }
+
+    private List<Integer> advance() {
+        final List<Integer> due = new ArrayList<>();
+        wheel.advance(due::add);
+        return due;
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import io.qameta.allure.Description;
+import io.qameta.allure.Feature;
+import io.qameta.allure.Story;
+import org.eclipse.hawkbit.simulator.AbstractSimulatedDevice.Protocol;
+import org.junit.jupiter.api.Test;
+
+@Feature("Unit Tests - Hawkbit Device Simulator")
+@Story("Provisioning")
+public class ProvisioningJobTest {
+
+    private final Set<String> created = ConcurrentHashMap.newKeySet();
+
+    @Test
+    @Description("Verifies that the workers of a job create every device once and report the failed devices")
+    public void createsAllDevices() throws InterruptedException {
+        final ProvisioningJob job = job(10_500, 0, id -> {
+            if (id.endsWith("7")) {
+                throw new IllegalStateException("failed");
+            }
+            created.add(id);
+        });
+
+        run(job, 4);
+
+        assertThat(job.getState()).isEqualTo(ProvisioningJob.State.FINISHED);
+        assertThat(job.getCreated()).isEqualTo(created.size()).isEqualTo(10_500 - 1_050);
+        assertThat(job.getFailed()).isEqualTo(1_050);
+        assertThat(created).contains("sim0", "sim10499").doesNotContain("sim7", "sim10500");
+        assertThat(job.getErrors()).hasSize(10).allMatch(error -> error.endsWith("7: failed"));
+        assertThat(job.getRate()).isPositive();
+    }
+
+    @Test
+    @Description("Verifies that a job keeps its target rate")
+    public void keepsTargetRate() throws InterruptedException {
+        final ProvisioningJob job = job(50, 200, created::add);
+
+        run(job, 4);
+
+        assertThat(job.getCreated()).isEqualTo(50);
+        // the last device is due after 49 / 200 seconds
+        assertThat(job.getElapsedMillis()).isGreaterThanOrEqualTo(240);
+        assertThat(job.getRate()).isLessThanOrEqualTo(210);
+    }
+
+    @Test
+    @Description("Verifies that a changed target rate holds for the devices the workers have claimed already")
+    public void keepsChangedTargetRate() throws InterruptedException {
+        final ProvisioningJob job = job(1_000_000, 0, id -> {
+            created.add(id);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        });
+        final List<Thread> workers = start(job, 4);
+        // every worker is in the middle of its chunk
+        while (job.getCreated() < 2_000) {
+            Thread.sleep(1);
+        }
+
+        job.setTargetRate(20);
+        final long changed = job.getCreated();
+        Thread.sleep(500);
+        final long createdSinceChange = job.getCreated() - changed;
+        job.cancel();
+        for (final Thread worker : workers) {
+            worker.join();
+        }
+
+        // 10 devices are due within half a second, plus the devices which
+        // were being created at the change
+        assertThat(createdSinceChange).isBetween(5L, 10L + 4);
+        assertThat(job.getTargetRate()).isEqualTo(20);
+    }
+
+    @Test
+    @Description("Verifies that a cancelled job stops and keeps the devices created so far")
+    public void cancel() throws InterruptedException {
+        final ProvisioningJob job = job(1_000, 20, created::add);
+        final List<Thread> workers = start(job, 2);
+        while (job.getCreated() == 0) {
+            Thread.sleep(10);
+        }
+
+        job.cancel();
+        for (final Thread worker : workers) {
+            worker.join();
+        }
+
+        assertThat(job.getState()).isEqualTo(ProvisioningJob.State.CANCELLED);
+        assertThat(job.getCreated()).isEqualTo(created.size()).isBetween(1L, 100L);
+    }
+
+    private ProvisioningJob job(final int amount, final int targetRate, final Consumer<String> deviceCreator) {
+        return new ProvisioningJob(1, "tenant", "sim", Protocol.DMF_AMQP, amount, targetRate, deviceCreator,
+                System::nanoTime);
+    }
+
+    private static void run(final ProvisioningJob job, final int threads) throws InterruptedException {
+        for (final Thread worker : start(job, threads)) {
+            worker.join();
+        }
+    }
+
+    private static List<Thread> start(final ProvisioningJob job, final int threads) {
+        final List<Runnable> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            workers.add(job.worker());
+        }
+        final List<Thread> started = new ArrayList<>();
+        workers.forEach(worker -> {
+            final Thread thread = new Thread(worker);
+            thread.start();
+            started.add(thread);
+        });
+        return started;
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.qameta.allure.Description;
+import io.qameta.allure.Feature;
+import io.qameta.allure.Story;
+import org.eclipse.hawkbit.simulator.AbstractSimulatedDevice.Protocol;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+@Feature("Unit Tests - Hawkbit Device Simulator")
+@Story("Provisioning")
+public class ProvisioningServiceTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ProvisioningService service = service(2);
+
+    @AfterEach
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    @Description("Verifies that no job is started while the maximum number of jobs is running")
+    public void limitRunningJobs() throws InterruptedException {
+        final ProvisioningJob first = start();
+        start();
+        assertThat(running()).isEqualTo(2);
+
+        assertThatIllegalStateException().isThrownBy(this::start).withMessageContaining("2 provisioning jobs");
+        assertThat(service.getAll()).hasSize(2);
+
+        service.cancel(first.getId());
+        while (first.getState() == ProvisioningJob.State.RUNNING) {
+            Thread.sleep(10);
+        }
+        assertThat(start().getState()).isEqualTo(ProvisioningJob.State.RUNNING);
+        // the ended job is forgotten for the new one
+        assertThat(service.getAll()).hasSize(2).doesNotContain(first);
+    }
+
+    private ProvisioningJob start() {
+        // one device per second keeps the job running, the devices fail to
+        // be created by the factory without its dependencies
+        return service.start("sim", 1_000, "tenant", Protocol.DMF_AMQP, 30, null, null, 1);
+    }
+
+    private double running() {
+        return meterRegistry.get("simulator.provisioning.running").gauge().value();
+    }
+
+    private ProvisioningService service(final int maxJobs) {
+        final SimulationProperties properties = new SimulationProperties();
+        properties.getProvisioning().setMaxJobs(maxJobs);
+        properties.getProvisioning().setThreads(1);
+        return new ProvisioningService(properties, new DeviceSimulatorRepository(), new SimulatedDeviceFactory(),
+                meterRegistry);
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+
+import io.qameta.allure.Description;
+import io.qameta.allure.Feature;
+import io.qameta.allure.Story;
+import org.eclipse.hawkbit.ddi.client.resource.RootControllerResourceClient;
+import org.eclipse.hawkbit.simulator.AbstractSimulatedDevice.Protocol;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.sun.net.httpserver.HttpServer;
+
+@Feature("Unit Tests - Hawkbit Device Simulator")
+@Story("DDI Clients")
+public class SimulatedDeviceFactoryTest {
+
+    private final SimulatedDeviceFactory factory = new SimulatedDeviceFactory();
+    private final List<String> authorizations = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+    private URL endpoint;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            authorizations.add(exchange.getRequestHeaders().getFirst("Authorization"));
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.start();
+        endpoint = new URL("http://localhost:" + server.getAddress().getPort());
+
+        ReflectionTestUtils.setField(factory, "simulationProperties", new SimulationProperties());
+        factory.createDdiHttpClient();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        factory.closeDdiHttpClient();
+        server.stop(0);
+    }
+
+    @Test
+    @Description("Verifies that the DDI clients are shared by the devices with the same endpoint and gateway token")
+    public void shareClientsPerEndpointAndToken() throws MalformedURLException {
+        for (final Protocol protocol : List.of(Protocol.DDI_HTTP, Protocol.DDI_ASYNC)) {
+            final Object client = client(device("first", protocol, endpoint, "token"));
+            assertThat(client(device("second", protocol, endpoint, "token"))).isSameAs(client);
+            assertThat(client(device("third", protocol, endpoint, "other"))).isNotSameAs(client);
+            assertThat(client(device("fourth", protocol, new URL("http://localhost:1"), "token")))
+                    .isNotSameAs(client);
+        }
+    }
+
+    @Test
+    @Description("Verifies that the shared DDI clients send the gateway token of their key")
+    public void sendGatewayTokenOfKey() {
+        ddiClient("first", "token").getControllerBase("tenant", "first");
+        ddiClient("second", "other").getControllerBase("tenant", "second");
+        ddiClient("third", "token").getControllerBase("tenant", "third");
+
+        assertThat(authorizations).containsExactly("GatewayToken token", "GatewayToken other", "GatewayToken token");
+    }
+
+    @Test
+    @Description("Verifies that the shared HTTP clients are closed when the factory shuts down")
+    public void closeClientsOnShutdown() {
+        final RootControllerResourceClient client = ddiClient("first", "token");
+        client.getControllerBase("tenant", "first");
+
+        factory.closeDdiHttpClient();
+
+        assertThatThrownBy(() -> client.getControllerBase("tenant", "first"))
+                .isInstanceOf(IllegalStateException.class).hasMessageContaining("shut down");
+        assertThat(((ExecutorService) ReflectionTestUtils.getField(factory, "ddiAsyncExecutor")).isShutdown())
+                .isTrue();
+        assertThat(authorizations).hasSize(1);
+    }
+
+    private AbstractSimulatedDevice device(final String id, final Protocol protocol, final URL baseEndpoint,
+            final String gatewayToken) {
+        return factory.restoreSimulatedDevice(id, "tenant", protocol, 30, baseEndpoint, gatewayToken);
+    }
+
+    private static Object client(final AbstractSimulatedDevice device) {
+        return ReflectionTestUtils.getField(device,
+                device instanceof DDISimulatedDevice ? "controllerResource" : "client");
+    }
+
+    private RootControllerResourceClient ddiClient(final String id, final String gatewayToken) {
+        return (RootControllerResourceClient) client(device(id, Protocol.DDI_HTTP, endpoint, gatewayToken));
+    }
+}
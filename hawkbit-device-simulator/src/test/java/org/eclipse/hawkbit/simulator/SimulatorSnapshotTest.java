@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.qameta.allure.Description;
+import io.qameta.allure.Feature;
+import io.qameta.allure.Story;
+import org.eclipse.hawkbit.simulator.amqp.DmfReceiverService;
+import org.eclipse.hawkbit.simulator.amqp.ShardedDispatcher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@Feature("Unit Tests - Hawkbit Device Simulator")
+@Story("Snapshot")
+public class SimulatorSnapshotTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ScheduledExecutorService threadPool = Executors.newSingleThreadScheduledExecutor();
+    private final SimulationProperties properties = new SimulationProperties();
+    private PollExecutor pollExecutor;
+    private NextPollTimeController pollTimeController;
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    public void tearDown() {
+        threadPool.shutdownNow();
+        if (pollTimeController != null) {
+            pollTimeController.shutdown();
+            pollExecutor.shutdown();
+        }
+    }
+
+    @Test
+    @Description("Verifies that the snapshot is restored before the DMF listener containers start to receive and "
+            + "stops after the received messages have been drained")
+    public void restoreBeforeListenerContainers() {
+        assertThat(SimulatorSnapshot.PHASE).isLessThan(ShardedDispatcher.PHASE)
+                .isLessThan(new RabbitListenerEndpointRegistry().getPhase());
+        assertThat(ShardedDispatcher.PHASE).isLessThan(new RabbitListenerEndpointRegistry().getPhase());
+    }
+
+    @Test
+    @Description("Verifies that the snapshot is restored when the snapshot is started")
+    public void restoreOnStart() throws IOException {
+        properties.getSnapshot().setFile(directory.resolve("snapshot.bin").toString());
+        properties.getSnapshot().setInterval(Duration.ZERO);
+        final DeviceStore written = new DeviceStore(() -> null, meterRegistry);
+        written.put(new DMFSimulatedDevice("device1", "tenant", null, 30));
+        try (SnapshotFile.Writer writer = SnapshotFile.create(directory.resolve("snapshot.bin"))) {
+            writer.devices(written, new int[0], 0);
+            writer.commit();
+        }
+
+        final DeviceStore store = new DeviceStore(() -> null, meterRegistry);
+        final SimulatorSnapshot snapshot = snapshot(store);
+        assertThat(snapshot.isRunning()).isFalse();
+
+        snapshot.start();
+        assertThat(snapshot.isRunning()).isTrue();
+        assertThat(snapshot.isRestored()).isTrue();
+        assertThat(store.get("tenant", "device1")).isNotNull();
+
+        snapshot.stop();
+        assertThat(snapshot.isRunning()).isFalse();
+    }
+
+    private SimulatorSnapshot snapshot(final DeviceStore store) {
+        pollExecutor = new PollExecutor(properties, meterRegistry);
+        pollTimeController = new NextPollTimeController(properties, store, pollExecutor, new PollJitter(properties),
+                meterRegistry);
+        final DeviceSimulatorRepository repository = new DeviceSimulatorRepository();
+        ReflectionTestUtils.setField(repository, "devices", store);
+        ReflectionTestUtils.setField(repository, "pollTimeController", pollTimeController);
+        final SimulatedDeviceFactory factory = new SimulatedDeviceFactory();
+        ReflectionTestUtils.setField(factory, "simulationProperties", properties);
+        return new SimulatorSnapshot(properties, store, pollTimeController, repository, factory,
+                new StaticListableBeanFactory().getBeanProvider(DmfReceiverService.class), threadPool, meterRegistry);
+    }
+}
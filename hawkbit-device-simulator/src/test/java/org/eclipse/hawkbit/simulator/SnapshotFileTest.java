@@ -0,0 +1,174 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.qameta.allure.Description;
+import io.qameta.allure.Feature;
+import io.qameta.allure.Story;
+import org.eclipse.hawkbit.simulator.AbstractSimulatedDevice.Protocol;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@Feature("Unit Tests - Hawkbit Device Simulator")
+@Story("Snapshot")
+public class SnapshotFileTest {
+
+    private final DeviceStore store = new DeviceStore(() -> null, new SimpleMeterRegistry());
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @Description("Verifies that devices, ranges and open actions are restored as they have been written")
+    public void roundTrip() throws IOException {
+        final int dmfSlot = store.put(new DMFSimulatedDevice("gerät-1", "Tenant", null, 30));
+        // kept with the first spelling of its tenant
+        final DDISimulatedDevice ddiDevice = new DDISimulatedDevice("ddi-1", "tenant", 60, "http://localhost:8080",
+                null, null, "token");
+        ddiDevice.setCurrentActionId(42L);
+        store.put(ddiDevice);
+        store.put(new AsyncDDISimulatedDevice("async-1", "other", 10, "http://localhost:8080", null, null, null));
+        final DeviceRange range = DeviceRangeTest.range("sim", 1_000, 30);
+        store.putRange(range);
+        range.start(0);
+        store.remove("tenant", "sim7");
+
+        final int[] secondsUntilNextPoll = new int[dmfSlot + 1];
+        secondsUntilNextPoll[dmfSlot] = 12;
+        final Path file = directory.resolve("snapshot.bin");
+        final long size;
+        try (SnapshotFile.Writer writer = SnapshotFile.create(file)) {
+            writer.devices(store, secondsUntilNextPoll, 75);
+            writer.openAction(42L, "tenant", 1_000);
+            size = writer.commit();
+        }
+        assertThat(Files.size(file)).isEqualTo(size);
+        assertThat(directory.resolve("snapshot.bin.tmp")).doesNotExist();
+
+        final List<String> restored = new ArrayList<>();
+        assertThat(SnapshotFile.read(file, new SnapshotFile.Restorer() {
+            @Override
+            public void device(final String tenant, final String id, final Protocol protocol,
+                    final int pollDelaySec, final int nextPollSec, final String endpoint, final String gatewayToken,
+                    final Long currentActionId) {
+                restored.add(tenant + "/" + id + " " + protocol + " " + pollDelaySec + " " + nextPollSec + " "
+                        + endpoint + " " + gatewayToken + " " + currentActionId);
+            }
+
+            @Override
+            public void range(final String tenant, final String name, final int amount, final Protocol protocol,
+                    final int pollDelaySec, final String endpoint, final String gatewayToken,
+                    final long elapsedSec, final long[] removed) {
+                final DeviceRange copy = DeviceRangeTest.range(name, amount, pollDelaySec);
+                copy.setRemoved(removed);
+                restored.add(tenant + "/" + name + " " + amount + " " + protocol + " " + pollDelaySec + " "
+                        + elapsedSec + " " + copy.size() + " " + copy.isRemoved(7));
+            }
+
+            @Override
+            public void openAction(final long actionId, final String tenant, final long ageNanos) {
+                assertThat(ageNanos).isGreaterThanOrEqualTo(1_000);
+                restored.add(tenant + "/" + actionId);
+            }
+        })).isEqualTo(size);
+
+        assertThat(restored).containsExactly("Tenant/gerät-1 DMF_AMQP 30 12 null null null",
+                "Tenant/ddi-1 DDI_HTTP 60 -1 http://localhost:8080 token 42",
+                "other/async-1 DDI_ASYNC 10 -1 http://localhost:8080 null null",
+                "tenant/sim 1000 DMF_AMQP 30 45 999 true", "tenant/42");
+    }
+
+    @Test
+    @Description("Verifies that a snapshot larger than the buffer is restored completely and replaced by a smaller "
+            + "snapshot right after it has been read")
+    public void replaceSnapshotAfterRead() throws IOException {
+        final int devices = 200_000;
+        for (int i = 0; i < devices; i++) {
+            store.put(new DMFSimulatedDevice("device" + i, "tenant", null, 30));
+        }
+        final Path file = directory.resolve("snapshot.bin");
+        final long size = write(file);
+        // tag, tenant reference, ID, protocol, poll delay and next poll
+        assertThat(size).isBetween(devices * 25L, devices * 32L);
+
+        final List<String> ids = new ArrayList<>();
+        assertThat(SnapshotFile.read(file, restorer(ids))).isEqualTo(size);
+        assertThat(ids).hasSize(devices).startsWith("device0").endsWith("device199999");
+
+        store.clear();
+        store.put(new DMFSimulatedDevice("device1", "tenant", null, 30));
+        final long replaced = write(file);
+        assertThat(Files.size(file)).isEqualTo(replaced).isLessThan(size);
+        ids.clear();
+        SnapshotFile.read(file, restorer(ids));
+        assertThat(ids).containsExactly("device1");
+    }
+
+    @Test
+    @Description("Verifies that a snapshot which is not committed leaves the previous snapshot in place")
+    public void uncommittedSnapshotIsDiscarded() throws IOException {
+        final Path file = directory.resolve("snapshot.bin");
+        store.put(new DMFSimulatedDevice("device1", "tenant", null, 30));
+        try (SnapshotFile.Writer writer = SnapshotFile.create(file)) {
+            writer.devices(store, new int[0], 0);
+            writer.commit();
+        }
+        final byte[] committed = Files.readAllBytes(file);
+
+        try (SnapshotFile.Writer writer = SnapshotFile.create(file)) {
+            writer.devices(store, new int[0], 0);
+        }
+        assertThat(Files.readAllBytes(file)).isEqualTo(committed);
+        assertThat(directory.resolve("snapshot.bin.tmp")).doesNotExist();
+
+        Files.write(file, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+        assertThatExceptionOfType(IOException.class).isThrownBy(() -> SnapshotFile.read(file, null));
+    }
+
+    private long write(final Path file) throws IOException {
+        try (SnapshotFile.Writer writer = SnapshotFile.create(file)) {
+            writer.devices(store, new int[0], 0);
+            return writer.commit();
+        }
+    }
+
+    private static SnapshotFile.Restorer restorer(final List<String> ids) {
+        return new SnapshotFile.Restorer() {
+            @Override
+            public void device(final String tenant, final String id, final Protocol protocol,
+                    final int pollDelaySec, final int nextPollSec, final String endpoint, final String gatewayToken,
+                    final Long currentActionId) {
+                ids.add(id);
+            }
+
+            @Override
+            public void range(final String tenant, final String name, final int amount, final Protocol protocol,
+                    final int pollDelaySec, final String endpoint, final String gatewayToken,
+                    final long elapsedSec, final long[] removed) {
+                // no ranges are written
+            }
+
+            @Override
+            public void openAction(final long actionId, final String tenant, final long ageNanos) {
+                // no open actions are written
+            }
+        };
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.qameta.allure.Description;
+import io.qameta.allure.Feature;
+import io.qameta.allure.Story;
+import org.eclipse.hawkbit.simulator.TenantIndex.Tenant;
+import org.junit.jupiter.api.Test;
+
+@Feature("Unit Tests - Hawkbit Device Simulator")
+@Story("Device Repository")
+public class TenantIndexTest {
+
+    private final TenantIndex<Tenant> index = new TenantIndex<>(Tenant::new);
+
+    @Test
+    @Description("Verifies that tenants are found in any case and registered once under their lower case name")
+    public void tenantIsCaseInsensitive() {
+        final Tenant tenant = index.register("Tenant");
+
+        assertThat(index.register("TENANT")).isSameAs(tenant);
+        assertThat(index.get("tenant")).isSameAs(tenant);
+        assertThat(index.get("tEnAnT")).isSameAs(tenant);
+        assertThat(index.get("other")).isNull();
+        assertThat(tenant.name).isEqualTo("Tenant");
+        assertThat(index.getNames()).containsExactly("tenant");
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    @Test
+    @Description("Verifies that tenants are numbered in the order of their registration")
+    public void numberTenants() {
+        final Tenant first = index.register("a");
+        final Tenant second = index.register("B");
+        index.register("A");
+
+        assertThat(first.index).isZero();
+        assertThat(second.index).isEqualTo(1);
+        assertThat(index.get(0)).isSameAs(first);
+        assertThat(index.get(1)).isSameAs(second);
+        assertThat(index.getAll()).containsExactlyInAnyOrder(first, second);
+        assertThat(index.getNames()).containsExactlyInAnyOrder("a", "b");
+    }
+
+    @Test
+    @Description("Verifies that a spelling remembered before the index has been cleared finds the new tenant")
+    public void registerAfterClear() {
+        final Tenant cleared = index.register("Tenant");
+        assertThat(index.get("Tenant")).isSameAs(cleared);
+
+        index.clear();
+        assertThat(cleared.cleared).isTrue();
+        assertThat(index.get("Tenant")).isNull();
+        assertThat(index.getNames()).isEmpty();
+        assertThat(index.size()).isZero();
+
+        final Tenant tenant = index.register("Tenant");
+        assertThat(tenant).isNotSameAs(cleared);
+        assertThat(tenant.index).isZero();
+        assertThat(index.get("Tenant")).isSameAs(tenant);
+        assertThat(index.get("TENANT")).isSameAs(tenant);
+    }
+}
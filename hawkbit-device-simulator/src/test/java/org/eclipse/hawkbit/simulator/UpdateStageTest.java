@@ -0,0 +1,201 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.qameta.allure.Description;
+import io.qameta.allure.Feature;
+import io.qameta.allure.Story;
+import org.junit.jupiter.api.Test;
+
+@Feature("Unit Tests - Hawkbit Device Simulator")
+@Story("Update Simulation")
+public class UpdateStageTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    @Description("Verifies that tasks which find the stage full are rejected with the REJECT policy")
+    public void rejectWhenFull() throws InterruptedException {
+        final UpdateStage stage = stage(UpdateStage.Overflow.REJECT);
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            assertThat(stage.submit(() -> await(release), 0)).isTrue();
+            // the queue is free again once the first task has started
+            waitForQueued(stage, 0);
+            assertThat(stage.submit(() -> {
+            }, 0)).isTrue();
+            assertThat(stage.queued()).isEqualTo(1);
+
+            assertThat(stage.submit(() -> {
+            }, 0)).isFalse();
+            assertThat(meterRegistry.get("simulator.update.overflow").tag("stage", "test").counter().count())
+                    .isEqualTo(1);
+        } finally {
+            release.countDown();
+            stage.stop();
+        }
+    }
+
+    @Test
+    @Description("Verifies that tasks which find the stage full are run by the caller with the CALLER_RUNS policy")
+    public void callerRunsWhenFull() throws InterruptedException {
+        final UpdateStage stage = stage(UpdateStage.Overflow.CALLER_RUNS);
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            stage.submit(() -> await(release), 0);
+            waitForQueued(stage, 0);
+            stage.submit(() -> {
+            }, 0);
+
+            final List<Thread> runners = new ArrayList<>();
+            assertThat(stage.submit(() -> runners.add(Thread.currentThread()), 0)).isTrue();
+            assertThat(runners).containsExactly(Thread.currentThread());
+        } finally {
+            release.countDown();
+            stage.stop();
+        }
+    }
+
+    @Test
+    @Description("Verifies that a delayed task counts as queued until it runs")
+    public void delayedTaskIsQueued() throws InterruptedException {
+        final UpdateStage stage = stage(UpdateStage.Overflow.REJECT);
+        final CountDownLatch ran = new CountDownLatch(1);
+        try {
+            assertThat(stage.submit(ran::countDown, 200)).isTrue();
+            assertThat(stage.queued()).isEqualTo(1);
+            assertThat(ran.await(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(meterRegistry.get("simulator.update.wait").tag("stage", "test").timer().count())
+                    .isEqualTo(1);
+        } finally {
+            stage.stop();
+        }
+    }
+
+    @Test
+    @Description("Verifies that the tasks of a serial executor run in the order they were submitted")
+    public void serialInOrder() throws InterruptedException {
+        final SimulationProperties.Stage properties = new SimulationProperties.Stage(4, 100);
+        final UpdateStage stage = new UpdateStage("test", properties, meterRegistry, System::nanoTime);
+        final List<List<Integer>> results = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(10 * 100);
+        try {
+            for (int serial = 0; serial < 10; serial++) {
+                final Executor executor = stage.serial("device" + serial);
+                final List<Integer> result = Collections.synchronizedList(new ArrayList<>());
+                results.add(result);
+                for (int i = 0; i < 100; i++) {
+                    final int sequence = i;
+                    executor.execute(() -> {
+                        result.add(sequence);
+                        done.countDown();
+                    });
+                }
+            }
+            assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            stage.stop();
+        }
+
+        results.forEach(result -> assertThat(result).hasSize(100).isSorted());
+    }
+
+    @Test
+    @Description("Verifies that serial executors fill a stage with the BLOCK policy without blocking its threads")
+    public void serialFillsBlockingStage() throws InterruptedException {
+        // a single thread, so a stage thread which waited for its own full
+        // stage would never be woken up
+        final SimulationProperties.Stage properties = new SimulationProperties.Stage(1, 1);
+        properties.setOverflow(UpdateStage.Overflow.BLOCK);
+        final UpdateStage stage = new UpdateStage("test", properties, meterRegistry, System::nanoTime);
+        final int submitters = 16;
+        final int tasks = 2_000;
+        final CountDownLatch done = new CountDownLatch(submitters * tasks);
+        final List<Thread> threads = new ArrayList<>();
+        try {
+            for (int i = 0; i < submitters; i++) {
+                final Executor executor = stage.serial("device" + i);
+                final Thread submitter = new Thread(() -> {
+                    for (int task = 0; task < tasks && !Thread.currentThread().isInterrupted(); task++) {
+                        executor.execute(done::countDown);
+                        // lets the drain of the executor catch up now and then
+                        LockSupport.parkNanos(10_000);
+                    }
+                });
+                threads.add(submitter);
+                submitter.start();
+            }
+            assertThat(done.await(30, TimeUnit.SECONDS)).isTrue();
+            assertThat(meterRegistry.get("simulator.update.blocked").tag("stage", "test").timer().count())
+                    .isPositive();
+        } finally {
+            threads.forEach(Thread::interrupt);
+            stage.stop();
+        }
+    }
+
+    @Test
+    @Description("Verifies that the tasks of a serial executor which are rejected by a full stage are counted")
+    public void serialCountsDroppedTasks() throws InterruptedException {
+        final UpdateStage stage = stage(UpdateStage.Overflow.REJECT);
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            stage.submit(() -> await(release), 0);
+            waitForQueued(stage, 0);
+            stage.submit(() -> {
+            }, 0);
+
+            final List<Integer> ran = Collections.synchronizedList(new ArrayList<>());
+            stage.serial("device").execute(() -> ran.add(1));
+            assertThat(meterRegistry.get("simulator.update.dropped").tag("stage", "test").counter().count())
+                    .isEqualTo(1);
+
+            release.countDown();
+            waitForQueued(stage, 0);
+            assertThat(ran).isEmpty();
+        } finally {
+            release.countDown();
+            stage.stop();
+        }
+    }
+
+    private UpdateStage stage(final UpdateStage.Overflow overflow) {
+        final SimulationProperties.Stage properties = new SimulationProperties.Stage(1, 1);
+        properties.setOverflow(overflow);
+        return new UpdateStage("test", properties, meterRegistry, System::nanoTime);
+    }
+
+    private static void waitForQueued(final UpdateStage stage, final int queued) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (stage.queued() != queued && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(stage.queued()).isEqualTo(queued);
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
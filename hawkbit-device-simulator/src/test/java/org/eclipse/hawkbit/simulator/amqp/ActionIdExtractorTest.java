@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator.amqp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.OptionalLong;
+
+import io.qameta.allure.Description;
+import io.qameta.allure.Feature;
+import io.qameta.allure.Story;
+import org.junit.jupiter.api.Test;
+
+@Feature("Unit Tests - Hawkbit Device Simulator")
+@Story("DMF Receiver")
+public class ActionIdExtractorTest {
+
+    @Test
+    @Description("Verifies that the action ID of an action request is extracted")
+    public void actionRequest() {
+        assertThat(extract("{\"actionId\":4711}")).hasValue(4711L);
+        assertThat(extract(" { \"actionId\" : 4711 , \"targetSecurityToken\" : \"token\" } ")).hasValue(4711L);
+    }
+
+    @Test
+    @Description("Verifies that only the action ID on the top level is extracted")
+    public void topLevelActionIdOnly() {
+        assertThat(extract("{\"softwareModules\":[{\"moduleId\":1,\"actionId\":2}],"
+                + "\"target\":{\"actionId\":3},\"actionId\":42,\"other\":7}")).hasValue(42L);
+        assertThat(extract("{\"nested\":{\"actionId\":3}}")).isEmpty();
+    }
+
+    @Test
+    @Description("Verifies that invalid bodies have no action ID")
+    public void invalidBodies() {
+        assertThat(ActionIdExtractor.extract(null)).isEmpty();
+        assertThat(extract("")).isEmpty();
+        assertThat(extract("[42]")).isEmpty();
+        assertThat(extract("{\"actionId\":\"42\"}")).isEmpty();
+        assertThat(extract("{\"actionId\":")).isEmpty();
+        assertThat(extract("no json")).isEmpty();
+    }
+
+    private static OptionalLong extract(final String body) {
+        return ActionIdExtractor.extract(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator.amqp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.hawkbit.dmf.amqp.api.EventTopic;
+import org.eclipse.hawkbit.dmf.amqp.api.MessageHeaderKey;
+import org.eclipse.hawkbit.dmf.amqp.api.MessageType;
+import org.eclipse.hawkbit.dmf.json.model.DmfActionStatus;
+import org.eclipse.hawkbit.dmf.json.model.DmfActionUpdateStatus;
+import org.eclipse.hawkbit.dmf.json.model.DmfAttributeUpdate;
+import org.eclipse.hawkbit.dmf.json.model.DmfUpdateMode;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+
+import io.qameta.allure.Description;
+import io.qameta.allure.Feature;
+import io.qameta.allure.Story;
+import org.junit.jupiter.api.Test;
+
+@Feature("Unit Tests - Hawkbit Device Simulator")
+@Story("DMF Messages")
+public class DmfMessageFactoryTest {
+
+    private final DmfMessageFactory messageFactory = new DmfMessageFactory("simulator.replyTo");
+    private final Jackson2JsonMessageConverter converter = new Jackson2JsonMessageConverter();
+
+    @Test
+    @Description("Verifies that the body of an action status equals the one of the message converter")
+    public void actionStatusLikeConverter() {
+        final DmfActionUpdateStatus actionUpdateStatus = new DmfActionUpdateStatus(42L, DmfActionStatus.FINISHED);
+        actionUpdateStatus.addMessage(List.of("Simulation complete!"));
+
+        final Message message = messageFactory.actionStatus("tenant", actionUpdateStatus);
+        final Message converted = converter.toMessage(actionUpdateStatus, new MessageProperties());
+
+        assertThat(message.getBody()).isEqualTo(converted.getBody());
+        assertThat(message.getMessageProperties().getContentType())
+                .isEqualTo(converted.getMessageProperties().getContentType());
+        assertThat(message.getMessageProperties().getContentLength()).isEqualTo(message.getBody().length);
+        assertThat(message.getMessageProperties().getHeaders()).containsEntry(MessageHeaderKey.TENANT, "tenant")
+                .containsEntry(MessageHeaderKey.TYPE, MessageType.EVENT.name())
+                .containsEntry(MessageHeaderKey.TOPIC, EventTopic.UPDATE_ACTION_STATUS.name());
+    }
+
+    @Test
+    @Description("Verifies that the body of an attribute update equals the one of the message converter")
+    public void attributeUpdateLikeConverter() {
+        final DmfAttributeUpdate attributeUpdate = new DmfAttributeUpdate();
+        attributeUpdate.setMode(DmfUpdateMode.MERGE);
+        attributeUpdate.getAttributes().put("hwRevision", "1.1");
+
+        final Message message = messageFactory.attributeUpdate("tenant", "thing", attributeUpdate);
+
+        assertThat(message.getBody()).isEqualTo(converter.toMessage(attributeUpdate, new MessageProperties()).getBody());
+        assertThat(message.getMessageProperties().getHeaders()).containsEntry(MessageHeaderKey.THING_ID, "thing")
+                .containsEntry(MessageHeaderKey.TOPIC, EventTopic.UPDATE_ATTRIBUTES);
+        assertThat(message.getMessageProperties().getReplyTo()).isEqualTo("simulator.replyTo");
+    }
+
+    @Test
+    @Description("Verifies that every message gets headers of its own")
+    public void headersPerMessage() {
+        final Message first = messageFactory.thingCreated("tenant", "first");
+        final Message second = messageFactory.thingCreated("tenant", "second");
+        first.getMessageProperties().getHeaders().remove(MessageHeaderKey.TENANT);
+
+        assertThat(second.getMessageProperties().getHeaders()).containsEntry(MessageHeaderKey.TENANT, "tenant")
+                .containsEntry(MessageHeaderKey.THING_ID, "second")
+                .containsEntry(MessageHeaderKey.TYPE, MessageType.THING_CREATED.name());
+        assertThat(messageFactory.thingCreated("other", "third").getMessageProperties().getHeaders())
+                .containsEntry(MessageHeaderKey.TENANT, "other");
+    }
+
+    @Test
+    @Description("Verifies that the correlation IDs are unique and distinguish factories")
+    public void uniqueCorrelationIds() {
+        final Set<String> ids = new HashSet<>();
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(ids.add(messageFactory.nextCorrelationId())).isTrue();
+        }
+        assertThat(ids).doesNotContain(new DmfMessageFactory("simulator.replyTo").nextCorrelationId());
+    }
+}
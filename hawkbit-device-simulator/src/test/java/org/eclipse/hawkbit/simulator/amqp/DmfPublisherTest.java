@@ -0,0 +1,147 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator.amqp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.qameta.allure.Description;
+import io.qameta.allure.Feature;
+import io.qameta.allure.Story;
+import org.junit.jupiter.api.Test;
+
+@Feature("Unit Tests - Hawkbit Device Simulator")
+@Story("DMF Publisher")
+public class DmfPublisherTest {
+
+    private final AmqpProperties.Publisher properties = new AmqpProperties.Publisher();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong nanoTime = new AtomicLong();
+    private final RecordingRabbitTemplate rabbitTemplate = new RecordingRabbitTemplate();
+
+    @Test
+    @Description("Verifies that publishing blocks while the confirm window is full")
+    public void windowLimitsOutstandingConfirms() throws InterruptedException {
+        properties.setAsync(false);
+        properties.setMaxOutstandingConfirms(2);
+        final DmfPublisher publisher = publisher(true);
+
+        publisher.publish("exchange", message(), "1");
+        publisher.publish("exchange", message(), "2");
+        final Thread third = new Thread(() -> publisher.publish("exchange", message(), "3"));
+        third.start();
+
+        assertThat(rabbitTemplate.sent.poll(200, TimeUnit.MILLISECONDS)).isNotNull();
+        assertThat(rabbitTemplate.sent.poll(200, TimeUnit.MILLISECONDS)).isNotNull();
+        assertThat(rabbitTemplate.sent.poll(200, TimeUnit.MILLISECONDS)).as("third message blocked").isNull();
+        assertThat(meterRegistry.get("simulator.dmf.outstanding").gauge().value()).isEqualTo(2);
+
+        publisher.confirm(rabbitTemplate.correlations.get(0), true, null);
+        third.join(5_000);
+        assertThat(rabbitTemplate.sent.poll(5, TimeUnit.SECONDS)).isNotNull();
+        assertThat(meterRegistry.get("simulator.dmf.outstanding").gauge().value()).isEqualTo(2);
+    }
+
+    @Test
+    @Description("Verifies that confirm latency, nacks and returns are recorded")
+    public void confirmsAreRecorded() {
+        properties.setAsync(false);
+        final DmfPublisher publisher = publisher(true);
+
+        publisher.publish("exchange", message(), "1");
+        publisher.publish("exchange", message(), "2");
+        nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(5));
+        publisher.confirm(rabbitTemplate.correlations.get(0), true, null);
+        publisher.confirm(rabbitTemplate.correlations.get(1), false, "rejected");
+
+        assertThat(rabbitTemplate.correlations.get(0).getId()).isEqualTo("1");
+        assertThat(meterRegistry.get("simulator.dmf.confirm").timer().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("simulator.dmf.confirm").timer().totalTime(TimeUnit.MILLISECONDS))
+                .isEqualTo(10);
+        assertThat(meterRegistry.get("simulator.dmf.nacked").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("simulator.dmf.outstanding").gauge().value()).isZero();
+    }
+
+    @Test
+    @Description("Verifies that no window applies if publisher confirms are disabled")
+    public void noWindowWithoutConfirms() {
+        properties.setAsync(false);
+        properties.setMaxOutstandingConfirms(1);
+        final DmfPublisher publisher = publisher(false);
+
+        for (int i = 0; i < 5; i++) {
+            publisher.publish("exchange", message(), String.valueOf(i));
+        }
+
+        assertThat(rabbitTemplate.sent).hasSize(5);
+        assertThat(meterRegistry.find("simulator.dmf.outstanding").gauge()).isNull();
+    }
+
+    @Test
+    @Description("Verifies that the sender thread publishes the queued messages in batches")
+    public void asyncPublishingInBatches() throws InterruptedException {
+        properties.setBatchSize(10);
+        final DmfPublisher publisher = publisher(false);
+
+        for (int i = 0; i < 25; i++) {
+            publisher.publish("exchange", message(), String.valueOf(i));
+        }
+        publisher.start();
+        try {
+            for (int i = 0; i < 25; i++) {
+                assertThat(rabbitTemplate.sent.poll(5, TimeUnit.SECONDS)).isNotNull();
+            }
+        } finally {
+            publisher.stop();
+        }
+
+        assertThat(meterRegistry.get("simulator.dmf.batch").summary().count()).isEqualTo(3);
+        assertThat(meterRegistry.get("simulator.dmf.batch").summary().max()).isEqualTo(10);
+    }
+
+    private DmfPublisher publisher(final boolean confirms) {
+        return new DmfPublisher(rabbitTemplate, properties, confirms, meterRegistry, nanoTime::get);
+    }
+
+    private static Message message() {
+        return new Message(new byte[0], new MessageProperties());
+    }
+
+    private static final class RecordingRabbitTemplate extends RabbitTemplate {
+
+        private final BlockingQueue<Message> sent = new LinkedBlockingQueue<>();
+        private final List<CorrelationData> correlations = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void send(final String exchange, final String routingKey, final Message message,
+                final CorrelationData correlationData) {
+            correlations.add(correlationData);
+            sent.add(message);
+        }
+
+        @Override
+        public <T> T invoke(final OperationsCallback<T> action, final com.rabbitmq.client.ConfirmCallback acks,
+                final com.rabbitmq.client.ConfirmCallback nacks) {
+            return action.doInRabbit(this);
+        }
+    }
+}
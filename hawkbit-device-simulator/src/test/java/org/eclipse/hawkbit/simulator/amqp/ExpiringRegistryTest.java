@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator.amqp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.qameta.allure.Description;
+import io.qameta.allure.Feature;
+import io.qameta.allure.Story;
+import org.junit.jupiter.api.Test;
+
+@Feature("Unit Tests - Hawkbit Device Simulator")
+@Story("DMF Receiver")
+public class ExpiringRegistryTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong nanoTime = new AtomicLong();
+
+    @Test
+    @Description("Verifies that an entry is added once and removed with its value")
+    public void putIfAbsentAndRemove() {
+        final ExpiringRegistry<Long, String> registry = registry(Duration.ofMinutes(1), 100);
+
+        assertThat(registry.putIfAbsent(1L, "tenant")).isTrue();
+        assertThat(registry.putIfAbsent(1L, "other")).isFalse();
+        assertThat(registry.size()).isEqualTo(1);
+        assertThat(meterRegistry.get("simulator.dmf.open.size").tag("type", "test").gauge().value()).isEqualTo(1);
+
+        assertThat(registry.remove(1L)).isEqualTo("tenant");
+        assertThat(registry.remove(1L)).isNull();
+        assertThat(registry.size()).isZero();
+    }
+
+    @Test
+    @Description("Verifies that entries expire after their time to live")
+    public void entriesExpire() {
+        final ExpiringRegistry<Long, String> registry = registry(Duration.ofSeconds(10), 100);
+        for (long i = 0; i < 10; i++) {
+            registry.putIfAbsent(i, "tenant");
+        }
+        nanoTime.addAndGet(Duration.ofSeconds(5).toNanos());
+        registry.putIfAbsent(10L, "tenant");
+        nanoTime.addAndGet(Duration.ofSeconds(5).toNanos());
+
+        assertThat(registry.remove(0L)).as("expired but not removed yet").isNull();
+        registry.expire();
+
+        assertThat(registry.size()).isEqualTo(1);
+        assertThat(registry.remove(10L)).isEqualTo("tenant");
+        assertThat(meterRegistry.get("simulator.dmf.open.expired").counter().count()).isEqualTo(10);
+    }
+
+    @Test
+    @Description("Verifies that the oldest entries are evicted from a full registry")
+    public void oldestEntriesAreEvicted() {
+        final ExpiringRegistry<Long, String> registry = registry(Duration.ofMinutes(1), 16);
+        for (long i = 0; i < 1_000; i++) {
+            registry.putIfAbsent(i, "tenant");
+        }
+
+        assertThat(registry.size()).isEqualTo(16);
+        assertThat(registry.remove(999L)).isEqualTo("tenant");
+        assertThat(registry.remove(0L)).isNull();
+        assertThat(meterRegistry.get("simulator.dmf.open.evicted").counter().count()).isEqualTo(1_000 - 16);
+    }
+
+    @Test
+    @Description("Verifies that entries are exported with their age and restored with it")
+    public void exportAndRestore() {
+        final ExpiringRegistry<Long, String> registry = registry(Duration.ofSeconds(10), 100);
+        registry.putIfAbsent(1L, "tenant");
+        nanoTime.addAndGet(Duration.ofSeconds(4).toNanos());
+        registry.putIfAbsent(2L, "tenant");
+
+        final ExpiringRegistry<Long, String> restored = registry(Duration.ofSeconds(10), 100);
+        registry.forEach((key, value, ageNanos) -> assertThat(restored.restore(key, value, ageNanos)).isTrue());
+        assertThat(restored.size()).isEqualTo(2);
+        assertThat(restored.restore(2L, "other", 0)).isFalse();
+        assertThat(restored.restore(3L, "tenant", Duration.ofSeconds(10).toNanos())).as("expired").isFalse();
+
+        nanoTime.addAndGet(Duration.ofSeconds(6).toNanos());
+        restored.expire();
+        assertThat(restored.remove(1L)).isNull();
+        assertThat(restored.test(2L, "tenant"::equals)).isTrue();
+        assertThat(restored.test(2L, "other"::equals)).isFalse();
+        assertThat(restored.test(3L, "tenant"::equals)).isFalse();
+    }
+
+    private ExpiringRegistry<Long, String> registry(final Duration ttl, final int maxSize) {
+        return new ExpiringRegistry<>("test", ttl, maxSize, meterRegistry, nanoTime::get);
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator.amqp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.qameta.allure.Description;
+import io.qameta.allure.Feature;
+import io.qameta.allure.Story;
+import org.junit.jupiter.api.Test;
+
+@Feature("Unit Tests - Hawkbit Device Simulator")
+@Story("DMF Receiver")
+public class RoundTripsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RoundTrips roundTrips = new RoundTrips(meterRegistry);
+
+    @Test
+    @Description("Verifies that ping round trips are recorded per tenant")
+    public void pingsPerTenant() {
+        roundTrips.recordPing("a", TimeUnit.MILLISECONDS.toNanos(10));
+        roundTrips.recordPing("a", TimeUnit.MILLISECONDS.toNanos(30));
+        roundTrips.recordPing("b", TimeUnit.MILLISECONDS.toNanos(5));
+
+        assertThat(meterRegistry.get("simulator.dmf.ping.rtt").tag("tenant", "a").timer().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("simulator.dmf.ping.rtt").tag("tenant", "a").timer()
+                .totalTime(TimeUnit.MILLISECONDS)).isEqualTo(40);
+        assertThat(meterRegistry.get("simulator.dmf.ping.rtt").tag("tenant", "b").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    @Description("Verifies that action round trips are recorded per tenant and outcome")
+    public void actionsPerTenantAndOutcome() {
+        roundTrips.recordAction("a", RoundTrips.FINISHED, TimeUnit.SECONDS.toNanos(2));
+        roundTrips.recordAction("a", RoundTrips.ERROR, TimeUnit.SECONDS.toNanos(1));
+        roundTrips.recordAction("a", RoundTrips.FINISHED, TimeUnit.SECONDS.toNanos(4));
+
+        assertThat(meterRegistry.get("simulator.dmf.action.rtt").tags("tenant", "a", "outcome", "finished").timer()
+                .max(TimeUnit.SECONDS)).isEqualTo(4);
+        assertThat(meterRegistry.get("simulator.dmf.action.rtt").tags("tenant", "a", "outcome", "error").timer()
+                .count()).isEqualTo(1);
+    }
+}
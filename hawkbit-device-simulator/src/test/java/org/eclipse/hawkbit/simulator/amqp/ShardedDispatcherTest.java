@@ -0,0 +1,188 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator.amqp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.qameta.allure.Description;
+import io.qameta.allure.Feature;
+import io.qameta.allure.Story;
+import org.junit.jupiter.api.Test;
+
+@Feature("Unit Tests - Hawkbit Device Simulator")
+@Story("DMF Receiver")
+public class ShardedDispatcherTest {
+
+    private final AmqpProperties.Listener properties = new AmqpProperties.Listener();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    @Description("Verifies that the messages of a thing are handled in the order of their dispatch")
+    public void orderedPerThing() throws InterruptedException {
+        properties.setConcurrency(4);
+        properties.setQueueCapacity(10);
+        final ShardedDispatcher dispatcher = new ShardedDispatcher(properties, meterRegistry, System::nanoTime);
+        dispatcher.start();
+
+        final Map<String, List<Integer>> handled = new ConcurrentHashMap<>();
+        final CountDownLatch done = new CountDownLatch(20 * 100);
+        try {
+            for (int i = 0; i < 100; i++) {
+                for (int thing = 0; thing < 20; thing++) {
+                    final String thingId = "thing" + thing;
+                    final int sequence = i;
+                    dispatcher.dispatch(thingId, () -> {
+                        handled.computeIfAbsent(thingId, id -> Collections.synchronizedList(new ArrayList<>()))
+                                .add(sequence);
+                        done.countDown();
+                    });
+                }
+            }
+            assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            dispatcher.stop();
+        }
+
+        assertThat(handled).hasSize(20);
+        handled.values().forEach(sequences -> assertThat(sequences).hasSize(100).isSorted());
+        // the lag is recorded before the message is handled
+        assertThat(meterRegistry.get("simulator.dmf.receive.lag").timer().count()).isEqualTo(2_000);
+    }
+
+    @Test
+    @Description("Verifies that a blocked thing does not hold back the things of other shards")
+    public void thingsOfOtherShardsInParallel() throws InterruptedException {
+        properties.setConcurrency(2);
+        final ShardedDispatcher dispatcher = new ShardedDispatcher(properties, meterRegistry, System::nanoTime);
+        dispatcher.start();
+
+        // "a" and "b" hash to different shards of two
+        assertThat(Math.floorMod("a".hashCode(), 2)).isNotEqualTo(Math.floorMod("b".hashCode(), 2));
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch handledB = new CountDownLatch(1);
+        try {
+            dispatcher.dispatch("a", () -> {
+                try {
+                    release.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            dispatcher.dispatch("b", handledB::countDown);
+            assertThat(handledB.await(5, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            release.countDown();
+            dispatcher.stop();
+        }
+    }
+
+    @Test
+    @Description("Verifies that a failing message is counted and does not stop its shard")
+    public void failuresAreCounted() throws InterruptedException {
+        properties.setConcurrency(1);
+        final ShardedDispatcher dispatcher = new ShardedDispatcher(properties, meterRegistry, System::nanoTime);
+        dispatcher.start();
+
+        final CountDownLatch handled = new CountDownLatch(1);
+        try {
+            dispatcher.dispatch("thing", () -> {
+                throw new IllegalArgumentException("failed");
+            });
+            dispatcher.dispatch("thing", handled::countDown);
+            assertThat(handled.await(5, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            dispatcher.stop();
+        }
+        assertThat(meterRegistry.get("simulator.dmf.receive.failed").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @Description("Verifies that stopping waits until the messages waiting for their shard have been handled and "
+            + "handles later messages on the calling thread")
+    public void stopDrainsShards() {
+        properties.setConcurrency(2);
+        properties.setQueueCapacity(100);
+        final ShardedDispatcher dispatcher = new ShardedDispatcher(properties, meterRegistry, System::nanoTime);
+        dispatcher.start();
+
+        final AtomicInteger handled = new AtomicInteger();
+        for (int i = 0; i < 100; i++) {
+            dispatcher.dispatch("thing" + i, () -> {
+                sleep(5);
+                handled.incrementAndGet();
+            });
+        }
+        dispatcher.stop();
+        assertThat(handled).hasValue(100);
+        assertThat(dispatcher.isRunning()).isFalse();
+
+        final List<Thread> threads = new ArrayList<>();
+        dispatcher.dispatch("thing", () -> threads.add(Thread.currentThread()));
+        assertThat(threads).containsExactly(Thread.currentThread());
+    }
+
+    @Test
+    @Description("Verifies that stopping gives up on the shards after the shutdown timeout")
+    public void stopWithinShutdownTimeout() {
+        properties.setConcurrency(1);
+        properties.setShutdownTimeout(100);
+        final ShardedDispatcher dispatcher = new ShardedDispatcher(properties, meterRegistry, System::nanoTime);
+        dispatcher.start();
+
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger handled = new AtomicInteger();
+        dispatcher.dispatch("thing", () -> {
+            try {
+                release.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        dispatcher.dispatch("thing", handled::incrementAndGet);
+
+        final long start = System.nanoTime();
+        dispatcher.stop();
+        assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(5));
+        assertThat(handled).hasValue(0);
+        assertThat(meterRegistry.get("simulator.dmf.receive.queued").gauge().value()).isZero();
+    }
+
+    @Test
+    @Description("Verifies that messages are handled on the calling thread without shards")
+    public void inlineWithoutShards() {
+        properties.setConcurrency(0);
+        final ShardedDispatcher dispatcher = new ShardedDispatcher(properties, meterRegistry, System::nanoTime);
+        dispatcher.start();
+
+        final List<Thread> threads = new ArrayList<>();
+        dispatcher.dispatch("thing", () -> threads.add(Thread.currentThread()));
+        dispatcher.dispatch(null, () -> threads.add(Thread.currentThread()));
+
+        assertThat(threads).containsOnly(Thread.currentThread()).hasSize(2);
+    }
+
+    private static void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator.download;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.qameta.allure.Description;
+import io.qameta.allure.Feature;
+import io.qameta.allure.Story;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+@Feature("Unit Tests - Hawkbit Device Simulator")
+@Story("Artifact Reader")
+public class ArtifactReaderTest {
+
+    private final DownloadProperties properties = new DownloadProperties();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final DownloadThrottle.Limiter limiter = new DownloadThrottle(properties, meterRegistry).forDevice("tenant",
+            "device");
+    private final byte[] content = new byte[1_000_000];
+
+    ArtifactReaderTest() {
+        new Random(42).nextBytes(content);
+    }
+
+    @ParameterizedTest
+    @EnumSource(ArtifactReader.Mode.class)
+    @Description("Verifies that the content is read and hashed completely in every mode")
+    public void readAndHash(final ArtifactReader.Mode mode) throws IOException, NoSuchAlgorithmException {
+        properties.setReadMode(mode);
+        final ArtifactReader reader = new ArtifactReader(properties, meterRegistry);
+        final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+
+        assertThat(reader.read(new ByteArrayInputStream(content), digest, limiter, () -> false))
+                .isEqualTo(content.length);
+        assertThat(digest.digest()).isEqualTo(MessageDigest.getInstance("SHA-1").digest(content));
+    }
+
+    @ParameterizedTest
+    @EnumSource(ArtifactReader.Mode.class)
+    @Description("Verifies that an aborted download stops reading")
+    public void abortedRead(final ArtifactReader.Mode mode) throws NoSuchAlgorithmException {
+        properties.setReadMode(mode);
+        final ArtifactReader reader = new ArtifactReader(properties, meterRegistry);
+        final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+
+        assertThatThrownBy(() -> reader.read(new ByteArrayInputStream(content), digest, limiter, () -> true))
+                .isInstanceOf(InterruptedIOException.class);
+    }
+}
@@ -0,0 +1,235 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator.download;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.eclipse.hawkbit.dmf.json.model.DmfArtifact;
+import org.eclipse.hawkbit.dmf.json.model.DmfArtifactHash;
+import org.eclipse.hawkbit.dmf.json.model.DmfSoftwareModule;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves artifacts for the tests of the update simulation. An artifact is
+ * served right away, once it is released, slowly or fails with a server
+ * error.
+ */
+public final class ArtifactServer implements AutoCloseable {
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final HttpServer server;
+    private final Map<String, Handler> handlers = new ConcurrentHashMap<>();
+    private final List<String> requested = new CopyOnWriteArrayList<>();
+
+    /**
+     * @throws IOException
+     *             if the server could not be started
+     */
+    public ArtifactServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * @return the names of the requested artifacts in the order of their
+     *         requests
+     */
+    public List<String> getRequested() {
+        return requested;
+    }
+
+    /**
+     * Adds an artifact which is served once it is released.
+     *
+     * @param name
+     *            of the artifact
+     * @param size
+     *            of the artifact
+     * @param release
+     *            counted down to serve the artifact
+     * @return the artifact
+     */
+    public DmfArtifact add(final String name, final int size, final CountDownLatch release) {
+        handlers.put(name, exchange -> {
+            await(release);
+            send(exchange, new byte[size]);
+        });
+        return artifact(name, new byte[size]);
+    }
+
+    /**
+     * Adds an artifact which is served right away.
+     *
+     * @param name
+     *            of the artifact
+     * @param size
+     *            of the artifact
+     * @return the artifact
+     */
+    public DmfArtifact add(final String name, final int size) {
+        return add(name, size, new CountDownLatch(0));
+    }
+
+    /**
+     * Adds an artifact which is served in small chunks with a pause after
+     * each of them, so its download takes long.
+     *
+     * @param name
+     *            of the artifact
+     * @param size
+     *            of the artifact
+     * @return the artifact
+     */
+    public DmfArtifact addSlow(final String name, final int size) {
+        handlers.put(name, exchange -> {
+            exchange.sendResponseHeaders(200, size);
+            try (final OutputStream body = exchange.getResponseBody()) {
+                final byte[] chunk = new byte[1024];
+                for (int sent = 0; sent < size; sent += chunk.length) {
+                    body.write(chunk, 0, Math.min(chunk.length, size - sent));
+                    body.flush();
+                    sleep(10);
+                }
+            }
+        });
+        return artifact(name, new byte[size]);
+    }
+
+    /**
+     * Adds an artifact which fails with a server error once it is released.
+     *
+     * @param name
+     *            of the artifact
+     * @param size
+     *            the expected size of the artifact
+     * @param release
+     *            counted down to fail the artifact
+     * @return the artifact
+     */
+    public DmfArtifact addFailing(final String name, final int size, final CountDownLatch release) {
+        handlers.put(name, exchange -> {
+            await(release);
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+        });
+        return artifact(name, new byte[size]);
+    }
+
+    /**
+     * @param artifacts
+     *            of the module
+     * @return a software module with the artifacts
+     */
+    public static DmfSoftwareModule module(final DmfArtifact... artifacts) {
+        final DmfSoftwareModule module = new DmfSoftwareModule();
+        module.setModuleVersion("1.0");
+        module.setArtifacts(List.of(artifacts));
+        return module;
+    }
+
+    /**
+     * Waits until a condition is met.
+     *
+     * @param condition
+     *            the condition
+     * @return <code>true</code> if the condition has been met in time
+     */
+    public static boolean waitFor(final Supplier<Boolean> condition) {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (!condition.get()) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            sleep(10);
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        final String name = exchange.getRequestURI().getPath().substring(1);
+        requested.add(name);
+        try {
+            handlers.get(name).handle(exchange);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private DmfArtifact artifact(final String name, final byte[] content) {
+        final DmfArtifact artifact = new DmfArtifact();
+        artifact.setFilename(name);
+        artifact.setSize(content.length);
+        artifact.setHashes(new DmfArtifactHash(sha1(content), null));
+        artifact.setUrls(Map.of("HTTP", "http://localhost:" + server.getAddress().getPort() + "/" + name));
+        return artifact;
+    }
+
+    private static void send(final HttpExchange exchange, final byte[] content) throws IOException {
+        exchange.sendResponseHeaders(200, content.length);
+        try (final OutputStream body = exchange.getResponseBody()) {
+            body.write(content);
+        }
+    }
+
+    private static String sha1(final byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-1").digest(content));
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        void handle(HttpExchange exchange) throws IOException;
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator.download;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.qameta.allure.Description;
+import io.qameta.allure.Feature;
+import io.qameta.allure.Story;
+import org.junit.jupiter.api.Test;
+
+@Feature("Unit Tests - Hawkbit Device Simulator")
+@Story("Download Resume")
+public class DownloadResumerTest {
+
+    private final DownloadProperties properties = new DownloadProperties();
+    private final DownloadResumer resumer = new DownloadResumer(properties, new SimpleMeterRegistry());
+
+    @Test
+    @Description("Verifies the parsing of the start of a content range")
+    public void rangeStart() {
+        assertThat(DownloadResumer.rangeStart("bytes 100-999/1000")).isEqualTo(100);
+        assertThat(DownloadResumer.rangeStart("bytes 0-9/*")).isZero();
+        assertThat(DownloadResumer.rangeStart("bytes */1000")).isEqualTo(-1);
+        assertThat(DownloadResumer.rangeStart(null)).isEqualTo(-1);
+    }
+
+    @Test
+    @Description("Verifies that the number of resumes is limited")
+    public void resumesAreLimited() {
+        properties.getResume().setMaxResumes(2);
+        assertThat(resumer.canResume(1)).isTrue();
+        assertThat(resumer.canResume(2)).isFalse();
+
+        properties.getResume().setEnabled(false);
+        assertThat(resumer.canResume(0)).isFalse();
+    }
+
+    @Test
+    @Description("Verifies that an injected drop fails the content before its end")
+    public void injectedDrop() throws IOException {
+        final byte[] content = new byte[1_000];
+        assertThat(resumer.injectDrops(new ByteArrayInputStream(content), content.length).readAllBytes())
+                .hasSize(content.length);
+
+        properties.getResume().setDropRate(1.0);
+        final InputStream dropping = resumer.injectDrops(new ByteArrayInputStream(content), content.length);
+        assertThatThrownBy(dropping::readAllBytes).isInstanceOf(IOException.class)
+                .hasMessage("Simulated connection drop");
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator.download;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.eclipse.hawkbit.simulator.download.ArtifactServer.module;
+import static org.eclipse.hawkbit.simulator.download.ArtifactServer.waitFor;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.qameta.allure.Description;
+import io.qameta.allure.Feature;
+import io.qameta.allure.Story;
+import org.eclipse.hawkbit.dmf.amqp.api.EventTopic;
+import org.eclipse.hawkbit.dmf.json.model.DmfSoftwareModule;
+import org.eclipse.hawkbit.simulator.AbstractSimulatedDevice;
+import org.eclipse.hawkbit.simulator.DMFSimulatedDevice;
+import org.eclipse.hawkbit.simulator.DeviceSimulatorRepository;
+import org.eclipse.hawkbit.simulator.DeviceSimulatorUpdater;
+import org.eclipse.hawkbit.simulator.SimulationProperties;
+import org.eclipse.hawkbit.simulator.UpdateStatus;
+import org.eclipse.hawkbit.simulator.UpdateStatus.ResponseStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@Feature("Unit Tests - Hawkbit Device Simulator")
+@Story("Parallel Downloads")
+public class ParallelDownloadTest {
+
+    private final DownloadProperties properties = new DownloadProperties();
+    private final List<UpdateStatus> feedback = new CopyOnWriteArrayList<>();
+    private final AbstractSimulatedDevice device = new DMFSimulatedDevice("device", "tenant", null, 30);
+    private ArtifactServer server;
+    private DeviceSimulatorUpdater updater;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = new ArtifactServer();
+        properties.setParallelism(2);
+        updater = updater();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        ReflectionTestUtils.invokeMethod(updater, "shutdownPools");
+        server.close();
+    }
+
+    @Test
+    @Description("Verifies that the artifacts of an update are downloaded in parallel and the results are merged")
+    public void downloadInParallel() {
+        // both downloads are served once both have been requested
+        final CountDownLatch bothRequested = new CountDownLatch(2);
+        final DmfSoftwareModule module = module(server.add("first", 10_000, bothRequested),
+                server.add("second", 20_000, bothRequested), server.add("third", 30_000));
+
+        update(module);
+        assertThat(waitFor(() -> server.getRequested().size() == 2)).isTrue();
+        assertThat(server.getRequested()).containsExactlyInAnyOrder("first", "second");
+        bothRequested.countDown();
+        bothRequested.countDown();
+
+        assertThat(waitFor(() -> hasStatus(ResponseStatus.SUCCESSFUL))).isTrue();
+        final UpdateStatus downloads = status(ResponseStatus.DOWNLOADED);
+        assertThat(downloads.getStatusMessages()).hasSize(4).first().isEqualTo("Simulator: Download complete!");
+        assertThat(downloads.getStatusMessages()).anyMatch(message -> message.contains("/first (10000 bytes"))
+                .anyMatch(message -> message.contains("/second (20000 bytes"))
+                .anyMatch(message -> message.contains("/third (30000 bytes"));
+        assertThat(hasStatus(ResponseStatus.ERROR)).isFalse();
+    }
+
+    @Test
+    @Description("Verifies that a failed download aborts the running downloads, skips the pending ones and fails "
+            + "the update")
+    public void failedDownloadStopsOthers() {
+        final CountDownLatch fail = new CountDownLatch(1);
+        final DmfSoftwareModule module = module(server.addSlow("slow", 10_000_000),
+                server.addFailing("failing", 1_000, fail), server.add("pending", 1_000));
+
+        final long start = System.nanoTime();
+        update(module);
+        assertThat(waitFor(() -> server.getRequested().size() == 2)).isTrue();
+        fail.countDown();
+
+        assertThat(waitFor(() -> hasStatus(ResponseStatus.ERROR))).isTrue();
+        // the slow download would take more than 100 seconds
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(10));
+
+        final UpdateStatus downloads = status(ResponseStatus.ERROR);
+        assertThat(downloads.getStatusMessages()).anyMatch(message -> message.contains("/failing failed (500)"))
+                .anyMatch(message -> message.startsWith("Aborted download") && message.endsWith("/slow"))
+                .contains("Simulator: Skipped 1 downloads after a failed download");
+        assertThat(server.getRequested()).doesNotContain("pending");
+        assertThat(hasStatus(ResponseStatus.DOWNLOADED)).isFalse();
+        assertThat(hasStatus(ResponseStatus.SUCCESSFUL)).isFalse();
+    }
+
+    private void update(final DmfSoftwareModule module) {
+        updater.startUpdate(device, List.of(module), null, null, (updated, status) -> feedback.add(status),
+                EventTopic.DOWNLOAD_AND_INSTALL);
+    }
+
+    private boolean hasStatus(final ResponseStatus responseStatus) {
+        return feedback.stream().anyMatch(status -> status.getResponseStatus() == responseStatus);
+    }
+
+    private UpdateStatus status(final ResponseStatus responseStatus) {
+        return feedback.stream().filter(status -> status.getResponseStatus() == responseStatus).findFirst()
+                .orElseThrow();
+    }
+
+    private DeviceSimulatorUpdater updater() throws Exception {
+        final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        final SimulationProperties simulationProperties = new SimulationProperties();
+        simulationProperties.getUpdate().setStartDelay(Duration.ZERO);
+
+        final DeviceSimulatorUpdater deviceUpdater = new DeviceSimulatorUpdater();
+        ReflectionTestUtils.setField(deviceUpdater, "repository", new DeviceSimulatorRepository() {
+            @Override
+            public void pin(final AbstractSimulatedDevice device) {
+                // the device is not kept in a store
+            }
+
+            @Override
+            public void unpin(final AbstractSimulatedDevice device, final UpdateStatus status) {
+                // the device is not kept in a store
+            }
+        });
+        ReflectionTestUtils.setField(deviceUpdater, "simulationProperties", simulationProperties);
+        ReflectionTestUtils.setField(deviceUpdater, "downloadProperties", properties);
+        ReflectionTestUtils.setField(deviceUpdater, "downloadHttpClient",
+                new DownloadHttpClient(properties, meterRegistry));
+        ReflectionTestUtils.setField(deviceUpdater, "downloadThrottle", new DownloadThrottle(properties, meterRegistry));
+        ReflectionTestUtils.setField(deviceUpdater, "artifactReader", new ArtifactReader(properties, meterRegistry));
+        ReflectionTestUtils.setField(deviceUpdater, "downloadResumer", new DownloadResumer(properties, meterRegistry));
+        ReflectionTestUtils.setField(deviceUpdater, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.invokeMethod(deviceUpdater, "createPools");
+        return deviceUpdater;
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright (c) 2023 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.hawkbit.simulator.download;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.qameta.allure.Description;
+import io.qameta.allure.Feature;
+import io.qameta.allure.Story;
+import org.junit.jupiter.api.Test;
+
+@Feature("Unit Tests - Hawkbit Device Simulator")
+@Story("Download Bandwidth")
+public class TokenBucketTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final TokenBucket bucket = new TokenBucket(1_000, clock::get);
+
+    @Test
+    @Description("Verifies that one second of the rate is available as burst")
+    public void burstIsAvailableRightAway() {
+        assertThat(bucket.reserve(600)).isZero();
+        assertThat(bucket.reserve(400)).isZero();
+        assertThat(bucket.reserve(100)).isEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    @Description("Verifies that reservations beyond the burst queue up behind each other")
+    public void reservationsQueueUp() {
+        assertThat(bucket.reserve(1_000)).isZero();
+        assertThat(bucket.reserve(500)).isEqualTo(TimeUnit.MILLISECONDS.toNanos(500));
+        assertThat(bucket.reserve(500)).isEqualTo(TimeUnit.SECONDS.toNanos(1));
+
+        clock.set(TimeUnit.SECONDS.toNanos(1));
+        assertThat(bucket.reserve(0)).isZero();
+    }
+
+    @Test
+    @Description("Verifies that an idle bucket refills only up to its burst")
+    public void refillIsCapped() {
+        assertThat(bucket.reserve(1_000)).isZero();
+
+        clock.set(TimeUnit.SECONDS.toNanos(60));
+        assertThat(bucket.reserve(1_000)).isZero();
+        assertThat(bucket.reserve(1)).isPositive();
+    }
+}